@@ -0,0 +1,356 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.bif;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.TableBasedDiscreteFactorFactory;
+import com.github.thorbenlindhauer.importer.GraphicalModelImporter;
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.importer.table.TablePositions;
+import com.github.thorbenlindhauer.importer.table.TableTokenizer;
+import com.github.thorbenlindhauer.importer.table.TextModelReader;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Reads Bayesian networks of discrete variables in the (text) BIF format. Variables must be declared before
+ * the probabilities that refer to them. A probability block defines its values either by a <code>table</code>,
+ * where the last variable of <code>( A | B, C )</code> changes fastest and <code>A</code> slowest, or by one
+ * entry per assignment of the parents, e.g. <code>(b1, c2) 0.2, 0.8;</code>, where assignments without an
+ * entry take the <code>default</code> entry's values.
+ *
+ * <p>
+ * Only comments that extend to the end of a line (<code>//</code>) are supported.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class BIFImporter implements GraphicalModelImporter<DiscreteFactor> {
+
+  protected static final String DELIMITERS = "(){}[],;|";
+  protected static final char COMMENT_START = '/';
+
+  protected DiscreteFactorFactory factorFactory;
+
+  public BIFImporter() {
+    this(new TableBasedDiscreteFactorFactory());
+  }
+
+  public BIFImporter(DiscreteFactorFactory factorFactory) {
+    this.factorFactory = factorFactory;
+  }
+
+  public List<GraphicalModel<DiscreteFactor>> importFromStream(InputStream inputStream) {
+    TextModelReader reader = new TextModelReader(inputStream, DELIMITERS, COMMENT_START);
+
+    Map<String, DiscreteVariable> variables = new LinkedHashMap<String, DiscreteVariable>();
+    Map<String, List<String>> variableStates = new HashMap<String, List<String>>();
+    Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+    Scope modelScope = null;
+
+    while (reader.hasNext()) {
+      String declaration = reader.next();
+
+      if ("network".equals(declaration)) {
+        reader.next();
+        skipBlock(reader);
+      } else if ("variable".equals(declaration)) {
+        if (modelScope != null) {
+          throw new ImporterException("Variables must be declared before probabilities");
+        }
+
+        String variableId = reader.next();
+        List<String> states = readVariable(reader, variableId);
+        variables.put(variableId, new DiscreteVariable(variableId, states.size()));
+        variableStates.put(variableId, states);
+      } else if ("probability".equals(declaration)) {
+        if (modelScope == null) {
+          modelScope = new Scope(variables.values()).intern();
+        }
+
+        factors.add(readProbability(reader, modelScope, variableStates));
+      } else {
+        throw new ImporterException("Unsupported declaration " + declaration);
+      }
+    }
+
+    if (modelScope == null) {
+      modelScope = new Scope(variables.values()).intern();
+    }
+
+    return Collections.singletonList(new GraphicalModel<DiscreteFactor>(modelScope, factors, true));
+  }
+
+  /**
+   * @return the names of the variable's states
+   */
+  protected List<String> readVariable(TextModelReader reader, String variableId) {
+    List<String> states = null;
+
+    reader.expect("{");
+    String attribute = reader.next();
+    while (!"}".equals(attribute)) {
+      if ("type".equals(attribute)) {
+        reader.expect("discrete");
+        reader.expect("[");
+        int cardinality = reader.nextInt();
+        reader.expect("]");
+
+        states = new ArrayList<String>(cardinality);
+        reader.expect("{");
+        String token = reader.next();
+        while (!"}".equals(token)) {
+          if (!",".equals(token)) {
+            states.add(token);
+          }
+          token = reader.next();
+        }
+        reader.expect(";");
+
+        if (states.size() != cardinality) {
+          throw new ImporterException("Variable " + variableId + " has " + states.size() + " states, expected " + cardinality);
+        }
+      } else {
+        skipStatement(reader);
+      }
+
+      attribute = reader.next();
+    }
+
+    if (states == null || states.isEmpty()) {
+      throw new ImporterException("Variable " + variableId + " has no states");
+    }
+
+    return states;
+  }
+
+  protected DiscreteFactor readProbability(TextModelReader reader, Scope modelScope, Map<String, List<String>> variableStates) {
+    List<String> variablesAsInFile = new ArrayList<String>();
+
+    reader.expect("(");
+    String token = reader.next();
+    while (!")".equals(token)) {
+      if (!"|".equals(token) && !",".equals(token)) {
+        if (!modelScope.has(token)) {
+          throw new ImporterException("Probability refers to undeclared variable " + token);
+        }
+
+        variablesAsInFile.add(token);
+      }
+
+      token = reader.next();
+    }
+
+    if (variablesAsInFile.isEmpty()) {
+      throw new ImporterException("Probability has no variables");
+    }
+
+    Scope scope = modelScope.subScope(variablesAsInFile).intern();
+    double[] values = new double[scope.getNumDistinctValues()];
+    ParentAssignments parentAssignments = new ParentAssignments(scope, variablesAsInFile, variableStates);
+    double[] defaultValues = null;
+
+    reader.expect("{");
+    String entry = reader.next();
+    while (!"}".equals(entry)) {
+      if ("table".equals(entry)) {
+        // the tokenizer expects the fastest changing variable first
+        List<String> variablesAsInInput = new ArrayList<String>(variablesAsInFile);
+        Collections.reverse(variablesAsInInput);
+
+        reader.readTable(new TableTokenizer(values, TablePositions.forInputOrder(scope, variablesAsInInput)), values.length);
+        reader.expect(";");
+        parentAssignments.markAll();
+
+      } else if ("default".equals(entry)) {
+        defaultValues = parentAssignments.readRow(reader);
+        reader.expect(";");
+
+      } else if ("(".equals(entry)) {
+        int[] positions = parentAssignments.readAssignment(reader);
+        double[] rowValues = parentAssignments.readRow(reader);
+        reader.expect(";");
+
+        for (int i = 0; i < positions.length; i++) {
+          values[positions[i]] = rowValues[i];
+        }
+
+      } else {
+        skipStatement(reader);
+      }
+
+      entry = reader.next();
+    }
+
+    parentAssignments.fillUnmarked(values, defaultValues);
+
+    return factorFactory.build(scope, values);
+  }
+
+  /**
+   * Skips everything up to the semicolon that ends the statement.
+   */
+  protected void skipStatement(TextModelReader reader) {
+    String token = reader.next();
+
+    while (!";".equals(token)) {
+      token = reader.next();
+    }
+  }
+
+  protected void skipBlock(TextModelReader reader) {
+    reader.expect("{");
+    int depth = 1;
+
+    while (depth > 0) {
+      String token = reader.next();
+      if ("{".equals(token)) {
+        depth++;
+      } else if ("}".equals(token)) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Maps the entries of a probability block to the positions of the factor's canonical table. The first variable
+   * of the block is the child, the others are its parents.
+   */
+  protected static class ParentAssignments {
+
+    protected Scope scope;
+    protected List<String> variablesAsInFile;
+    protected Map<String, List<String>> variableStates;
+
+    /** for every variable in file order, its position in the scope's canonical order */
+    protected int[] scopePositions;
+    protected int childCardinality;
+
+    /** whether an entry sets the values of a parent assignment, indexed by the table position of the child's first value */
+    protected boolean[] marked;
+    protected boolean allMarked;
+
+    public ParentAssignments(Scope scope, List<String> variablesAsInFile, Map<String, List<String>> variableStates) {
+      this.scope = scope;
+      this.variablesAsInFile = variablesAsInFile;
+      this.variableStates = variableStates;
+
+      List<String> orderedVariables = Arrays.asList(scope.getVariableIds());
+      this.scopePositions = new int[variablesAsInFile.size()];
+      for (int i = 0; i < scopePositions.length; i++) {
+        scopePositions[i] = orderedVariables.indexOf(variablesAsInFile.get(i));
+      }
+
+      this.childCardinality = variableStates.get(variablesAsInFile.get(0)).size();
+      this.marked = new boolean[scope.getNumDistinctValues()];
+    }
+
+    /**
+     * Reads the parent states up to the closing parenthesis and returns the table positions of the child's values
+     * for this parent assignment.
+     */
+    public int[] readAssignment(TextModelReader reader) {
+      int[] assignment = new int[scopePositions.length];
+      int parent = 1;
+
+      String token = reader.next();
+      while (!")".equals(token)) {
+        if (!",".equals(token)) {
+          if (parent == scopePositions.length) {
+            throw new ImporterException("Too many parent states for variable " + variablesAsInFile.get(0));
+          }
+
+          String parentId = variablesAsInFile.get(parent);
+          int state = variableStates.get(parentId).indexOf(token);
+          if (state < 0) {
+            throw new ImporterException("Variable " + parentId + " has no state " + token);
+          }
+
+          assignment[scopePositions[parent]] = state;
+          parent++;
+        }
+
+        token = reader.next();
+      }
+
+      if (parent != scopePositions.length) {
+        throw new ImporterException("Too few parent states for variable " + variablesAsInFile.get(0));
+      }
+
+      int[] positions = new int[childCardinality];
+      for (int i = 0; i < childCardinality; i++) {
+        assignment[scopePositions[0]] = i;
+        positions[i] = scope.getIndexCoder().getIndexForAssignment(assignment);
+      }
+
+      marked[positions[0]] = true;
+      return positions;
+    }
+
+    /**
+     * Reads the child's values for one assignment of the parents.
+     */
+    public double[] readRow(TextModelReader reader) {
+      double[] rowValues = new double[childCardinality];
+      int[] rowPositions = new int[childCardinality];
+      for (int i = 0; i < rowPositions.length; i++) {
+        rowPositions[i] = i;
+      }
+
+      reader.readTable(new TableTokenizer(rowValues, rowPositions), rowValues.length);
+      return rowValues;
+    }
+
+    public void markAll() {
+      allMarked = true;
+    }
+
+    /**
+     * Sets the default values for all parent assignments without an entry.
+     */
+    public void fillUnmarked(double[] values, double[] defaultValues) {
+      if (allMarked) {
+        return;
+      }
+
+      int childStride = scope.getIndexCoder().getStrides()[scopePositions[0]];
+
+      for (int offset = 0; offset < values.length; offset++) {
+        boolean isChildZero = (offset / childStride) % childCardinality == 0;
+
+        if (isChildZero && !marked[offset]) {
+          if (defaultValues == null) {
+            throw new ImporterException("Probability of variable " + variablesAsInFile.get(0) + " has no entry for every parent assignment");
+          }
+
+          for (int i = 0; i < childCardinality; i++) {
+            values[offset + i * childStride] = defaultValues[i];
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * A model read from the binary format together with its compiled clique tree, if one was stored.
+ * A lazily imported model keeps its file open until it is closed; tables that were not loaded
+ * before cannot be loaded afterwards.
+ *
+ * @author Thorben
+ */
+public class BinaryModel implements Closeable {
+
+  protected GraphicalModel<DiscreteFactor> graphicalModel;
+  protected ClusterGraph<DiscreteFactor> cliqueTree;
+  protected Closeable tableSource;
+
+  public BinaryModel(GraphicalModel<DiscreteFactor> graphicalModel, ClusterGraph<DiscreteFactor> cliqueTree) {
+    this(graphicalModel, cliqueTree, null);
+  }
+
+  /**
+   * @param tableSource the source of the model's lazily loaded tables, may be null
+   */
+  public BinaryModel(GraphicalModel<DiscreteFactor> graphicalModel, ClusterGraph<DiscreteFactor> cliqueTree, Closeable tableSource) {
+    this.graphicalModel = graphicalModel;
+    this.cliqueTree = cliqueTree;
+    this.tableSource = tableSource;
+  }
+
+  public GraphicalModel<DiscreteFactor> getGraphicalModel() {
+    return graphicalModel;
+  }
+
+  /**
+   * @return null if the model was stored without a clique tree
+   */
+  public ClusterGraph<DiscreteFactor> getCliqueTree() {
+    return cliqueTree;
+  }
+
+  public void close() throws IOException {
+    if (tableSource != null) {
+      tableSource.close();
+    }
+  }
+}
@@ -0,0 +1,276 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.binary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.TableBasedDiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor.TableLoader;
+import com.github.thorbenlindhauer.factor.MappedDiscreteFactor;
+import com.github.thorbenlindhauer.factor.MappedFactorTables;
+import com.github.thorbenlindhauer.factor.MappedFactorTables.Directory;
+import com.github.thorbenlindhauer.factor.MappedFactorTables.MappedModel;
+import com.github.thorbenlindhauer.importer.GraphicalModelImporter;
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Reads discrete models in the format of {@link MappedFactorTables}. Tables are already stored in canonical order,
+ * such that they are copied into the factors in bulk without parsing or reordering, read on first access
+ * or memory-mapped.
+ *
+ * @author Thorben
+ */
+public class BinaryModelImporter implements GraphicalModelImporter<DiscreteFactor> {
+
+  protected static final int CHUNK_SIZE = 1 << 16;
+
+  protected DiscreteFactorFactory factorFactory;
+
+  public BinaryModelImporter() {
+    this(new TableBasedDiscreteFactorFactory());
+  }
+
+  public BinaryModelImporter(DiscreteFactorFactory factorFactory) {
+    this.factorFactory = factorFactory;
+  }
+
+  public List<GraphicalModel<DiscreteFactor>> importFromStream(InputStream inputStream) {
+    return Collections.singletonList(importModel(inputStream).getGraphicalModel());
+  }
+
+  /**
+   * Reads the model and all of its tables onto the heap.
+   */
+  public BinaryModel importModel(InputStream inputStream) {
+    InputStream in = new BufferedInputStream(inputStream, CHUNK_SIZE);
+
+    try {
+      Directory directory = MappedFactorTables.readDirectory(in);
+      List<DiscreteFactor> factors = readFactors(in, directory);
+
+      return new BinaryModel(directory.buildModel(factors), directory.buildCliqueTree(factors));
+
+    } catch (ModelStructureException e) {
+      throw new ImporterException("Stream does not contain a valid binary model", e);
+    } catch (IOException e) {
+      throw new ImporterException("Cannot import model", e);
+    }
+  }
+
+  /**
+   * Reads the structure of the model but skips the tables. The factors are {@link LazyDiscreteFactor}s that
+   * read their table from the file on first access, such that tables that are never accessed are never loaded.
+   * The file must not change while the model is in use.
+   */
+  public BinaryModel importModelLazily(File file) {
+    InputStream inputStream = null;
+    FileTableLoader tableLoader = null;
+
+    try {
+      inputStream = new BufferedInputStream(new FileInputStream(file), CHUNK_SIZE);
+      Directory directory = MappedFactorTables.readDirectory(inputStream);
+
+      tableLoader = new FileTableLoader(file);
+      List<DiscreteFactor> factors = new ArrayList<DiscreteFactor>(directory.getNumFactors());
+      for (int i = 0; i < directory.getNumFactors(); i++) {
+        factors.add(new LazyDiscreteFactor(directory.getFactorScope(i), tableLoader.tableAt(directory.getTableOffset(i))));
+      }
+
+      return new BinaryModel(directory.buildModel(factors), directory.buildCliqueTree(factors), tableLoader);
+
+    } catch (ModelStructureException e) {
+      closeQuietly(tableLoader);
+      throw new ImporterException("File " + file + " does not contain a valid binary model", e);
+    } catch (IOException e) {
+      closeQuietly(tableLoader);
+      throw new ImporterException("Cannot import model from file " + file, e);
+    } catch (RuntimeException e) {
+      closeQuietly(tableLoader);
+      throw e;
+    } finally {
+      closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Memory-maps the tables of the model instead of reading them, see {@link MappedDiscreteFactor}. The file
+   * is closed once the tables are mapped; the mappings are released once the factors are garbage collected.
+   */
+  public BinaryModel importModelMapped(File file) {
+    try {
+      MappedModel mappedModel = MappedFactorTables.map(file);
+      return new BinaryModel(mappedModel.getGraphicalModel(), mappedModel.getCliqueTree());
+
+    } catch (ModelStructureException e) {
+      throw new ImporterException("File " + file + " does not contain a valid binary model", e);
+    } catch (IOException e) {
+      throw new ImporterException("Cannot import model from file " + file, e);
+    }
+  }
+
+  /**
+   * Reads the tables in the order of the file; the stream must be positioned at the first table.
+   */
+  protected List<DiscreteFactor> readFactors(InputStream in, Directory directory) throws IOException {
+    List<DiscreteFactor> factors = new ArrayList<DiscreteFactor>(directory.getNumFactors());
+    byte[] chunk = new byte[CHUNK_SIZE];
+    long position = directory.getTablesOffset();
+
+    for (int i = 0; i < directory.getNumFactors(); i++) {
+      Scope scope = directory.getFactorScope(i);
+      long tableOffset = directory.getTableOffset(i);
+      if (tableOffset < position) {
+        throw new ImporterException("Tables are not stored in the order of their factors");
+      }
+
+      skipFully(in, tableOffset - position);
+      double[] values = new double[scope.getNumDistinctValues()];
+      readTable(in, chunk, values);
+      position = tableOffset + 8L * values.length;
+
+      factors.add(factorFactory.build(scope, values));
+    }
+
+    return factors;
+  }
+
+  protected void readTable(InputStream in, byte[] chunk, double[] values) throws IOException {
+    int valuesPerChunk = chunk.length / 8;
+
+    for (int offset = 0; offset < values.length; offset += valuesPerChunk) {
+      int numValues = Math.min(valuesPerChunk, values.length - offset);
+      readFully(in, chunk, numValues * 8);
+      ByteBuffer.wrap(chunk, 0, numValues * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, offset, numValues);
+    }
+  }
+
+  protected static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+    int numRead = 0;
+
+    while (numRead < length) {
+      int read = in.read(bytes, numRead, length - numRead);
+      if (read < 0) {
+        throw new EOFException();
+      }
+      numRead += read;
+    }
+  }
+
+  protected static void skipFully(InputStream in, long numBytes) throws IOException {
+    long remaining = numBytes;
+
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new EOFException();
+        }
+        skipped = 1;
+      }
+
+      remaining -= skipped;
+    }
+  }
+
+  protected static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // nothing was written
+      }
+    }
+  }
+
+  /**
+   * Reads the tables of a lazily imported model from the file. The file is opened once and kept open until
+   * the loader is closed; tables are read by position, such that they can be loaded concurrently.
+   */
+  protected class FileTableLoader implements Closeable {
+
+    protected File file;
+    protected RandomAccessFile randomAccessFile;
+    protected FileChannel channel;
+
+    public FileTableLoader(File file) throws IOException {
+      this.file = file;
+      this.randomAccessFile = new RandomAccessFile(file, "r");
+      this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * @param offset the position of the table in the file
+     */
+    public TableLoader tableAt(final long offset) {
+      return new TableLoader() {
+        public DiscreteFactor load(Scope scope) {
+          return FileTableLoader.this.load(scope, offset);
+        }
+      };
+    }
+
+    public DiscreteFactor load(Scope scope, long offset) {
+      try {
+        double[] values = new double[scope.getNumDistinctValues()];
+        ByteBuffer chunk = ByteBuffer.allocate(Math.min(CHUNK_SIZE, 8 * values.length)).order(ByteOrder.LITTLE_ENDIAN);
+        int valuesPerChunk = chunk.capacity() / 8;
+        long position = offset;
+
+        for (int valueOffset = 0; valueOffset < values.length; valueOffset += valuesPerChunk) {
+          int numValues = Math.min(valuesPerChunk, values.length - valueOffset);
+          chunk.clear();
+          chunk.limit(numValues * 8);
+
+          while (chunk.hasRemaining()) {
+            if (channel.read(chunk, position + chunk.position()) < 0) {
+              throw new EOFException();
+            }
+          }
+
+          chunk.flip();
+          chunk.asDoubleBuffer().get(values, valueOffset, numValues);
+          position += numValues * 8;
+        }
+
+        return factorFactory.build(scope, values);
+
+      } catch (IOException e) {
+        throw new ImporterException("Cannot load table from file " + file, e);
+      }
+    }
+
+    public void close() throws IOException {
+      randomAccessFile.close();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.MappedFactorTables;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * Writes discrete models in the format of {@link MappedFactorTables}, such that they can be imported onto the heap,
+ * lazily or memory-mapped by the {@link BinaryModelImporter}.
+ *
+ * @author Thorben
+ */
+public class BinaryModelWriter {
+
+  protected static final int CHUNK_SIZE = 1 << 16;
+
+  public void write(GraphicalModel<DiscreteFactor> model, OutputStream outputStream) {
+    write(model, null, outputStream);
+  }
+
+  /**
+   * @param cliqueTree may be null; its clusters must only contain factors of the model
+   */
+  public void write(GraphicalModel<DiscreteFactor> model, ClusterGraph<DiscreteFactor> cliqueTree, OutputStream outputStream) {
+    MappedFactorTables.write(model, cliqueTree, new BufferedOutputStream(outputStream, CHUNK_SIZE));
+  }
+}
@@ -0,0 +1,235 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.net;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.TableBasedDiscreteFactorFactory;
+import com.github.thorbenlindhauer.importer.GraphicalModelImporter;
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.importer.table.TablePositions;
+import com.github.thorbenlindhauer.importer.table.TableTokenizer;
+import com.github.thorbenlindhauer.importer.table.TextModelReader;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Reads Bayesian networks of discrete chance nodes in the Hugin NET format. Nodes must be declared before
+ * the potentials that refer to them. In the data of a potential <code>(A | B C)</code>, the values of
+ * <code>A</code> change fastest, followed by those of <code>C</code> and <code>B</code>.
+ *
+ * @author Thorben
+ */
+public class NETImporter implements GraphicalModelImporter<DiscreteFactor> {
+
+  protected static final String DELIMITERS = "(){}=;|";
+  protected static final char COMMENT_START = '%';
+
+  protected DiscreteFactorFactory factorFactory;
+
+  public NETImporter() {
+    this(new TableBasedDiscreteFactorFactory());
+  }
+
+  public NETImporter(DiscreteFactorFactory factorFactory) {
+    this.factorFactory = factorFactory;
+  }
+
+  public List<GraphicalModel<DiscreteFactor>> importFromStream(InputStream inputStream) {
+    TextModelReader reader = new TextModelReader(inputStream, DELIMITERS, COMMENT_START);
+
+    Map<String, DiscreteVariable> variables = new LinkedHashMap<String, DiscreteVariable>();
+    Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+    Scope modelScope = null;
+
+    while (reader.hasNext()) {
+      String declaration = reader.next();
+
+      if ("net".equals(declaration)) {
+        skipBlock(reader);
+      } else if ("node".equals(declaration) || "discrete".equals(declaration)) {
+        if ("discrete".equals(declaration)) {
+          reader.expect("node");
+        }
+
+        if (modelScope != null) {
+          throw new ImporterException("Nodes must be declared before potentials");
+        }
+
+        DiscreteVariable variable = readNode(reader);
+        variables.put(variable.getId(), variable);
+      } else if ("potential".equals(declaration)) {
+        if (modelScope == null) {
+          modelScope = new Scope(variables.values()).intern();
+        }
+
+        factors.add(readPotential(reader, modelScope));
+      } else {
+        throw new ImporterException("Unsupported declaration " + declaration);
+      }
+    }
+
+    if (modelScope == null) {
+      modelScope = new Scope(variables.values()).intern();
+    }
+
+    return Collections.singletonList(new GraphicalModel<DiscreteFactor>(modelScope, factors, true));
+  }
+
+  protected DiscreteVariable readNode(TextModelReader reader) {
+    String variableId = reader.next();
+    int cardinality = 0;
+
+    reader.expect("{");
+    String attribute = reader.next();
+    while (!"}".equals(attribute)) {
+      reader.expect("=");
+
+      if ("states".equals(attribute)) {
+        reader.expect("(");
+        while (!")".equals(reader.next())) {
+          cardinality++;
+        }
+        reader.expect(";");
+      } else {
+        skipAttributeValue(reader);
+      }
+
+      attribute = reader.next();
+    }
+
+    if (cardinality == 0) {
+      throw new ImporterException("Node " + variableId + " has no states");
+    }
+
+    return new DiscreteVariable(variableId, cardinality);
+  }
+
+  protected DiscreteFactor readPotential(TextModelReader reader, Scope modelScope) {
+    List<String> headVariables = new ArrayList<String>();
+    List<String> parentVariables = new ArrayList<String>();
+
+    reader.expect("(");
+    String token = reader.next();
+    while (!"|".equals(token) && !")".equals(token)) {
+      headVariables.add(token);
+      token = reader.next();
+    }
+
+    if ("|".equals(token)) {
+      token = reader.next();
+      while (!")".equals(token)) {
+        parentVariables.add(token);
+        token = reader.next();
+      }
+    }
+
+    List<String> allVariables = new ArrayList<String>(parentVariables);
+    allVariables.addAll(headVariables);
+
+    for (String variableId : allVariables) {
+      if (!modelScope.has(variableId)) {
+        throw new ImporterException("Potential refers to undeclared node " + variableId);
+      }
+    }
+
+    Scope scope = modelScope.subScope(allVariables).intern();
+    DiscreteFactor factor = null;
+
+    reader.expect("{");
+    String attribute = reader.next();
+    while (!"}".equals(attribute)) {
+      reader.expect("=");
+
+      if ("data".equals(attribute)) {
+        factor = readData(reader, scope, allVariables);
+      } else {
+        skipAttributeValue(reader);
+      }
+
+      attribute = reader.next();
+    }
+
+    if (factor == null) {
+      throw new ImporterException("Potential for " + headVariables + " has no data");
+    }
+
+    return factor;
+  }
+
+  /**
+   * The data is a table of nested lists, where the last variable is the innermost.
+   */
+  protected DiscreteFactor readData(TextModelReader reader, Scope scope, List<String> variablesAsInFile) {
+    // the tokenizer expects the fastest changing variable first
+    List<String> variablesAsInInput = new ArrayList<String>(variablesAsInFile);
+    Collections.reverse(variablesAsInInput);
+
+    double[] values = new double[scope.getNumDistinctValues()];
+    reader.readTable(new TableTokenizer(values, TablePositions.forInputOrder(scope, variablesAsInInput)), values.length);
+
+    String token = reader.next();
+    while (")".equals(token)) {
+      token = reader.next();
+    }
+
+    if (!";".equals(token)) {
+      throw new ImporterException("Data of potential over " + variablesAsInFile + " has more than "
+          + values.length + " values");
+    }
+
+    return factorFactory.build(scope, values);
+  }
+
+  /**
+   * Skips everything up to the semicolon that ends the attribute.
+   */
+  protected void skipAttributeValue(TextModelReader reader) {
+    int depth = 0;
+    String token = reader.next();
+
+    while (depth > 0 || !";".equals(token)) {
+      if ("(".equals(token)) {
+        depth++;
+      } else if (")".equals(token)) {
+        depth--;
+      }
+
+      token = reader.next();
+    }
+  }
+
+  protected void skipBlock(TextModelReader reader) {
+    reader.expect("{");
+    int depth = 1;
+
+    while (depth > 0) {
+      String token = reader.next();
+      if ("{".equals(token)) {
+        depth++;
+      } else if ("}".equals(token)) {
+        depth--;
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.table;
+
+import java.util.List;
+
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.variable.IndexCoder;
+import com.github.thorbenlindhauer.variable.IndexMapper;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Computes where the values of a table in a file's variable order go in a factor's canonical table.
+ *
+ * @author Thorben
+ */
+public class TablePositions {
+
+  /**
+   * Returns the position in the scope's canonical table of every value in the order of the input.
+   *
+   * @param variablesAsInInput the ids of the scope's variables, where the first variable's values change fastest in the input
+   */
+  public static int[] forInputOrder(Scope scope, List<String> variablesAsInInput) {
+    String[] orderedVariables = scope.getVariableIds();
+
+    if (orderedVariables.length != variablesAsInInput.size()) {
+      throw new ImporterException("Table variables " + variablesAsInInput + " do not match scope " + scope);
+    }
+
+    int[] variableMapping = new int[variablesAsInInput.size()];
+
+    for (int i = 0; i < variableMapping.length; i++) {
+      int mappedIndex = variablesAsInInput.indexOf(orderedVariables[i]);
+      variableMapping[i] = mappedIndex;
+    }
+
+    IndexCoder indexCoder = scope.getIndexCoder();
+    IndexMapper mapper = indexCoder.getIndexMapper(variableMapping);
+
+    int[] positions = new int[scope.getNumDistinctValues()];
+    mapper.reverseMapAllIndices(positions);
+
+    return positions;
+  }
+}
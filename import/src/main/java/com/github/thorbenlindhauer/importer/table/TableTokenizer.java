@@ -0,0 +1,201 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.table;
+
+import com.github.thorbenlindhauer.importer.ImporterException;
+
+/**
+ * Parses whitespace-separated numbers from character chunks and stores them at precomputed positions of a table,
+ * such that the table text is never materialized as a string. Numbers may span chunk boundaries. The tokenizer
+ * is shared by the text formats' importers.
+ *
+ * <p>
+ * Plain decimal numbers with up to 15 significant digits and small exponents are converted directly. The result
+ * is the same as that of {@link Double#parseDouble(String)}, since both the digits and the power of ten are exact
+ * doubles and a single division or multiplication is correctly rounded. All other numbers are parsed by
+ * {@link Double#parseDouble(String)}.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class TableTokenizer implements TableTextConsumer {
+
+  protected static final int MAX_FAST_PATH_DIGITS = 15;
+
+  protected static final double[] POWERS_OF_TEN = new double[23];
+
+  static {
+    POWERS_OF_TEN[0] = 1.0d;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0d;
+    }
+  }
+
+  protected double[] values;
+  protected int[] positions;
+  protected int numValues;
+
+  protected char[] token = new char[32];
+  protected int tokenLength;
+
+  /**
+   * @param values the table to fill
+   * @param positions the position in the table of every value in input order
+   */
+  public TableTokenizer(double[] values, int[] positions) {
+    this.values = values;
+    this.positions = positions;
+  }
+
+  public void consume(char[] characters, int start, int length) {
+    int end = start + length;
+
+    for (int i = start; i < end; i++) {
+      char character = characters[i];
+
+      if (character == ' ' || character == '\n' || character == '\t' || character == '\r') {
+        completeToken();
+      } else {
+        if (tokenLength == token.length) {
+          char[] newToken = new char[token.length * 2];
+          System.arraycopy(token, 0, newToken, 0, tokenLength);
+          token = newToken;
+        }
+
+        token[tokenLength++] = character;
+      }
+    }
+  }
+
+  /**
+   * Completes the last number and checks that the table is complete.
+   */
+  public void finish() {
+    completeToken();
+
+    if (numValues != values.length) {
+      throw new ImporterException("Table has " + numValues + " values, expected " + values.length);
+    }
+  }
+
+  /**
+   * Stores a complete number, e.g. one that a lexer has already delimited in its buffer. The characters are parsed
+   * in place and not copied.
+   */
+  public void consumeToken(char[] characters, int start, int length) {
+    completeToken();
+    storeValue(parseToken(characters, start, start + length));
+  }
+
+  protected void completeToken() {
+    if (tokenLength == 0) {
+      return;
+    }
+
+    storeValue(parseToken(token, 0, tokenLength));
+    tokenLength = 0;
+  }
+
+  protected void storeValue(double value) {
+    if (numValues == values.length) {
+      throw new ImporterException("Table has more than the expected " + values.length + " values");
+    }
+
+    values[positions[numValues]] = value;
+    numValues++;
+  }
+
+  protected double parseToken(char[] characters, int start, int end) {
+    int index = start;
+    boolean negative = false;
+
+    if (characters[index] == '-' || characters[index] == '+') {
+      negative = characters[index] == '-';
+      index++;
+    }
+
+    long digits = 0;
+    int numDigits = 0;
+    int decimalExponent = 0;
+    boolean anyDigit = false;
+
+    for (; index < end && isDigit(characters[index]); index++) {
+      anyDigit = true;
+      if (numDigits > 0 || characters[index] != '0') {
+        digits = digits * 10 + (characters[index] - '0');
+        numDigits++;
+      }
+    }
+
+    if (index < end && characters[index] == '.') {
+      index++;
+      for (; index < end && isDigit(characters[index]); index++) {
+        anyDigit = true;
+        if (numDigits > 0 || characters[index] != '0') {
+          digits = digits * 10 + (characters[index] - '0');
+          numDigits++;
+        }
+        decimalExponent--;
+      }
+    }
+
+    if (anyDigit && index < end && (characters[index] == 'e' || characters[index] == 'E')) {
+      index++;
+      boolean negativeExponent = false;
+      if (index < end && (characters[index] == '-' || characters[index] == '+')) {
+        negativeExponent = characters[index] == '-';
+        index++;
+      }
+
+      int exponent = 0;
+      int exponentStart = index;
+      for (; index < end && isDigit(characters[index]) && exponent < 1000; index++) {
+        exponent = exponent * 10 + (characters[index] - '0');
+      }
+
+      if (index == exponentStart) {
+        return parseTokenAsString(characters, start, end);
+      }
+
+      decimalExponent += negativeExponent ? -exponent : exponent;
+    }
+
+    if (!anyDigit || index != end || numDigits > MAX_FAST_PATH_DIGITS
+        || decimalExponent < -(POWERS_OF_TEN.length - 1) || decimalExponent > POWERS_OF_TEN.length - 1) {
+      return parseTokenAsString(characters, start, end);
+    }
+
+    double value = digits;
+    if (decimalExponent < 0) {
+      value = value / POWERS_OF_TEN[-decimalExponent];
+    } else {
+      value = value * POWERS_OF_TEN[decimalExponent];
+    }
+
+    return negative ? -value : value;
+  }
+
+  protected double parseTokenAsString(char[] characters, int start, int end) {
+    String tokenString = new String(characters, start, end - start);
+
+    try {
+      return Double.parseDouble(tokenString);
+    } catch (NumberFormatException e) {
+      throw new ImporterException("Invalid table value " + tokenString, e);
+    }
+  }
+
+  protected static boolean isDigit(char character) {
+    return character >= '0' && character <= '9';
+  }
+}
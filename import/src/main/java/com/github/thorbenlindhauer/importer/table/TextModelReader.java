@@ -0,0 +1,247 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.table;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import com.github.thorbenlindhauer.importer.ImporterException;
+
+/**
+ * Splits a text model file into tokens: words, quoted strings (returned without quotes) and single-character
+ * delimiters. Whitespace and comments that extend to the end of a line are skipped.
+ *
+ * <p>
+ * Tables are not returned as tokens but passed by {@link #readTable(TableTokenizer, int)} to a
+ * {@link TableTokenizer} straight from the read buffer.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class TextModelReader {
+
+  protected static final int BUFFER_SIZE = 1 << 16;
+  protected static final Charset CHARSET = Charset.forName("UTF-8");
+
+  protected Reader reader;
+  protected String delimiters;
+  protected char commentStart;
+
+  protected char[] buffer = new char[BUFFER_SIZE];
+  protected int position;
+  protected int limit;
+
+  /**
+   * @param delimiters characters that are tokens on their own
+   * @param commentStart the character that starts a comment or 0 if the format has no comments
+   */
+  public TextModelReader(InputStream inputStream, String delimiters, char commentStart) {
+    this.reader = new InputStreamReader(inputStream, CHARSET);
+    this.delimiters = delimiters;
+    this.commentStart = commentStart;
+  }
+
+  public boolean hasNext() {
+    skipWhitespaceAndComments();
+    return position < limit;
+  }
+
+  public String next() {
+    if (!hasNext()) {
+      throw new ImporterException("Unexpected end of input");
+    }
+
+    char character = buffer[position];
+
+    if (isDelimiter(character)) {
+      position++;
+      return String.valueOf(character);
+    } else if (character == '"') {
+      return nextQuotedString();
+    } else {
+      int start = scanWord();
+      return new String(buffer, start, position - start);
+    }
+  }
+
+  public int nextInt() {
+    String token = next();
+
+    try {
+      return Integer.parseInt(token);
+    } catch (NumberFormatException e) {
+      throw new ImporterException("Expected an integer but found " + token, e);
+    }
+  }
+
+  public void expect(String expectedToken) {
+    String token = next();
+
+    if (!expectedToken.equals(token)) {
+      throw new ImporterException("Expected " + expectedToken + " but found " + token);
+    }
+  }
+
+  /**
+   * Passes the next numbers to the tokenizer and finishes it. Parentheses that group the numbers and commas that
+   * separate them are skipped if they are delimiters of this reader.
+   */
+  public void readTable(TableTokenizer tokenizer, int numValues) {
+    for (int i = 0; i < numValues; i++) {
+      skipWhitespaceAndComments();
+      while (position < limit && isTableSeparator(buffer[position])) {
+        position++;
+        skipWhitespaceAndComments();
+      }
+
+      if (position == limit) {
+        throw new ImporterException("Table has " + i + " values, expected " + numValues);
+      }
+
+      int start = scanWord();
+      if (start == position) {
+        throw new ImporterException("Unexpected " + buffer[position] + " in table");
+      }
+
+      tokenizer.consumeToken(buffer, start, position - start);
+    }
+
+    tokenizer.finish();
+  }
+
+  protected String nextQuotedString() {
+    // skip opening quote
+    position++;
+    int start = position;
+
+    while (true) {
+      if (position == limit) {
+        start = refill(start);
+        if (position == limit) {
+          throw new ImporterException("Unterminated string");
+        }
+      }
+
+      if (buffer[position] == '"') {
+        String string = new String(buffer, start, position - start);
+        position++;
+        return string;
+      }
+
+      position++;
+    }
+  }
+
+  /**
+   * Advances to the end of the word at the current position and returns its start. The word is contiguous in the buffer.
+   */
+  protected int scanWord() {
+    int start = position;
+
+    while (true) {
+      if (position == limit) {
+        start = refill(start);
+        if (position == limit) {
+          return start;
+        }
+      }
+
+      char character = buffer[position];
+      if (isWhitespace(character) || isDelimiter(character) || character == '"' || character == commentStart) {
+        return start;
+      }
+
+      position++;
+    }
+  }
+
+  protected void skipWhitespaceAndComments() {
+    while (true) {
+      if (position == limit) {
+        refill(position);
+        if (position == limit) {
+          return;
+        }
+      }
+
+      char character = buffer[position];
+      if (isWhitespace(character)) {
+        position++;
+      } else if (character == commentStart && commentStart != 0) {
+        skipLine();
+      } else {
+        return;
+      }
+    }
+  }
+
+  protected void skipLine() {
+    while (true) {
+      if (position == limit) {
+        refill(position);
+        if (position == limit) {
+          return;
+        }
+      }
+
+      if (buffer[position++] == '\n') {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Reads more characters and keeps the characters from the given offset on. Returns the new offset of
+   * these characters.
+   */
+  protected int refill(int keepFrom) {
+    int numKept = limit - keepFrom;
+
+    if (numKept == buffer.length) {
+      char[] newBuffer = new char[buffer.length * 2];
+      System.arraycopy(buffer, keepFrom, newBuffer, 0, numKept);
+      buffer = newBuffer;
+    } else {
+      System.arraycopy(buffer, keepFrom, buffer, 0, numKept);
+    }
+
+    position -= keepFrom;
+    limit = numKept;
+
+    try {
+      int numRead = reader.read(buffer, limit, buffer.length - limit);
+      if (numRead > 0) {
+        limit += numRead;
+      }
+    } catch (IOException e) {
+      throw new ImporterException("Cannot import model", e);
+    }
+
+    return 0;
+  }
+
+  protected boolean isTableSeparator(char character) {
+    return (character == '(' || character == ')' || character == ',') && isDelimiter(character);
+  }
+
+  protected boolean isDelimiter(char character) {
+    return delimiters.indexOf(character) >= 0;
+  }
+
+  protected static boolean isWhitespace(char character) {
+    return character == ' ' || character == '\n' || character == '\t' || character == '\r';
+  }
+}
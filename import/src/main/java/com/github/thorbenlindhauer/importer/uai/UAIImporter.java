@@ -0,0 +1,119 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer.uai;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.TableBasedDiscreteFactorFactory;
+import com.github.thorbenlindhauer.importer.GraphicalModelImporter;
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.importer.table.TablePositions;
+import com.github.thorbenlindhauer.importer.table.TableTokenizer;
+import com.github.thorbenlindhauer.importer.table.TextModelReader;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Reads Bayesian and Markov networks in the format of the UAI inference competitions. Variables are
+ * identified by their index in the file, i.e. their ids are <code>"0"</code>, <code>"1"</code>, and so on.
+ * In a function's table, the values of its last variable change fastest.
+ *
+ * @author Thorben
+ */
+public class UAIImporter implements GraphicalModelImporter<DiscreteFactor> {
+
+  protected DiscreteFactorFactory factorFactory;
+
+  public UAIImporter() {
+    this(new TableBasedDiscreteFactorFactory());
+  }
+
+  public UAIImporter(DiscreteFactorFactory factorFactory) {
+    this.factorFactory = factorFactory;
+  }
+
+  public List<GraphicalModel<DiscreteFactor>> importFromStream(InputStream inputStream) {
+    TextModelReader reader = new TextModelReader(inputStream, "", (char) 0);
+
+    String networkType = reader.next();
+    if (!"BAYES".equalsIgnoreCase(networkType) && !"MARKOV".equalsIgnoreCase(networkType)) {
+      throw new ImporterException("Unsupported network type " + networkType);
+    }
+
+    DiscreteVariable[] variables = new DiscreteVariable[reader.nextInt()];
+    for (int i = 0; i < variables.length; i++) {
+      variables[i] = new DiscreteVariable(Integer.toString(i), reader.nextInt());
+    }
+    Scope modelScope = new Scope(Arrays.asList(variables)).intern();
+
+    List<List<String>> functionVariables = readFunctionVariables(reader, variables);
+
+    Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+    for (List<String> variablesAsInFile : functionVariables) {
+      factors.add(readFactor(reader, modelScope, variablesAsInFile));
+    }
+
+    return Collections.singletonList(new GraphicalModel<DiscreteFactor>(modelScope, factors, "BAYES".equalsIgnoreCase(networkType)));
+  }
+
+  protected List<List<String>> readFunctionVariables(TextModelReader reader, DiscreteVariable[] variables) {
+    int numFunctions = reader.nextInt();
+    List<List<String>> functionVariables = new ArrayList<List<String>>(numFunctions);
+
+    for (int i = 0; i < numFunctions; i++) {
+      int numVariables = reader.nextInt();
+      List<String> variableIds = new ArrayList<String>(numVariables);
+
+      for (int j = 0; j < numVariables; j++) {
+        int variableIndex = reader.nextInt();
+        if (variableIndex < 0 || variableIndex >= variables.length) {
+          throw new ImporterException("Function " + i + " refers to unknown variable " + variableIndex);
+        }
+
+        variableIds.add(variables[variableIndex].getId());
+      }
+
+      functionVariables.add(variableIds);
+    }
+
+    return functionVariables;
+  }
+
+  protected DiscreteFactor readFactor(TextModelReader reader, Scope modelScope, List<String> variablesAsInFile) {
+    Scope scope = modelScope.subScope(variablesAsInFile).intern();
+
+    int numValues = reader.nextInt();
+    if (numValues != scope.getNumDistinctValues()) {
+      throw new ImporterException("Table of function over " + variablesAsInFile + " has " + numValues
+          + " values, expected " + scope.getNumDistinctValues());
+    }
+
+    // the tokenizer expects the fastest changing variable first
+    List<String> variablesAsInInput = new ArrayList<String>(variablesAsInFile);
+    Collections.reverse(variablesAsInInput);
+
+    double[] values = new double[numValues];
+    reader.readTable(new TableTokenizer(values, TablePositions.forInputOrder(scope, variablesAsInInput)), numValues);
+
+    return factorFactory.build(scope, values);
+  }
+}
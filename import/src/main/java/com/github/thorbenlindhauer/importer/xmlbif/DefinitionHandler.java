@@ -13,81 +13,145 @@
 package com.github.thorbenlindhauer.importer.xmlbif;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.factor.TableBasedDiscreteFactor;
-import com.github.thorbenlindhauer.variable.IndexCoder;
-import com.github.thorbenlindhauer.variable.IndexMapper;
+import com.github.thorbenlindhauer.importer.ImporterException;
+import com.github.thorbenlindhauer.importer.table.TablePositions;
+import com.github.thorbenlindhauer.importer.table.TableTextConsumer;
+import com.github.thorbenlindhauer.importer.table.TableTokenizer;
 import com.github.thorbenlindhauer.variable.Scope;
 
 public class DefinitionHandler implements XmlElementHandler {
 
-  public void process(XMLBIFImporter importer, XMLEventReader reader, XMLBIFParse parse) throws XMLStreamException {
+  public void process(XMLBIFImporter importer, XMLStreamReader reader, XMLBIFParse parse) throws XMLStreamException {
     boolean endEventSeen = false;
 
     String forVariable = null;
     List<String> givenVariables = new ArrayList<String>();
-    double[] valuesAsInInput = null;
+    Scope scope = null;
+    double[] values = null;
+    Future<DiscreteFactor> pendingFactor = null;
 
     while (!endEventSeen && reader.hasNext()) {
-      XMLEvent nextEvent = reader.nextEvent();
+      int event = reader.next();
 
-      if (nextEvent.isStartElement()) {
-        StartElement startElement = nextEvent.asStartElement();
-        String startElementName = startElement.getName().getLocalPart();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String startElementName = reader.getLocalName();
 
         if (startElementName.equalsIgnoreCase("for")) {
-          forVariable = reader.nextEvent().asCharacters().getData();
-        } else if ( startElementName.equalsIgnoreCase("given")) {
-          givenVariables.add(reader.nextEvent().asCharacters().getData());
+          forVariable = reader.getElementText();
+        } else if (startElementName.equalsIgnoreCase("given")) {
+          givenVariables.add(reader.getElementText());
         } else if (startElementName.equalsIgnoreCase("table")) {
-          String[] table = reader.nextEvent().asCharacters().getData().split(" ");
-          valuesAsInInput = new double[table.length];
+          if (forVariable == null) {
+            throw new ImporterException("Table of definition must follow its FOR and GIVEN elements");
+          }
+
+          List<String> allVariables = new ArrayList<String>();
+          allVariables.add(forVariable);
 
-          for (int i = 0; i < valuesAsInInput.length; i++) {
-            valuesAsInInput[i] = Double.parseDouble(table[i]);
+          // add given variables in reverse order which is required for mapping
+          for (int i = givenVariables.size() - 1; i >= 0; i--) {
+            allVariables.add(givenVariables.get(i));
+          }
+
+          scope = parse.getCurrentParse().scopeFor(allVariables.toArray(new String[]{}));
+
+          ExecutorService executorService = importer.getExecutorService();
+          if (executorService == null) {
+            values = new double[scope.getNumDistinctValues()];
+            readTable(reader, new TableTokenizer(values, TablePositions.forInputOrder(scope, allVariables)));
+          } else {
+            // the reader is not thread-safe, but decoding and reordering the table text are independent of it
+            TableDecoding decoding = new TableDecoding(scope, allVariables);
+            readTableText(reader, decoding);
+            pendingFactor = executorService.submit(decoding);
           }
         }
 
-      } else if (nextEvent.isEndElement() && nextEvent.asEndElement().getName().getLocalPart().equalsIgnoreCase("definition")) {
+      } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equalsIgnoreCase("definition")) {
         endEventSeen = true;
       }
     }
 
-    List<String> allVariables = new ArrayList<String>();
-    allVariables.add(forVariable);
+    if (scope == null) {
+      throw new ImporterException("Definition for variable " + forVariable + " has no table");
+    }
 
-    // add given variables in reverse order which is required for mapping
-    for (int i = givenVariables.size() - 1; i >= 0; i--) {
-      allVariables.add(givenVariables.get(i));
+    if (pendingFactor != null) {
+      parse.getCurrentParse().addFactor(pendingFactor);
+    } else {
+      parse.getCurrentParse().addFactor(new TableBasedDiscreteFactor(scope, values));
     }
 
-    Scope scope = parse.getCurrentParse().scopeFor(allVariables.toArray(new String[]{}));
-    String[] orderedVariables = scope.getVariableIds();
+  }
+
+  protected void readTable(XMLStreamReader reader, TableTokenizer tokenizer) throws XMLStreamException {
+    readTableText(reader, tokenizer);
+    tokenizer.finish();
+  }
 
-    int[] variableMapping = new int[allVariables.size()];
+  /**
+   * Feeds all text of the table element to the consumer; the text may be split into several events.
+   */
+  protected void readTableText(XMLStreamReader reader, TableTextConsumer consumer) throws XMLStreamException {
+    int event = reader.next();
+
+    while (event != XMLStreamConstants.END_ELEMENT) {
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE) {
+        consumer.consume(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        throw new ImporterException("Unexpected element " + reader.getLocalName() + " in table");
+      }
 
-    for (int i = 0; i < variableMapping.length; i++) {
-      int mappedIndex = allVariables.indexOf(orderedVariables[i]);
-      variableMapping[i] = mappedIndex;
+      event = reader.next();
+    }
+  }
+
+  /**
+   * Copies the text of a table, such that it can be decoded on another thread.
+   */
+  protected class TableDecoding implements TableTextConsumer, Callable<DiscreteFactor> {
+
+    protected Scope scope;
+    protected List<String> variablesAsInInput;
+    protected char[] text = new char[256];
+    protected int textLength;
+
+    public TableDecoding(Scope scope, List<String> variablesAsInInput) {
+      this.scope = scope;
+      this.variablesAsInInput = variablesAsInInput;
     }
 
-    IndexCoder indexCoder = scope.getIndexCoder();
-    IndexMapper mapper = indexCoder.getIndexMapper(variableMapping);
+    public void consume(char[] characters, int start, int length) {
+      if (textLength + length > text.length) {
+        text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+      }
 
-    double[] reorderedValues = new double[valuesAsInInput.length];
-    for (int i = 0; i < valuesAsInInput.length; i++) {
-      int mappedIndex = mapper.reverseMapIndex(i);
-      reorderedValues[mappedIndex] = valuesAsInInput[i];
+      System.arraycopy(characters, start, text, textLength, length);
+      textLength += length;
     }
 
-    parse.getCurrentParse().addFactor(new TableBasedDiscreteFactor(scope, reorderedValues));
+    public DiscreteFactor call() {
+      double[] values = new double[scope.getNumDistinctValues()];
 
+      TableTokenizer tokenizer = new TableTokenizer(values, TablePositions.forInputOrder(scope, variablesAsInInput));
+      tokenizer.consume(text, 0, textLength);
+      tokenizer.finish();
+
+      return new TableBasedDiscreteFactor(scope, values);
+    }
   }
 
 }
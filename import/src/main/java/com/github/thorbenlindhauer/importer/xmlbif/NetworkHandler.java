@@ -12,27 +12,27 @@
 */
 package com.github.thorbenlindhauer.importer.xmlbif;
 
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 public class NetworkHandler implements XmlElementHandler {
 
-  public void process(XMLBIFImporter importer, XMLEventReader reader, XMLBIFParse parse) throws XMLStreamException {
+  public void process(XMLBIFImporter importer, XMLStreamReader reader, XMLBIFParse parse) throws XMLStreamException {
     parse.newModel();
-    
+
     boolean endEventSeen = false;
-    
+
     while (!endEventSeen && reader.hasNext()) {
-      XMLEvent nextEvent = reader.nextEvent();
-      
-      if (nextEvent.isStartElement()) {
-        importer.dispatch(nextEvent.asStartElement(), reader, parse);
-      } else if (nextEvent.isEndElement()) {
+      int event = reader.next();
+
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        importer.dispatch(reader, parse);
+      } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equalsIgnoreCase("network")) {
         endEventSeen = true;
       }
     }
-    
+
   }
 
 }
@@ -12,39 +12,37 @@
 */
 package com.github.thorbenlindhauer.importer.xmlbif;
 
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import com.github.thorbenlindhauer.variable.DiscreteVariable;
 
 public class VariableHandler implements XmlElementHandler {
 
-  public void process(XMLBIFImporter importer, XMLEventReader reader, XMLBIFParse parse) throws XMLStreamException {
+  public void process(XMLBIFImporter importer, XMLStreamReader reader, XMLBIFParse parse) throws XMLStreamException {
     boolean endEventSeen = false;
-    
+
     String variableId = null;
     int variableCardinality = 0;
-    
+
     while (!endEventSeen && reader.hasNext()) {
-      XMLEvent nextEvent = reader.nextEvent();
-      
-      if (nextEvent.isStartElement()) {
-        StartElement startElement = nextEvent.asStartElement();
-        String startElementName = startElement.getName().getLocalPart();
+      int event = reader.next();
+
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String startElementName = reader.getLocalName();
         if (startElementName.equalsIgnoreCase("name")) {
-          variableId = reader.nextEvent().asCharacters().getData();
+          variableId = reader.getElementText();
         } else if (startElementName.equalsIgnoreCase("outcome")) {
           variableCardinality++;
         }
-      } else if (nextEvent.isEndElement() && nextEvent.asEndElement().getName().getLocalPart().equalsIgnoreCase("variable")) {
+      } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equalsIgnoreCase("variable")) {
         endEventSeen = true;
       }
     }
-    
+
     parse.getCurrentParse().addVariable(new DiscreteVariable(variableId, variableCardinality));
-    
+
   }
 
 }
@@ -12,15 +12,21 @@
 */
 package com.github.thorbenlindhauer.importer.xmlbif;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.importer.ImporterException;
 import com.github.thorbenlindhauer.variable.DiscreteVariable;
 import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
 import com.github.thorbenlindhauer.variable.Variable;
 
 public class XMLBIFGraphicalModelParse {
@@ -28,9 +34,20 @@ public class XMLBIFGraphicalModelParse {
   protected Map<String, DiscreteVariable> scope;
   protected Set<DiscreteFactor> factors;
 
+  /**
+   * Interns the scopes of this model, see {@link #getScopeCache()}
+   */
+  protected ScopeCache scopeCache;
+
+  /**
+   * Factors whose tables are decoded concurrently
+   */
+  protected List<Future<DiscreteFactor>> pendingFactors;
+
   public XMLBIFGraphicalModelParse() {
     this.scope = new HashMap<String, DiscreteVariable>();
     this.factors = new HashSet<DiscreteFactor>();
+    this.pendingFactors = new ArrayList<Future<DiscreteFactor>>();
   }
 
   public void addVariable(DiscreteVariable variable) {
@@ -41,6 +58,10 @@ public class XMLBIFGraphicalModelParse {
     this.factors.add(factor);
   }
 
+  public void addFactor(Future<DiscreteFactor> factor) {
+    this.pendingFactors.add(factor);
+  }
+
   public DiscreteVariable getVariable(String id) {
     return scope.get(id);
   }
@@ -49,10 +70,53 @@ public class XMLBIFGraphicalModelParse {
     return scope.values();
   }
 
+  public Scope getScope() {
+    return new Scope(scope.values()).intern(getScopeCache());
+  }
+
+  /**
+   * The cache is created once the first factor is defined. Factors may only refer to variables that were declared
+   * before, so its variable registry usually covers all variables of the model; scopes of variables declared
+   * later are interned without int ids.
+   */
+  protected ScopeCache getScopeCache() {
+    if (scopeCache == null) {
+      scopeCache = new ScopeCache(new Scope(scope.values()));
+    }
+
+    return scopeCache;
+  }
+
+  /**
+   * Waits for the factors that are still decoded.
+   */
   public Set<DiscreteFactor> getFactors() {
+    for (Future<DiscreteFactor> pendingFactor : pendingFactors) {
+      factors.add(await(pendingFactor));
+    }
+    pendingFactors.clear();
+
     return factors;
   }
 
+  /**
+   * Returns the future's result and rethrows failures of the computation as {@link ImporterException}s.
+   */
+  public static <T> T await(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ImporterException("Interrupted while importing model", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ImporterException) {
+        throw (ImporterException) e.getCause();
+      } else {
+        throw new ImporterException("Cannot import model", e);
+      }
+    }
+  }
+
   public Scope scopeFor(String... variableIds) {
     Set<Variable> variables = new HashSet<Variable>();
 
@@ -60,6 +124,6 @@ public class XMLBIFGraphicalModelParse {
       variables.add(scope.get(variableId));
     }
 
-    return new Scope(variables);
+    return new Scope(variables).intern(getScopeCache());
   }
 }
@@ -17,12 +17,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.importer.GraphicalModelImporter;
@@ -40,8 +42,19 @@ import com.github.thorbenlindhauer.variable.Scope;
 public class XMLBIFImporter implements GraphicalModelImporter<DiscreteFactor> {
 
   protected Map<String, XmlElementHandler> elementHandlers;
+  protected ExecutorService executorService;
 
   public XMLBIFImporter() {
+    this(null);
+  }
+
+  /**
+   * @param executorService decodes the tables of definitions and parses multiple streams concurrently; may be null
+   *   for a sequential import on the calling thread
+   */
+  public XMLBIFImporter(ExecutorService executorService) {
+    this.executorService = executorService;
+
     elementHandlers = new HashMap<String, XmlElementHandler>();
     elementHandlers.put("network", new NetworkHandler());
     elementHandlers.put("variable", new VariableHandler());
@@ -49,44 +62,95 @@ public class XMLBIFImporter implements GraphicalModelImporter<DiscreteFactor> {
   }
 
   public List<GraphicalModel<DiscreteFactor>> importFromStream(InputStream inputStream) {
+    return buildModels(parse(inputStream));
+  }
+
+  /**
+   * Imports the models of all streams. With an executor service, the streams are parsed concurrently.
+   * The models are returned in the order of the streams and of the networks within each stream.
+   */
+  public List<GraphicalModel<DiscreteFactor>> importFromStreams(List<InputStream> inputStreams) {
+    List<GraphicalModel<DiscreteFactor>> graphicalModels = new ArrayList<GraphicalModel<DiscreteFactor>>();
+
+    if (executorService == null) {
+      for (InputStream inputStream : inputStreams) {
+        graphicalModels.addAll(importFromStream(inputStream));
+      }
+
+      return graphicalModels;
+    }
+
+    // parse tasks only submit table tasks and never wait for them, so that a bounded pool cannot deadlock
+    List<Future<XMLBIFParse>> parses = new ArrayList<Future<XMLBIFParse>>();
+    for (final InputStream inputStream : inputStreams) {
+      parses.add(executorService.submit(new Callable<XMLBIFParse>() {
+        public XMLBIFParse call() {
+          return parse(inputStream);
+        }
+      }));
+    }
+
+    for (Future<XMLBIFParse> parse : parses) {
+      graphicalModels.addAll(buildModels(XMLBIFGraphicalModelParse.await(parse)));
+    }
+
+    return graphicalModels;
+  }
+
+  protected XMLBIFParse parse(InputStream inputStream) {
     XMLBIFParse parse = new XMLBIFParse();
 
     XMLInputFactory factory = XMLInputFactory.newInstance();
 
     try {
-      XMLEventReader reader = factory.createXMLEventReader(inputStream);
+      XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
 
       while (reader.hasNext()) {
-        XMLEvent event = reader.nextEvent();
-
-        if (event.isStartElement()) {
-          dispatch(event.asStartElement(), reader, parse);
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          dispatch(reader, parse);
         }
       }
 
+      reader.close();
+
     } catch (XMLStreamException e) {
       throw new ImporterException("Cannot import model", e);
     }
 
+    return parse;
+  }
+
+  protected List<GraphicalModel<DiscreteFactor>> buildModels(XMLBIFParse parse) {
     List<GraphicalModel<DiscreteFactor>> graphicalModels = new ArrayList<GraphicalModel<DiscreteFactor>>();
     for (XMLBIFGraphicalModelParse modelParse : parse.getParses()) {
-      GraphicalModel<DiscreteFactor> graphicalModel = new GraphicalModel<DiscreteFactor>(new Scope(modelParse.getVariables()), modelParse.getFactors());
+      GraphicalModel<DiscreteFactor> graphicalModel = new GraphicalModel<DiscreteFactor>(modelParse.getScope(), modelParse.getFactors(), true);
       graphicalModels.add(graphicalModel);
     }
 
     return graphicalModels;
   }
 
-  public void dispatch(StartElement element, XMLEventReader reader, XMLBIFParse parse) {
-    XmlElementHandler handler = elementHandlers.get(element.getName().getLocalPart().toLowerCase());
+  /**
+   * Lets the handler of the element at the reader's position process it. Elements without a handler are ignored.
+   */
+  public void dispatch(XMLStreamReader reader, XMLBIFParse parse) {
+    String elementName = reader.getLocalName();
+    XmlElementHandler handler = elementHandlers.get(elementName.toLowerCase());
 
     if (handler != null) {
       try {
         handler.process(this, reader, parse);
       } catch (XMLStreamException e) {
-        throw new ImporterException("Could not handle element " + element, e);
+        throw new ImporterException("Could not handle element " + elementName, e);
       }
     }
   }
 
+  /**
+   * @return null if the import is sequential
+   */
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
 }
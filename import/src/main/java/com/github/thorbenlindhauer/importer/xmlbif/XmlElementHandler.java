@@ -12,10 +12,14 @@
 */
 package com.github.thorbenlindhauer.importer.xmlbif;
 
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 public interface XmlElementHandler {
 
-  void process(XMLBIFImporter importer, XMLEventReader reader, XMLBIFParse parse) throws XMLStreamException;
+  /**
+   * Called when the reader is positioned at the handled element's start. Returns with the reader
+   * positioned at the element's end.
+   */
+  void process(XMLBIFImporter importer, XMLStreamReader reader, XMLBIFParse parse) throws XMLStreamException;
 }
@@ -0,0 +1,348 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.assertj.core.data.Offset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.cluster.generation.CliqueTreeGenerator;
+import com.github.thorbenlindhauer.cluster.messagepassing.SumProductContextFactory;
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor;
+import com.github.thorbenlindhauer.factor.MappedDiscreteFactor;
+import com.github.thorbenlindhauer.importer.binary.BinaryModel;
+import com.github.thorbenlindhauer.importer.binary.BinaryModelImporter;
+import com.github.thorbenlindhauer.importer.binary.BinaryModelWriter;
+import com.github.thorbenlindhauer.importer.xmlbif.XMLBIFImporter;
+import com.github.thorbenlindhauer.inference.CliqueTreeInferencer;
+import com.github.thorbenlindhauer.inference.DiscreteModelInferencer;
+import com.github.thorbenlindhauer.inference.VariableEliminationInferencer;
+import com.github.thorbenlindhauer.inference.variableelimination.MinFillEliminationStrategy;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class BinaryModelImporterTest {
+
+  protected static final Offset<Double> TOLERATED_OFFSET = Offset.offset(0.00001d);
+
+  protected GraphicalModel<DiscreteFactor> model;
+  protected InputStream inputStream;
+
+  @Before
+  public void setUp() {
+    inputStream = this.getClass().getClassLoader().getResourceAsStream("simpleModel.bif.xml");
+    model = new XMLBIFImporter().importFromStream(inputStream).get(0);
+  }
+
+  @Test
+  public void testWriteAndImportModel() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new BinaryModelWriter().write(model, outputStream);
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModel(new ByteArrayInputStream(outputStream.toByteArray()));
+    GraphicalModel<DiscreteFactor> importedModel = binaryModel.getGraphicalModel();
+
+    assertThat(binaryModel.getCliqueTree()).isNull();
+    assertThat(importedModel.getScope().getVariableIds()).isEqualTo(model.getScope().getVariableIds());
+    assertThat(importedModel.getFactors()).hasSize(model.getFactors().size());
+
+    for (DiscreteFactor factor : model.getFactors()) {
+      DiscreteFactor importedFactor = getFactor(importedModel, factor.getVariables());
+      assertThat(importedFactor).isNotNull();
+
+      for (int i = 0; i < factor.getVariables().getNumDistinctValues(); i++) {
+        assertThat(importedFactor.getValueAtIndex(i)).isEqualTo(factor.getValueAtIndex(i));
+      }
+    }
+  }
+
+  @Test
+  public void testWriteAndImportCliqueTree() {
+    ClusterGraph<DiscreteFactor> cliqueTree = new CliqueTreeGenerator().generateClusterGraph(model);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new BinaryModelWriter().write(model, cliqueTree, outputStream);
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModel(new ByteArrayInputStream(outputStream.toByteArray()));
+    ClusterGraph<DiscreteFactor> importedCliqueTree = binaryModel.getCliqueTree();
+
+    assertThat(importedCliqueTree.getClusters()).hasSize(cliqueTree.getClusters().size());
+    assertThat(importedCliqueTree.getEdges()).hasSize(cliqueTree.getEdges().size());
+
+    DiscreteModelInferencer expectedInferencer = new VariableEliminationInferencer(model, new MinFillEliminationStrategy());
+    DiscreteModelInferencer inferencer = new CliqueTreeInferencer(importedCliqueTree,
+        importedCliqueTree.getClusters().iterator().next(), new SumProductContextFactory());
+
+    Scope projection = binaryModel.getGraphicalModel().getScope().subScope("C");
+    assertThat(inferencer.jointProbability(projection, new int[] {0}))
+      .isEqualTo(expectedInferencer.jointProbability(model.getScope().subScope("C"), new int[] {0}), TOLERATED_OFFSET);
+  }
+
+  @Test
+  public void testImportModelLazily() throws IOException {
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      new BinaryModelWriter().write(model, outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModelLazily(file);
+    try {
+      assertLazyModel(binaryModel.getGraphicalModel());
+    } finally {
+      binaryModel.close();
+    }
+  }
+
+  protected void assertLazyModel(GraphicalModel<DiscreteFactor> importedModel) {
+    assertThat(importedModel.getFactorView()).hasSize(model.getFactorView().size());
+
+    for (DiscreteFactor factor : importedModel.getFactorView()) {
+      assertThat(((LazyDiscreteFactor) factor).isLoaded()).isFalse();
+    }
+
+    DiscreteFactor factorOfC = getFactor(importedModel, model.getScope().subScope("A", "B", "C"));
+    DiscreteFactor expectedFactorOfC = getFactor(model, factorOfC.getVariables());
+
+    for (int i = 0; i < factorOfC.getVariables().getNumDistinctValues(); i++) {
+      assertThat(factorOfC.getValueAtIndex(i)).isEqualTo(expectedFactorOfC.getValueAtIndex(i));
+    }
+
+    for (DiscreteFactor factor : importedModel.getFactorView()) {
+      assertThat(((LazyDiscreteFactor) factor).isLoaded()).isEqualTo(factor == factorOfC);
+    }
+
+    DiscreteModelInferencer expectedInferencer = new VariableEliminationInferencer(model, new MinFillEliminationStrategy());
+    DiscreteModelInferencer inferencer = new VariableEliminationInferencer(importedModel, new MinFillEliminationStrategy());
+
+    assertThat(inferencer.jointProbability(importedModel.getScope().subScope("C"), new int[] {0}))
+      .isEqualTo(expectedInferencer.jointProbability(model.getScope().subScope("C"), new int[] {0}), TOLERATED_OFFSET);
+  }
+
+  @Test
+  public void testLazyObservationWithMismatchingValues() throws IOException {
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      new BinaryModelWriter().write(model, outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModelLazily(file);
+    try {
+      GraphicalModel<DiscreteFactor> importedModel = binaryModel.getGraphicalModel();
+      LazyDiscreteFactor factorOfC = (LazyDiscreteFactor) getFactor(importedModel, model.getScope().subScope("A", "B", "C"));
+
+      try {
+        factorOfC.observation(importedModel.getScope().subScope("A", "B"), new int[] {0});
+        fail("exception expected");
+      } catch (ModelStructureException e) {
+        // happy path
+      }
+
+      assertThat(factorOfC.isLoaded()).isFalse();
+    } finally {
+      binaryModel.close();
+    }
+  }
+
+  @Test
+  public void testLazyQueryLoadsRelevantTablesOnly() throws IOException {
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      new BinaryModelWriter().write(model, outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModelLazily(file);
+    try {
+      GraphicalModel<DiscreteFactor> importedModel = binaryModel.getGraphicalModel();
+      assertThat(importedModel.isBayesianNetwork()).isTrue();
+
+      DiscreteModelInferencer expectedInferencer = new VariableEliminationInferencer(model, new MinFillEliminationStrategy());
+      DiscreteModelInferencer inferencer = new VariableEliminationInferencer(importedModel, new MinFillEliminationStrategy());
+
+      // C is barren, such that only the factor of A is relevant
+      assertThat(inferencer.jointProbability(importedModel.getScope().subScope("A"), new int[] {0}))
+        .isEqualTo(expectedInferencer.jointProbability(model.getScope().subScope("A"), new int[] {0}), TOLERATED_OFFSET);
+
+      for (DiscreteFactor factor : importedModel.getFactorView()) {
+        assertThat(((LazyDiscreteFactor) factor).isLoaded()).isEqualTo(factor.getVariables().getVariableIds().length == 1
+            && factor.getVariables().has("A"));
+      }
+    } finally {
+      binaryModel.close();
+    }
+  }
+
+  @Test
+  public void testImportModelMapped() throws IOException {
+    ClusterGraph<DiscreteFactor> cliqueTree = new CliqueTreeGenerator().generateClusterGraph(model);
+
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      new BinaryModelWriter().write(model, cliqueTree, outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    BinaryModel binaryModel = new BinaryModelImporter().importModelMapped(file);
+    GraphicalModel<DiscreteFactor> importedModel = binaryModel.getGraphicalModel();
+    ClusterGraph<DiscreteFactor> importedCliqueTree = binaryModel.getCliqueTree();
+
+    assertThat(importedModel.isBayesianNetwork()).isTrue();
+    for (DiscreteFactor factor : model.getFactorView()) {
+      DiscreteFactor importedFactor = getFactor(importedModel, factor.getVariables());
+      assertThat(importedFactor).isInstanceOf(MappedDiscreteFactor.class);
+
+      for (int i = 0; i < factor.getVariables().getNumDistinctValues(); i++) {
+        assertThat(importedFactor.getValueAtIndex(i)).isEqualTo(factor.getValueAtIndex(i));
+      }
+    }
+
+    DiscreteModelInferencer expectedInferencer = new VariableEliminationInferencer(model, new MinFillEliminationStrategy());
+    DiscreteModelInferencer inferencer = new CliqueTreeInferencer(importedCliqueTree,
+        importedCliqueTree.getClusters().iterator().next(), new SumProductContextFactory());
+
+    assertThat(inferencer.jointProbability(importedModel.getScope().subScope("C"), new int[] {0}))
+      .isEqualTo(expectedInferencer.jointProbability(model.getScope().subScope("C"), new int[] {0}), TOLERATED_OFFSET);
+  }
+
+  @Test
+  public void testImportInvalidStream() {
+    try {
+      new BinaryModelImporter().importModel(new ByteArrayInputStream(new byte[32]));
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+    }
+  }
+
+  @Test
+  public void testImportCorruptHeader() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new BinaryModelWriter().write(model, outputStream);
+    byte[] validModel = outputStream.toByteArray();
+
+    // a number of factors that does not fit into the header
+    assertInvalidModel(corrupt(validModel, 24, 1000));
+
+    // a negative length of the first variable id
+    assertInvalidModel(corrupt(validModel, 28, -1));
+
+    // an index of the first factor's first variable that is out of range
+    assertInvalidModel(corrupt(validModel, firstFactorOffset(validModel) + 4, 42));
+  }
+
+  @Test
+  public void testImportMappedTruncatedTables() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new BinaryModelWriter().write(model, outputStream);
+    byte[] validModel = outputStream.toByteArray();
+
+    File file = File.createTempFile("model", ".bin");
+    file.deleteOnExit();
+
+    OutputStream fileOutputStream = new FileOutputStream(file);
+    try {
+      fileOutputStream.write(validModel, 0, validModel.length - 8);
+    } finally {
+      fileOutputStream.close();
+    }
+
+    try {
+      new BinaryModelImporter().importModelMapped(file);
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+      assertThat(e.getCause()).isInstanceOf(ModelStructureException.class);
+    }
+  }
+
+  protected void assertInvalidModel(byte[] binaryModel) {
+    try {
+      new BinaryModelImporter().importModel(new ByteArrayInputStream(binaryModel));
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+      assertThat(e.getCause()).isInstanceOf(ModelStructureException.class);
+    }
+  }
+
+  protected byte[] corrupt(byte[] binaryModel, int offset, int value) {
+    byte[] corruptModel = binaryModel.clone();
+    ByteBuffer.wrap(corruptModel).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+    return corruptModel;
+  }
+
+  /**
+   * Skips the fixed header and the variables
+   */
+  protected int firstFactorOffset(byte[] binaryModel) {
+    ByteBuffer buffer = ByteBuffer.wrap(binaryModel).order(ByteOrder.LITTLE_ENDIAN);
+    int numVariables = buffer.getInt(20);
+    int offset = 28;
+
+    for (int i = 0; i < numVariables; i++) {
+      offset += 8 + buffer.getInt(offset);
+    }
+
+    return offset;
+  }
+
+  protected DiscreteFactor getFactor(GraphicalModel<DiscreteFactor> graphicalModel, Scope scope) {
+    for (DiscreteFactor factor : graphicalModel.getFactorView()) {
+      if (factor.getVariables().hasSameVariablesAs(scope)) {
+        return factor;
+      }
+    }
+
+    return null;
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    inputStream.close();
+  }
+}
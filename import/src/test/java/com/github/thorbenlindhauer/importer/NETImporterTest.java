@@ -0,0 +1,93 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.importer.net.NETImporter;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+
+public class NETImporterTest {
+
+  protected InputStream inputStream;
+
+  @Test
+  public void testImport() {
+    inputStream = loadClasspathFile("simpleModel.net");
+
+    List<GraphicalModel<DiscreteFactor>> importedModels = new NETImporter().importFromStream(inputStream);
+    assertThat(importedModels).hasSize(1);
+
+    GraphicalModel<DiscreteFactor> importedModel = importedModels.get(0);
+    assertThat(importedModel.getScope().getVariables()).containsOnly(new DiscreteVariable("A", 2),
+        new DiscreteVariable("B", 2), new DiscreteVariable("C", 2));
+
+    assertThat(importedModel.getFactors()).hasSize(3);
+
+    for (DiscreteFactor factor : importedModel.getFactors()) {
+      if (factor.getVariables().size() == 1 && factor.getVariables().has("A")) {
+        assertThat(factor.getValueForAssignment(new int[]{ 0 })).isEqualTo(0.3d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1 })).isEqualTo(0.7d);
+
+      } else if (factor.getVariables().size() == 1 && factor.getVariables().has("B")) {
+        assertThat(factor.getValueForAssignment(new int[]{ 0 })).isEqualTo(0.9d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1 })).isEqualTo(0.1d);
+
+      } else if (factor.getVariables().size() == 3) {
+        assertThat(factor.getValueForAssignment(new int[]{ 0, 0, 0 })).isEqualTo(0.6d);
+        assertThat(factor.getValueForAssignment(new int[]{ 0, 0, 1 })).isEqualTo(0.4d);
+        assertThat(factor.getValueForAssignment(new int[]{ 0, 1, 0 })).isEqualTo(0.7d);
+        assertThat(factor.getValueForAssignment(new int[]{ 0, 1, 1 })).isEqualTo(0.3d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1, 0, 0 })).isEqualTo(0.8d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1, 0, 1 })).isEqualTo(0.2d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1, 1, 0 })).isEqualTo(0.9d);
+        assertThat(factor.getValueForAssignment(new int[]{ 1, 1, 1 })).isEqualTo(0.1d);
+
+      } else {
+        fail("Unexpected factor scope: " + factor.getVariables().getVariableIds());
+      }
+    }
+  }
+
+  @Test
+  public void testUndeclaredNode() {
+    inputStream = new ByteArrayInputStream("potential ( A ) { data = ( 0.5 0.5 ); }".getBytes());
+
+    try {
+      new NETImporter().importFromStream(inputStream);
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    inputStream.close();
+  }
+
+  protected InputStream loadClasspathFile(String path) {
+    return this.getClass().getClassLoader().getResourceAsStream(path);
+  }
+}
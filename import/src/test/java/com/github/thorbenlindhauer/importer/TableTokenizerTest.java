@@ -0,0 +1,81 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.importer.table.TableTokenizer;
+
+public class TableTokenizerTest {
+
+  @Test
+  public void testValuesMatchDoubleParsing() {
+    String[] tokens = new String[] {"0.3", "0.7", "1", "-2.5", "1e-3", "2.5E+2", "0.000001", "12345678901234567890",
+        "0.1000000000000000055511151231257827", "1.7976931348623157E308", "4.9e-324", "NaN", "-0"};
+    StringBuilder text = new StringBuilder();
+    int[] positions = new int[tokens.length];
+
+    for (int i = 0; i < tokens.length; i++) {
+      text.append(tokens[i]).append(" ");
+      positions[i] = i;
+    }
+
+    double[] values = new double[tokens.length];
+    TableTokenizer tokenizer = new TableTokenizer(values, positions);
+    tokenizer.consume(text.toString().toCharArray(), 0, text.length());
+    tokenizer.finish();
+
+    for (int i = 0; i < tokens.length; i++) {
+      assertThat(values[i]).isEqualTo(Double.parseDouble(tokens[i]));
+    }
+  }
+
+  @Test
+  public void testNumbersSpanningChunks() {
+    char[] text = "0.125\n 0.25\t0.5".toCharArray();
+    double[] values = new double[3];
+    TableTokenizer tokenizer = new TableTokenizer(values, new int[] {2, 0, 1});
+
+    // one character per chunk
+    for (int i = 0; i < text.length; i++) {
+      tokenizer.consume(text, i, 1);
+    }
+    tokenizer.finish();
+
+    assertThat(values).isEqualTo(new double[] {0.25, 0.5, 0.125});
+  }
+
+  @Test
+  public void testMismatchingTableSize() {
+    TableTokenizer tokenizer = new TableTokenizer(new double[2], new int[] {0, 1});
+    tokenizer.consume("0.5".toCharArray(), 0, 3);
+
+    try {
+      tokenizer.finish();
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+    }
+
+    tokenizer = new TableTokenizer(new double[1], new int[] {0});
+    try {
+      tokenizer.consume("0.5 0.5 ".toCharArray(), 0, 8);
+      fail("exception expected");
+    } catch (ImporterException e) {
+      // happy path
+    }
+  }
+}
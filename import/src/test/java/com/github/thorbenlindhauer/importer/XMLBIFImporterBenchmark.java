@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.importer.xmlbif.XMLBIFImporter;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * Measures the throughput of the XMLBIF importer on a generated network. The network size can be
+ * raised via the system property <code>benchmark.variables</code>.
+ *
+ * @author Thorben
+ */
+public class XMLBIFImporterBenchmark {
+
+  protected static final int NUM_PARENTS = 3;
+  protected static final int CARDINALITY = 3;
+  protected static final int NUM_ROUNDS = 5;
+
+  @Test
+  public void testImportThroughput() {
+    int numVariables = Integer.getInteger("benchmark.variables", 500);
+    byte[] document = generateNetwork(numVariables).getBytes(Charset.forName("UTF-8"));
+
+    XMLBIFImporter importer = new XMLBIFImporter();
+    long bestTime = Long.MAX_VALUE;
+
+    for (int i = 0; i < NUM_ROUNDS; i++) {
+      long startTime = System.nanoTime();
+      List<GraphicalModel<DiscreteFactor>> models = importer.importFromStream(new ByteArrayInputStream(document));
+      long time = System.nanoTime() - startTime;
+
+      assertThat(models.get(0).getFactors()).hasSize(numVariables);
+      bestTime = Math.min(bestTime, time);
+    }
+
+    double megabytesPerSecond = (document.length / (1024.0d * 1024.0d)) / (bestTime / 1e9d);
+    System.out.println("Imported " + numVariables + " variables (" + document.length + " bytes) in "
+        + (bestTime / 1000000) + " millis, " + String.format("%.1f", megabytesPerSecond) + " MB/s");
+  }
+
+  protected String generateNetwork(int numVariables) {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<BIF VERSION=\"0.3\">\n<NETWORK>\n<NAME>benchmark</NAME>\n");
+
+    for (int i = 0; i < numVariables; i++) {
+      sb.append("<VARIABLE TYPE=\"nature\">\n<NAME>V").append(i).append("</NAME>\n");
+      for (int j = 0; j < CARDINALITY; j++) {
+        sb.append("<OUTCOME>state").append(j).append("</OUTCOME>\n");
+      }
+      sb.append("</VARIABLE>\n");
+    }
+
+    for (int i = 0; i < numVariables; i++) {
+      sb.append("<DEFINITION>\n<FOR>V").append(i).append("</FOR>\n");
+
+      int numParents = Math.min(i, NUM_PARENTS);
+      int tableSize = CARDINALITY;
+      for (int j = 1; j <= numParents; j++) {
+        sb.append("<GIVEN>V").append(i - j).append("</GIVEN>\n");
+        tableSize *= CARDINALITY;
+      }
+
+      sb.append("<TABLE>");
+      for (int j = 0; j < tableSize; j++) {
+        // tables of real networks typically have few significant digits
+        sb.append(Math.round(random.nextDouble() * 10000) / 10000.0d).append(' ');
+      }
+      sb.append("</TABLE>\n</DEFINITION>\n");
+    }
+
+    sb.append("</NETWORK>\n</BIF>\n");
+    return sb.toString();
+  }
+}
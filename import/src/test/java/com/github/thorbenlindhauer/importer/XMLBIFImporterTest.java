@@ -17,7 +17,10 @@ import static org.assertj.core.api.Assertions.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -86,6 +89,35 @@ public class XMLBIFImporterTest {
     }
   }
 
+  @Test
+  public void testConcurrentImportOfMultipleStreams() throws IOException {
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    InputStream secondInputStream = loadClasspathFile("simpleModel.bif.xml");
+
+    try {
+      inputStream = loadClasspathFile("simpleModel.bif.xml");
+      List<GraphicalModel<DiscreteFactor>> importedModels = new XMLBIFImporter(executorService)
+          .importFromStreams(Arrays.asList(inputStream, secondInputStream));
+
+      assertThat(importedModels).hasSize(2);
+
+      for (GraphicalModel<DiscreteFactor> importedModel : importedModels) {
+        assertThat(importedModel.getScope().getVariables()).hasSize(3);
+        assertThat(importedModel.getFactors()).hasSize(3);
+
+        for (DiscreteFactor factor : importedModel.getFactors()) {
+          if (factor.getVariables().getVariables().size() == 3) {
+            assertThat(factor.getValueForAssignment(new int[]{ 0, 1, 0 })).isEqualTo(0.7d);
+            assertThat(factor.getValueForAssignment(new int[]{ 1, 0, 1 })).isEqualTo(0.2d);
+          }
+        }
+      }
+    } finally {
+      secondInputStream.close();
+      executorService.shutdown();
+    }
+  }
+
   public void testStateLabelMatching() {
     inputStream = loadClasspathFile("simpleModel.bif.xml");
 
@@ -40,7 +40,7 @@ public class Cluster<T extends Factor<T>> {
     if (scope == null) {
       this.scope = new Scope(Collections.<DiscreteVariable>emptyList());
       for (T factor : factors) {
-        this.scope = this.scope.union(factor.getVariables());
+        this.scope = this.scope.isEmpty() ? factor.getVariables() : this.scope.union(factor.getVariables());
       }
     } else {
       // TODO: check if scope is superset of the factors' scopes
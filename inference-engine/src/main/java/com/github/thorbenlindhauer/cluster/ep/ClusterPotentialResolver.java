@@ -24,5 +24,12 @@ public interface ClusterPotentialResolver<T extends Factor<T>> {
 
   FactorSet<T> project(FactorSet<T> additionalFactors, Scope projectionScope);
 
+  /**
+   * Like {@link #project(FactorSet, Scope)}, but may reuse the storage of the factors of a previous
+   * projection. These factors must not be referenced elsewhere.
+   *
+   * @param previousProjection may be null
+   */
+  FactorSet<T> project(FactorSet<T> additionalFactors, Scope projectionScope, FactorSet<T> previousProjection);
 
 }
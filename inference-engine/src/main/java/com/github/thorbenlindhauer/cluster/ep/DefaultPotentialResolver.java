@@ -35,17 +35,26 @@ public class DefaultPotentialResolver<T extends Factor<T>> implements ClusterPot
 
   @Override
   public FactorSet<T> project(FactorSet<T> additionalFactors, Scope projectionScope) {
+    return project(additionalFactors, projectionScope, null);
+  }
+
+  @Override
+  public FactorSet<T> project(FactorSet<T> additionalFactors, Scope projectionScope, FactorSet<T> previousProjection) {
     Set<T> factors = new HashSet<T>(cluster.getFactors());
 
     if (additionalFactors != null) {
       factors.addAll(additionalFactors.getFactors());
     }
 
+    T target = null;
+    if (previousProjection != null && previousProjection.getFactors().size() == 1) {
+      target = previousProjection.getFactors().iterator().next();
+    }
+
+    // the marginal is never one of the cluster's factors, so that the projection owns it
     FactorSet<T> result = new FactorSet<T>();
-    result.add(FactorUtil.jointDistribution(factors).marginal(projectionScope));
+    result.addOwned(FactorUtil.sumProduct(factors, projectionScope, target));
     return result;
   }
 
-
-
 }
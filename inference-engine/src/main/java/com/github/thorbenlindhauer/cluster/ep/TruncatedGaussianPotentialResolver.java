@@ -85,6 +85,12 @@ public class TruncatedGaussianPotentialResolver implements ClusterPotentialResol
     return new FactorSet<GaussianFactor>(Collections.singleton(approximationFactor));
   }
 
+  @Override
+  public FactorSet<GaussianFactor> project(FactorSet<GaussianFactor> additionalFactors, Scope projectionScope,
+      FactorSet<GaussianFactor> previousProjection) {
+    return project(additionalFactors, projectionScope);
+  }
+
   protected double vValue(double mean, double lowerBound, double upperBound) {
     double shiftedUpperBound = upperBound - mean;
     double shifterLowerBound = lowerBound - mean;
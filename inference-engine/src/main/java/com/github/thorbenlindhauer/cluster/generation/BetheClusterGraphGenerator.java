@@ -12,7 +12,6 @@
 */
 package com.github.thorbenlindhauer.cluster.generation;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,7 +38,7 @@ public class BetheClusterGraphGenerator {
     // create a cluster for each variable
     Map<String, Cluster<T>> variableClusters = new HashMap<String, Cluster<T>>();
     for (Variable variable : graphicalModel.getScope().getVariables()) {
-      Scope scope = new Scope(Arrays.asList(variable));
+      Scope scope = graphicalModel.getScope().subScope(variable.getId());
       T defaultFactor = defaultFactorFactory.build(scope);
       Cluster<T> variableCluster = new Cluster<T>(Collections.singleton(defaultFactor));
       clusters.add(variableCluster);
@@ -48,7 +47,7 @@ public class BetheClusterGraphGenerator {
 
     // create a cluster for each factor
     Set<Cluster<T>> factorClusters = new HashSet<Cluster<T>>();
-    for (T factor : graphicalModel.getFactors()) {
+    for (T factor : graphicalModel.getFactorView()) {
       Cluster<T> factorCluster = new Cluster<T>(Collections.singleton(factor));
       clusters.add(factorCluster);
       factorClusters.add(factorCluster);
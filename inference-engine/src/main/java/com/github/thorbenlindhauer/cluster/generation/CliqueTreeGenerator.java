@@ -54,7 +54,7 @@ public class CliqueTreeGenerator {
     List<String> eliminationOrder = getEliminationStrategy().getEliminationOrder(graphicalModel,
         Arrays.asList(graphicalModel.getScope().getVariableIds()));
 
-    FactorGraph<T> moralizedGraph = FactorGraph.fromGraphicalModel(graphicalModel.getFactors());
+    FactorGraph<T> moralizedGraph = FactorGraph.fromGraphicalModel(graphicalModel);
 
     FactorGraph<T> inducedGraph = getTriangulator().getInducedGraph(moralizedGraph, eliminationOrder);
 
@@ -21,6 +21,8 @@ import com.github.thorbenlindhauer.cluster.Edge;
 import com.github.thorbenlindhauer.exception.InferenceException;
 import com.github.thorbenlindhauer.exception.ModelStructureException;
 import com.github.thorbenlindhauer.factor.Factor;
+import com.github.thorbenlindhauer.factor.FactorSet;
+import com.github.thorbenlindhauer.factor.FactorUtil;
 
 public abstract class AbstractMessagePassingContext<T extends Factor<T>> implements MessagePassingContext<T> {
 
@@ -98,8 +100,43 @@ public abstract class AbstractMessagePassingContext<T extends Factor<T>> impleme
   @Override
   public void notify(String eventName, Message<T> message) {
     if (MessageListener.UPDATE_EVENT.equals(eventName)) {
-      // invalidate cached target cluster potential
-      clusterPotentials.put(message.getTargetCluster(), null);
+      invalidatePotential(message.getTargetCluster());
+    }
+  }
+
+  /**
+   * Discards the cached potential of the cluster, e.g. because its factors have changed. The potential
+   * is only referenced by this context, so that its storage is released.
+   */
+  public void invalidatePotential(Cluster<T> cluster) {
+    T potential = clusterPotentials.put(cluster, null);
+    if (potential != null) {
+      FactorUtil.release(potential);
+    }
+  }
+
+  /**
+   * Releases all cluster potentials and message potentials, see {@link FactorUtil#release(Factor)}.
+   */
+  @Override
+  public void close() {
+    for (T potential : clusterPotentials.values()) {
+      if (potential != null) {
+        FactorUtil.release(potential);
+      }
+    }
+    clusterPotentials.clear();
+
+    for (EdgeContext<T> edgeContext : messages.values()) {
+      releasePotential(edgeContext.message1);
+      releasePotential(edgeContext.message2);
+    }
+  }
+
+  protected void releasePotential(Message<T> message) {
+    FactorSet<T> potential = message.getPotential();
+    if (potential != null) {
+      potential.release();
     }
   }
 }
@@ -48,6 +48,15 @@ public class BeliefUpdateContext<T extends Factor<T>> extends AbstractMessagePas
     return clusterMessages.get(cluster);
   }
 
+  @Override
+  public void close() {
+    super.close();
+
+    for (FactorSet<T> messages : clusterMessages.values()) {
+      messages.release();
+    }
+  }
+
   @Override
   protected Message<T> newMessage(Cluster<T> sourceCluster, Edge<T> edge) {
     return new BeliefUpdateMessage<T>(sourceCluster, edge);
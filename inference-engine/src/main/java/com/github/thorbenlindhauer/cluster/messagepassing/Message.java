@@ -22,6 +22,9 @@ public interface Message<T extends Factor<T>> {
 
   void update(MessagePassingContext<T> messagePassingContext);
 
+  /**
+   * The returned factors may be updated in place by the next call to {@link #update(MessagePassingContext)}.
+   */
   FactorSet<T> getPotential();
 
   Edge<T> getEdge();
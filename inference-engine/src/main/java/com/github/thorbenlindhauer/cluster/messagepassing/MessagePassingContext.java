@@ -25,4 +25,9 @@ public interface MessagePassingContext<T extends Factor<T>> extends MessageListe
 
   FactorSet<T> getClusterMessages(Cluster<T> cluster);
 
+  /**
+   * Releases the storage of the potentials held by this context. The context must not be used afterwards.
+   */
+  void close();
+
 }
@@ -41,6 +41,9 @@ public class SumProductContext<T extends Factor<T>> extends AbstractMessagePassi
     FactorSet<T> potentialFactors = cluster.getResolver().project(inMessageFactors, cluster.getScope());
     T potential = potentialFactors.toFactor();
 
+    // the projection consists of new factors, so that the intermediate in-message products are not referenced anymore
+    inMessageFactors.release();
+
     return potential;
   }
 
@@ -49,6 +49,13 @@ public class SumProductMessage<T extends Factor<T>> extends AbstractMessage<T> {
       }
     }
 
-    potential = sourceCluster.getResolver().project(inMessagePotentials, edge.getScope());
+    // the previous potential is not referenced by any other message or cluster, so its storage can be reused
+    FactorSet<T> previousPotential = potential;
+    potential = sourceCluster.getResolver().project(inMessagePotentials, edge.getScope(), previousPotential);
+    inMessagePotentials.release();
+
+    if (previousPotential != null) {
+      previousPotential.releaseExcept(potential);
+    }
   }
 }
@@ -19,4 +19,8 @@ public class InferenceException extends RuntimeException {
   public InferenceException(String message) {
     super(message);
   }
+
+  public InferenceException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
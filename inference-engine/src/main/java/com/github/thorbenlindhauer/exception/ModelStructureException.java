@@ -19,4 +19,8 @@ public class ModelStructureException extends RuntimeException {
   public ModelStructureException(String message) {
     super(message);
   }
+
+  public ModelStructureException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
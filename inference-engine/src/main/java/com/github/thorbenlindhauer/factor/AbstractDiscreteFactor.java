@@ -0,0 +1,154 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Base class of discrete factors with a dense table. Observations and reductions only visit the cells of the
+ * observed slice (see {@link DiscreteFactorOperationPlan#sliceIndices(int)}) and are implemented once on top of
+ * the storage accessors, such that a subclass only provides its storage.
+ *
+ * @author Thorben
+ */
+public abstract class AbstractDiscreteFactor implements DiscreteFactor {
+
+  protected Scope variables;
+
+  public AbstractDiscreteFactor(Scope variables) {
+    if (variables == null) {
+      throw new ModelStructureException("Variables cannot be null");
+    }
+
+    this.variables = variables;
+  }
+
+  /**
+   * Returns a factor over the given scope whose values are all zero. Observations and reductions are written to it.
+   */
+  protected abstract AbstractDiscreteFactor newFactor(Scope scope);
+
+  /**
+   * Returns the cell at the given index as it is stored, e.g. the logarithm of the value for a log-space factor.
+   */
+  protected abstract double getStoredValue(int index);
+
+  /**
+   * @param storedValue a value as returned by {@link #getStoredValue(int)} of a factor of the same type
+   */
+  protected abstract void setStoredValue(int index, double storedValue);
+
+  public DiscreteFactor observation(Scope scope, int[] observedValues) {
+    checkObservedValues(scope, observedValues);
+
+    if (variables.intersect(scope).isEmpty()) {
+      return this;
+    }
+
+    return observeSlice(scope, observedValues);
+  }
+
+  /**
+   * Keeps the values of the observed slice and sets all other values to zero. The scope intersects this factor's scope.
+   */
+  protected DiscreteFactor observeSlice(Scope scope, int[] observedValues) {
+    AbstractDiscreteFactor result = newFactor(variables);
+
+    for (int index : sliceIndicesOf(scope, observedValues)) {
+      result.setStoredValue(index, getStoredValue(index));
+    }
+
+    return result;
+  }
+
+  public DiscreteFactor reduce(Scope scope, int[] observedValues) {
+    checkObservedValues(scope, observedValues);
+
+    if (variables.intersect(scope).isEmpty()) {
+      return this;
+    }
+
+    return reduceToSlice(scope, observedValues);
+  }
+
+  /**
+   * Copies the observed slice to a factor over the remaining variables. The scope intersects this factor's scope.
+   */
+  protected DiscreteFactor reduceToSlice(Scope scope, int[] observedValues) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forReduction(variables, scope);
+    AbstractDiscreteFactor result = newFactor(plan.getResultScope());
+    int[] sliceIndices = plan.sliceIndices(DiscreteFactorOperationPlan.sliceOffset(variables, scope, observedValues));
+
+    // the slice's cells in ascending order are the cells of the reduced table
+    for (int i = 0; i < sliceIndices.length; i++) {
+      result.setStoredValue(i, getStoredValue(sliceIndices[i]));
+    }
+
+    return result;
+  }
+
+  protected int[] sliceIndicesOf(Scope scope, int[] observedValues) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forReduction(variables, scope);
+    return plan.sliceIndices(DiscreteFactorOperationPlan.sliceOffset(variables, scope, observedValues));
+  }
+
+  public Scope getVariables() {
+    return variables;
+  }
+
+  public double getValueForAssignment(int[] assignment) {
+    int index = variables.getIndexCoder().getIndexForAssignment(assignment);
+    return getValueAtIndex(index);
+  }
+
+  /**
+   * Returns whether the factor's table can hold the values of the given scope, i.e. whether the factor can be
+   * the target of an in-place operation with a result over that scope.
+   */
+  protected boolean canHold(Scope scope) {
+    return variables == scope
+        || (variables.getNumDistinctValues() == scope.getNumDistinctValues() && variables.hasSameVariablesAs(scope));
+  }
+
+  /**
+   * Returns the target factor if it is of the given type and its table can hold the values of the given scope, else null.
+   */
+  protected static <F extends AbstractDiscreteFactor> F asTargetFor(DiscreteFactor target, Scope scope, Class<F> factorType) {
+    if (!factorType.isInstance(target)) {
+      return null;
+    }
+
+    F targetFactor = factorType.cast(target);
+    if (targetFactor.canHold(scope)) {
+      return targetFactor;
+    } else {
+      return null;
+    }
+  }
+
+  protected static void checkObservedValues(Scope scope, int[] observedValues) {
+    if (scope.getVariables().size() != observedValues.length) {
+      throw new ModelStructureException("Observed variables and values do not match");
+    }
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("Scope: ");
+    sb.append(variables.toString());
+
+    return sb.toString();
+  }
+}
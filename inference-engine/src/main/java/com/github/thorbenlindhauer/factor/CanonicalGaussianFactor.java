@@ -248,6 +248,28 @@ public class CanonicalGaussianFactor implements GaussianFactor {
     return scope;
   }
 
+  // canonical gaussian factors are immutable, so that the in-place operations always allocate
+
+  @Override
+  public GaussianFactor productInto(GaussianFactor other, GaussianFactor target) {
+    return product(other);
+  }
+
+  @Override
+  public GaussianFactor marginalInto(Scope scope, GaussianFactor target) {
+    return marginal(scope);
+  }
+
+  @Override
+  public GaussianFactor divideInPlace(GaussianFactor other) {
+    return division(other);
+  }
+
+  @Override
+  public GaussianFactor normalizeInPlace() {
+    return normalize();
+  }
+
   @Override
   public RealMatrix getPrecisionMatrix() {
     return precisionMatrix;
@@ -31,11 +31,21 @@ public interface DefaultFactorFactory<T extends Factor<T>> {
 
   public static class DefaultDiscreteFactorFactory implements DefaultFactorFactory<DiscreteFactor> {
 
+    protected DiscreteFactorFactory factorFactory;
+
+    public DefaultDiscreteFactorFactory() {
+      this(new DiscreteFactorFactory.TableBasedDiscreteFactorFactory());
+    }
+
+    public DefaultDiscreteFactorFactory(DiscreteFactorFactory factorFactory) {
+      this.factorFactory = factorFactory;
+    }
+
     @Override
     public DiscreteFactor build(Scope scope) {
       double[] values = new double[scope.getNumDistinctValues()];
       Arrays.fill(values, 1);
-      DiscreteFactor constantFactor = new TableBasedDiscreteFactor(scope, values);
+      DiscreteFactor constantFactor = factorFactory.build(scope, values);
       return constantFactor;
     }
 
@@ -0,0 +1,98 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Recycles direct buffers of {@link OffHeapDiscreteFactor}s. Direct memory is only freed once the owning buffer
+ * object is garbage collected, so that factors that are repeatedly allocated and closed during calibration
+ * should return their buffers to a pool instead.
+ *
+ * @author Thorben
+ */
+public class DirectBufferPool {
+
+  public static final int DEFAULT_MAX_POOLED_BUFFERS_PER_CAPACITY = 16;
+
+  protected int maxPooledBuffersPerCapacity;
+  protected Map<Integer, Deque<DoubleBuffer>> pooledBuffers = new HashMap<Integer, Deque<DoubleBuffer>>();
+  protected int numAcquiredBuffers;
+
+  public DirectBufferPool() {
+    this(DEFAULT_MAX_POOLED_BUFFERS_PER_CAPACITY);
+  }
+
+  public DirectBufferPool(int maxPooledBuffersPerCapacity) {
+    this.maxPooledBuffersPerCapacity = maxPooledBuffersPerCapacity;
+  }
+
+  /**
+   * Returns a zeroed buffer that holds the given number of values.
+   */
+  public synchronized DoubleBuffer acquire(int capacity) {
+    numAcquiredBuffers++;
+    Deque<DoubleBuffer> buffers = pooledBuffers.get(capacity);
+
+    if (buffers != null && !buffers.isEmpty()) {
+      DoubleBuffer buffer = buffers.pop();
+      for (int i = 0; i < capacity; i++) {
+        buffer.put(i, 0.0d);
+      }
+
+      return buffer;
+    }
+
+    return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+  }
+
+  /**
+   * The buffer must not be used by the caller afterwards.
+   */
+  public synchronized void release(DoubleBuffer buffer) {
+    numAcquiredBuffers--;
+    int capacity = buffer.capacity();
+    Deque<DoubleBuffer> buffers = pooledBuffers.get(capacity);
+
+    if (buffers == null) {
+      buffers = new ArrayDeque<DoubleBuffer>();
+      pooledBuffers.put(capacity, buffers);
+    }
+
+    if (buffers.size() < maxPooledBuffersPerCapacity) {
+      buffers.push(buffer);
+    }
+  }
+
+  public synchronized int getNumPooledBuffers(int capacity) {
+    Deque<DoubleBuffer> buffers = pooledBuffers.get(capacity);
+    return buffers != null ? buffers.size() : 0;
+  }
+
+  /**
+   * Returns the number of buffers that were acquired and not yet released.
+   */
+  public synchronized int getNumAcquiredBuffers() {
+    return numAcquiredBuffers;
+  }
+
+  public synchronized void clear() {
+    pooledBuffers.clear();
+  }
+}
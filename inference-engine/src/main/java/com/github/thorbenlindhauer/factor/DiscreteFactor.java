@@ -19,8 +19,19 @@ public interface DiscreteFactor extends Factor<DiscreteFactor> {
 
   DiscreteFactor observation(Scope scope, int[] values);
 
+  /**
+   * Like {@link #observation(Scope, int[])}, but returns a factor over this factor's scope reduced by the observed variables,
+   * i.e. the slice of this factor that matches the observation.
+   */
+  DiscreteFactor reduce(Scope scope, int[] values);
+
   double getValueForAssignment(int[] assignment);
 
   double getValueAtIndex(int index);
 
+  /**
+   * The natural logarithm of the value at the given index; negative infinity for zero values
+   */
+  double getLogValueAtIndex(int index);
+
 }
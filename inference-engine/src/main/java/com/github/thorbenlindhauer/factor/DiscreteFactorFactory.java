@@ -0,0 +1,156 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * Determines the representation of discrete factors.
+ *
+ * @author Thorben
+ */
+public interface DiscreteFactorFactory {
+
+  /**
+   * @param values the factor's values in canonical order (i.e. not logarithmized)
+   */
+  DiscreteFactor build(Scope scope, double[] values);
+
+  /**
+   * Returns a factor with this factory's representation and the same values as the given factor.
+   * May return the factor itself if it already has this representation.
+   */
+  DiscreteFactor convert(DiscreteFactor factor);
+
+  public static class TableBasedDiscreteFactorFactory implements DiscreteFactorFactory {
+
+    @Override
+    public DiscreteFactor build(Scope scope, double[] values) {
+      return new TableBasedDiscreteFactor(scope, values);
+    }
+
+    @Override
+    public DiscreteFactor convert(DiscreteFactor factor) {
+      if (factor instanceof TableBasedDiscreteFactor) {
+        return factor;
+      }
+
+      double[] values = new double[factor.getVariables().getNumDistinctValues()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = factor.getValueAtIndex(i);
+      }
+
+      return new TableBasedDiscreteFactor(factor.getVariables(), values);
+    }
+
+  }
+
+  /**
+   * Creates sparse factors for tables whose fraction of non-zero values is below the density threshold
+   * and table-based factors otherwise.
+   */
+  public static class DensityBasedDiscreteFactorFactory implements DiscreteFactorFactory {
+
+    protected double densityThreshold;
+
+    public DensityBasedDiscreteFactorFactory() {
+      this(SparseDiscreteFactor.DEFAULT_DENSITY_THRESHOLD);
+    }
+
+    public DensityBasedDiscreteFactorFactory(double densityThreshold) {
+      this.densityThreshold = densityThreshold;
+    }
+
+    @Override
+    public DiscreteFactor build(Scope scope, double[] values) {
+      return SparseDiscreteFactor.fromValues(scope, values, densityThreshold);
+    }
+
+    @Override
+    public DiscreteFactor convert(DiscreteFactor factor) {
+      if (factor instanceof SparseDiscreteFactor) {
+        return factor;
+      }
+
+      double[] values = new double[factor.getVariables().getNumDistinctValues()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = factor.getValueAtIndex(i);
+      }
+
+      return build(factor.getVariables(), values);
+    }
+
+  }
+
+  public static class LogSpaceDiscreteFactorFactory implements DiscreteFactorFactory {
+
+    @Override
+    public DiscreteFactor build(Scope scope, double[] values) {
+      return LogSpaceDiscreteFactor.fromValues(scope, values);
+    }
+
+    @Override
+    public DiscreteFactor convert(DiscreteFactor factor) {
+      return LogSpaceDiscreteFactor.fromFactor(factor);
+    }
+
+  }
+
+  /**
+   * Creates single precision factors, see {@link FloatDiscreteFactor}.
+   */
+  public static class FloatDiscreteFactorFactory implements DiscreteFactorFactory {
+
+    @Override
+    public DiscreteFactor build(Scope scope, double[] values) {
+      return FloatDiscreteFactor.fromValues(scope, values);
+    }
+
+    @Override
+    public DiscreteFactor convert(DiscreteFactor factor) {
+      return FloatDiscreteFactor.fromFactor(factor);
+    }
+
+  }
+
+  /**
+   * Creates factors whose tables are stored outside of the heap, see {@link OffHeapDiscreteFactor}.
+   */
+  public static class OffHeapDiscreteFactorFactory implements DiscreteFactorFactory {
+
+    protected DirectBufferPool pool;
+
+    public OffHeapDiscreteFactorFactory() {
+      this(new DirectBufferPool());
+    }
+
+    public OffHeapDiscreteFactorFactory(DirectBufferPool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public DiscreteFactor build(Scope scope, double[] values) {
+      return OffHeapDiscreteFactor.fromValues(scope, values, pool);
+    }
+
+    @Override
+    public DiscreteFactor convert(DiscreteFactor factor) {
+      return OffHeapDiscreteFactor.fromFactor(factor, pool);
+    }
+
+    public DirectBufferPool getPool() {
+      return pool;
+    }
+
+  }
+}
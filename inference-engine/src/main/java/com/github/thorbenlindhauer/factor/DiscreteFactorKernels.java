@@ -0,0 +1,78 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+/**
+ * Loops over contiguous value tables. The loops have unit stride and no data-dependent branches,
+ * such that the JIT compiler can unroll and vectorize them (e.g. with SSE/AVX instructions).
+ * Operations use them when the layout of their operands permits, see {@link DiscreteFactorOperationPlan}.
+ *
+ * @author Thorben
+ */
+public class DiscreteFactorKernels {
+
+  /**
+   * result[i] = first[i] * second[i % blockSize], i.e. the second table is repeated for every block of the first.
+   * This is the product of two tables where the second table's variables are the leading variables of the first.
+   */
+  public static void multiplyBlocks(double[] first, double[] second, int blockSize, double[] result) {
+    for (int offset = 0; offset < first.length; offset += blockSize) {
+      for (int i = 0; i < blockSize; i++) {
+        result[offset + i] = first[offset + i] * second[i];
+      }
+    }
+  }
+
+  /**
+   * result[i % blockSize] += values[i], i.e. the marginal over the leading variables that make up a block.
+   */
+  public static void sumBlocks(double[] values, int blockSize, double[] result) {
+    for (int offset = 0; offset < values.length; offset += blockSize) {
+      for (int i = 0; i < blockSize; i++) {
+        result[i] += values[offset + i];
+      }
+    }
+  }
+
+  /**
+   * result[i] = values[i] / divisor
+   */
+  public static void divide(double[] values, double divisor, double[] result) {
+    for (int i = 0; i < values.length; i++) {
+      result[i] = values[i] / divisor;
+    }
+  }
+
+  public static double sum(double[] values) {
+    double sum = 0.0d;
+
+    for (int i = 0; i < values.length; i++) {
+      sum += values[i];
+    }
+
+    return sum;
+  }
+
+  /**
+   * The largest absolute difference of two equally sized tables.
+   */
+  public static double maxAbsoluteDifference(double[] first, double[] second) {
+    double maximum = 0.0d;
+
+    for (int i = 0; i < first.length; i++) {
+      maximum = Math.max(maximum, Math.abs(first[i] - second[i]));
+    }
+
+    return maximum;
+  }
+}
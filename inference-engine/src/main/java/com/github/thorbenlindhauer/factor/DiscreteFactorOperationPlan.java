@@ -0,0 +1,642 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
+
+/**
+ * Precomputed index arithmetic for an operation on table-based discrete factors. A plan only depends on
+ * the scopes of the operands, such that it can be computed once and then be executed for any factors
+ * with these scopes.
+ *
+ * <p>
+ * A plan walks the cells of one table (the <i>iterated</i> table) in canonical order and keeps track of
+ * the corresponding cells in up to two other tables. For every variable of the iterated scope, the strides
+ * of the other tables are expanded to the iterated scope's positions. Variables that are not part of another
+ * table have a stride of zero there, so that the inner loop does not need to distinguish these cases.
+ * </p>
+ *
+ * <p>
+ * Plans are immutable and are cached by the interned scopes of their operands, see {@link #forProduct(Scope, Scope)},
+ * {@link #forDivision(Scope, Scope)} and {@link #forMarginal(Scope, Scope)}.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class DiscreteFactorOperationPlan {
+
+  protected static final String PRODUCT = "productPlan";
+  protected static final String DIVISION = "divisionPlan";
+  protected static final String MARGINAL = "marginalPlan";
+  protected static final String REDUCTION = "reductionPlan";
+
+  protected Scope resultScope;
+
+  /** cardinalities of the iterated scope */
+  protected int[] cardinalities;
+  protected int iteratedSize;
+
+  protected int[] firstStrides;
+  protected int[] firstResets;
+
+  protected int[] secondStrides;
+  protected int[] secondResets;
+
+  /**
+   * If positive, the first (second) table is laid out like the leading variables of the iterated scope,
+   * i.e. its cells repeat in blocks of this size; see {@link DiscreteFactorKernels}
+   */
+  protected int firstBlockSize;
+  protected int secondBlockSize;
+
+  protected DiscreteFactorOperationPlan(Scope resultScope, Scope iteratedScope, Scope firstScope, Scope secondScope) {
+    this.resultScope = resultScope;
+    this.cardinalities = iteratedScope.getIndexCoder().getCardinalities();
+    this.iteratedSize = iteratedScope.getNumDistinctValues();
+
+    this.firstStrides = expandStrides(iteratedScope, firstScope);
+    this.firstResets = resetsFor(firstStrides);
+
+    this.secondStrides = expandStrides(iteratedScope, secondScope);
+    this.secondResets = resetsFor(secondStrides);
+
+    int[] iteratedStrides = iteratedScope.getIndexCoder().getStrides();
+    this.firstBlockSize = firstScope != null ? blockSizeFor(firstStrides, iteratedStrides) : -1;
+    this.secondBlockSize = secondScope != null ? blockSizeFor(secondStrides, iteratedStrides) : -1;
+  }
+
+  /**
+   * Returns the number of cells of the leading variables of the iterated scope, if a table with the given strides
+   * contains exactly these variables, else -1.
+   */
+  protected int blockSizeFor(int[] strides, int[] iteratedStrides) {
+    int blockSize = 1;
+    int position = 0;
+
+    while (position < strides.length && strides[position] == iteratedStrides[position]) {
+      blockSize *= cardinalities[position];
+      position++;
+    }
+
+    for (; position < strides.length; position++) {
+      if (strides[position] != 0 && cardinalities[position] > 1) {
+        return -1;
+      }
+    }
+
+    return blockSize;
+  }
+
+  protected int[] expandStrides(Scope iteratedScope, Scope scope) {
+    int[] expandedStrides = new int[cardinalities.length];
+
+    if (scope != null) {
+      int[] mapping = iteratedScope.createDiscreteVariableMapping(scope);
+      int[] strides = scope.getIndexCoder().getStrides();
+
+      for (int i = 0; i < mapping.length; i++) {
+        if (mapping[i] >= 0) {
+          expandedStrides[i] = strides[mapping[i]];
+        }
+      }
+    }
+
+    return expandedStrides;
+  }
+
+  protected int[] resetsFor(int[] strides) {
+    int[] resets = new int[strides.length];
+
+    for (int i = 0; i < strides.length; i++) {
+      resets[i] = (cardinalities[i] - 1) * strides[i];
+    }
+
+    return resets;
+  }
+
+  /**
+   * Iterates the product's scope; the first and second tables are the factors to multiply.
+   */
+  public static DiscreteFactorOperationPlan forProduct(Scope first, Scope second) {
+    DiscreteFactorOperationPlan plan = getCachedPlan(PRODUCT, first, second);
+
+    if (plan == null) {
+      Scope resultScope = first.union(second);
+      plan = new DiscreteFactorOperationPlan(resultScope, resultScope, first, second);
+      cachePlan(plan, PRODUCT, first, second);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Iterates the dividend's scope; the second table is the divisor.
+   */
+  public static DiscreteFactorOperationPlan forDivision(Scope dividend, Scope divisor) {
+    DiscreteFactorOperationPlan plan = getCachedPlan(DIVISION, dividend, divisor);
+
+    if (plan == null) {
+      if (!dividend.contains(divisor.getVariableIds())) {
+        throw new FactorOperationException("Divisor scope " + divisor + " is not a subset of" +
+            " this factor's scope " + dividend);
+      }
+
+      plan = new DiscreteFactorOperationPlan(dividend, dividend, null, divisor);
+      cachePlan(plan, DIVISION, dividend, divisor);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Iterates the scope of the factor to marginalize; the second table is the marginal.
+   *
+   * @param scope the variables to keep; may contain variables that are not part of the factor's scope
+   */
+  public static DiscreteFactorOperationPlan forMarginal(Scope factorScope, Scope scope) {
+    DiscreteFactorOperationPlan plan = getCachedPlan(MARGINAL, factorScope, scope);
+
+    if (plan == null) {
+      Scope resultScope = factorScope.intersect(scope);
+      plan = new DiscreteFactorOperationPlan(resultScope, factorScope, null, resultScope);
+      cachePlan(plan, MARGINAL, factorScope, scope);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Iterates the reduced scope; the first table is the factor to reduce.
+   *
+   * @param observedScope may contain variables that are not part of the factor's scope
+   */
+  public static DiscreteFactorOperationPlan forReduction(Scope factorScope, Scope observedScope) {
+    DiscreteFactorOperationPlan plan = getCachedPlan(REDUCTION, factorScope, observedScope);
+
+    if (plan == null) {
+      Scope resultScope = factorScope.reduceBy(observedScope);
+      plan = new DiscreteFactorOperationPlan(resultScope, resultScope, factorScope, null);
+      cachePlan(plan, REDUCTION, factorScope, observedScope);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Plans are cached in the {@link ScopeCache} of their operands, keyed by the interned operand instances.
+   * Plans for operands that are not interned in the same cache are not cached.
+   */
+  protected static DiscreteFactorOperationPlan getCachedPlan(String operation, Scope first, Scope second) {
+    ScopeCache cache = ScopeCache.of(first, second);
+    if (cache != null) {
+      return (DiscreteFactorOperationPlan) cache.getResult(operation, first, second);
+    } else {
+      return null;
+    }
+  }
+
+  protected static void cachePlan(DiscreteFactorOperationPlan plan, String operation, Scope first, Scope second) {
+    ScopeCache cache = ScopeCache.of(first, second);
+    if (cache != null) {
+      cache.cacheResult(plan, operation, first, second);
+    }
+  }
+
+  /**
+   * Returns the index of the first cell of the slice that matches the observation.
+   */
+  public static int sliceOffset(Scope factorScope, Scope observedScope, int[] observedValues) {
+    int[] mapping = factorScope.createDiscreteVariableMapping(observedScope);
+    int[] strides = factorScope.getIndexCoder().getStrides();
+    int offset = 0;
+
+    for (int i = 0; i < mapping.length; i++) {
+      if (mapping[i] >= 0) {
+        offset += observedValues[mapping[i]] * strides[i];
+      }
+    }
+
+    return offset;
+  }
+
+  public Scope getResultScope() {
+    return resultScope;
+  }
+
+  public void product(double[] firstValues, DiscreteFactor second, double[] result) {
+    if (second instanceof TableBasedDiscreteFactor) {
+      double[] secondValues = ((TableBasedDiscreteFactor) second).getValues();
+
+      if (firstBlockSize == iteratedSize && secondBlockSize > 0) {
+        DiscreteFactorKernels.multiplyBlocks(firstValues, secondValues, secondBlockSize, result);
+        return;
+      } else if (secondBlockSize == iteratedSize && firstBlockSize > 0) {
+        DiscreteFactorKernels.multiplyBlocks(secondValues, firstValues, firstBlockSize, result);
+        return;
+      }
+    }
+
+    int[] assignment = new int[cardinalities.length];
+    int firstIndex = 0;
+    int secondIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      result[i] = firstValues[firstIndex] * second.getValueAtIndex(secondIndex);
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          firstIndex -= firstResets[j];
+          secondIndex -= secondResets[j];
+        } else {
+          firstIndex += firstStrides[j];
+          secondIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Divides the values in place.
+   */
+  public void division(double[] values, DiscreteFactor divisor) {
+    int[] assignment = new int[cardinalities.length];
+    int divisorIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double divisorValue = divisor.getValueAtIndex(divisorIndex);
+
+      if (divisorValue == 0) {
+        if (values[i] != 0) {
+          throw new FactorOperationException("Invalid division operation for assignment " + Arrays.toString(assignment)
+              + ": " + values[i] + " / " + divisorValue);
+        }
+        // no else branch: if values[i] == 0, then it is not changed
+
+      } else {
+        values[i] = values[i] / divisorValue;
+      }
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          divisorIndex -= secondResets[j];
+        } else {
+          divisorIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the values to the marginal's cells; the marginal table is expected to be zeroed.
+   */
+  public void marginal(double[] values, double[] marginal) {
+    if (secondBlockSize > 0) {
+      DiscreteFactorKernels.sumBlocks(values, secondBlockSize, marginal);
+      return;
+    }
+
+    int[] assignment = new int[cardinalities.length];
+    int marginalIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      marginal[marginalIndex] += values[i];
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          marginalIndex -= secondResets[j];
+        } else {
+          marginalIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the indices of the cells of the slice that begins at the given offset (see {@link #sliceOffset(Scope, Scope, int[])})
+   * in the factor's table. The indices are in ascending order, i.e. in the order of the reduced table's cells.
+   */
+  public int[] sliceIndices(int offset) {
+    int[] sliceIndices = new int[iteratedSize];
+    int[] assignment = new int[cardinalities.length];
+    int index = offset;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      sliceIndices[i] = index;
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          index -= firstResets[j];
+        } else {
+          index += firstStrides[j];
+          break;
+        }
+      }
+    }
+
+    return sliceIndices;
+  }
+
+  /**
+   * Like {@link #product(double[], DiscreteFactor, double[])}, but for tables of log values.
+   */
+  public void logProduct(double[] firstLogValues, DiscreteFactor second, double[] result) {
+    double[] secondLogValues = logValuesOf(second);
+    int[] assignment = new int[cardinalities.length];
+    int firstIndex = 0;
+    int secondIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      result[i] = firstLogValues[firstIndex] + secondLogValues[secondIndex];
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          firstIndex -= firstResets[j];
+          secondIndex -= secondResets[j];
+        } else {
+          firstIndex += firstStrides[j];
+          secondIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Like {@link #division(double[], DiscreteFactor)}, but for tables of log values.
+   */
+  public void logDivision(double[] logValues, DiscreteFactor divisor) {
+    double[] divisorLogValues = logValuesOf(divisor);
+    int[] assignment = new int[cardinalities.length];
+    int divisorIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double divisorLogValue = divisorLogValues[divisorIndex];
+
+      if (divisorLogValue == Double.NEGATIVE_INFINITY) {
+        if (logValues[i] != Double.NEGATIVE_INFINITY) {
+          throw new FactorOperationException("Invalid division operation for assignment " + Arrays.toString(assignment)
+              + ": " + Math.exp(logValues[i]) + " / 0.0");
+        }
+
+      } else {
+        logValues[i] = logValues[i] - divisorLogValue;
+      }
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          divisorIndex -= secondResets[j];
+        } else {
+          divisorIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the log values of the factor; factors in another representation are converted once, instead of
+   * computing a logarithm for every cell of the iterated table that refers to their cells.
+   */
+  protected static double[] logValuesOf(DiscreteFactor factor) {
+    if (factor instanceof LogSpaceDiscreteFactor) {
+      return ((LogSpaceDiscreteFactor) factor).getLogValues();
+    }
+
+    double[] logValues = new double[factor.getVariables().getNumDistinctValues()];
+    for (int i = 0; i < logValues.length; i++) {
+      logValues[i] = factor.getLogValueAtIndex(i);
+    }
+
+    return logValues;
+  }
+
+  /**
+   * Like {@link #marginal(double[], double[])}, but for tables of log values. Sums up the values of each
+   * marginal cell by log-sum-exp, i.e. relative to the cell's maximum value, so that small values do not underflow.
+   * The marginal table does not need to be initialized.
+   */
+  public void logMarginal(double[] logValues, double[] logMarginal) {
+    // 1. determine each cell's maximum
+    Arrays.fill(logMarginal, Double.NEGATIVE_INFINITY);
+
+    int[] assignment = new int[cardinalities.length];
+    int marginalIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      if (logValues[i] > logMarginal[marginalIndex]) {
+        logMarginal[marginalIndex] = logValues[i];
+      }
+      marginalIndex = nextMarginalIndex(assignment, marginalIndex);
+    }
+
+    // 2. sum up the scaled values
+    double[] scaledSums = new double[logMarginal.length];
+    Arrays.fill(assignment, 0);
+    marginalIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double maximum = logMarginal[marginalIndex];
+      if (maximum != Double.NEGATIVE_INFINITY) {
+        scaledSums[marginalIndex] += Math.exp(logValues[i] - maximum);
+      }
+      marginalIndex = nextMarginalIndex(assignment, marginalIndex);
+    }
+
+    for (int i = 0; i < logMarginal.length; i++) {
+      if (logMarginal[i] != Double.NEGATIVE_INFINITY) {
+        logMarginal[i] = logMarginal[i] + Math.log(scaledSums[i]);
+      }
+    }
+  }
+
+  /**
+   * Like {@link #product(double[], DiscreteFactor, double[])}, but for single precision tables.
+   * Every cell is multiplied in double precision and then rounded.
+   */
+  public void floatProduct(float[] firstValues, DiscreteFactor second, float[] result) {
+    int[] assignment = new int[cardinalities.length];
+    int firstIndex = 0;
+    int secondIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      result[i] = (float) (firstValues[firstIndex] * second.getValueAtIndex(secondIndex));
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          firstIndex -= firstResets[j];
+          secondIndex -= secondResets[j];
+        } else {
+          firstIndex += firstStrides[j];
+          secondIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Like {@link #division(double[], DiscreteFactor)}, but for single precision tables.
+   */
+  public void floatDivision(float[] values, DiscreteFactor divisor) {
+    int[] assignment = new int[cardinalities.length];
+    int divisorIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double divisorValue = divisor.getValueAtIndex(divisorIndex);
+
+      if (divisorValue == 0) {
+        if (values[i] != 0) {
+          throw new FactorOperationException("Invalid division operation for assignment " + Arrays.toString(assignment)
+              + ": " + values[i] + " / " + divisorValue);
+        }
+
+      } else {
+        values[i] = (float) (values[i] / divisorValue);
+      }
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          divisorIndex -= secondResets[j];
+        } else {
+          divisorIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Like {@link #marginal(double[], double[])}, but sums up a single precision table. The sums are
+   * accumulated in double precision; the marginal table is expected to be zeroed.
+   */
+  public void floatMarginal(float[] values, double[] marginal) {
+    int[] assignment = new int[cardinalities.length];
+    int marginalIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      marginal[marginalIndex] += values[i];
+      marginalIndex = nextMarginalIndex(assignment, marginalIndex);
+    }
+  }
+
+  /**
+   * Like {@link #product(double[], DiscreteFactor, double[])}, but for tables in (direct) buffers.
+   */
+  public void bufferProduct(DoubleBuffer firstValues, DiscreteFactor second, DoubleBuffer result) {
+    int[] assignment = new int[cardinalities.length];
+    int firstIndex = 0;
+    int secondIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      result.put(i, firstValues.get(firstIndex) * second.getValueAtIndex(secondIndex));
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          firstIndex -= firstResets[j];
+          secondIndex -= secondResets[j];
+        } else {
+          firstIndex += firstStrides[j];
+          secondIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Like {@link #division(double[], DiscreteFactor)}, but for tables in (direct) buffers.
+   */
+  public void bufferDivision(DoubleBuffer values, DiscreteFactor divisor) {
+    int[] assignment = new int[cardinalities.length];
+    int divisorIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double divisorValue = divisor.getValueAtIndex(divisorIndex);
+      double value = values.get(i);
+
+      if (divisorValue == 0) {
+        if (value != 0) {
+          throw new FactorOperationException("Invalid division operation for assignment " + Arrays.toString(assignment)
+              + ": " + value + " / " + divisorValue);
+        }
+
+      } else {
+        values.put(i, value / divisorValue);
+      }
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j] = assignment[j] + 1;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          divisorIndex -= secondResets[j];
+        } else {
+          divisorIndex += secondStrides[j];
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Like {@link #marginal(double[], double[])}, but for tables in (direct) buffers.
+   */
+  public void bufferMarginal(DoubleBuffer values, DoubleBuffer marginal) {
+    int[] assignment = new int[cardinalities.length];
+    int marginalIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      marginal.put(marginalIndex, marginal.get(marginalIndex) + values.get(i));
+      marginalIndex = nextMarginalIndex(assignment, marginalIndex);
+    }
+  }
+
+  protected int nextMarginalIndex(int[] assignment, int marginalIndex) {
+    for (int j = 0; j < assignment.length; j++) {
+      assignment[j] = assignment[j] + 1;
+      if (assignment[j] == cardinalities[j]) {
+        assignment[j] = 0;
+        marginalIndex -= secondResets[j];
+      } else {
+        return marginalIndex + secondStrides[j];
+      }
+    }
+
+    return marginalIndex;
+  }
+}
@@ -0,0 +1,271 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
+
+/**
+ * Precomputed index arithmetic for multiplying any number of table-based discrete factors and summing
+ * out variables of the product in the same pass. The plan walks the union of the input scopes once and keeps
+ * one stride vector per input and one for the result, such that the joint table over the union is never
+ * materialized; only the (typically much smaller) result table is allocated.
+ *
+ * <p>
+ * Like {@link DiscreteFactorOperationPlan}s, plans are immutable and cached by the interned scopes of their inputs
+ * and the scope of their result. Since the cache key depends on the order of the inputs, callers that collect their
+ * factors in no particular order should pass them in canonical order, see {@link #inCanonicalOrder(Collection)}.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class DiscreteFactorSumProductPlan {
+
+  protected static final String SUM_PRODUCT = "sumProductPlan";
+
+  /**
+   * Orders factors by the variable ids of their scopes and then by the cardinalities.
+   */
+  protected static final Comparator<DiscreteFactor> CANONICAL_ORDER = new Comparator<DiscreteFactor>() {
+
+    public int compare(DiscreteFactor factor1, DiscreteFactor factor2) {
+      String[] variableIds1 = factor1.getVariables().getVariableIds();
+      String[] variableIds2 = factor2.getVariables().getVariableIds();
+
+      for (int i = 0; i < variableIds1.length && i < variableIds2.length; i++) {
+        int comparison = variableIds1[i].compareTo(variableIds2[i]);
+        if (comparison != 0) {
+          return comparison;
+        }
+      }
+
+      if (variableIds1.length != variableIds2.length) {
+        return variableIds1.length < variableIds2.length ? -1 : 1;
+      }
+
+      int[] cardinalities1 = factor1.getVariables().getIndexCoder().getCardinalities();
+      int[] cardinalities2 = factor2.getVariables().getIndexCoder().getCardinalities();
+
+      for (int i = 0; i < cardinalities1.length; i++) {
+        if (cardinalities1[i] != cardinalities2[i]) {
+          return cardinalities1[i] < cardinalities2[i] ? -1 : 1;
+        }
+      }
+
+      return 0;
+    }
+  };
+
+  protected Scope resultScope;
+
+  /** cardinalities of the iterated scope, i.e. the union of the input scopes */
+  protected int[] cardinalities;
+  protected int iteratedSize;
+
+  /** for every input, the strides expanded to the iterated scope */
+  protected int[][] inputStrides;
+  protected int[][] inputResets;
+
+  protected int[] resultStrides;
+  protected int[] resultResets;
+
+  protected DiscreteFactorSumProductPlan(Scope[] inputScopes, Scope scope) {
+    Scope iteratedScope = inputScopes[0];
+    for (int i = 1; i < inputScopes.length; i++) {
+      iteratedScope = iteratedScope.union(inputScopes[i]);
+    }
+
+    this.resultScope = iteratedScope.intersect(scope);
+    this.cardinalities = iteratedScope.getIndexCoder().getCardinalities();
+    this.iteratedSize = iteratedScope.getNumDistinctValues();
+
+    this.inputStrides = new int[inputScopes.length][];
+    this.inputResets = new int[inputScopes.length][];
+    for (int i = 0; i < inputScopes.length; i++) {
+      inputStrides[i] = expandStrides(iteratedScope, inputScopes[i]);
+      inputResets[i] = resetsFor(inputStrides[i]);
+    }
+
+    this.resultStrides = expandStrides(iteratedScope, resultScope);
+    this.resultResets = resetsFor(resultStrides);
+  }
+
+  protected int[] expandStrides(Scope iteratedScope, Scope scope) {
+    int[] expandedStrides = new int[cardinalities.length];
+    int[] mapping = iteratedScope.createDiscreteVariableMapping(scope);
+    int[] strides = scope.getIndexCoder().getStrides();
+
+    for (int i = 0; i < mapping.length; i++) {
+      if (mapping[i] >= 0) {
+        expandedStrides[i] = strides[mapping[i]];
+      }
+    }
+
+    return expandedStrides;
+  }
+
+  protected int[] resetsFor(int[] strides) {
+    int[] resets = new int[strides.length];
+
+    for (int i = 0; i < strides.length; i++) {
+      resets[i] = (cardinalities[i] - 1) * strides[i];
+    }
+
+    return resets;
+  }
+
+  /**
+   * @param inputScopes the scopes of the factors to multiply
+   * @param scope the variables to keep; may contain variables that are not part of any input scope
+   */
+  public static DiscreteFactorSumProductPlan forSumProduct(Scope[] inputScopes, Scope scope) {
+    Scope[] operands = Arrays.copyOf(inputScopes, inputScopes.length + 1);
+    operands[inputScopes.length] = scope;
+
+    ScopeCache cache = ScopeCache.of(operands);
+    DiscreteFactorSumProductPlan plan = null;
+    if (cache != null) {
+      plan = (DiscreteFactorSumProductPlan) cache.getResult(SUM_PRODUCT, operands);
+    }
+
+    if (plan == null) {
+      plan = new DiscreteFactorSumProductPlan(inputScopes, scope);
+
+      if (cache != null) {
+        cache.cacheResult(plan, SUM_PRODUCT, operands);
+      }
+    }
+
+    return plan;
+  }
+
+  /**
+   * Returns the factors sorted by their scopes, such that the same scopes always map to the same cached plan,
+   * regardless of the order in which the factors were collected (e.g. the iteration order of a hash set).
+   */
+  public static <F extends DiscreteFactor> List<F> inCanonicalOrder(Collection<F> factors) {
+    List<F> sortedFactors = new ArrayList<F>(factors);
+    Collections.sort(sortedFactors, CANONICAL_ORDER);
+    return sortedFactors;
+  }
+
+  public Scope getResultScope() {
+    return resultScope;
+  }
+
+  /**
+   * Adds the products of the input values to the result's cells; the result table is expected to be zeroed.
+   *
+   * @param inputValues the tables of the inputs in the order of the plan's input scopes
+   */
+  public void sumProduct(double[][] inputValues, double[] result) {
+    int numInputs = inputValues.length;
+    int[] assignment = new int[cardinalities.length];
+    int[] inputIndices = new int[numInputs];
+    int resultIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double product = inputValues[0][inputIndices[0]];
+      for (int k = 1; k < numInputs && product != 0; k++) {
+        product *= inputValues[k][inputIndices[k]];
+      }
+
+      result[resultIndex] += product;
+      resultIndex = nextIndices(assignment, inputIndices, resultIndex);
+    }
+  }
+
+  /**
+   * Like {@link #sumProduct(double[][], double[])}, but for tables of log values. Sums are computed relative to
+   * each result cell's maximum, which requires two passes over the iterated scope.
+   */
+  public void logSumProduct(double[][] inputLogValues, double[] logResult) {
+    int numInputs = inputLogValues.length;
+
+    // 1. determine each cell's maximum
+    Arrays.fill(logResult, Double.NEGATIVE_INFINITY);
+
+    int[] assignment = new int[cardinalities.length];
+    int[] inputIndices = new int[numInputs];
+    int resultIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double logProduct = logProduct(inputLogValues, inputIndices);
+      if (logProduct > logResult[resultIndex]) {
+        logResult[resultIndex] = logProduct;
+      }
+      resultIndex = nextIndices(assignment, inputIndices, resultIndex);
+    }
+
+    // 2. sum up the scaled products
+    double[] scaledSums = new double[logResult.length];
+    Arrays.fill(assignment, 0);
+    Arrays.fill(inputIndices, 0);
+    resultIndex = 0;
+
+    for (int i = 0; i < iteratedSize; i++) {
+      double maximum = logResult[resultIndex];
+      if (maximum != Double.NEGATIVE_INFINITY) {
+        scaledSums[resultIndex] += Math.exp(logProduct(inputLogValues, inputIndices) - maximum);
+      }
+      resultIndex = nextIndices(assignment, inputIndices, resultIndex);
+    }
+
+    for (int i = 0; i < logResult.length; i++) {
+      if (logResult[i] != Double.NEGATIVE_INFINITY) {
+        logResult[i] = logResult[i] + Math.log(scaledSums[i]);
+      }
+    }
+  }
+
+  protected double logProduct(double[][] inputLogValues, int[] inputIndices) {
+    double logProduct = 0.0d;
+    for (int k = 0; k < inputLogValues.length && logProduct != Double.NEGATIVE_INFINITY; k++) {
+      logProduct += inputLogValues[k][inputIndices[k]];
+    }
+
+    return logProduct;
+  }
+
+  /**
+   * Advances the assignment of the iterated scope and updates the input indices accordingly.
+   *
+   * @return the result index of the next assignment
+   */
+  protected int nextIndices(int[] assignment, int[] inputIndices, int resultIndex) {
+    for (int j = 0; j < assignment.length; j++) {
+      assignment[j] = assignment[j] + 1;
+      if (assignment[j] == cardinalities[j]) {
+        assignment[j] = 0;
+        for (int k = 0; k < inputIndices.length; k++) {
+          inputIndices[k] -= inputResets[k][j];
+        }
+        resultIndex -= resultResets[j];
+      } else {
+        for (int k = 0; k < inputIndices.length; k++) {
+          inputIndices[k] += inputStrides[k][j];
+        }
+        return resultIndex + resultStrides[j];
+      }
+    }
+
+    return resultIndex;
+  }
+}
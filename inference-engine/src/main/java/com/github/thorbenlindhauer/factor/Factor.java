@@ -38,4 +38,36 @@ public interface Factor<T extends Factor<T>> {
 
   Scope getVariables();
 
+  /*
+   * The following operations may reuse the storage of existing factors instead of allocating new ones.
+   * They must only be used for factors that are not referenced elsewhere. Callers must continue
+   * with the returned factor, since an implementation may also decide to return a new factor.
+   */
+
+  /**
+   * Like {@link #product(Factor)}, but may write the product to the given target factor if its
+   * scope is equal to the product's scope.
+   *
+   * @param target may be null or this factor
+   */
+  T productInto(T other, T target);
+
+  /**
+   * Like {@link #marginal(Scope)}, but may write the marginal to the given target factor if its
+   * scope is equal to the marginal's scope.
+   *
+   * @param target may be null
+   */
+  T marginalInto(Scope scope, T target);
+
+  /**
+   * Like {@link #division(Factor)}, but may modify this factor.
+   */
+  T divideInPlace(T other);
+
+  /**
+   * Like {@link #normalize()}, but may modify this factor.
+   */
+  T normalizeInPlace();
+
 }
@@ -24,6 +24,18 @@ public class FactorSet<T extends Factor<T>> {
 
   protected Set<T> factors;
 
+  /**
+   * The factors of this set that were created by its operations and that are not referenced
+   * elsewhere, such that they can be updated in place.
+   */
+  protected Set<T> ownedFactors = new HashSet<T>();
+
+  /**
+   * Owned factors with a lower density (fraction of non-zero values) are stored sparsely,
+   * see {@link FactorUtil#compact(Factor, double)}.
+   */
+  protected double densityThreshold = SparseDiscreteFactor.DEFAULT_DENSITY_THRESHOLD;
+
   public FactorSet(Set<T> factors) {
     this.factors = new HashSet<T>(factors);
   }
@@ -37,55 +49,67 @@ public class FactorSet<T extends Factor<T>> {
   }
 
   public void division(FactorSet<T> other) {
-    Set<T> newFactors = new HashSet<T>();
-    Set<T> factorsToReplace = new HashSet<T>();
-
     for (T otherFactor : other.factors) {
-      boolean factorProcessed = false;
-
-      for (T thisFactor : factors) {
-        if (thisFactor.getVariables().contains(otherFactor.getVariables())) {
-          factorsToReplace.add(thisFactor);
-          newFactors.add(thisFactor.division(otherFactor));
-
-          factorProcessed = true;
-          break;
+      T containingFactor = getContainingFactor(otherFactor);
+
+      if (containingFactor != null) {
+        T quotient;
+        if (ownedFactors.contains(containingFactor)) {
+          quotient = containingFactor.divideInPlace(otherFactor);
+        } else {
+          quotient = containingFactor.division(otherFactor);
         }
-      }
 
-      if (!factorProcessed) {
-        newFactors.add(otherFactor.invert());
+        replace(containingFactor, quotient);
+
+      } else {
+        addOwned(otherFactor.invert());
       }
     }
-
-    factors.removeAll(factorsToReplace);
-    factors.addAll(newFactors);
   }
 
   public void product(FactorSet<T> other) {
-    Set<T> newFactors = new HashSet<T>();
-    Set<T> factorsToReplace = new HashSet<T>();
-
     for (T otherFactor : other.factors) {
-      boolean factorProcessed = false;
+      T containingFactor = getContainingFactor(otherFactor);
+
+      if (containingFactor != null) {
+        T product;
+        if (ownedFactors.contains(containingFactor)) {
+          product = containingFactor.productInto(otherFactor, containingFactor);
+        } else {
+          product = containingFactor.product(otherFactor);
+        }
 
-      for (T thisFactor : factors) {
-        if (thisFactor.getVariables().contains(otherFactor.getVariables())) {
-          factorsToReplace.add(thisFactor);
-          newFactors.add(thisFactor.product(otherFactor));
+        replace(containingFactor, product);
 
-          factorProcessed = true;
-          break;
-        }
+      } else {
+        add(otherFactor);
       }
+    }
+  }
 
-      if (!factorProcessed) {
-        newFactors.add(otherFactor);
+  protected T getContainingFactor(T factor) {
+    for (T thisFactor : factors) {
+      if (thisFactor.getVariables().contains(factor.getVariables())) {
+        return thisFactor;
       }
     }
 
-    factors.removeAll(factorsToReplace);
-    factors.addAll(newFactors);
+    return null;
+  }
+
+  /**
+   * Replaces a factor by the result of an operation on it. If the set owns the factor, it is released.
+   */
+  protected void replace(T factor, T newFactor) {
+    if (factor != newFactor) {
+      factors.remove(factor);
+      if (ownedFactors.remove(factor)) {
+        FactorUtil.release(factor);
+      }
+
+      addOwned(newFactor);
+    }
   }
 
   public Set<T> getFactors() {
@@ -95,4 +119,41 @@ public class FactorSet<T extends Factor<T>> {
   public void add(T factor) {
     this.factors.add(factor);
   }
+
+  /**
+   * Releases the storage of the factors owned by this set, see {@link FactorUtil#release(Factor)}.
+   * The set must not be used afterwards.
+   */
+  public void release() {
+    for (T factor : ownedFactors) {
+      FactorUtil.release(factor);
+    }
+
+    factors.clear();
+    ownedFactors.clear();
+  }
+
+  /**
+   * Like {@link #release()}, but keeps the factors that are contained in the other set, e.g. because they were
+   * computed in place of this set's factors.
+   */
+  public void releaseExcept(FactorSet<T> retainedFactors) {
+    ownedFactors.removeAll(retainedFactors.factors);
+    release();
+  }
+
+  /**
+   * Adds a factor that is not referenced elsewhere, so that this set's operations may update it in place.
+   * A table-based factor is replaced by a sparse factor if its density is below the density threshold.
+   */
+  public void addOwned(T factor) {
+    T compactedFactor = FactorUtil.compact(factor, densityThreshold);
+
+    this.factors.add(compactedFactor);
+    this.ownedFactors.add(compactedFactor);
+  }
+
+  public void setDensityThreshold(double densityThreshold) {
+    this.densityThreshold = densityThreshold;
+  }
 }
@@ -12,21 +12,187 @@
 */
 package com.github.thorbenlindhauer.factor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
+import com.github.thorbenlindhauer.variable.Scope;
+
 public class FactorUtil {
 
   public static <T extends Factor<T>> T jointDistribution(Set<T> factors) {
+    if (factors.size() > 2) {
+      List<TableBasedDiscreteFactor> tableBasedFactors = asFactorsOfType(factors, TableBasedDiscreteFactor.class);
+
+      if (tableBasedFactors != null) {
+        // a single pass over the joint scope instead of one pass per intermediate product
+        Scope jointScope = tableBasedFactors.get(0).getVariables();
+        for (TableBasedDiscreteFactor factor : tableBasedFactors) {
+          jointScope = jointScope.union(factor.getVariables());
+        }
+
+        return castFactor(TableBasedDiscreteFactor.sumProduct(tableBasedFactors, jointScope, null));
+      }
+    }
+
     T jointDistribution = null;
+    T firstFactor = null;
 
     for (T factor : factors) {
       if (jointDistribution == null) {
         jointDistribution = factor;
-      } else {
+        firstFactor = factor;
+      } else if (jointDistribution == firstFactor) {
         jointDistribution = jointDistribution.product(factor);
+      } else {
+        // the intermediate joint distribution is not referenced elsewhere, so that its storage can be reused
+        T product = jointDistribution.productInto(factor, jointDistribution);
+        if (product != jointDistribution) {
+          release(jointDistribution);
+        }
+        jointDistribution = product;
       }
     }
 
     return jointDistribution;
   }
+
+  /**
+   * Returns the marginal over the given scope of the factors' joint distribution. For table-based and log-space
+   * discrete factors, the joint distribution is not materialized.
+   *
+   * @param target may be null, see {@link Factor#marginalInto(Scope, Factor)}
+   */
+  public static <T extends Factor<T>> T sumProduct(Set<T> factors, Scope scope, T target) {
+    if (!factors.contains(target)) {
+      List<TableBasedDiscreteFactor> tableBasedFactors = asFactorsOfType(factors, TableBasedDiscreteFactor.class);
+      if (tableBasedFactors != null) {
+        return castFactor(TableBasedDiscreteFactor.sumProduct(tableBasedFactors, scope, (DiscreteFactor) target));
+      }
+
+      List<LogSpaceDiscreteFactor> logSpaceFactors = asFactorsOfType(factors, LogSpaceDiscreteFactor.class);
+      if (logSpaceFactors != null) {
+        return castFactor(LogSpaceDiscreteFactor.sumProduct(logSpaceFactors, scope, (DiscreteFactor) target));
+      }
+    }
+
+    T jointDistribution = jointDistribution(factors);
+    T marginal = jointDistribution.marginalInto(scope, target);
+
+    if (jointDistribution != marginal && !factors.contains(jointDistribution)) {
+      release(jointDistribution);
+    }
+
+    return marginal;
+  }
+
+  /**
+   * Multiplies the factors and sums out the given variable, i.e. a step of variable elimination.
+   * The product over all variables of the factors is not materialized, see {@link #sumProduct(Set, Scope, Factor)}.
+   */
+  public static <T extends Factor<T>> T sumOut(Set<T> factors, String variableId) {
+    Scope jointScope = null;
+    for (T factor : factors) {
+      if (jointScope == null) {
+        jointScope = factor.getVariables();
+      } else {
+        jointScope = jointScope.union(factor.getVariables());
+      }
+    }
+
+    return sumProduct(factors, jointScope.reduceBy(variableId), null);
+  }
+
+  /**
+   * Returns the factors if they are all of the given type, else null. Lazy factors are loaded and
+   * their loaded factors are checked instead.
+   */
+  protected static <F extends Factor<?>> List<F> asFactorsOfType(Set<? extends Factor<?>> factors, Class<F> factorType) {
+    if (factors.isEmpty()) {
+      return null;
+    }
+
+    List<F> typedFactors = new ArrayList<F>(factors.size());
+    for (Factor<?> factor : factors) {
+      if (factor instanceof LazyDiscreteFactor) {
+        factor = ((LazyDiscreteFactor) factor).getFactor();
+      }
+
+      if (!factorType.isInstance(factor)) {
+        return null;
+      }
+
+      typedFactors.add(factorType.cast(factor));
+    }
+
+    return typedFactors;
+  }
+
+  /**
+   * Discrete factors are only ever combined with factors of type {@link DiscreteFactor}.
+   */
+  @SuppressWarnings("unchecked")
+  protected static <T extends Factor<T>> T castFactor(DiscreteFactor factor) {
+    return (T) factor;
+  }
+
+  /**
+   * Returns a {@link SparseDiscreteFactor} if the factor is a table-based discrete factor whose density is below
+   * the threshold, else the factor itself. The factor's table is not referenced by the sparse factor.
+   */
+  public static <T extends Factor<T>> T compact(T factor, double densityThreshold) {
+    if (factor instanceof TableBasedDiscreteFactor) {
+      return castFactor(SparseDiscreteFactor.compact((TableBasedDiscreteFactor) factor, densityThreshold));
+    } else {
+      return factor;
+    }
+  }
+
+  /**
+   * Frees the storage of a factor that is not referenced anymore. Only factors with explicitly managed storage
+   * (see {@link OffHeapDiscreteFactor}) are affected, other factors are left to the garbage collector.
+   */
+  public static void release(Factor<?> factor) {
+    if (factor instanceof OffHeapDiscreteFactor) {
+      ((OffHeapDiscreteFactor) factor).close();
+    }
+  }
+
+  /**
+   * Releases the intermediate results of a query, except for the factor they were computed from, which is not
+   * owned by the query. Several of the intermediates may be the same factor.
+   */
+  public static void releaseIntermediates(Factor<?> retainedFactor, Factor<?>... intermediates) {
+    for (Factor<?> intermediate : intermediates) {
+      if (intermediate != retainedFactor) {
+        release(intermediate);
+      }
+    }
+  }
+
+  /**
+   * Applies an observation to a factor. Observed variables that are not part of the projection are
+   * sliced out of the factor's scope, observed variables of the projection remain in the factor's scope.
+   */
+  public static DiscreteFactor applyObservation(DiscreteFactor factor, Scope projection, Scope observedVariables, int[] observation) {
+    Scope reducedVariables = observedVariables.reduceBy(projection);
+    Scope maskedVariables = observedVariables.intersect(projection);
+    DiscreteFactor result = factor;
+
+    if (!reducedVariables.isEmpty()) {
+      result = result.reduce(reducedVariables, observedVariables.projectAssignment(observation, reducedVariables));
+    }
+
+    if (!maskedVariables.isEmpty()) {
+      DiscreteFactor reducedFactor = result;
+      result = result.observation(maskedVariables, observedVariables.projectAssignment(observation, maskedVariables));
+
+      // the reduced factor is only an intermediate, unless it is the given factor itself
+      if (reducedFactor != factor && reducedFactor != result) {
+        release(reducedFactor);
+      }
+    }
+
+    return result;
+  }
 }
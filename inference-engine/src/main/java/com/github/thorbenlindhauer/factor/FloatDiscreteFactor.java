@@ -0,0 +1,197 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.util.Arrays;
+
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A discrete factor that stores its values in single precision, i.e. with half the memory of a
+ * {@link TableBasedDiscreteFactor}. Values are only rounded when they are stored; products, marginal sums
+ * and normalization are computed in double precision.
+ *
+ * <p>
+ * Like {@link TableBasedDiscreteFactor}, factors are immutable, except for the in-place operations.
+ * The results of operations are always single precision factors, regardless of the other operand's representation.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class FloatDiscreteFactor extends AbstractDiscreteFactor {
+
+  protected float[] values;
+
+  public FloatDiscreteFactor(Scope variables, float[] values) {
+    super(variables);
+    this.values = values;
+  }
+
+  public FloatDiscreteFactor product(DiscreteFactor other) {
+    return productInto(other, null);
+  }
+
+  public FloatDiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
+
+    FloatDiscreteFactor targetFactor = asTargetFor(target, newVariables, FloatDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new FloatDiscreteFactor(newVariables, new float[newVariables.getNumDistinctValues()]);
+    }
+
+    plan.floatProduct(values, other, targetFactor.values);
+
+    return targetFactor;
+  }
+
+  public FloatDiscreteFactor division(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+
+    float[] newValues = Arrays.copyOf(values, values.length);
+    plan.floatDivision(newValues, other);
+
+    return new FloatDiscreteFactor(variables, newValues);
+  }
+
+  public FloatDiscreteFactor divideInPlace(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+    plan.floatDivision(values, other);
+
+    return this;
+  }
+
+  public FloatDiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return marginalInto(scope, null);
+  }
+
+  public FloatDiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    if (scope.contains(variables)) {
+      FloatDiscreteFactor targetFactor = asTargetFor(target, variables, FloatDiscreteFactor.class);
+      if (targetFactor == null) {
+        return new FloatDiscreteFactor(variables, Arrays.copyOf(values, values.length));
+      }
+
+      System.arraycopy(values, 0, targetFactor.values, 0, values.length);
+      return targetFactor;
+    }
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
+
+    // marginals are typically much smaller than the factor, so that the sums can be accumulated in double precision
+    double[] sums = new double[newScope.getNumDistinctValues()];
+    plan.floatMarginal(values, sums);
+
+    FloatDiscreteFactor targetFactor = asTargetFor(target, newScope, FloatDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new FloatDiscreteFactor(newScope, new float[sums.length]);
+    }
+
+    for (int i = 0; i < sums.length; i++) {
+      targetFactor.values[i] = (float) sums[i];
+    }
+
+    return targetFactor;
+  }
+
+  public FloatDiscreteFactor normalize() {
+    float[] newValues = new float[values.length];
+    normalizeValues(values, newValues);
+
+    return new FloatDiscreteFactor(variables, newValues);
+  }
+
+  public FloatDiscreteFactor normalizeInPlace() {
+    normalizeValues(values, values);
+
+    return this;
+  }
+
+  protected static void normalizeValues(float[] values, float[] result) {
+    double normalizationConstant = 0.0d;
+    for (int i = 0; i < values.length; i++) {
+      normalizationConstant += values[i];
+    }
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != 0) {
+        result[i] = (float) (values[i] / normalizationConstant);
+      }
+    }
+  }
+
+  public FloatDiscreteFactor invert() {
+    float[] newValues = new float[values.length];
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != 0) {
+        newValues[i] = (float) (1.0d / values[i]);
+      }
+    }
+
+    return new FloatDiscreteFactor(variables, newValues);
+  }
+
+  public float[] getValues() {
+    return values;
+  }
+
+  public double getValueAtIndex(int index) {
+    return values[index];
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return Math.log(values[index]);
+  }
+
+  protected FloatDiscreteFactor newFactor(Scope scope) {
+    return new FloatDiscreteFactor(scope, new float[scope.getNumDistinctValues()]);
+  }
+
+  protected double getStoredValue(int index) {
+    return values[index];
+  }
+
+  protected void setStoredValue(int index, double storedValue) {
+    values[index] = (float) storedValue;
+  }
+
+  public static FloatDiscreteFactor fromValues(Scope variables, double[] values) {
+    float[] floatValues = new float[values.length];
+
+    for (int i = 0; i < values.length; i++) {
+      floatValues[i] = (float) values[i];
+    }
+
+    return new FloatDiscreteFactor(variables, floatValues);
+  }
+
+  public static FloatDiscreteFactor fromFactor(DiscreteFactor factor) {
+    if (factor instanceof FloatDiscreteFactor) {
+      return (FloatDiscreteFactor) factor;
+    }
+
+    float[] floatValues = new float[factor.getVariables().getNumDistinctValues()];
+
+    for (int i = 0; i < floatValues.length; i++) {
+      floatValues[i] = (float) factor.getValueAtIndex(i);
+    }
+
+    return new FloatDiscreteFactor(factor.getVariables(), floatValues);
+  }
+}
@@ -0,0 +1,160 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A discrete factor whose table is loaded on first access, e.g. from the file a model was imported from.
+ * The scope is known without loading, such that operations on the model's structure (e.g. determining
+ * an elimination order) and observations of variables outside of the scope do not load the table.
+ *
+ * <p>
+ * The loaded factor is kept and never modified: the in-place operations behave like their regular counterparts.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class LazyDiscreteFactor extends AbstractDiscreteFactor {
+
+  protected TableLoader loader;
+  protected volatile DiscreteFactor factor;
+
+  public LazyDiscreteFactor(Scope variables, TableLoader loader) {
+    super(variables);
+    this.loader = loader;
+  }
+
+  /**
+   * Returns the loaded factor and loads it if necessary. Safe to call from multiple threads,
+   * the table is loaded once.
+   */
+  public DiscreteFactor getFactor() {
+    DiscreteFactor loadedFactor = factor;
+
+    if (loadedFactor == null) {
+      synchronized (this) {
+        loadedFactor = factor;
+        if (loadedFactor == null) {
+          loadedFactor = loader.load(variables);
+          if (!loadedFactor.getVariables().hasSameVariablesAs(variables)) {
+            throw new ModelStructureException("Loaded factor over " + loadedFactor.getVariables()
+                + " does not match scope " + variables);
+          }
+
+          factor = loadedFactor;
+          loader = null;
+        }
+      }
+    }
+
+    return loadedFactor;
+  }
+
+  public boolean isLoaded() {
+    return factor != null;
+  }
+
+  public DiscreteFactor product(DiscreteFactor other) {
+    return getFactor().product(other);
+  }
+
+  public DiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    return getFactor().productInto(other, target == this ? null : target);
+  }
+
+  public DiscreteFactor division(DiscreteFactor other) {
+    return getFactor().division(other);
+  }
+
+  public DiscreteFactor divideInPlace(DiscreteFactor other) {
+    return division(other);
+  }
+
+  public DiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return getFactor().marginal(scope);
+  }
+
+  public DiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    return getFactor().marginalInto(scope, target == this ? null : target);
+  }
+
+  /**
+   * The loaded factor observes the slice in its own representation.
+   */
+  protected DiscreteFactor observeSlice(Scope scope, int[] observedValues) {
+    return getFactor().observation(scope, observedValues);
+  }
+
+  protected DiscreteFactor reduceToSlice(Scope scope, int[] observedValues) {
+    return getFactor().reduce(scope, observedValues);
+  }
+
+  public DiscreteFactor normalize() {
+    return getFactor().normalize();
+  }
+
+  public DiscreteFactor normalizeInPlace() {
+    return normalize();
+  }
+
+  public DiscreteFactor invert() {
+    return getFactor().invert();
+  }
+
+  public double getValueAtIndex(int index) {
+    return getFactor().getValueAtIndex(index);
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return getFactor().getLogValueAtIndex(index);
+  }
+
+  protected TableBasedDiscreteFactor newFactor(Scope scope) {
+    return new TableBasedDiscreteFactor(scope, new double[scope.getNumDistinctValues()]);
+  }
+
+  protected double getStoredValue(int index) {
+    return getFactor().getValueAtIndex(index);
+  }
+
+  protected void setStoredValue(int index, double storedValue) {
+    throw new FactorOperationException("Factor " + this + " is read-only");
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder(super.toString());
+
+    sb.append(", loaded: ");
+    sb.append(isLoaded());
+
+    return sb.toString();
+  }
+
+  /**
+   * Provides the table of a lazy factor.
+   */
+  public static interface TableLoader {
+
+    /**
+     * @return a factor over the given scope
+     */
+    DiscreteFactor load(Scope scope);
+  }
+}
@@ -0,0 +1,255 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A discrete factor that stores the natural logarithms of its values. Products and divisions become
+ * additions and subtractions, such that products of many small values do not underflow. Zero values
+ * are represented by negative infinity.
+ *
+ * <p>
+ * Like {@link TableBasedDiscreteFactor}, factors are immutable, except for the in-place operations.
+ * The results of operations are always log-space factors, regardless of the other operand's representation.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class LogSpaceDiscreteFactor extends AbstractDiscreteFactor {
+
+  protected double[] logValues;
+
+  public LogSpaceDiscreteFactor(Scope variables, double[] logValues) {
+    super(variables);
+    this.logValues = logValues;
+  }
+
+  public LogSpaceDiscreteFactor product(DiscreteFactor other) {
+    return productInto(other, null);
+  }
+
+  public LogSpaceDiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
+
+    LogSpaceDiscreteFactor targetFactor = asTargetFor(target, newVariables, LogSpaceDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new LogSpaceDiscreteFactor(newVariables, new double[newVariables.getNumDistinctValues()]);
+    }
+
+    plan.logProduct(logValues, other, targetFactor.logValues);
+
+    return targetFactor;
+  }
+
+  public LogSpaceDiscreteFactor division(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+
+    double[] newLogValues = Arrays.copyOf(logValues, logValues.length);
+    plan.logDivision(newLogValues, other);
+
+    return new LogSpaceDiscreteFactor(variables, newLogValues);
+  }
+
+  public LogSpaceDiscreteFactor divideInPlace(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+    plan.logDivision(logValues, other);
+
+    return this;
+  }
+
+  public LogSpaceDiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return marginalInto(scope, null);
+  }
+
+  public LogSpaceDiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    if (scope.contains(variables)) {
+      LogSpaceDiscreteFactor targetFactor = asTargetFor(target, variables, LogSpaceDiscreteFactor.class);
+      if (targetFactor == null) {
+        return new LogSpaceDiscreteFactor(variables, Arrays.copyOf(logValues, logValues.length));
+      }
+
+      System.arraycopy(logValues, 0, targetFactor.logValues, 0, logValues.length);
+      return targetFactor;
+    }
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
+
+    LogSpaceDiscreteFactor targetFactor = asTargetFor(target, newScope, LogSpaceDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new LogSpaceDiscreteFactor(newScope, new double[newScope.getNumDistinctValues()]);
+    }
+
+    plan.logMarginal(logValues, targetFactor.logValues);
+
+    return targetFactor;
+  }
+
+  public LogSpaceDiscreteFactor normalize() {
+    double[] newLogValues = Arrays.copyOf(logValues, logValues.length);
+    normalizeLogValues(newLogValues);
+
+    return new LogSpaceDiscreteFactor(variables, newLogValues);
+  }
+
+  public LogSpaceDiscreteFactor normalizeInPlace() {
+    normalizeLogValues(logValues);
+
+    return this;
+  }
+
+  protected void normalizeLogValues(double[] logValuesToNormalize) {
+    double logNormalizationConstant = logSumExp(logValuesToNormalize);
+
+    if (logNormalizationConstant != Double.NEGATIVE_INFINITY) {
+      for (int i = 0; i < logValuesToNormalize.length; i++) {
+        logValuesToNormalize[i] = logValuesToNormalize[i] - logNormalizationConstant;
+      }
+    }
+  }
+
+  /**
+   * Inverts every non-zero value; zero values remain zero like in {@link TableBasedDiscreteFactor#invert()}.
+   */
+  public LogSpaceDiscreteFactor invert() {
+    double[] newLogValues = new double[logValues.length];
+
+    for (int i = 0; i < logValues.length; i++) {
+      if (logValues[i] == Double.NEGATIVE_INFINITY) {
+        newLogValues[i] = Double.NEGATIVE_INFINITY;
+      } else {
+        newLogValues[i] = - logValues[i];
+      }
+    }
+
+    return new LogSpaceDiscreteFactor(variables, newLogValues);
+  }
+
+  public double[] getLogValues() {
+    return logValues;
+  }
+
+  public double getValueAtIndex(int index) {
+    return Math.exp(logValues[index]);
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return logValues[index];
+  }
+
+  /**
+   * Multiplies all factors and sums out the variables that are not part of the given scope in log space,
+   * without materializing the joint table of the factors.
+   *
+   * @param factors at least one factor
+   * @param scope the variables to keep
+   * @param target may be null; must not be one of the factors
+   */
+  public static LogSpaceDiscreteFactor sumProduct(Collection<LogSpaceDiscreteFactor> factors, Scope scope, DiscreteFactor target) {
+    Scope[] inputScopes = new Scope[factors.size()];
+    double[][] inputLogValues = new double[factors.size()][];
+
+    int i = 0;
+    for (LogSpaceDiscreteFactor factor : DiscreteFactorSumProductPlan.inCanonicalOrder(factors)) {
+      inputScopes[i] = factor.variables;
+      inputLogValues[i] = factor.logValues;
+      i++;
+    }
+
+    DiscreteFactorSumProductPlan plan = DiscreteFactorSumProductPlan.forSumProduct(inputScopes, scope);
+    Scope newScope = plan.getResultScope();
+
+    LogSpaceDiscreteFactor targetFactor = asTargetFor(target, newScope, LogSpaceDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new LogSpaceDiscreteFactor(newScope, new double[newScope.getNumDistinctValues()]);
+    }
+
+    plan.logSumProduct(inputLogValues, targetFactor.logValues);
+
+    return targetFactor;
+  }
+
+  /**
+   * The values of the new factor are zero, i.e. its log values are negative infinity.
+   */
+  protected LogSpaceDiscreteFactor newFactor(Scope scope) {
+    double[] newLogValues = new double[scope.getNumDistinctValues()];
+    Arrays.fill(newLogValues, Double.NEGATIVE_INFINITY);
+
+    return new LogSpaceDiscreteFactor(scope, newLogValues);
+  }
+
+  protected double getStoredValue(int index) {
+    return logValues[index];
+  }
+
+  protected void setStoredValue(int index, double storedValue) {
+    logValues[index] = storedValue;
+  }
+
+  /**
+   * The logarithm of the sum of the exponentiated values, computed relative to their maximum
+   */
+  public static double logSumExp(double[] logValues) {
+    double maximum = Double.NEGATIVE_INFINITY;
+    for (double logValue : logValues) {
+      if (logValue > maximum) {
+        maximum = logValue;
+      }
+    }
+
+    if (maximum == Double.NEGATIVE_INFINITY) {
+      return maximum;
+    }
+
+    double scaledSum = 0.0d;
+    for (double logValue : logValues) {
+      scaledSum += Math.exp(logValue - maximum);
+    }
+
+    return maximum + Math.log(scaledSum);
+  }
+
+  public static LogSpaceDiscreteFactor fromValues(Scope variables, double[] values) {
+    double[] logValues = new double[values.length];
+
+    for (int i = 0; i < values.length; i++) {
+      logValues[i] = Math.log(values[i]);
+    }
+
+    return new LogSpaceDiscreteFactor(variables, logValues);
+  }
+
+  public static LogSpaceDiscreteFactor fromFactor(DiscreteFactor factor) {
+    if (factor instanceof LogSpaceDiscreteFactor) {
+      return (LogSpaceDiscreteFactor) factor;
+    }
+
+    double[] logValues = new double[factor.getVariables().getNumDistinctValues()];
+
+    for (int i = 0; i < logValues.length; i++) {
+      logValues[i] = factor.getLogValueAtIndex(i);
+    }
+
+    return new LogSpaceDiscreteFactor(factor.getVariables(), logValues);
+  }
+}
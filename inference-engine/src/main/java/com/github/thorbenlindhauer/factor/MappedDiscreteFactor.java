@@ -0,0 +1,137 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.nio.DoubleBuffer;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A read-only discrete factor whose table is a memory-mapped region of a file, see {@link MappedFactorTables}.
+ * The operating system pages the table in on access and may share it between processes that map the same file.
+ *
+ * <p>
+ * The table is never modified: the results of all operations, including the in-place operations, are
+ * {@link TableBasedDiscreteFactor}s on the heap.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class MappedDiscreteFactor extends AbstractDiscreteFactor {
+
+  protected DoubleBuffer values;
+
+  /**
+   * @param values a read-only buffer with one value per assignment of the variables in canonical order
+   */
+  public MappedDiscreteFactor(Scope variables, DoubleBuffer values) {
+    super(variables);
+
+    if (values.capacity() != variables.getNumDistinctValues()) {
+      throw new ModelStructureException("Table of size " + values.capacity() + " does not match scope " + variables);
+    }
+
+    this.values = values;
+  }
+
+  public TableBasedDiscreteFactor product(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
+
+    double[] newValues = new double[newVariables.getNumDistinctValues()];
+    plan.bufferProduct(values, other, DoubleBuffer.wrap(newValues));
+
+    return new TableBasedDiscreteFactor(newVariables, newValues);
+  }
+
+  public TableBasedDiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    return product(other);
+  }
+
+  public TableBasedDiscreteFactor division(DiscreteFactor other) {
+    return toTableBasedFactor().divideInPlace(other);
+  }
+
+  public TableBasedDiscreteFactor divideInPlace(DiscreteFactor other) {
+    return division(other);
+  }
+
+  public DiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return marginalInto(scope, null);
+  }
+
+  public TableBasedDiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    if (scope.contains(variables)) {
+      return toTableBasedFactor();
+    }
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
+
+    double[] newValues = new double[newScope.getNumDistinctValues()];
+    plan.bufferMarginal(values, DoubleBuffer.wrap(newValues));
+
+    return new TableBasedDiscreteFactor(newScope, newValues);
+  }
+
+  public TableBasedDiscreteFactor normalize() {
+    return toTableBasedFactor().normalizeInPlace();
+  }
+
+  public TableBasedDiscreteFactor normalizeInPlace() {
+    return normalize();
+  }
+
+  public DiscreteFactor invert() {
+    return toTableBasedFactor().invert();
+  }
+
+  public double getValueAtIndex(int index) {
+    return values.get(index);
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return Math.log(values.get(index));
+  }
+
+  /**
+   * Copies the table to the heap.
+   */
+  public TableBasedDiscreteFactor toTableBasedFactor() {
+    double[] heapValues = new double[values.capacity()];
+    values.duplicate().get(heapValues);
+
+    return new TableBasedDiscreteFactor(variables, heapValues);
+  }
+
+  /**
+   * Observations and reductions are copied to the heap.
+   */
+  protected TableBasedDiscreteFactor newFactor(Scope scope) {
+    return new TableBasedDiscreteFactor(scope, new double[scope.getNumDistinctValues()]);
+  }
+
+  protected double getStoredValue(int index) {
+    return values.get(index);
+  }
+
+  protected void setStoredValue(int index, double storedValue) {
+    throw new FactorOperationException("Factor " + this + " is read-only");
+  }
+}
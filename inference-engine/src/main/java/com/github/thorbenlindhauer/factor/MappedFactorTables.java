@@ -0,0 +1,592 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.cluster.Cluster;
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.cluster.Edge;
+import com.github.thorbenlindhauer.exception.ExportException;
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A binary file format for discrete models. The tables are stored in the canonical order of the factors' scopes,
+ * such that they can be memory-mapped instead of being read onto the heap (see {@link MappedDiscreteFactor}),
+ * or copied onto the heap in bulk without parsing or reordering.
+ *
+ * <p>
+ * All numbers are little endian. The file consists of
+ * <ul>
+ *   <li>a header: the magic number, the format version (ints), the offset of the tables (long), the flags,
+ *     the number of variables and the number of factors (ints)</li>
+ *   <li>per variable: the length of its UTF-8 encoded id (int), the id, its cardinality (int)</li>
+ *   <li>per factor: the number of its variables (int), their indices in the variable list (ints),
+ *     the file offset of its table (long)</li>
+ *   <li>if the {@link #CLIQUE_TREE_FLAG} is set, a compiled clique tree: the number of clusters (int), per cluster
+ *     the number and indices of its variables and the number and indices of its factors (ints), then the number
+ *     of edges (int) and per edge the indices of both clusters (ints)</li>
+ *   <li>the tables: doubles in the canonical order of the factors' scopes, each aligned to eight bytes</li>
+ * </ul>
+ * </p>
+ *
+ * @author Thorben
+ */
+public class MappedFactorTables {
+
+  public static final int MAGIC_NUMBER = 0x474D4654;
+  public static final int VERSION = 2;
+
+  public static final int CLIQUE_TREE_FLAG = 1;
+
+  /** set if the model is a bayesian network, see {@link GraphicalModel#isBayesianNetwork()} */
+  public static final int BAYESIAN_NETWORK_FLAG = 2;
+
+  protected static final Charset UTF_8 = Charset.forName("UTF-8");
+  protected static final int HEADER_SIZE = 28;
+  protected static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  public static void write(GraphicalModel<DiscreteFactor> model, File file) {
+    write(model, null, file);
+  }
+
+  /**
+   * @param cliqueTree may be null; its clusters must only contain factors of the model
+   */
+  public static void write(GraphicalModel<DiscreteFactor> model, ClusterGraph<DiscreteFactor> cliqueTree, File file) {
+    OutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(file);
+      write(model, cliqueTree, outputStream);
+    } catch (IOException e) {
+      throw new ExportException("Cannot write factor tables to file " + file, e);
+    } finally {
+      closeQuietly(outputStream);
+    }
+  }
+
+  /**
+   * Writes the model to the stream. The tables are streamed in chunks, such that no serialized copy of the model
+   * is held in memory.
+   *
+   * @param cliqueTree may be null; its clusters must only contain factors of the model
+   */
+  public static void write(GraphicalModel<DiscreteFactor> model, ClusterGraph<DiscreteFactor> cliqueTree, OutputStream outputStream) {
+    List<DiscreteVariable> variables = new ArrayList<DiscreteVariable>(model.getScope().getDiscreteVariables());
+    Map<String, Integer> variableIndices = new HashMap<String, Integer>();
+    for (int i = 0; i < variables.size(); i++) {
+      variableIndices.put(variables.get(i).getId(), i);
+    }
+
+    List<DiscreteFactor> factors = new ArrayList<DiscreteFactor>(model.getFactorView());
+    Map<DiscreteFactor, Integer> factorIndices = new IdentityHashMap<DiscreteFactor, Integer>();
+    for (int i = 0; i < factors.size(); i++) {
+      factorIndices.put(factors.get(i), i);
+    }
+
+    int headerSize = HEADER_SIZE;
+    byte[][] encodedIds = new byte[variables.size()][];
+    for (int i = 0; i < variables.size(); i++) {
+      encodedIds[i] = variables.get(i).getId().getBytes(UTF_8);
+      headerSize += 8 + encodedIds[i].length;
+    }
+
+    for (DiscreteFactor factor : factors) {
+      headerSize += 12 + 4 * factor.getVariables().size();
+    }
+
+    List<Cluster<DiscreteFactor>> clusters = new ArrayList<Cluster<DiscreteFactor>>();
+    int flags = model.isBayesianNetwork() ? BAYESIAN_NETWORK_FLAG : 0;
+    if (cliqueTree != null) {
+      flags |= CLIQUE_TREE_FLAG;
+      clusters.addAll(cliqueTree.getClusters());
+
+      headerSize += 8 + 8 * cliqueTree.getEdges().size();
+      for (Cluster<DiscreteFactor> cluster : clusters) {
+        headerSize += 8 + 4 * cluster.getScope().size() + 4 * cluster.getFactors().size();
+      }
+    }
+
+    long tablesOffset = align(headerSize);
+    ByteBuffer header = ByteBuffer.allocate((int) tablesOffset).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC_NUMBER);
+    header.putInt(VERSION);
+    header.putLong(tablesOffset);
+    header.putInt(flags);
+    header.putInt(variables.size());
+    header.putInt(factors.size());
+
+    for (int i = 0; i < variables.size(); i++) {
+      header.putInt(encodedIds[i].length);
+      header.put(encodedIds[i]);
+      header.putInt(variables.get(i).getCardinality());
+    }
+
+    long tableOffset = tablesOffset;
+    for (DiscreteFactor factor : factors) {
+      putVariableIndices(header, factor.getVariables(), variableIndices);
+      header.putLong(tableOffset);
+      tableOffset += 8L * factor.getVariables().getNumDistinctValues();
+    }
+
+    if (cliqueTree != null) {
+      putCliqueTree(header, cliqueTree, clusters, variableIndices, factorIndices);
+    }
+
+    try {
+      // the remainder of the header is the zero padding of the first table
+      outputStream.write(header.array(), 0, header.capacity());
+
+      ByteBuffer tableBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      for (DiscreteFactor factor : factors) {
+        int numValues = factor.getVariables().getNumDistinctValues();
+
+        for (int i = 0; i < numValues; i++) {
+          if (!tableBuffer.hasRemaining()) {
+            outputStream.write(tableBuffer.array(), 0, tableBuffer.position());
+            tableBuffer.clear();
+          }
+
+          tableBuffer.putDouble(factor.getValueAtIndex(i));
+        }
+      }
+
+      outputStream.write(tableBuffer.array(), 0, tableBuffer.position());
+      outputStream.flush();
+
+    } catch (IOException e) {
+      throw new ExportException("Cannot write factor tables", e);
+    }
+  }
+
+  protected static void putCliqueTree(ByteBuffer header, ClusterGraph<DiscreteFactor> cliqueTree, List<Cluster<DiscreteFactor>> clusters,
+      Map<String, Integer> variableIndices, Map<DiscreteFactor, Integer> factorIndices) {
+    Map<Cluster<DiscreteFactor>, Integer> clusterIndices = new HashMap<Cluster<DiscreteFactor>, Integer>();
+
+    header.putInt(clusters.size());
+    for (Cluster<DiscreteFactor> cluster : clusters) {
+      clusterIndices.put(cluster, clusterIndices.size());
+      putVariableIndices(header, cluster.getScope(), variableIndices);
+
+      header.putInt(cluster.getFactors().size());
+      for (DiscreteFactor factor : cluster.getFactors()) {
+        Integer factorIndex = factorIndices.get(factor);
+        if (factorIndex == null) {
+          throw new ExportException("Factor " + factor + " of cluster " + cluster + " is not part of the model");
+        }
+
+        header.putInt(factorIndex);
+      }
+    }
+
+    header.putInt(cliqueTree.getEdges().size());
+    for (Edge<DiscreteFactor> edge : cliqueTree.getEdges()) {
+      header.putInt(clusterIndices.get(edge.getCluster1()));
+      header.putInt(clusterIndices.get(edge.getCluster2()));
+    }
+  }
+
+  protected static void putVariableIndices(ByteBuffer header, Scope scope, Map<String, Integer> variableIndices) {
+    String[] variableIds = scope.getVariableIds();
+
+    header.putInt(variableIds.length);
+    for (String variableId : variableIds) {
+      header.putInt(variableIndices.get(variableId));
+    }
+  }
+
+  /**
+   * Returns a model whose factors are {@link MappedDiscreteFactor}s. The mappings remain valid after
+   * this method returns and are released once the factors are garbage collected.
+   */
+  public static GraphicalModel<DiscreteFactor> open(File file) {
+    try {
+      return map(file).getGraphicalModel();
+    } catch (IOException e) {
+      throw new ModelStructureException("Cannot read factor tables from file " + file, e);
+    }
+  }
+
+  /**
+   * Maps the tables of the file and builds the model and, if the file contains one, the clique tree on the
+   * mapped factors. The file is closed once the tables are mapped.
+   *
+   * @throws ModelStructureException if the file does not contain a valid header of this format
+   */
+  public static MappedModel map(File file) throws IOException {
+    RandomAccessFile randomAccessFile = null;
+    try {
+      randomAccessFile = new RandomAccessFile(file, "r");
+      Directory directory = readDirectory(new FileInputStream(randomAccessFile.getFD()));
+      List<DiscreteFactor> factors = directory.mapTables(randomAccessFile.getChannel());
+
+      return new MappedModel(directory.buildModel(factors), directory.buildCliqueTree(factors));
+
+    } finally {
+      closeQuietly(randomAccessFile);
+    }
+  }
+
+  /**
+   * Reads the header of a file in this format, i.e. everything but the tables. Afterwards, the stream is
+   * positioned at the first table.
+   *
+   * @throws ModelStructureException if the stream does not begin with a header of this format and version
+   */
+  public static Directory readDirectory(InputStream inputStream) throws IOException {
+    byte[] fixedHeader = new byte[HEADER_SIZE];
+    readFully(inputStream, fixedHeader, 0, HEADER_SIZE);
+
+    ByteBuffer buffer = ByteBuffer.wrap(fixedHeader).order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != MAGIC_NUMBER) {
+      throw new ModelStructureException("Stream does not contain factor tables");
+    }
+
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new ModelStructureException("Unsupported factor table version " + version);
+    }
+
+    long tablesOffset = buffer.getLong();
+    if (tablesOffset < HEADER_SIZE || tablesOffset > Integer.MAX_VALUE) {
+      throw new ModelStructureException("Invalid table offset " + tablesOffset);
+    }
+
+    byte[] header = Arrays.copyOf(fixedHeader, (int) tablesOffset);
+    readFully(inputStream, header, HEADER_SIZE, header.length - HEADER_SIZE);
+    buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(16);
+
+    return new Directory(buffer, tablesOffset);
+  }
+
+  protected static void readFully(InputStream inputStream, byte[] bytes, int offset, int length) throws IOException {
+    int numRead = 0;
+
+    while (numRead < length) {
+      int read = inputStream.read(bytes, offset + numRead, length - numRead);
+      if (read < 0) {
+        throw new EOFException();
+      }
+      numRead += read;
+    }
+  }
+
+  protected static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  protected static void closeQuietly(java.io.Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // the mapped buffers do not depend on the file being open
+      }
+    }
+  }
+
+  /**
+   * The header of a file: the model's variables, the scopes of the factors, the offsets of their tables and the
+   * structure of the clique tree, if one was stored. The factors are referenced by their position in the file.
+   */
+  public static class Directory {
+
+    protected int flags;
+    protected long tablesOffset;
+    protected Scope modelScope;
+    protected Scope[] factorScopes;
+    protected long[] tableOffsets;
+
+    protected Scope[] clusterScopes;
+    protected int[][] clusterFactors;
+    protected int[][] edges;
+
+    /**
+     * @throws ModelStructureException if the header is truncated or references variables, factors or clusters
+     *   that it does not contain
+     */
+    protected Directory(ByteBuffer buffer, long tablesOffset) {
+      this.tablesOffset = tablesOffset;
+      this.flags = readInt(buffer);
+
+      // every variable takes at least eight bytes, every factor at least twelve
+      DiscreteVariable[] variables = new DiscreteVariable[readCount(buffer, 8, "variables")];
+      int numFactors = readInt(buffer);
+
+      Set<String> variableIds = new HashSet<String>();
+      for (int i = 0; i < variables.length; i++) {
+        byte[] encodedId = new byte[readCount(buffer, 1, "id bytes")];
+        buffer.get(encodedId);
+        String variableId = new String(encodedId, UTF_8);
+
+        int cardinality = readInt(buffer);
+        if (cardinality <= 0) {
+          throw new ModelStructureException("Invalid cardinality " + cardinality + " of variable " + variableId);
+        }
+
+        if (!variableIds.add(variableId)) {
+          throw new ModelStructureException("Variable " + variableId + " is declared twice");
+        }
+
+        variables[i] = new DiscreteVariable(variableId, cardinality);
+      }
+
+      if (numFactors < 0 || 12L * numFactors > buffer.remaining()) {
+        throw new ModelStructureException("Invalid number of factors " + numFactors);
+      }
+
+      modelScope = new Scope(Arrays.asList(variables)).intern();
+      factorScopes = new Scope[numFactors];
+      tableOffsets = new long[numFactors];
+
+      for (int i = 0; i < numFactors; i++) {
+        factorScopes[i] = readScope(buffer, variables);
+        tableOffsets[i] = readLong(buffer);
+
+        if (tableOffsets[i] < tablesOffset) {
+          throw new ModelStructureException("Table of factor " + i + " overlaps the header");
+        }
+      }
+
+      if (hasCliqueTree()) {
+        int numClusters = readCount(buffer, 8, "clusters");
+        clusterScopes = new Scope[numClusters];
+        clusterFactors = new int[numClusters][];
+
+        for (int i = 0; i < numClusters; i++) {
+          clusterScopes[i] = readScope(buffer, variables);
+          clusterFactors[i] = new int[readCount(buffer, 4, "cluster factors")];
+          for (int j = 0; j < clusterFactors[i].length; j++) {
+            clusterFactors[i][j] = readIndex(buffer, numFactors, "factor");
+          }
+        }
+
+        edges = new int[readCount(buffer, 8, "edges")][];
+        for (int i = 0; i < edges.length; i++) {
+          edges[i] = new int[] {readIndex(buffer, numClusters, "cluster"), readIndex(buffer, numClusters, "cluster")};
+        }
+      }
+    }
+
+    protected Scope readScope(ByteBuffer buffer, DiscreteVariable[] variables) {
+      String[] variableIds = new String[readCount(buffer, 4, "scope variables")];
+      boolean[] isInScope = new boolean[variables.length];
+
+      for (int i = 0; i < variableIds.length; i++) {
+        int variable = readIndex(buffer, variables.length, "variable");
+        if (isInScope[variable]) {
+          throw new ModelStructureException("Variable " + variables[variable].getId() + " occurs twice in a scope");
+        }
+
+        isInScope[variable] = true;
+        variableIds[i] = variables[variable].getId();
+      }
+
+      return modelScope.subScope(variableIds).intern();
+    }
+
+    /**
+     * Reads a number of elements that take at least the given number of bytes each and that must therefore
+     * fit into the remainder of the header.
+     */
+    protected int readCount(ByteBuffer buffer, int minElementSize, String elements) {
+      int count = readInt(buffer);
+      if (count < 0 || (long) count * minElementSize > buffer.remaining()) {
+        throw new ModelStructureException("Invalid number of " + elements + " " + count);
+      }
+
+      return count;
+    }
+
+    protected int readIndex(ByteBuffer buffer, int numElements, String element) {
+      int index = readInt(buffer);
+      if (index < 0 || index >= numElements) {
+        throw new ModelStructureException("Invalid " + element + " index " + index);
+      }
+
+      return index;
+    }
+
+    protected int readInt(ByteBuffer buffer) {
+      if (buffer.remaining() < 4) {
+        throw new ModelStructureException("Header is truncated");
+      }
+
+      return buffer.getInt();
+    }
+
+    protected long readLong(ByteBuffer buffer) {
+      if (buffer.remaining() < 8) {
+        throw new ModelStructureException("Header is truncated");
+      }
+
+      return buffer.getLong();
+    }
+
+    public Scope getModelScope() {
+      return modelScope;
+    }
+
+    public int getNumFactors() {
+      return factorScopes.length;
+    }
+
+    public Scope getFactorScope(int factor) {
+      return factorScopes[factor];
+    }
+
+    /**
+     * The offset of the factor's table from the beginning of the file
+     */
+    public long getTableOffset(int factor) {
+      return tableOffsets[factor];
+    }
+
+    /**
+     * The offset of the first table from the beginning of the file, i.e. the size of the header
+     */
+    public long getTablesOffset() {
+      return tablesOffset;
+    }
+
+    public boolean isBayesianNetwork() {
+      return (flags & BAYESIAN_NETWORK_FLAG) != 0;
+    }
+
+    public boolean hasCliqueTree() {
+      return (flags & CLIQUE_TREE_FLAG) != 0;
+    }
+
+    /**
+     * Maps the tables region of the file once; every factor reads a slice of that mapping.
+     *
+     * @throws ModelStructureException if a table exceeds the file or the tables region cannot be mapped at once
+     */
+    public List<DiscreteFactor> mapTables(FileChannel channel) throws IOException {
+      List<DiscreteFactor> factors = new ArrayList<DiscreteFactor>(factorScopes.length);
+      long tablesSize = channel.size() - tablesOffset;
+
+      if (tablesSize > Integer.MAX_VALUE) {
+        throw new ModelStructureException("Tables of " + tablesSize + " bytes exceed the size of a single mapping");
+      }
+
+      MappedByteBuffer tables = channel.map(MapMode.READ_ONLY, tablesOffset, Math.max(tablesSize, 0));
+
+      for (int i = 0; i < factorScopes.length; i++) {
+        long tableStart = tableOffsets[i] - tablesOffset;
+        long tableEnd = tableStart + 8L * factorScopes[i].getNumDistinctValues();
+
+        if (tableEnd > tablesSize) {
+          throw new ModelStructureException("Table of factor " + i + " exceeds the file");
+        }
+
+        ByteBuffer table = tables.duplicate();
+        table.limit((int) tableEnd);
+        table.position((int) tableStart);
+        DoubleBuffer tableValues = table.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+        factors.add(new MappedDiscreteFactor(factorScopes[i], tableValues));
+      }
+
+      return factors;
+    }
+
+    /**
+     * @param factors the factors in the order of the file
+     */
+    public GraphicalModel<DiscreteFactor> buildModel(List<DiscreteFactor> factors) {
+      return new GraphicalModel<DiscreteFactor>(modelScope, new HashSet<DiscreteFactor>(factors), isBayesianNetwork());
+    }
+
+    /**
+     * @param factors the factors in the order of the file
+     * @return null if the file does not contain a clique tree
+     */
+    public ClusterGraph<DiscreteFactor> buildCliqueTree(List<DiscreteFactor> factors) {
+      if (!hasCliqueTree()) {
+        return null;
+      }
+
+      ClusterGraph<DiscreteFactor> cliqueTree = new ClusterGraph<DiscreteFactor>(modelScope);
+      List<Cluster<DiscreteFactor>> clusters = new ArrayList<Cluster<DiscreteFactor>>();
+
+      for (int i = 0; i < clusterScopes.length; i++) {
+        Set<DiscreteFactor> factorsOfCluster = new HashSet<DiscreteFactor>();
+        for (int factor : clusterFactors[i]) {
+          factorsOfCluster.add(factors.get(factor));
+        }
+
+        Cluster<DiscreteFactor> cluster = new Cluster<DiscreteFactor>(clusterScopes[i], factorsOfCluster);
+        cliqueTree.addCluster(cluster);
+        clusters.add(cluster);
+      }
+
+      for (int[] edge : edges) {
+        cliqueTree.connect(clusters.get(edge[0]), clusters.get(edge[1]));
+      }
+
+      return cliqueTree;
+    }
+  }
+
+  /**
+   * A model whose tables are mapped, together with its clique tree.
+   */
+  public static class MappedModel {
+
+    protected GraphicalModel<DiscreteFactor> graphicalModel;
+    protected ClusterGraph<DiscreteFactor> cliqueTree;
+
+    public MappedModel(GraphicalModel<DiscreteFactor> graphicalModel, ClusterGraph<DiscreteFactor> cliqueTree) {
+      this.graphicalModel = graphicalModel;
+      this.cliqueTree = cliqueTree;
+    }
+
+    public GraphicalModel<DiscreteFactor> getGraphicalModel() {
+      return graphicalModel;
+    }
+
+    /**
+     * @return null if the file does not contain a clique tree
+     */
+    public ClusterGraph<DiscreteFactor> getCliqueTree() {
+      return cliqueTree;
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.io.Closeable;
+import java.nio.DoubleBuffer;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A discrete factor whose table is stored in a direct buffer outside of the garbage-collected heap, such that
+ * large potentials do not prolong garbage collection pauses. The buffer is acquired from a {@link DirectBufferPool}
+ * and is returned to it when the factor is closed; a closed factor must not be used anymore.
+ *
+ * <p>
+ * Like {@link TableBasedDiscreteFactor}, factors are immutable, except for the in-place operations.
+ * The results of operations are always off-heap factors that share this factor's pool and that have to be
+ * closed by their owner, see {@link FactorUtil#release(Factor)}.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class OffHeapDiscreteFactor extends AbstractDiscreteFactor implements Closeable {
+
+  protected DoubleBuffer values;
+  protected DirectBufferPool pool;
+  protected boolean closed;
+
+  /**
+   * @param values a buffer of the given pool with one value per assignment of the variables
+   */
+  public OffHeapDiscreteFactor(Scope variables, DoubleBuffer values, DirectBufferPool pool) {
+    super(variables);
+    this.values = values;
+    this.pool = pool;
+  }
+
+  public OffHeapDiscreteFactor product(DiscreteFactor other) {
+    return productInto(other, null);
+  }
+
+  public OffHeapDiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    ensureOpen();
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
+
+    OffHeapDiscreteFactor targetFactor = asTargetFor(target, newVariables, OffHeapDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = newFactor(newVariables);
+    }
+
+    plan.bufferProduct(values, other, targetFactor.values);
+
+    return targetFactor;
+  }
+
+  public OffHeapDiscreteFactor division(DiscreteFactor other) {
+    ensureOpen();
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+
+    OffHeapDiscreteFactor quotient = copy();
+    plan.bufferDivision(quotient.values, other);
+
+    return quotient;
+  }
+
+  public OffHeapDiscreteFactor divideInPlace(DiscreteFactor other) {
+    ensureOpen();
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+    plan.bufferDivision(values, other);
+
+    return this;
+  }
+
+  public OffHeapDiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return marginalInto(scope, null);
+  }
+
+  public OffHeapDiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    ensureOpen();
+
+    if (scope.contains(variables)) {
+      OffHeapDiscreteFactor targetFactor = asTargetFor(target, variables, OffHeapDiscreteFactor.class);
+      if (targetFactor == null) {
+        return copy();
+      }
+
+      copyValues(values, targetFactor.values);
+      return targetFactor;
+    }
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
+
+    OffHeapDiscreteFactor targetFactor = asTargetFor(target, newScope, OffHeapDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = newFactor(newScope);
+    } else {
+      for (int i = 0; i < targetFactor.values.capacity(); i++) {
+        targetFactor.values.put(i, 0.0d);
+      }
+    }
+
+    plan.bufferMarginal(values, targetFactor.values);
+
+    return targetFactor;
+  }
+
+  protected DiscreteFactor observeSlice(Scope scope, int[] observedValues) {
+    ensureOpen();
+    return super.observeSlice(scope, observedValues);
+  }
+
+  protected DiscreteFactor reduceToSlice(Scope scope, int[] observedValues) {
+    ensureOpen();
+    return super.reduceToSlice(scope, observedValues);
+  }
+
+  public OffHeapDiscreteFactor normalize() {
+    ensureOpen();
+
+    OffHeapDiscreteFactor result = newFactor(variables);
+    normalizeValues(values, result.values);
+
+    return result;
+  }
+
+  public OffHeapDiscreteFactor normalizeInPlace() {
+    ensureOpen();
+
+    normalizeValues(values, values);
+
+    return this;
+  }
+
+  protected static void normalizeValues(DoubleBuffer values, DoubleBuffer result) {
+    double normalizationConstant = 0.0d;
+    for (int i = 0; i < values.capacity(); i++) {
+      normalizationConstant += values.get(i);
+    }
+
+    for (int i = 0; i < values.capacity(); i++) {
+      double value = values.get(i);
+      if (value != 0) {
+        result.put(i, value / normalizationConstant);
+      }
+    }
+  }
+
+  public OffHeapDiscreteFactor invert() {
+    ensureOpen();
+
+    OffHeapDiscreteFactor result = newFactor(variables);
+
+    for (int i = 0; i < values.capacity(); i++) {
+      double value = values.get(i);
+      if (value != 0) {
+        result.values.put(i, 1.0d / value);
+      }
+    }
+
+    return result;
+  }
+
+  public DoubleBuffer getValues() {
+    ensureOpen();
+    return values;
+  }
+
+  public double getValueAtIndex(int index) {
+    ensureOpen();
+    return values.get(index);
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return Math.log(getValueAtIndex(index));
+  }
+
+  /**
+   * Returns the factor's buffer to its pool. Closing a factor more than once has no effect.
+   */
+  public void close() {
+    if (!closed) {
+      closed = true;
+      pool.release(values);
+      values = null;
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  protected void ensureOpen() {
+    if (closed) {
+      throw new FactorOperationException("Factor " + this + " is closed");
+    }
+  }
+
+  protected OffHeapDiscreteFactor newFactor(Scope scope) {
+    return new OffHeapDiscreteFactor(scope, pool.acquire(scope.getNumDistinctValues()), pool);
+  }
+
+  protected double getStoredValue(int index) {
+    return values.get(index);
+  }
+
+  protected void setStoredValue(int index, double storedValue) {
+    values.put(index, storedValue);
+  }
+
+  protected OffHeapDiscreteFactor copy() {
+    OffHeapDiscreteFactor copy = newFactor(variables);
+    copyValues(values, copy.values);
+    return copy;
+  }
+
+  protected static void copyValues(DoubleBuffer source, DoubleBuffer target) {
+    // absolute bulk copy that does not touch the buffers' positions
+    target.duplicate().put(source.duplicate());
+  }
+
+  /**
+   * A closed factor cannot be the target of an in-place operation.
+   */
+  protected boolean canHold(Scope scope) {
+    return !closed && super.canHold(scope);
+  }
+
+  public static OffHeapDiscreteFactor fromValues(Scope variables, double[] values, DirectBufferPool pool) {
+    DoubleBuffer buffer = pool.acquire(values.length);
+    buffer.duplicate().put(values);
+
+    return new OffHeapDiscreteFactor(variables, buffer, pool);
+  }
+
+  public static OffHeapDiscreteFactor fromFactor(DiscreteFactor factor, DirectBufferPool pool) {
+    if (factor instanceof OffHeapDiscreteFactor) {
+      return (OffHeapDiscreteFactor) factor;
+    }
+
+    DoubleBuffer buffer = pool.acquire(factor.getVariables().getNumDistinctValues());
+
+    for (int i = 0; i < buffer.capacity(); i++) {
+      buffer.put(i, factor.getValueAtIndex(i));
+    }
+
+    return new OffHeapDiscreteFactor(factor.getVariables(), buffer, pool);
+  }
+}
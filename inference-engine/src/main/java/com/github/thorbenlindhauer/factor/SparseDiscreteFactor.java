@@ -0,0 +1,548 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import java.util.Arrays;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.exception.ModelStructureException;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A discrete factor that only stores its non-zero values, suited for deterministic and evidence-reduced
+ * tables. The canonical indices of the non-zero cells are kept in ascending order, such that single
+ * values can be looked up by binary search.
+ *
+ * <p>
+ * Operations only visit the non-zero cells. Their results are sparse factors as long as their density
+ * (the fraction of non-zero cells) is below the density threshold, else they are {@link TableBasedDiscreteFactor}s.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class SparseDiscreteFactor implements DiscreteFactor {
+
+  public static final double DEFAULT_DENSITY_THRESHOLD = 0.1d;
+
+  protected Scope variables;
+  protected int[] indices;
+  protected double[] values;
+  protected double densityThreshold;
+
+  /**
+   * @param indices the indices of the non-zero values in ascending order
+   * @param values the non-zero values
+   */
+  public SparseDiscreteFactor(Scope variables, int[] indices, double[] values, double densityThreshold) {
+    if (variables == null) {
+      throw new ModelStructureException("Variables cannot be null");
+    }
+
+    if (indices.length != values.length) {
+      throw new ModelStructureException("Indices and values do not match");
+    }
+
+    this.variables = variables;
+    this.indices = indices;
+    this.values = values;
+    this.densityThreshold = densityThreshold;
+  }
+
+  public SparseDiscreteFactor(Scope variables, int[] indices, double[] values) {
+    this(variables, indices, values, DEFAULT_DENSITY_THRESHOLD);
+  }
+
+  public DiscreteFactor product(DiscreteFactor other) {
+    Scope newVariables = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables()).getResultScope();
+    int maxEntries = indices.length * (newVariables.getNumDistinctValues() / variables.getNumDistinctValues());
+
+    int[] newIndices;
+    double[] newValues;
+    int numEntries;
+
+    if (other instanceof SparseDiscreteFactor) {
+      SparseDiscreteFactor sparseOther = (SparseDiscreteFactor) other;
+      maxEntries = Math.min(maxEntries,
+          sparseOther.indices.length * (newVariables.getNumDistinctValues() / sparseOther.variables.getNumDistinctValues()));
+
+      newIndices = new int[maxEntries];
+      newValues = new double[maxEntries];
+      numEntries = multiplySparseEntries(sparseOther, newVariables, newIndices, newValues);
+    } else {
+      newIndices = new int[maxEntries];
+      newValues = new double[maxEntries];
+      numEntries = multiplyEntries(other, newVariables, newIndices, newValues);
+    }
+
+    if (numEntries >= densityThreshold * newVariables.getNumDistinctValues()) {
+      double[] table = new double[newVariables.getNumDistinctValues()];
+      for (int i = 0; i < numEntries; i++) {
+        table[newIndices[i]] = newValues[i];
+      }
+
+      return new TableBasedDiscreteFactor(newVariables, table);
+    } else {
+      return sortedFactor(newVariables, newIndices, newValues, numEntries);
+    }
+  }
+
+  /**
+   * Computes the non-zero cells of the product with another sparse factor, in no particular order. Only pairs of
+   * non-zero values that agree on the shared variables are visited: the other factor's values are sorted by their
+   * assignment of the shared variables, such that the matching values of each of this factor's values form a range.
+   *
+   * @return the number of non-zero cells
+   */
+  protected int multiplySparseEntries(SparseDiscreteFactor other, Scope productVariables, int[] productIndices, double[] productValues) {
+    Scope sharedVariables = variables.intersect(other.variables);
+
+    int[] sharedIndices = mapIndices(sharedVariables);
+    int[] productOffsets = mapIndices(productVariables, productVariables);
+
+    // the other factor's variables that this factor does not have determine the rest of the product index
+    int[] otherSharedIndices = other.mapIndices(sharedVariables);
+    int[] otherProductOffsets = other.mapIndices(other.variables.reduceBy(variables), productVariables);
+
+    long[] otherSortKeys = new long[other.indices.length];
+    for (int i = 0; i < otherSortKeys.length; i++) {
+      otherSortKeys[i] = ((long) otherSharedIndices[i] << 32) | i;
+    }
+    Arrays.sort(otherSortKeys);
+
+    int numEntries = 0;
+
+    for (int entry = 0; entry < indices.length; entry++) {
+      long sharedIndex = sharedIndices[entry];
+
+      // the first of the other factor's values with the same shared assignment
+      int position = Arrays.binarySearch(otherSortKeys, sharedIndex << 32);
+      if (position < 0) {
+        position = - position - 1;
+      }
+
+      while (position < otherSortKeys.length && (otherSortKeys[position] >>> 32) == sharedIndex) {
+        int otherEntry = (int) otherSortKeys[position];
+
+        double value = values[entry] * other.values[otherEntry];
+        if (value != 0) {
+          productIndices[numEntries] = productOffsets[entry] + otherProductOffsets[otherEntry];
+          productValues[numEntries] = value;
+          numEntries++;
+        }
+        position++;
+      }
+    }
+
+    return numEntries;
+  }
+
+  /**
+   * Computes the non-zero cells of the product with the other factor, in no particular order.
+   *
+   * @return the number of non-zero cells
+   */
+  protected int multiplyEntries(DiscreteFactor other, Scope productVariables, int[] productIndices, double[] productValues) {
+    int[] cardinalities = variables.getIndexCoder().getCardinalities();
+    int[] strides = variables.getIndexCoder().getStrides();
+
+    int[] productStrides = productVariables.getIndexCoder().getStrides();
+    int[] productCardinalities = productVariables.getIndexCoder().getCardinalities();
+    int[] otherStrides = other.getVariables().getIndexCoder().getStrides();
+    int[] thisMapping = productVariables.createDiscreteVariableMapping(variables);
+    int[] otherMapping = productVariables.createDiscreteVariableMapping(other.getVariables());
+
+    // strides of this factor's variables in the product and in the other factor
+    int[] thisProductStrides = new int[cardinalities.length];
+    int[] thisOtherStrides = new int[cardinalities.length];
+
+    // variables of the other factor that this factor does not have
+    int numExtraVariables = productCardinalities.length - cardinalities.length;
+    int[] extraCardinalities = new int[numExtraVariables];
+    int[] extraProductStrides = new int[numExtraVariables];
+    int[] extraOtherStrides = new int[numExtraVariables];
+
+    int extraPosition = 0;
+    for (int i = 0; i < thisMapping.length; i++) {
+      int otherStride = otherMapping[i] >= 0 ? otherStrides[otherMapping[i]] : 0;
+
+      if (thisMapping[i] >= 0) {
+        thisProductStrides[thisMapping[i]] = productStrides[i];
+        thisOtherStrides[thisMapping[i]] = otherStride;
+      } else {
+        extraCardinalities[extraPosition] = productCardinalities[i];
+        extraProductStrides[extraPosition] = productStrides[i];
+        extraOtherStrides[extraPosition] = otherStride;
+        extraPosition++;
+      }
+    }
+
+    int numEntries = 0;
+    int[] extraAssignment = new int[numExtraVariables];
+
+    for (int entry = 0; entry < indices.length; entry++) {
+      int productIndex = 0;
+      int otherIndex = 0;
+
+      for (int j = 0; j < cardinalities.length; j++) {
+        int assignment = (indices[entry] / strides[j]) % cardinalities[j];
+        productIndex += assignment * thisProductStrides[j];
+        otherIndex += assignment * thisOtherStrides[j];
+      }
+
+      // enumerate all assignments of the extra variables
+      boolean hasNext = true;
+      while (hasNext) {
+        double value = values[entry] * other.getValueAtIndex(otherIndex);
+        if (value != 0) {
+          productIndices[numEntries] = productIndex;
+          productValues[numEntries] = value;
+          numEntries++;
+        }
+
+        hasNext = false;
+        for (int j = 0; j < numExtraVariables; j++) {
+          extraAssignment[j] = extraAssignment[j] + 1;
+          if (extraAssignment[j] == extraCardinalities[j]) {
+            extraAssignment[j] = 0;
+            productIndex -= (extraCardinalities[j] - 1) * extraProductStrides[j];
+            otherIndex -= (extraCardinalities[j] - 1) * extraOtherStrides[j];
+          } else {
+            productIndex += extraProductStrides[j];
+            otherIndex += extraOtherStrides[j];
+            hasNext = true;
+            break;
+          }
+        }
+      }
+    }
+
+    return numEntries;
+  }
+
+  /**
+   * Sparse factors are not modified in place by products, since the number of non-zero values may change.
+   */
+  public DiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    return product(other);
+  }
+
+  public SparseDiscreteFactor division(DiscreteFactor other) {
+    return new SparseDiscreteFactor(variables, indices, divideValues(Arrays.copyOf(values, values.length), other),
+        densityThreshold);
+  }
+
+  public SparseDiscreteFactor divideInPlace(DiscreteFactor other) {
+    divideValues(values, other);
+    return this;
+  }
+
+  protected double[] divideValues(double[] valuesToDivide, DiscreteFactor divisor) {
+    if (!variables.contains(divisor.getVariables())) {
+      throw new FactorOperationException("Divisor scope " + divisor.getVariables() + " is not a subset of" +
+          " this factor's scope " + variables);
+    }
+
+    int[] divisorIndices = mapIndices(divisor.getVariables());
+
+    for (int i = 0; i < valuesToDivide.length; i++) {
+      double divisorValue = divisor.getValueAtIndex(divisorIndices[i]);
+
+      // the values are non-zero by definition
+      if (divisorValue == 0) {
+        throw new FactorOperationException("Invalid division operation for assignment "
+            + Arrays.toString(variables.getIndexCoder().getAssignmentForIndex(indices[i]))
+            + ": " + valuesToDivide[i] + " / " + divisorValue);
+      }
+
+      valuesToDivide[i] = valuesToDivide[i] / divisorValue;
+    }
+
+    return valuesToDivide;
+  }
+
+  public DiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
+
+    return marginalInto(scope, null);
+  }
+
+  public DiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
+    if (scope.contains(variables)) {
+      return new SparseDiscreteFactor(variables, Arrays.copyOf(indices, indices.length),
+          Arrays.copyOf(values, values.length), densityThreshold);
+    }
+
+    Scope newScope = DiscreteFactorOperationPlan.forMarginal(variables, scope).getResultScope();
+    int[] marginalIndices = mapIndices(newScope);
+
+    // marginals are usually small, so they are accumulated in a dense table
+    TableBasedDiscreteFactor targetFactor = AbstractDiscreteFactor.asTargetFor(target, newScope, TableBasedDiscreteFactor.class);
+
+    double[] marginalValues;
+    if (targetFactor != null) {
+      marginalValues = targetFactor.getValues();
+      Arrays.fill(marginalValues, 0.0d);
+    } else {
+      marginalValues = new double[newScope.getNumDistinctValues()];
+    }
+
+    for (int i = 0; i < indices.length; i++) {
+      marginalValues[marginalIndices[i]] += values[i];
+    }
+
+    if (targetFactor != null) {
+      return targetFactor;
+    } else {
+      return fromValues(newScope, marginalValues, densityThreshold);
+    }
+  }
+
+  public SparseDiscreteFactor observation(Scope scope, int[] observedValues) {
+    if (scope.getVariables().size() != observedValues.length) {
+      throw new ModelStructureException("Observed variables and values do not match");
+    }
+
+    if (variables.intersect(scope).isEmpty()) {
+      return this;
+    }
+
+    int[] mapping = variables.createDiscreteVariableMapping(scope);
+    int[] cardinalities = variables.getIndexCoder().getCardinalities();
+    int[] strides = variables.getIndexCoder().getStrides();
+
+    int[] newIndices = new int[indices.length];
+    double[] newValues = new double[values.length];
+    int numEntries = 0;
+
+    for (int i = 0; i < indices.length; i++) {
+      boolean matches = true;
+
+      for (int j = 0; j < mapping.length; j++) {
+        if (mapping[j] >= 0 && observedValues[mapping[j]] != (indices[i] / strides[j]) % cardinalities[j]) {
+          matches = false;
+          break;
+        }
+      }
+
+      if (matches) {
+        newIndices[numEntries] = indices[i];
+        newValues[numEntries] = values[i];
+        numEntries++;
+      }
+    }
+
+    return new SparseDiscreteFactor(variables, Arrays.copyOf(newIndices, numEntries),
+        Arrays.copyOf(newValues, numEntries), densityThreshold);
+  }
+
+  public SparseDiscreteFactor reduce(Scope scope, int[] observedValues) {
+    if (scope.getVariables().size() != observedValues.length) {
+      throw new ModelStructureException("Observed variables and values do not match");
+    }
+
+    if (variables.intersect(scope).isEmpty()) {
+      return this;
+    }
+
+    Scope newScope = DiscreteFactorOperationPlan.forReduction(variables, scope).getResultScope();
+    SparseDiscreteFactor observedFactor = observation(scope, observedValues);
+
+    // the slice's indices remain in ascending order
+    return new SparseDiscreteFactor(newScope, observedFactor.mapIndices(newScope), observedFactor.values, densityThreshold);
+  }
+
+  public SparseDiscreteFactor normalize() {
+    return new SparseDiscreteFactor(variables, indices, normalizeValues(Arrays.copyOf(values, values.length)),
+        densityThreshold);
+  }
+
+  public SparseDiscreteFactor normalizeInPlace() {
+    normalizeValues(values);
+    return this;
+  }
+
+  protected double[] normalizeValues(double[] valuesToNormalize) {
+    double normalizationConstant = 0.0d;
+    for (double value : valuesToNormalize) {
+      normalizationConstant += value;
+    }
+
+    for (int i = 0; i < valuesToNormalize.length; i++) {
+      valuesToNormalize[i] = valuesToNormalize[i] / normalizationConstant;
+    }
+
+    return valuesToNormalize;
+  }
+
+  /**
+   * Inverts every non-zero value; zero values remain zero like in {@link TableBasedDiscreteFactor#invert()}.
+   */
+  public SparseDiscreteFactor invert() {
+    double[] newValues = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      newValues[i] = 1.0d / values[i];
+    }
+
+    return new SparseDiscreteFactor(variables, indices, newValues, densityThreshold);
+  }
+
+  /**
+   * Returns for every non-zero value the index of the corresponding cell in a table over the given sub scope
+   */
+  protected int[] mapIndices(Scope subScope) {
+    return mapIndices(subScope, subScope);
+  }
+
+  /**
+   * Returns for every non-zero value the contribution of the given sub scope's variables to the index of the
+   * corresponding cell in a table over the index scope, which contains the sub scope
+   */
+  protected int[] mapIndices(Scope subScope, Scope indexScope) {
+    int[] cardinalities = variables.getIndexCoder().getCardinalities();
+    int[] strides = variables.getIndexCoder().getStrides();
+    int[] indexStrides = indexScope.getIndexCoder().getStrides();
+    int[] subScopeMapping = variables.createDiscreteVariableMapping(subScope);
+    int[] indexScopeMapping = variables.createDiscreteVariableMapping(indexScope);
+
+    int[] mappedIndices = new int[indices.length];
+
+    for (int i = 0; i < indices.length; i++) {
+      int mappedIndex = 0;
+
+      for (int j = 0; j < subScopeMapping.length; j++) {
+        if (subScopeMapping[j] >= 0) {
+          mappedIndex += ((indices[i] / strides[j]) % cardinalities[j]) * indexStrides[indexScopeMapping[j]];
+        }
+      }
+
+      mappedIndices[i] = mappedIndex;
+    }
+
+    return mappedIndices;
+  }
+
+  protected SparseDiscreteFactor sortedFactor(Scope scope, int[] unsortedIndices, double[] unsortedValues, int numEntries) {
+    // sort positions by index; the position is encoded in the lower bits of the sort key
+    long[] sortKeys = new long[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      sortKeys[i] = ((long) unsortedIndices[i] << 32) | i;
+    }
+    Arrays.sort(sortKeys);
+
+    int[] sortedIndices = new int[numEntries];
+    double[] sortedValues = new double[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      sortedIndices[i] = (int) (sortKeys[i] >>> 32);
+      sortedValues[i] = unsortedValues[(int) sortKeys[i]];
+    }
+
+    return new SparseDiscreteFactor(scope, sortedIndices, sortedValues, densityThreshold);
+  }
+
+  public TableBasedDiscreteFactor toTableBasedFactor() {
+    double[] table = new double[variables.getNumDistinctValues()];
+    for (int i = 0; i < indices.length; i++) {
+      table[indices[i]] = values[i];
+    }
+
+    return new TableBasedDiscreteFactor(variables, table);
+  }
+
+  public Scope getVariables() {
+    return variables;
+  }
+
+  public int[] getIndices() {
+    return indices;
+  }
+
+  public double[] getValues() {
+    return values;
+  }
+
+  public double getDensity() {
+    return (double) indices.length / variables.getNumDistinctValues();
+  }
+
+  public double getValueForAssignment(int[] assignment) {
+    int index = variables.getIndexCoder().getIndexForAssignment(assignment);
+    return getValueAtIndex(index);
+  }
+
+  public double getValueAtIndex(int index) {
+    int position = Arrays.binarySearch(indices, index);
+
+    if (position >= 0) {
+      return values[position];
+    } else {
+      return 0.0d;
+    }
+  }
+
+  public double getLogValueAtIndex(int index) {
+    return Math.log(getValueAtIndex(index));
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("Scope: ");
+    sb.append(variables.toString());
+    sb.append(", non-zero values: ");
+    sb.append(indices.length);
+
+    return sb.toString();
+  }
+
+  /**
+   * Returns a sparse factor if the density of the given table is below the threshold, else a table-based factor.
+   */
+  public static DiscreteFactor fromValues(Scope variables, double[] values, double densityThreshold) {
+    return compact(new TableBasedDiscreteFactor(variables, values), densityThreshold);
+  }
+
+  /**
+   * Returns a sparse factor with the factor's values if the factor's density is below the threshold,
+   * else the factor itself.
+   */
+  public static DiscreteFactor compact(TableBasedDiscreteFactor factor, double densityThreshold) {
+    double[] values = factor.getValues();
+
+    int numEntries = 0;
+    for (double value : values) {
+      if (value != 0) {
+        numEntries++;
+      }
+    }
+
+    if (numEntries >= densityThreshold * values.length) {
+      return factor;
+    }
+
+    int[] indices = new int[numEntries];
+    double[] nonZeroValues = new double[numEntries];
+    int entry = 0;
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != 0) {
+        indices[entry] = i;
+        nonZeroValues[entry] = values[i];
+        entry++;
+      }
+    }
+
+    return new SparseDiscreteFactor(factor.getVariables(), indices, nonZeroValues, densityThreshold);
+  }
+}
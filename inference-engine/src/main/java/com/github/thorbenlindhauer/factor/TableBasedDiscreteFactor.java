@@ -13,250 +13,221 @@
 package com.github.thorbenlindhauer.factor;
 
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
 
-import com.github.thorbenlindhauer.exception.FactorOperationException;
-import com.github.thorbenlindhauer.exception.ModelStructureException;
-import com.github.thorbenlindhauer.variable.IndexCoder;
 import com.github.thorbenlindhauer.variable.Scope;
-import com.github.thorbenlindhauer.variable.Variable;
 
 /**
- * Factors are immutable.
+ * Factors are immutable, except for the in-place operations {@link #productInto(DiscreteFactor, DiscreteFactor)},
+ * {@link #marginalInto(Scope, DiscreteFactor)}, {@link #divideInPlace(DiscreteFactor)} and {@link #normalizeInPlace()}
+ * that overwrite the value table of a factor with a matching scope.
  *
  * @author Thorben
  */
-public class TableBasedDiscreteFactor implements DiscreteFactor {
+public class TableBasedDiscreteFactor extends AbstractDiscreteFactor {
 
-  protected Scope variables;
   protected double[] values;
 
   public TableBasedDiscreteFactor(Scope variables, double[] values) {
-    if (variables == null) {
-      throw new ModelStructureException("Variables cannot be null");
-    }
-
-    this.variables = variables;
+    super(variables);
     this.values = values;
   }
 
 
-  // TODO: think about making this a varargs method
   public TableBasedDiscreteFactor product(DiscreteFactor other) {
-    Set<Variable> newVars = new HashSet<Variable>();
-    newVars.addAll(this.variables.getVariables());
-    newVars.addAll(other.getVariables().getVariables());
+    if (other instanceof SparseDiscreteFactor) {
+      // only the non-zero cells of the sparse factor need to be multiplied
+      return asTableBasedFactor(other.product(this));
+    }
 
-    Scope newVariables = new Scope(newVars);
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
 
     double[] newValues = new double[newVariables.getNumDistinctValues()];
-    IndexCoder indexCoder = newVariables.getIndexCoder();
-    int[] newCardinalities = indexCoder.getCardinalities();
-
-    IndexCoder thisIndexCoder = variables.getIndexCoder();
-    int[] thisVariableMapping = newVariables.createDiscreteVariableMapping(variables);
-    int[] thisStrides = thisIndexCoder.getStrides();
-
-    IndexCoder otherIndexCoder = other.getVariables().getIndexCoder();
-    int[] otherVariableMapping = newVariables.createDiscreteVariableMapping(other.getVariables());
-    int[] otherStrides = otherIndexCoder.getStrides();
-
-    int[] assignment = new int[newVariables.size()];
-    int thisIndex = 0;
-    int otherIndex = 0;
-
-    for (int i = 0; i < newValues.length; i++) {
-      newValues[i] = values[thisIndex] * other.getValueAtIndex(otherIndex);
-
-      for (int j = 0; j < newVariables.size(); j++) {
-        assignment[j] = assignment[j] + 1;
-        if (assignment[j] == newCardinalities[j]) {
-          // TODO: probably expand thisStrides with thisVariablesMapping
-          // before the loops such that the double indexing is not necessary
-          assignment[j] = 0;
-          if (thisVariableMapping[j] >= 0) {
-            thisIndex -= (newCardinalities[j] - 1) * thisStrides[thisVariableMapping[j]];
-          }
-
-          if (otherVariableMapping[j] >= 0) {
-            otherIndex -= (newCardinalities[j] - 1) * otherStrides[otherVariableMapping[j]];
-          }
-        } else {
-          if (thisVariableMapping[j] >= 0) {
-            thisIndex += thisStrides[thisVariableMapping[j]];
-          }
-
-          if (otherVariableMapping[j] >= 0) {
-            otherIndex += otherStrides[otherVariableMapping[j]];
-          }
-
-          break;
-        }
-      }
-    }
-
+    plan.product(values, other, newValues);
 
     TableBasedDiscreteFactor newFactor = new TableBasedDiscreteFactor(newVariables, newValues);
     return newFactor;
   }
 
-  // TODO: good candidate for in-place computation
   public TableBasedDiscreteFactor division(DiscreteFactor other) {
-    if (!variables.contains(other.getVariables().getVariableIds())) {
-      throw new FactorOperationException("Divisor scope " + other.getVariables() + " is not a subset of" +
-          " this factor's scope " + variables);
-    }
-
-    Scope newVariables = variables;
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
 
     double[] newValues = Arrays.copyOf(values, values.length);
+    plan.division(newValues, other);
 
-    int[] assignment = new int[newVariables.size()];
-    int otherIndex = 0;
-
-    IndexCoder indexCoder = newVariables.getIndexCoder();
-    int[] cardinalities = indexCoder.getCardinalities();
+    TableBasedDiscreteFactor newFactor = new TableBasedDiscreteFactor(variables, newValues);
+    return newFactor;
+  }
 
-    IndexCoder otherIndexCoder = other.getVariables().getIndexCoder();
-    int[] otherVariableMapping = newVariables.createDiscreteVariableMapping(other.getVariables());
-    int[] otherStrides = otherIndexCoder.getStrides();
+  public TableBasedDiscreteFactor marginal(Scope scope) {
+    if (scope.contains(variables)) {
+      return this;
+    }
 
-    for (int i = 0; i < newValues.length; i++) {
-      double otherValue = other.getValueAtIndex(otherIndex);
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
 
-      if (otherValue == 0) {
-        if (newValues[i] != 0) {
-          throw new FactorOperationException("Invalid division operation for assignment " + assignment
-              + ": " + newValues[i] + " / " + otherValue);
-        }
-        // no else branch: if newValues[i] == 0, then it is not changed
+    double[] newValues = new double[newScope.getNumDistinctValues()];
+    plan.marginal(values, newValues);
 
-      } else {
-        newValues[i] = newValues[i] / other.getValueAtIndex(otherIndex);
-      }
+    return new TableBasedDiscreteFactor(newScope, newValues);
+  }
 
-      for (int j = 0; j < newVariables.size(); j++) {
-        assignment[j] = assignment[j] + 1;
-        if (assignment[j] == cardinalities[j]) {
-          assignment[j] = 0;
+  public TableBasedDiscreteFactor productInto(DiscreteFactor other, DiscreteFactor target) {
+    if (other instanceof SparseDiscreteFactor) {
+      return product(other);
+    }
 
-          if (otherVariableMapping[j] >= 0) {
-            otherIndex -= (cardinalities[j] - 1) * otherStrides[otherVariableMapping[j]];
-          }
-        } else {
-          if (otherVariableMapping[j] >= 0) {
-            otherIndex += otherStrides[otherVariableMapping[j]];
-          }
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(variables, other.getVariables());
+    Scope newVariables = plan.getResultScope();
 
-          break;
-        }
-      }
+    TableBasedDiscreteFactor targetFactor = asTargetFor(target, newVariables, TableBasedDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new TableBasedDiscreteFactor(newVariables, new double[newVariables.getNumDistinctValues()]);
     }
 
-    TableBasedDiscreteFactor newFactor = new TableBasedDiscreteFactor(newVariables, newValues);
-    return newFactor;
-  }
+    // writing to this factor's or the other factor's table is fine, since every cell is read before it is written
+    plan.product(values, other, targetFactor.values);
 
-  public TableBasedDiscreteFactor marginal(Scope scope) {
-    Scope newScope = variables.intersect(scope);
+    return targetFactor;
+  }
 
+  public TableBasedDiscreteFactor marginalInto(Scope scope, DiscreteFactor target) {
     if (scope.contains(variables)) {
-      return this;
-    }
+      TableBasedDiscreteFactor targetFactor = asTargetFor(target, variables, TableBasedDiscreteFactor.class);
+      if (targetFactor == null) {
+        return new TableBasedDiscreteFactor(variables, Arrays.copyOf(values, values.length));
+      }
 
-    double[] newValues = new double[newScope.getNumDistinctValues()];
-    int newValuesIdx = 0;
-    int[] newStrides = newScope.getIndexCoder().getStrides();
-    int[] mapping = variables.createDiscreteVariableMapping(newScope);
+      System.arraycopy(values, 0, targetFactor.values, 0, values.length);
+      return targetFactor;
+    }
 
-    int[] thisCardinalities = variables.getIndexCoder().getCardinalities();
-    int[] thisAssignment = new int[variables.size()];
-    for (int i = 0; i < values.length; i++) {
-      newValues[newValuesIdx] = newValues[newValuesIdx] + values[i];
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forMarginal(variables, scope);
+    Scope newScope = plan.getResultScope();
 
-      for (int j = 0; j < variables.size(); j++) {
-        thisAssignment[j] = thisAssignment[j] + 1;
-        if (thisAssignment[j] == thisCardinalities[j]) {
-          thisAssignment[j] = 0;
+    TableBasedDiscreteFactor targetFactor = asTargetFor(target, newScope, TableBasedDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new TableBasedDiscreteFactor(newScope, new double[newScope.getNumDistinctValues()]);
+    } else {
+      Arrays.fill(targetFactor.values, 0.0d);
+    }
 
-          if (mapping[j] >= 0) {
-            newValuesIdx -= (thisCardinalities[j] - 1) * newStrides[mapping[j]];
-          }
+    plan.marginal(values, targetFactor.values);
 
-        } else {
-          if (mapping[j] >= 0) {
-            newValuesIdx += newStrides[mapping[j]];
-          }
+    return targetFactor;
+  }
 
-          break;
-        }
+  public TableBasedDiscreteFactor divideInPlace(DiscreteFactor other) {
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forDivision(variables, other.getVariables());
+    plan.division(values, other);
 
-      }
-    }
+    return this;
+  }
 
+  public TableBasedDiscreteFactor normalizeInPlace() {
+    normalizeValues(values, sumValues(), values);
 
-    return new TableBasedDiscreteFactor(newScope, newValues);
+    return this;
   }
 
-  // TODO: consider implementing this as a view on the original factor
-  public TableBasedDiscreteFactor observation(Scope scope, int[] observedValues) {
-    if (scope.getVariables().size() != observedValues.length) {
-      throw new ModelStructureException("Observed variables and values do not match");
+  /**
+   * Multiplies all factors and sums out the variables that are not part of the given scope in a single pass,
+   * without materializing the joint table of the factors.
+   *
+   * @param factors at least one factor
+   * @param scope the variables to keep
+   * @param target may be null; must not be one of the factors
+   */
+  public static TableBasedDiscreteFactor sumProduct(Collection<TableBasedDiscreteFactor> factors, Scope scope, DiscreteFactor target) {
+    Scope[] inputScopes = new Scope[factors.size()];
+    double[][] inputValues = new double[factors.size()][];
+
+    int i = 0;
+    for (TableBasedDiscreteFactor factor : DiscreteFactorSumProductPlan.inCanonicalOrder(factors)) {
+      inputScopes[i] = factor.variables;
+      inputValues[i] = factor.values;
+      i++;
     }
 
-    if (variables.intersect(scope).isEmpty()) {
-      return this;
-    }
+    DiscreteFactorSumProductPlan plan = DiscreteFactorSumProductPlan.forSumProduct(inputScopes, scope);
+    Scope newScope = plan.getResultScope();
 
+    TableBasedDiscreteFactor targetFactor = asTargetFor(target, newScope, TableBasedDiscreteFactor.class);
+    if (targetFactor == null) {
+      targetFactor = new TableBasedDiscreteFactor(newScope, new double[newScope.getNumDistinctValues()]);
+    } else {
+      Arrays.fill(targetFactor.values, 0.0d);
+    }
 
-    double[] newValues = new double[values.length];
-    int[] mapping = variables.createDiscreteVariableMapping(scope);
+    plan.sumProduct(inputValues, targetFactor.values);
 
-    for (int i = 0; i < values.length; i++) {
-      // TODO: improve this, potential for precomputation before the loop
-      boolean matches = true;
+    return targetFactor;
+  }
 
-      for (int j = 0; j < mapping.length; j++) {
+  /**
+   * Like {@link #sumProduct(Collection, Scope, DiscreteFactor)}, but with a plan that was obtained for the scopes
+   * of the factors in advance.
+   *
+   * @param factors the factors in the order of the plan's input scopes
+   */
+  public static TableBasedDiscreteFactor sumProduct(DiscreteFactorSumProductPlan plan, TableBasedDiscreteFactor[] factors) {
+    double[][] inputValues = new double[factors.length][];
+    for (int i = 0; i < factors.length; i++) {
+      inputValues[i] = factors[i].values;
+    }
 
-        if (mapping[j] >= 0) {
-          int assignmentValue = observedValues[mapping[j]];
-          int thisAssignmentValue = variables.getIndexCoder().getAssignmentAtPositionForIndex(i, j);
+    Scope newScope = plan.getResultScope();
+    TableBasedDiscreteFactor result = new TableBasedDiscreteFactor(newScope, new double[newScope.getNumDistinctValues()]);
+    plan.sumProduct(inputValues, result.values);
 
-          if (assignmentValue != thisAssignmentValue) {
-            matches = false;
-            break;
-          }
-        }
-      }
+    return result;
+  }
 
-      if (matches) {
-        newValues[i] = values[i];
-      }
+  protected static TableBasedDiscreteFactor asTableBasedFactor(DiscreteFactor factor) {
+    if (factor instanceof TableBasedDiscreteFactor) {
+      return (TableBasedDiscreteFactor) factor;
+    } else {
+      return ((SparseDiscreteFactor) factor).toTableBasedFactor();
     }
+  }
 
-    TableBasedDiscreteFactor newFactor = new TableBasedDiscreteFactor(variables, newValues);
+  public TableBasedDiscreteFactor observation(Scope scope, int[] observedValues) {
+    return (TableBasedDiscreteFactor) super.observation(scope, observedValues);
+  }
 
-    return newFactor;
+  /**
+   * Only visits the cells of the observed slice. Owned factors with few remaining non-zero cells are stored sparsely
+   * by {@link FactorSet#addOwned(Factor)}.
+   */
+  protected TableBasedDiscreteFactor observeSlice(Scope scope, int[] observedValues) {
+    int[] sliceIndices = sliceIndicesOf(scope, observedValues);
+
+    double[] newValues = new double[values.length];
+    for (int index : sliceIndices) {
+      newValues[index] = values[index];
+    }
+
+    return new TableBasedDiscreteFactor(variables, newValues);
   }
 
-  public Scope getVariables() {
-    return variables;
+  public TableBasedDiscreteFactor reduce(Scope scope, int[] observedValues) {
+    return (TableBasedDiscreteFactor) super.reduce(scope, observedValues);
   }
 
   public double[] getValues() {
     return values;
   }
 
-  public double getValueForAssignment(int[] assignment) {
-    int index = variables.getIndexCoder().getIndexForAssignment(assignment);
-    return getValueAtIndex(index);
-  }
-
   public double getValueAtIndex(int index) {
     return values[index];
   }
 
+  public double getLogValueAtIndex(int index) {
+    return Math.log(values[index]);
+  }
+
   @Override
   public DiscreteFactor invert() {
     return invertValuesBy(1.0d);
@@ -267,13 +238,7 @@ public class TableBasedDiscreteFactor implements DiscreteFactor {
   }
 
   protected double sumValues() {
-    double valueSum = 0.0d;
-
-    for (double value : values) {
-      valueSum += value;
-    }
-
-    return valueSum;
+    return DiscreteFactorKernels.sum(values);
   }
 
   protected TableBasedDiscreteFactor invertValuesBy(double constant) {
@@ -289,22 +254,34 @@ public class TableBasedDiscreteFactor implements DiscreteFactor {
 
   protected TableBasedDiscreteFactor normalizeValuesBy(double normalizationConstant) {
     double[] newValues = new double[values.length];
-    for (int i = 0; i < values.length; i++) {
-      if (values[i] != 0) {
-        newValues[i] = values[i] / normalizationConstant;
-      }
-    }
+    normalizeValues(values, normalizationConstant, newValues);
 
     return new TableBasedDiscreteFactor(variables, newValues);
   }
 
-  public String toString() {
-    StringBuilder sb = new StringBuilder();
+  protected static void normalizeValues(double[] values, double normalizationConstant, double[] result) {
+    if (normalizationConstant != 0) {
+      // zero values remain zero without a branch
+      DiscreteFactorKernels.divide(values, normalizationConstant, result);
+    } else {
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != 0) {
+          result[i] = values[i] / normalizationConstant;
+        }
+      }
+    }
+  }
+
+  protected TableBasedDiscreteFactor newFactor(Scope scope) {
+    return new TableBasedDiscreteFactor(scope, new double[scope.getNumDistinctValues()]);
+  }
 
-    sb.append("Scope: ");
-    sb.append(variables.toString());
+  protected double getStoredValue(int index) {
+    return values[index];
+  }
 
-    return sb.toString();
+  protected void setStoredValue(int index, double storedValue) {
+    values[index] = storedValue;
   }
 
 }
@@ -22,6 +22,8 @@ import java.util.Map;
 import java.util.Set;
 
 import com.github.thorbenlindhauer.factor.Factor;
+import com.github.thorbenlindhauer.network.FactorIndex;
+import com.github.thorbenlindhauer.network.GraphicalModel;
 import com.github.thorbenlindhauer.variable.Scope;
 import com.github.thorbenlindhauer.variable.Variable;
 
@@ -77,6 +79,38 @@ public class FactorGraph<T extends Factor<T>> {
     }
   }
 
+  /**
+   * Returns a moralized factor graph that represents the structure implicitly encoded in the factor scopes.
+   * The nodes' factors are taken from the model's factor index.
+   */
+  public static <T extends Factor<T>> FactorGraph<T> fromGraphicalModel(GraphicalModel<T> graphicalModel) {
+    FactorIndex<T> factorIndex = graphicalModel.getFactorIndex();
+    Map<String, FactorGraphNode<T>> nodes = new HashMap<String, FactorGraphNode<T>>();
+
+    for (String variableId : factorIndex.getVariableIds()) {
+      FactorGraphNode<T> node = new FactorGraphNode<T>(graphicalModel.getScope().getVariable(variableId));
+      for (T factor : factorIndex.getFactors(variableId)) {
+        node.addFactor(factor);
+      }
+
+      nodes.put(variableId, node);
+    }
+
+    FactorGraph<T> factorGraph = new FactorGraph<T>(nodes.values(), Collections.<FactorGraphEdge<T>>emptySet());
+
+    for (T factor : factorIndex.getFactors()) {
+      Set<FactorGraphNode<T>> nodesForFactor = new HashSet<FactorGraphNode<T>>();
+
+      for (String variableId : factor.getVariables().getVariableIds()) {
+        nodesForFactor.add(nodes.get(variableId));
+      }
+
+      factorGraph.connectPairwise(nodesForFactor);
+    }
+
+    return factorGraph;
+  }
+
   /**
    * Returns a moralized factor graph that represents the structure implicitly encoded in the factor scopes
    */
@@ -23,6 +23,7 @@ import com.github.thorbenlindhauer.factor.Factor;
 import com.github.thorbenlindhauer.factorgraph.FactorGraph;
 import com.github.thorbenlindhauer.factorgraph.FactorGraphNode;
 import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
 import com.github.thorbenlindhauer.variable.Variable;
 
 public class MaximumCardinalityCliqueOperation<T extends Factor<T>> implements FactorGraphOperation<Set<Cluster<T>>, T> {
@@ -85,7 +86,7 @@ public class MaximumCardinalityCliqueOperation<T extends Factor<T>> implements F
       variables.add(node.getVariable());
     }
 
-    Scope scope = new Scope(variables);
+    Scope scope = new Scope(variables).intern(scopeCacheOf(currentClique));
 
     Set<T> factors = new HashSet<T>();
 
@@ -112,6 +113,19 @@ public class MaximumCardinalityCliqueOperation<T extends Factor<T>> implements F
     return true;
   }
 
+  /**
+   * Returns the cache of the factors' scopes, such that the clusters' scopes are interned in the cache of the model.
+   */
+  protected ScopeCache scopeCacheOf(Set<FactorGraphNode<T>> nodes) {
+    for (FactorGraphNode<T> node : nodes) {
+      for (T factor : node.getFactors()) {
+        return factor.getVariables().getScopeCache();
+      }
+    }
+
+    return null;
+  }
+
   public static class MarkingContext<T extends Factor<T>> {
     protected Set<FactorGraphNode<T>> markedNodes;
     protected Map<FactorGraphNode<T>, Integer> neighbourMarkings;
@@ -49,11 +49,19 @@ public abstract class AbstractClusterGraphInferencer<T extends Factor<T>> {
   }
 
   protected T getClusterFactorContainingScope(Scope scope) {
+    return getClusterPotentialContainingScope(scope).marginal(scope);
+  }
+
+  /**
+   * Returns the calibrated potential of a cluster whose scope contains the given scope. The potential is owned by the
+   * message passing context and must not be released.
+   */
+  protected T getClusterPotentialContainingScope(Scope scope) {
     ensureMessagesPropagated();
 
     for (Cluster<T> cluster : clusterGraph.getClusters()) {
       if (cluster.getScope().contains(scope)) {
-        return messagePassingContext.getClusterPotential(cluster).marginal(scope);
+        return messagePassingContext.getClusterPotential(cluster);
       }
     }
 
@@ -92,4 +100,11 @@ public abstract class AbstractClusterGraphInferencer<T extends Factor<T>> {
   public void addMessageListener(MessageListener<T> messageListener) {
     this.messagePassingListeners.add(messageListener);
   }
+
+  /**
+   * Releases the storage of the calibrated potentials, e.g. of off-heap factors. The inferencer must not be used afterwards.
+   */
+  public void close() {
+    messagePassingContext.close();
+  }
 }
@@ -12,8 +12,12 @@
 */
 package com.github.thorbenlindhauer.inference;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.github.thorbenlindhauer.cluster.Cluster;
@@ -24,45 +28,230 @@ import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContext;
 import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContextFactory;
 import com.github.thorbenlindhauer.exception.ModelStructureException;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.FactorUtil;
 import com.github.thorbenlindhauer.variable.Scope;
 
-//TODO: think about interface "IncrementalInferencer" that allows to submit observations incrementally
-public class CliqueTreeInferencer implements DiscreteModelInferencer {
+public class CliqueTreeInferencer implements DiscreteModelInferencer, DiscreteMarginalInferencer {
 
   protected ClusterGraph<DiscreteFactor> clusterGraph;
   protected Cluster<DiscreteFactor> rootCluster;
   protected boolean messagesPropagated = false;
+  protected MessagePassingContextFactory messageContextFactory;
   protected MessagePassingContext<DiscreteFactor> messagePassingContext;
 
+  /** for every cluster, the variables whose marginals are computed from its potential */
+  protected Map<Cluster<DiscreteFactor>, List<String>> marginalVariables;
+
+  /** factors that were created for this inferencer's clusters, e.g. restrictions to evidence; released on close */
+  protected List<DiscreteFactor> ownedFactors = new ArrayList<DiscreteFactor>();
+
   public CliqueTreeInferencer(ClusterGraph<DiscreteFactor> clusterGraph, Cluster<DiscreteFactor> rootCluster, MessagePassingContextFactory messageContextFactory) {
     this.clusterGraph = clusterGraph;
     this.rootCluster = rootCluster;
+    this.messageContextFactory = messageContextFactory;
     this.messagePassingContext = messageContextFactory.newMessagePassingContext(clusterGraph);
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment) {
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(projection);
-    return matchingFactor.marginal(projection).normalize().getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(projection);
+    DiscreteFactor marginal = potential.marginal(projection);
+    DiscreteFactor distribution = marginal.normalize();
+
+    try {
+      return distribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, distribution);
+    }
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
     Scope jointScope = projection.union(observedVariables);
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(jointScope);
-    return matchingFactor.normalize().observation(observedVariables, observation).marginal(projection).getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(jointScope);
+    DiscreteFactor marginal = potential.marginal(jointScope);
+    DiscreteFactor distribution = marginal.normalize();
+    DiscreteFactor observedDistribution = FactorUtil.applyObservation(distribution, projection, observedVariables, observation);
+    DiscreteFactor projectedDistribution = observedDistribution.marginal(projection);
+
+    try {
+      return projectedDistribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, distribution, observedDistribution, projectedDistribution);
+    }
   }
 
   public double jointProbabilityConditionedOn(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
     Scope jointScope = projection.union(observedVariables);
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(jointScope);
-    return matchingFactor.observation(observedVariables, observation).marginal(projection).normalize().getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(jointScope);
+    DiscreteFactor marginal = potential.marginal(jointScope);
+    DiscreteFactor observedMarginal = FactorUtil.applyObservation(marginal, projection, observedVariables, observation);
+    DiscreteFactor projectedMarginal = observedMarginal.marginal(projection);
+    DiscreteFactor distribution = projectedMarginal.normalize();
+
+    try {
+      return distribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, observedMarginal, projectedMarginal, distribution);
+    }
+  }
+
+  /**
+   * The returned distribution is owned by the caller, see {@link FactorUtil#release(com.github.thorbenlindhauer.factor.Factor)}.
+   */
+  public DiscreteFactor distribution(Scope scope) {
+    DiscreteFactor potential = getClusterPotentialContainingScope(scope);
+    DiscreteFactor marginal = potential.marginal(scope);
+    DiscreteFactor distribution = marginal.normalize();
+
+    if (marginal != distribution) {
+      FactorUtil.releaseIntermediates(potential, marginal);
+    }
+
+    return distribution;
+  }
+
+  /**
+   * Without evidence, the marginals are taken from this inferencer's calibrated clique tree. Evidence is
+   * applied to a copy of the clique tree that shares the unobserved factors and is calibrated once.
+   */
+  public Map<String, DiscreteFactor> marginals(Scope observedVariables, int[] observation) {
+    if (observedVariables == null || observedVariables.isEmpty()) {
+      return calibratedMarginals();
+    }
+
+    CliqueTreeInferencer evidenceInferencer = withEvidence(observedVariables, observation);
+    try {
+      return evidenceInferencer.calibratedMarginals();
+    } finally {
+      evidenceInferencer.close();
+    }
+  }
+
+  protected Map<String, DiscreteFactor> calibratedMarginals() {
+    Map<String, DiscreteFactor> marginals = new HashMap<String, DiscreteFactor>();
+    for (Map.Entry<Cluster<DiscreteFactor>, List<String>> clusterVariables : getMarginalVariables().entrySet()) {
+      Cluster<DiscreteFactor> cluster = clusterVariables.getKey();
+      DiscreteFactor potential = getClusterPotential(cluster);
+
+      for (String variableId : clusterVariables.getValue()) {
+        DiscreteFactor marginal = potential.marginal(cluster.getScope().subScope(variableId));
+        marginals.put(variableId, marginal.normalize());
+
+        // the unnormalized marginal is not referenced elsewhere, unless it is the potential itself
+        if (marginal != potential) {
+          FactorUtil.release(marginal);
+        }
+      }
+    }
+
+    return marginals;
+  }
+
+  /**
+   * Assigns every variable to the cluster with the smallest table among the clusters that contain it.
+   */
+  protected Map<Cluster<DiscreteFactor>, List<String>> getMarginalVariables() {
+    if (marginalVariables == null) {
+      Map<String, Cluster<DiscreteFactor>> smallestClusters = new HashMap<String, Cluster<DiscreteFactor>>();
+
+      for (Cluster<DiscreteFactor> cluster : clusterGraph.getClusters()) {
+        for (String variableId : cluster.getScope().getVariableIds()) {
+          Cluster<DiscreteFactor> smallestCluster = smallestClusters.get(variableId);
+          if (smallestCluster == null || cluster.getScope().getNumDistinctValues() < smallestCluster.getScope().getNumDistinctValues()) {
+            smallestClusters.put(variableId, cluster);
+          }
+        }
+      }
+
+      Map<Cluster<DiscreteFactor>, List<String>> variablesByCluster = new HashMap<Cluster<DiscreteFactor>, List<String>>();
+      for (Map.Entry<String, Cluster<DiscreteFactor>> smallestCluster : smallestClusters.entrySet()) {
+        List<String> variableIds = variablesByCluster.get(smallestCluster.getValue());
+        if (variableIds == null) {
+          variableIds = new ArrayList<String>();
+          variablesByCluster.put(smallestCluster.getValue(), variableIds);
+        }
+        variableIds.add(smallestCluster.getKey());
+      }
+
+      marginalVariables = variablesByCluster;
+    }
+
+    return marginalVariables;
+  }
+
+  /**
+   * Returns an inferencer on a copy of the clique tree in which the factors of the observed variables are
+   * restricted to the observation. The factors keep their scopes, so that the copy has the same structure.
+   */
+  protected CliqueTreeInferencer withEvidence(Scope observedVariables, int[] observation) {
+    Map<Cluster<DiscreteFactor>, Cluster<DiscreteFactor>> clusterCopies = new HashMap<Cluster<DiscreteFactor>, Cluster<DiscreteFactor>>();
+    ClusterGraph<DiscreteFactor> evidenceGraph = copyCliqueTree(clusterGraph, observedVariables, observation, clusterCopies);
+
+    CliqueTreeInferencer evidenceInferencer = new CliqueTreeInferencer(evidenceGraph, clusterCopies.get(rootCluster), messageContextFactory);
+
+    // the copies have the same scopes, so the variables are assigned to the corresponding clusters
+    Map<Cluster<DiscreteFactor>, List<String>> evidenceMarginalVariables = new HashMap<Cluster<DiscreteFactor>, List<String>>();
+    for (Map.Entry<Cluster<DiscreteFactor>, List<String>> clusterVariables : getMarginalVariables().entrySet()) {
+      evidenceMarginalVariables.put(clusterCopies.get(clusterVariables.getKey()), clusterVariables.getValue());
+    }
+    evidenceInferencer.marginalVariables = evidenceMarginalVariables;
+
+    for (Map.Entry<Cluster<DiscreteFactor>, Cluster<DiscreteFactor>> clusterCopy : clusterCopies.entrySet()) {
+      for (DiscreteFactor factor : clusterCopy.getValue().getFactors()) {
+        if (!clusterCopy.getKey().getFactors().contains(factor)) {
+          evidenceInferencer.ownedFactors.add(factor);
+        }
+      }
+    }
+
+    return evidenceInferencer;
+  }
+
+  /**
+   * Copies the clusters and edges of a clique tree. Each cluster copy has a set of factors of its own that
+   * initially contains the original factors or, for factors over observed variables, their restriction to the observation.
+   *
+   * @param observedVariables may be null
+   * @param clusterCopies receives the copy of every cluster
+   */
+  protected static ClusterGraph<DiscreteFactor> copyCliqueTree(ClusterGraph<DiscreteFactor> cliqueTree, Scope observedVariables,
+      int[] observation, Map<Cluster<DiscreteFactor>, Cluster<DiscreteFactor>> clusterCopies) {
+
+    for (Cluster<DiscreteFactor> cluster : cliqueTree.getClusters()) {
+      Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+
+      for (DiscreteFactor factor : cluster.getFactors()) {
+        Scope observedFactorVariables = observedVariables != null ? observedVariables.intersect(factor.getVariables()) : null;
+
+        if (observedFactorVariables == null || observedFactorVariables.isEmpty()) {
+          factors.add(factor);
+        } else {
+          factors.add(factor.observation(observedFactorVariables, observedVariables.projectAssignment(observation, observedFactorVariables)));
+        }
+      }
+
+      clusterCopies.put(cluster, new Cluster<DiscreteFactor>(cluster.getScope(), factors));
+    }
+
+    ClusterGraph<DiscreteFactor> copy = new ClusterGraph<DiscreteFactor>(new HashSet<Cluster<DiscreteFactor>>(clusterCopies.values()));
+    for (Edge<DiscreteFactor> edge : cliqueTree.getEdges()) {
+      copy.connect(clusterCopies.get(edge.getCluster1()), clusterCopies.get(edge.getCluster2()));
+    }
+
+    return copy;
   }
 
   protected DiscreteFactor getClusterFactorContainingScope(Scope scope) {
-    ensureMessagesPropagated();
+    return getClusterPotentialContainingScope(scope).marginal(scope);
+  }
 
+  /**
+   * Returns the calibrated potential of a cluster whose scope contains the given scope. The potential is owned by the
+   * message passing context and must not be released.
+   */
+  protected DiscreteFactor getClusterPotentialContainingScope(Scope scope) {
     for (Cluster<DiscreteFactor> cluster : clusterGraph.getClusters()) {
       if (cluster.getScope().contains(scope)) {
-        return messagePassingContext.getClusterPotential(cluster).marginal(scope);
+        return getClusterPotential(cluster);
       }
     }
 
@@ -70,6 +259,14 @@ public class CliqueTreeInferencer implements DiscreteModelInferencer {
         + "queries spanning multiple clusters are not yet implemented");
   }
 
+  /**
+   * The calibrated potential of the cluster, i.e. the unnormalized marginal over its scope
+   */
+  protected DiscreteFactor getClusterPotential(Cluster<DiscreteFactor> cluster) {
+    ensureMessagesPropagated();
+    return messagePassingContext.getClusterPotential(cluster);
+  }
+
   protected void ensureMessagesPropagated() {
     if (!messagesPropagated) {
       propagateMessages();
@@ -129,4 +326,16 @@ public class CliqueTreeInferencer implements DiscreteModelInferencer {
     }
   }
 
+
+  /**
+   * Releases the storage of the calibrated potentials, e.g. of off-heap factors. The inferencer must not be used afterwards.
+   */
+  public void close() {
+    messagePassingContext.close();
+
+    for (DiscreteFactor factor : ownedFactors) {
+      FactorUtil.release(factor);
+    }
+    ownedFactors.clear();
+  }
 }
@@ -15,6 +15,7 @@ package com.github.thorbenlindhauer.inference;
 import com.github.thorbenlindhauer.cluster.ClusterGraph;
 import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContextFactory;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.FactorUtil;
 import com.github.thorbenlindhauer.inference.loopy.ClusterGraphCalibrationContextFactory;
 import com.github.thorbenlindhauer.variable.Scope;
 
@@ -32,19 +33,44 @@ public class DiscreteClusterGraphInferencer extends AbstractClusterGraphInferenc
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment) {
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(projection);
-    return matchingFactor.marginal(projection).normalize().getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(projection);
+    DiscreteFactor marginal = potential.marginal(projection);
+    DiscreteFactor distribution = marginal.normalize();
+
+    try {
+      return distribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, distribution);
+    }
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
     Scope jointScope = projection.union(observedVariables);
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(jointScope);
-    return matchingFactor.normalize().observation(observedVariables, observation).marginal(projection).getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(jointScope);
+    DiscreteFactor marginal = potential.marginal(jointScope);
+    DiscreteFactor distribution = marginal.normalize();
+    DiscreteFactor observedDistribution = FactorUtil.applyObservation(distribution, projection, observedVariables, observation);
+    DiscreteFactor projectedDistribution = observedDistribution.marginal(projection);
+
+    try {
+      return projectedDistribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, distribution, observedDistribution, projectedDistribution);
+    }
   }
 
   public double jointProbabilityConditionedOn(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
     Scope jointScope = projection.union(observedVariables);
-    DiscreteFactor matchingFactor = getClusterFactorContainingScope(jointScope);
-    return matchingFactor.observation(observedVariables, observation).marginal(projection).normalize().getValueForAssignment(variableAssignment);
+    DiscreteFactor potential = getClusterPotentialContainingScope(jointScope);
+    DiscreteFactor marginal = potential.marginal(jointScope);
+    DiscreteFactor observedMarginal = FactorUtil.applyObservation(marginal, projection, observedVariables, observation);
+    DiscreteFactor projectedMarginal = observedMarginal.marginal(projection);
+    DiscreteFactor distribution = projectedMarginal.normalize();
+
+    try {
+      return distribution.getValueForAssignment(variableAssignment);
+    } finally {
+      FactorUtil.releaseIntermediates(potential, marginal, observedMarginal, projectedMarginal, distribution);
+    }
   }
 }
@@ -0,0 +1,38 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import java.util.Map;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * An inferencer that answers for whole distributions at once instead of single probabilities.
+ *
+ * @author Thorben
+ */
+public interface DiscreteMarginalInferencer {
+
+  /**
+   * P(X | E = e) for every variable X of the model, keyed by the variables' ids.
+   *
+   * @param observedVariables may be null if there is no evidence
+   */
+  Map<String, DiscreteFactor> marginals(Scope observedVariables, int[] observation);
+
+  /**
+   * P(Y) as a normalized factor over the given scope
+   */
+  DiscreteFactor distribution(Scope scope);
+}
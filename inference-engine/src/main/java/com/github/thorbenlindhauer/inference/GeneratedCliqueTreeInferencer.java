@@ -15,6 +15,7 @@ package com.github.thorbenlindhauer.inference;
 import com.github.thorbenlindhauer.cluster.generation.CliqueTreeGenerator;
 import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContextFactory;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
 import com.github.thorbenlindhauer.network.GraphicalModel;
 
 /**
@@ -30,4 +31,12 @@ public class GeneratedCliqueTreeInferencer extends CliqueTreeInferencer {
     // choose random root cluster
     rootCluster = clusterGraph.getClusters().iterator().next();
   }
+
+  /**
+   * Performs inference on factors with the representation of the given factory, e.g. in log space
+   */
+  public GeneratedCliqueTreeInferencer(GraphicalModel<DiscreteFactor> graphicalModel, CliqueTreeGenerator clusterGraphGenerator,
+      MessagePassingContextFactory messageContextFactory, DiscreteFactorFactory factorFactory) {
+    this(GraphicalModel.convert(graphicalModel, factorFactory), clusterGraphGenerator, messageContextFactory);
+  }
 }
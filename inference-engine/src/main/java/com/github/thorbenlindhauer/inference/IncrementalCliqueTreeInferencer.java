@@ -0,0 +1,299 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.cluster.Cluster;
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.cluster.Edge;
+import com.github.thorbenlindhauer.cluster.generation.CliqueTreeGenerator;
+import com.github.thorbenlindhauer.cluster.messagepassing.Message;
+import com.github.thorbenlindhauer.cluster.messagepassing.MessageListener;
+import com.github.thorbenlindhauer.cluster.messagepassing.SumProductContext;
+import com.github.thorbenlindhauer.cluster.messagepassing.SumProductContextFactory;
+import com.github.thorbenlindhauer.exception.InferenceException;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.FactorUtil;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A clique tree inferencer that applies evidence to the clique tree's factors instead of to the calibrated
+ * potentials, such that evidence can change between queries without calibrating the whole tree again.
+ *
+ * <p>
+ * The observation of a variable restricts a single factor that contains the variable, its <i>evidence factor</i>.
+ * When the evidence factors of a cluster change, every sum-product message that is directed away from the cluster
+ * becomes outdated. These messages are only marked as dirty. A query recomputes the dirty messages into the cluster
+ * that answers it, so that only messages on paths between changed clusters and queried clusters are computed.
+ * </p>
+ *
+ * <p>
+ * The inferencer works on a copy of the given clique tree, so that the tree's clusters are not modified.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class IncrementalCliqueTreeInferencer extends CliqueTreeInferencer implements IncrementalInferencer {
+
+  protected SumProductContext<DiscreteFactor> sumProductContext;
+
+  /** messages whose potential does not reflect the current evidence; all messages that a dirty message flows into are dirty as well */
+  protected Set<Message<DiscreteFactor>> dirtyMessages;
+
+  protected Map<String, Integer> evidence;
+
+  /** for every variable that has been observed, the factor whose restriction carries the observation */
+  protected Map<String, DiscreteFactor> evidenceFactors;
+  protected Map<DiscreteFactor, Cluster<DiscreteFactor>> evidenceFactorClusters;
+
+  /** the restriction of evidence factors to the current evidence as contained by their clusters */
+  protected Map<DiscreteFactor, DiscreteFactor> restrictedFactors;
+
+  public IncrementalCliqueTreeInferencer(ClusterGraph<DiscreteFactor> cliqueTree) {
+    super(copyCliqueTree(cliqueTree, null, null, new HashMap<Cluster<DiscreteFactor>, Cluster<DiscreteFactor>>()),
+        null, new SumProductContextFactory());
+
+    this.rootCluster = clusterGraph.getClusters().iterator().next();
+    this.sumProductContext = (SumProductContext<DiscreteFactor>) messagePassingContext;
+
+    this.dirtyMessages = new HashSet<Message<DiscreteFactor>>();
+    for (Edge<DiscreteFactor> edge : clusterGraph.getEdges()) {
+      dirtyMessages.add(messagePassingContext.getMessage(edge, edge.getCluster1()));
+      dirtyMessages.add(messagePassingContext.getMessage(edge, edge.getCluster2()));
+    }
+
+    this.evidence = new HashMap<String, Integer>();
+    this.evidenceFactors = new HashMap<String, DiscreteFactor>();
+    this.evidenceFactorClusters = new HashMap<DiscreteFactor, Cluster<DiscreteFactor>>();
+    this.restrictedFactors = new HashMap<DiscreteFactor, DiscreteFactor>();
+  }
+
+  public IncrementalCliqueTreeInferencer(GraphicalModel<DiscreteFactor> graphicalModel, CliqueTreeGenerator cliqueTreeGenerator) {
+    this(cliqueTreeGenerator.generateClusterGraph(graphicalModel));
+  }
+
+  public void addEvidence(Scope observedVariables, int[] observation) {
+    if (observedVariables.getVariables().size() != observation.length) {
+      throw new InferenceException("Observed variables and values do not match");
+    }
+
+    Set<DiscreteFactor> changedFactors = new HashSet<DiscreteFactor>();
+    String[] variableIds = observedVariables.getVariableIds();
+
+    for (int i = 0; i < variableIds.length; i++) {
+      Integer previousValue = evidence.put(variableIds[i], observation[i]);
+      if (previousValue == null || previousValue != observation[i]) {
+        changedFactors.add(getEvidenceFactor(variableIds[i]));
+      }
+    }
+
+    updateEvidenceFactors(changedFactors);
+  }
+
+  public void retractEvidence(Scope variables) {
+    Set<DiscreteFactor> changedFactors = new HashSet<DiscreteFactor>();
+
+    for (String variableId : variables.getVariableIds()) {
+      if (evidence.remove(variableId) != null) {
+        changedFactors.add(evidenceFactors.get(variableId));
+      }
+    }
+
+    updateEvidenceFactors(changedFactors);
+  }
+
+  /**
+   * Returns the factor that carries the variable's observation: a factor over the variable in the
+   * smallest cluster that has one.
+   */
+  protected DiscreteFactor getEvidenceFactor(String variableId) {
+    DiscreteFactor evidenceFactor = evidenceFactors.get(variableId);
+
+    if (evidenceFactor == null) {
+      Cluster<DiscreteFactor> evidenceCluster = null;
+
+      for (Cluster<DiscreteFactor> cluster : clusterGraph.getClusters()) {
+        if (evidenceCluster != null && cluster.getScope().getNumDistinctValues() >= evidenceCluster.getScope().getNumDistinctValues()) {
+          continue;
+        }
+
+        for (DiscreteFactor factor : cluster.getFactors()) {
+          if (factor.getVariables().has(variableId)) {
+            evidenceCluster = cluster;
+            evidenceFactor = getOriginalFactor(factor);
+            break;
+          }
+        }
+      }
+
+      if (evidenceFactor == null) {
+        throw new InferenceException("Cannot observe variable " + variableId + ": it is not part of any factor");
+      }
+
+      evidenceFactors.put(variableId, evidenceFactor);
+      evidenceFactorClusters.put(evidenceFactor, evidenceCluster);
+    }
+
+    return evidenceFactor;
+  }
+
+  protected DiscreteFactor getOriginalFactor(DiscreteFactor factor) {
+    for (Map.Entry<DiscreteFactor, DiscreteFactor> restrictedFactor : restrictedFactors.entrySet()) {
+      if (restrictedFactor.getValue() == factor) {
+        return restrictedFactor.getKey();
+      }
+    }
+
+    return factor;
+  }
+
+  /**
+   * Replaces the restrictions of the evidence factors in their clusters and marks the messages that
+   * depend on these clusters as dirty.
+   */
+  protected void updateEvidenceFactors(Set<DiscreteFactor> evidenceFactorsToUpdate) {
+    Set<Cluster<DiscreteFactor>> changedClusters = new HashSet<Cluster<DiscreteFactor>>();
+
+    for (DiscreteFactor evidenceFactor : evidenceFactorsToUpdate) {
+      Cluster<DiscreteFactor> cluster = evidenceFactorClusters.get(evidenceFactor);
+
+      List<String> observedVariableIds = new ArrayList<String>();
+      for (String variableId : evidenceFactor.getVariables().getVariableIds()) {
+        if (evidence.containsKey(variableId) && evidenceFactors.get(variableId) == evidenceFactor) {
+          observedVariableIds.add(variableId);
+        }
+      }
+
+      DiscreteFactor restrictedFactor = evidenceFactor;
+      if (!observedVariableIds.isEmpty()) {
+        Scope observedVariables = evidenceFactor.getVariables().subScope(observedVariableIds);
+        String[] sortedVariableIds = observedVariables.getVariableIds();
+
+        int[] observation = new int[sortedVariableIds.length];
+        for (int i = 0; i < sortedVariableIds.length; i++) {
+          observation[i] = evidence.get(sortedVariableIds[i]);
+        }
+
+        restrictedFactor = evidenceFactor.observation(observedVariables, observation);
+      }
+
+      DiscreteFactor previousFactor = restrictedFactors.remove(evidenceFactor);
+      cluster.getFactors().remove(previousFactor != null ? previousFactor : evidenceFactor);
+      cluster.getFactors().add(restrictedFactor);
+
+      if (restrictedFactor != evidenceFactor) {
+        restrictedFactors.put(evidenceFactor, restrictedFactor);
+      }
+
+      // the previous restriction is only referenced by the cluster
+      if (previousFactor != null) {
+        FactorUtil.release(previousFactor);
+      }
+
+      changedClusters.add(cluster);
+    }
+
+    for (Cluster<DiscreteFactor> cluster : changedClusters) {
+      sumProductContext.invalidatePotential(cluster);
+      markOutgoingMessagesDirty(cluster);
+    }
+  }
+
+  protected void markOutgoingMessagesDirty(Cluster<DiscreteFactor> cluster) {
+    Deque<Message<DiscreteFactor>> pendingMessages = new ArrayDeque<Message<DiscreteFactor>>();
+    for (Edge<DiscreteFactor> edge : cluster.getEdges()) {
+      pendingMessages.push(messagePassingContext.getMessage(edge, cluster));
+    }
+
+    while (!pendingMessages.isEmpty()) {
+      Message<DiscreteFactor> message = pendingMessages.pop();
+
+      // messages that are dirty already have dirty successors
+      if (dirtyMessages.add(message)) {
+        Cluster<DiscreteFactor> targetCluster = message.getTargetCluster();
+
+        for (Edge<DiscreteFactor> outEdge : targetCluster.getOtherEdges(message.getEdge())) {
+          pendingMessages.push(messagePassingContext.getMessage(outEdge, targetCluster));
+        }
+      }
+    }
+  }
+
+  @Override
+  protected DiscreteFactor getClusterPotential(Cluster<DiscreteFactor> cluster) {
+    for (Edge<DiscreteFactor> edge : cluster.getEdges()) {
+      ensureMessageUpdated(messagePassingContext.getMessage(edge, edge.getTarget(cluster)));
+    }
+
+    return messagePassingContext.getClusterPotential(cluster);
+  }
+
+  /**
+   * Recomputes the message if it is dirty, after recomputing the dirty messages it depends on.
+   */
+  protected void ensureMessageUpdated(Message<DiscreteFactor> message) {
+    Deque<Message<DiscreteFactor>> pendingMessages = new ArrayDeque<Message<DiscreteFactor>>();
+    pendingMessages.push(message);
+
+    while (!pendingMessages.isEmpty()) {
+      Message<DiscreteFactor> pendingMessage = pendingMessages.peek();
+      if (!dirtyMessages.contains(pendingMessage)) {
+        pendingMessages.pop();
+        continue;
+      }
+
+      Cluster<DiscreteFactor> sourceCluster = pendingMessage.getSourceCluster();
+      boolean inMessagesUpdated = true;
+
+      for (Edge<DiscreteFactor> inEdge : sourceCluster.getOtherEdges(pendingMessage.getEdge())) {
+        Message<DiscreteFactor> inMessage = messagePassingContext.getMessage(inEdge, inEdge.getTarget(sourceCluster));
+        if (dirtyMessages.contains(inMessage)) {
+          pendingMessages.push(inMessage);
+          inMessagesUpdated = false;
+        }
+      }
+
+      if (inMessagesUpdated) {
+        pendingMessages.pop();
+
+        pendingMessage.update(messagePassingContext);
+        messagePassingContext.notify(MessageListener.UPDATE_EVENT, pendingMessage);
+        dirtyMessages.remove(pendingMessage);
+      }
+    }
+  }
+
+  @Override
+  protected void ensureMessagesPropagated() {
+    // messages are computed on demand
+  }
+
+  @Override
+  public void close() {
+    super.close();
+
+    for (DiscreteFactor restrictedFactor : restrictedFactors.values()) {
+      FactorUtil.release(restrictedFactor);
+    }
+    restrictedFactors.clear();
+  }
+}
@@ -0,0 +1,34 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * An inferencer that keeps evidence between queries. Evidence can be submitted and retracted at any time
+ * and all queries are answered for the model conditioned on the evidence submitted so far.
+ *
+ * @author Thorben
+ */
+public interface IncrementalInferencer {
+
+  /**
+   * Observes the variables' values; values of variables that are already observed are replaced.
+   */
+  void addEvidence(Scope observedVariables, int[] observation);
+
+  /**
+   * Removes the observations of the variables. Variables that are not observed are ignored.
+   */
+  void retractEvidence(Scope variables);
+}
@@ -13,6 +13,7 @@
 package com.github.thorbenlindhauer.inference;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
 import com.github.thorbenlindhauer.factor.FactorUtil;
 import com.github.thorbenlindhauer.network.GraphicalModel;
 import com.github.thorbenlindhauer.variable.Scope;
@@ -31,6 +32,13 @@ public class NaiveInferencer implements DiscreteModelInferencer {
     this.model = model;
   }
 
+  /**
+   * Performs inference on factors with the representation of the given factory, e.g. in log space
+   */
+  public NaiveInferencer(GraphicalModel<DiscreteFactor> model, DiscreteFactorFactory factorFactory) {
+    this(GraphicalModel.convert(model, factorFactory));
+  }
+
   public double jointProbability(Scope projection, int[] variableAssignment) {
     return jointProbability(projection, variableAssignment, null, null);
   }
@@ -50,7 +58,7 @@ public class NaiveInferencer implements DiscreteModelInferencer {
 
     DiscreteFactor currentFactor = jointDistribution;
     if (observation != null && observedVariables != null) {
-      currentFactor = currentFactor.observation(observedVariables, observation);
+      currentFactor = FactorUtil.applyObservation(currentFactor, projection, observedVariables, observation);
     }
 
     DiscreteFactor marginalDistribution = currentFactor.marginal(projection);
@@ -59,7 +67,7 @@ public class NaiveInferencer implements DiscreteModelInferencer {
 
   protected void ensureJointDistributionInitialized() {
     if (jointDistribution == null) {
-      jointDistribution = FactorUtil.jointDistribution(model.getFactors()).normalize();
+      jointDistribution = FactorUtil.jointDistribution(model.getFactorView()).normalize();
     }
   }
 
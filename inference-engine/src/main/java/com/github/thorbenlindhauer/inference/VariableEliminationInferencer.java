@@ -12,16 +12,26 @@
 */
 package com.github.thorbenlindhauer.inference;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.github.thorbenlindhauer.exception.InferenceException;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
-import com.github.thorbenlindhauer.factor.FactorUtil;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
+import com.github.thorbenlindhauer.inference.variableelimination.VariableEliminationPlan;
 import com.github.thorbenlindhauer.inference.variableelimination.VariableEliminationStrategy;
+import com.github.thorbenlindhauer.network.FactorIndex;
 import com.github.thorbenlindhauer.network.GraphicalModel;
 import com.github.thorbenlindhauer.variable.Scope;
 import com.github.thorbenlindhauer.variable.Variable;
@@ -30,16 +40,54 @@ import com.github.thorbenlindhauer.variable.Variable;
  * Implements Variable Elimination (VE), an exact inferencing algorithm that employs
  * the sparse dependency structure of graphical models to reduce complexity.
  *
+ * <p>
+ * Queries are compiled to {@link VariableEliminationPlan}s that are cached by the query's projection scope and
+ * observed variables, such that repeated queries of the same shape only compute factor tables.
+ * </p>
+ *
+ * <p>
+ * Before a query is compiled, the factors that do not influence it are pruned, such that their tables are never
+ * accessed (see {@link com.github.thorbenlindhauer.factor.LazyDiscreteFactor}): factors that are not connected to the
+ * query's variables only contribute a constant and, in bayesian networks, the factors of barren variables,
+ * i.e. of variables that are neither queried nor observed and that are not part of any other remaining factor, sum to one.
+ * </p>
+ *
  * @author Thorben
  */
 public class VariableEliminationInferencer implements DiscreteModelInferencer {
 
+  protected static final int MAX_CACHED_PLANS = 256;
+
   protected GraphicalModel<DiscreteFactor> graphicalModel;
   protected VariableEliminationStrategy variableEliminationStrategy;
 
+  protected Map<PlanKey, VariableEliminationPlan> plans;
+
+  /** the connected components of the model's factors and the normalization constants of the components, built on first use */
+  protected List<Set<DiscreteFactor>> components;
+  protected Map<String, Integer> componentsByVariable;
+  protected double[] componentNormalizationConstants;
+
   public VariableEliminationInferencer(GraphicalModel<DiscreteFactor> graphicalModel, VariableEliminationStrategy variableEliminationStrategy) {
     this.graphicalModel = graphicalModel;
     this.variableEliminationStrategy = variableEliminationStrategy;
+    this.plans = Collections.synchronizedMap(new LinkedHashMap<PlanKey, VariableEliminationPlan>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<PlanKey, VariableEliminationPlan> eldest) {
+        return size() > MAX_CACHED_PLANS;
+      }
+    });
+  }
+
+  /**
+   * Performs inference on factors with the representation of the given factory, e.g. in log space
+   */
+  public VariableEliminationInferencer(GraphicalModel<DiscreteFactor> graphicalModel, VariableEliminationStrategy variableEliminationStrategy,
+      DiscreteFactorFactory factorFactory) {
+    this(GraphicalModel.convert(graphicalModel, factorFactory), variableEliminationStrategy);
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment) {
@@ -47,77 +95,210 @@ public class VariableEliminationInferencer implements DiscreteModelInferencer {
   }
 
   public double jointProbability(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
-    Scope jointDistributionScope = projection;
-    if (observedVariables != null) {
-      jointDistributionScope = jointDistributionScope.union(observedVariables);
+    if (observedVariables == null) {
+      DiscreteFactor jointDistribution = jointProbabilityDistribution(projection, null, null).normalize();
+      return jointDistribution.getValueForAssignment(variableAssignment);
     }
 
-    DiscreteFactor jointDistribution = jointProbabilityDistribution(jointDistributionScope).normalize();
-    if (observedVariables != null) {
-      jointDistribution = jointDistribution.observation(observedVariables, observation);
-    }
-    return jointDistribution.marginal(projection).getValueForAssignment(variableAssignment);
+    // the reduced factors yield the unnormalized measure of Y = y, E = e, without the constant of the pruned factors
+    DiscreteFactor jointDistribution = jointProbabilityDistribution(projection, observedVariables, observation);
+    return jointDistribution.getValueForAssignment(variableAssignment) / getNormalizationConstant(projection.union(observedVariables));
   }
 
   public double jointProbabilityConditionedOn(Scope projection, int[] variableAssignment, Scope observedVariables, int[] observation) {
-    Scope jointDistributionScope = projection;
-    if (observedVariables != null) {
-      jointDistributionScope = jointDistributionScope.union(observedVariables);
+    DiscreteFactor jointDistribution = jointProbabilityDistribution(projection, observedVariables, observation);
+
+    DiscreteFactor normalizedDistribution = jointDistribution.normalize();
+    return normalizedDistribution.getValueForAssignment(variableAssignment);
+  }
+
+  /**
+   * The normalization constant of the factors that are connected to the given variables, i.e. of the factors that
+   * are not pruned from a query over the variables.
+   */
+  protected double getNormalizationConstant(Scope scope) {
+    if (graphicalModel.isBayesianNetwork()) {
+      return 1.0d;
+    }
+
+    double normalizationConstant = 1.0d;
+    for (int component : getComponents(scope)) {
+      normalizationConstant *= getComponentNormalizationConstant(component);
     }
 
-    DiscreteFactor jointDistribution = jointProbabilityDistribution(jointDistributionScope);
+    return normalizationConstant;
+  }
+
+  protected synchronized double getComponentNormalizationConstant(int component) {
+    if (Double.isNaN(componentNormalizationConstants[component])) {
+      Set<DiscreteFactor> componentFactors = components.get(component);
+      GraphicalModel<DiscreteFactor> componentModel = new GraphicalModel<DiscreteFactor>(scopeOf(componentFactors), componentFactors);
 
-    if (observedVariables != null) {
-      jointDistribution = jointDistribution.observation(observedVariables, observation);
+      Scope emptyScope = componentModel.getScope().subScope();
+      componentNormalizationConstants[component] = compilePlan(componentModel, emptyScope, null).execute(null).getValueAtIndex(0);
     }
 
-    DiscreteFactor normalizedDistribution = jointDistribution.normalize();
-    return normalizedDistribution.marginal(projection).getValueForAssignment(variableAssignment);
+    return componentNormalizationConstants[component];
+  }
+
+  /**
+   * Returns the unnormalized distribution over the given scope. Observed variables are sliced
+   * out of the model's factors before elimination, unless they are part of the scope.
+   *
+   * @param observedVariables may be null
+   */
+  protected DiscreteFactor jointProbabilityDistribution(Scope scope, Scope observedVariables, int[] observation) {
+    return getPlan(scope, observedVariables).execute(observation);
   }
 
-  protected DiscreteFactor jointProbabilityDistribution(Scope scope) {
-    // 1. determine a variable elimination order for the new model
-    Scope scopeToEliminate = graphicalModel.getScope().reduceBy(scope);
+  /**
+   * Returns the cached plan for queries of the given shape or compiles it.
+   *
+   * @param observedVariables may be null
+   */
+  protected VariableEliminationPlan getPlan(Scope scope, Scope observedVariables) {
+    PlanKey key = new PlanKey(scope, observedVariables);
+    VariableEliminationPlan plan = plans.get(key);
+
+    if (plan == null) {
+      plan = compilePlan(scope, observedVariables);
+      plans.put(key, plan);
+    }
+
+    return plan;
+  }
+
+  protected VariableEliminationPlan compilePlan(Scope scope, Scope observedVariables) {
+    Scope keptScope = observedVariables != null ? scope.union(observedVariables) : scope;
+
+    if (keptScope.isEmpty()) {
+      // the distribution over no variables is the normalization constant of all factors
+      return compilePlan(graphicalModel, scope, observedVariables);
+    }
+
+    Set<DiscreteFactor> relevantFactors = getRelevantFactors(keptScope);
+    GraphicalModel<DiscreteFactor> relevantModel = new GraphicalModel<DiscreteFactor>(scopeOf(relevantFactors).union(keptScope),
+        relevantFactors, graphicalModel.isBayesianNetwork());
+
+    return compilePlan(relevantModel, scope, observedVariables);
+  }
+
+  protected VariableEliminationPlan compilePlan(GraphicalModel<DiscreteFactor> model, Scope scope, Scope observedVariables) {
+    Scope keptScope = observedVariables != null ? scope.union(observedVariables) : scope;
+
+    Scope scopeToEliminate = model.getScope().reduceBy(keptScope);
     Collection<String> variablesToEliminate = Arrays.asList(scopeToEliminate.getVariableIds());
-    List<String> variableEliminationOrder = variableEliminationStrategy.getEliminationOrder(graphicalModel, variablesToEliminate);
-    validateEliminationOrder(graphicalModel, scope, variableEliminationOrder);
+    List<String> variableEliminationOrder = variableEliminationStrategy.getEliminationOrder(model, variablesToEliminate);
+    validateEliminationOrder(model, keptScope, variableEliminationOrder);
 
-    Set<DiscreteFactor> factors = graphicalModel.getFactors();
+    return new VariableEliminationPlan(model, scope, observedVariables, variableEliminationOrder);
+  }
+
+  /**
+   * Returns the factors of the components that contain variables of the given scope. In bayesian networks,
+   * the factors of barren variables are removed as well.
+   */
+  protected Set<DiscreteFactor> getRelevantFactors(Scope keptScope) {
+    Set<DiscreteFactor> relevantFactors = new HashSet<DiscreteFactor>();
+    for (int component : getComponents(keptScope)) {
+      relevantFactors.addAll(components.get(component));
+    }
+
+    if (!graphicalModel.isBayesianNetwork()) {
+      return relevantFactors;
+    }
 
-    // 2. Eliminate variables according to the order
-    for (String variableToEliminate : variableEliminationOrder) {
-      Set<DiscreteFactor> factorsWithVariable = factorsWithVariableInScope(factors, variableToEliminate);
-      factors.removeAll(factorsWithVariable);
+    FactorIndex<DiscreteFactor> factorIndex = new FactorIndex<DiscreteFactor>(relevantFactors);
+    Deque<String> candidates = new ArrayDeque<String>(factorIndex.getVariableIds());
 
-      DiscreteFactor jointDistribution = FactorUtil.jointDistribution(factorsWithVariable);
-      DiscreteFactor marginalizedDistribution = jointDistribution
-          .marginal(jointDistribution.getVariables().reduceBy(variableToEliminate));
+    while (!candidates.isEmpty()) {
+      String variableId = candidates.pop();
+      Set<DiscreteFactor> factorsOfVariable = factorIndex.getFactors(variableId);
 
-      factors.add(marginalizedDistribution);
+      // the only factor of a variable in a bayesian network is its conditional distribution
+      if (factorsOfVariable.size() == 1 && !keptScope.has(variableId)) {
+        DiscreteFactor barrenFactor = factorsOfVariable.iterator().next();
+        factorIndex.remove(barrenFactor);
+
+        for (String otherVariableId : barrenFactor.getVariables().getVariableIds()) {
+          candidates.push(otherVariableId);
+        }
+      }
     }
 
-    // 3. Create joint distribution from remaining factors
-    return FactorUtil.jointDistribution(factors);
+    return new HashSet<DiscreteFactor>(factorIndex.getFactors());
   }
 
-  // TODO: make this method obsolete by using a more appropriate data structure for factors
-  // that allows efficient lookup by variables
-  protected Set<DiscreteFactor> factorsWithVariableInScope(Set<DiscreteFactor> factors, String variable) {
-    Set<DiscreteFactor> result = new HashSet<DiscreteFactor>();
+  /**
+   * Returns the indices of the components that contain variables of the given scope.
+   */
+  protected synchronized Set<Integer> getComponents(Scope scope) {
+    if (components == null) {
+      buildComponents();
+    }
 
-    for (DiscreteFactor factor : factors) {
-      if (factor.getVariables().has(variable)) {
-        result.add(factor);
+    Set<Integer> scopeComponents = new TreeSet<Integer>();
+    for (String variableId : scope.getVariableIds()) {
+      Integer component = componentsByVariable.get(variableId);
+      if (component != null) {
+        scopeComponents.add(component);
+      }
+    }
+
+    return scopeComponents;
+  }
+
+  protected void buildComponents() {
+    FactorIndex<DiscreteFactor> factorIndex = graphicalModel.getFactorIndex();
+    components = new ArrayList<Set<DiscreteFactor>>();
+    componentsByVariable = new HashMap<String, Integer>();
+
+    for (String variableId : factorIndex.getVariableIds()) {
+      if (componentsByVariable.containsKey(variableId)) {
+        continue;
+      }
+
+      Integer component = components.size();
+      Set<DiscreteFactor> componentFactors = new HashSet<DiscreteFactor>();
+      Deque<String> variablesToVisit = new ArrayDeque<String>();
+      variablesToVisit.push(variableId);
+      componentsByVariable.put(variableId, component);
+
+      while (!variablesToVisit.isEmpty()) {
+        for (DiscreteFactor factor : factorIndex.getFactors(variablesToVisit.pop())) {
+          if (componentFactors.add(factor)) {
+            for (String neighbour : factor.getVariables().getVariableIds()) {
+              if (!componentsByVariable.containsKey(neighbour)) {
+                componentsByVariable.put(neighbour, component);
+                variablesToVisit.push(neighbour);
+              }
+            }
+          }
+        }
       }
+
+      components.add(componentFactors);
     }
 
-    return result;
+    componentNormalizationConstants = new double[components.size()];
+    Arrays.fill(componentNormalizationConstants, Double.NaN);
+  }
+
+  protected Scope scopeOf(Set<DiscreteFactor> factors) {
+    Set<String> variableIds = new HashSet<String>();
+    for (DiscreteFactor factor : factors) {
+      variableIds.addAll(Arrays.asList(factor.getVariables().getVariableIds()));
+    }
+
+    return graphicalModel.getScope().subScope(variableIds);
   }
 
   protected void validateEliminationOrder(GraphicalModel<DiscreteFactor> model, Scope scope, List<String> variableEliminationOrder) {
+    Set<String> variablesToBeEliminated = new HashSet<String>(variableEliminationOrder);
+
     for (Variable modelVariable : model.getScope().getVariables()) {
       boolean isProjectionVariable = scope.has(modelVariable);
-      boolean isVariableToBeEliminated = variableEliminationOrder.contains(modelVariable.getId());
+      boolean isVariableToBeEliminated = variablesToBeEliminated.contains(modelVariable.getId());
 
       if (!isProjectionVariable && !isVariableToBeEliminated) {
         throw new InferenceException("Model variable " + modelVariable.getId() + " is neither in the joint distribution's scope," +
@@ -131,4 +312,37 @@ public class VariableEliminationInferencer implements DiscreteModelInferencer {
     }
   }
 
+  /**
+   * Identifies the shape of a query by the variables of its projection and its observed variables.
+   */
+  protected static class PlanKey {
+
+    protected String[] projectionVariableIds;
+    protected String[] observedVariableIds;
+    protected int hashCode;
+
+    public PlanKey(Scope projection, Scope observedVariables) {
+      this.projectionVariableIds = projection.getVariableIds();
+      this.observedVariableIds = observedVariables != null ? observedVariables.getVariableIds() : null;
+      this.hashCode = 31 * Arrays.hashCode(projectionVariableIds) + Arrays.hashCode(observedVariableIds);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof PlanKey))
+        return false;
+      PlanKey other = (PlanKey) obj;
+      return hashCode == other.hashCode
+          && Arrays.equals(projectionVariableIds, other.projectionVariableIds)
+          && Arrays.equals(observedVariableIds, other.observedVariableIds);
+    }
+  }
+
 }
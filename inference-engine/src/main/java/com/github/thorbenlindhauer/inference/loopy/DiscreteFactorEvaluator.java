@@ -13,6 +13,9 @@
 package com.github.thorbenlindhauer.inference.loopy;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorKernels;
+import com.github.thorbenlindhauer.factor.LogSpaceDiscreteFactor;
+import com.github.thorbenlindhauer.factor.TableBasedDiscreteFactor;
 
 /**
  * @author Thorben
@@ -23,15 +26,58 @@ public class DiscreteFactorEvaluator implements FactorEvaluator<DiscreteFactor>
   protected static final double COMPARISON_PRECISION = 10e-3;
 
   /**
-   * implements js-divergence
+   * implements js-divergence; the values are read once per cell in the representation of the factors,
+   * such that log-space factors require no logarithm and table-based factors no exponential computation
    */
   @Override
   public double quantifyDisagreement(DiscreteFactor factor1, DiscreteFactor factor2) {
+    if (factor1 instanceof LogSpaceDiscreteFactor && factor2 instanceof LogSpaceDiscreteFactor) {
+      return logSpaceDivergence(((LogSpaceDiscreteFactor) factor1).getLogValues(), ((LogSpaceDiscreteFactor) factor2).getLogValues());
+    }
+
+    if (factor1 instanceof TableBasedDiscreteFactor && factor2 instanceof TableBasedDiscreteFactor) {
+      return divergence(((TableBasedDiscreteFactor) factor1).getValues(), ((TableBasedDiscreteFactor) factor2).getValues());
+    }
+
     double divergence = 0.0d;
 
     for (int i = 0; i < factor1.getVariables().getNumDistinctValues(); i++) {
-      divergence += 0.5d * factor1.getValueAtIndex(i) * Math.log(factor1.getValueAtIndex(i) / factor2.getValueAtIndex(i));
-      divergence += 0.5d * factor2.getValueAtIndex(i) * Math.log(factor2.getValueAtIndex(i) / factor1.getValueAtIndex(i));
+      divergence += divergenceTerm(factor1.getValueAtIndex(i), factor2.getValueAtIndex(i));
+    }
+
+    return divergence;
+  }
+
+  protected double divergence(double[] values1, double[] values2) {
+    double divergence = 0.0d;
+
+    for (int i = 0; i < values1.length; i++) {
+      divergence += divergenceTerm(values1[i], values2[i]);
+    }
+
+    return divergence;
+  }
+
+  protected double divergenceTerm(double value1, double value2) {
+    // equal values do not contribute (and would result in NaN for zero values)
+    if (value1 == value2) {
+      return 0.0d;
+    }
+
+    // 0.5 * p1 * log(p1 / p2) + 0.5 * p2 * log(p2 / p1)
+    return 0.5d * (value1 - value2) * Math.log(value1 / value2);
+  }
+
+  protected double logSpaceDivergence(double[] logValues1, double[] logValues2) {
+    double divergence = 0.0d;
+
+    for (int i = 0; i < logValues1.length; i++) {
+      double logValue1 = logValues1[i];
+      double logValue2 = logValues2[i];
+
+      if (logValue1 != logValue2) {
+        divergence += 0.5d * (Math.exp(logValue1) - Math.exp(logValue2)) * (logValue1 - logValue2);
+      }
     }
 
     return divergence;
@@ -39,6 +85,13 @@ public class DiscreteFactorEvaluator implements FactorEvaluator<DiscreteFactor>
 
   @Override
   public boolean equalFactors(DiscreteFactor factor1, DiscreteFactor factor2) {
+    if (factor1 instanceof TableBasedDiscreteFactor && factor2 instanceof TableBasedDiscreteFactor) {
+      double[] values1 = ((TableBasedDiscreteFactor) factor1).getValues();
+      double[] values2 = ((TableBasedDiscreteFactor) factor2).getValues();
+
+      return DiscreteFactorKernels.maxAbsoluteDifference(values1, values2) <= COMPARISON_PRECISION;
+    }
+
     for (int i = 0; i < factor1.getVariables().getNumDistinctValues(); i++) {
       double valueDiff = factor1.getValueAtIndex(i) - factor2.getValueAtIndex(i);
       if (valueDiff > COMPARISON_PRECISION || valueDiff < - COMPARISON_PRECISION) {
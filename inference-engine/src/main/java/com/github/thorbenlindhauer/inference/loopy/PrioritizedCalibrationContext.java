@@ -24,6 +24,7 @@ import com.github.thorbenlindhauer.cluster.messagepassing.Message;
 import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContext;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.factor.Factor;
+import com.github.thorbenlindhauer.factor.FactorUtil;
 
 /**
  * @author Thorben
@@ -60,9 +61,11 @@ public class PrioritizedCalibrationContext<T extends Factor<T>> implements Clust
           edgeCalibration.edge = edge;
           edgeCalibration.messagePassingContext = messagePassingContext;
           edgeCalibrationIndex.put(edge, edgeCalibration);
-        }
 
-        edgeCalibrationQueue.add(edgeCalibration);
+          // every edge must be contained in the queue only once; a stale duplicate
+          // would violate the heap order once the edge's disagreement changes
+          edgeCalibrationQueue.add(edgeCalibration);
+        }
       }
     }
   }
@@ -122,10 +125,20 @@ public class PrioritizedCalibrationContext<T extends Factor<T>> implements Clust
 
     public double quantifyDisagreement() {
       if (invalidCache) {
-        T c1Potential = messagePassingContext.getClusterPotential(edge.getCluster1()).marginal(edge.getScope());
-        T c2Potential = messagePassingContext.getClusterPotential(edge.getCluster2()).marginal(edge.getScope());
+        T c1Potential = messagePassingContext.getClusterPotential(edge.getCluster1());
+        T c2Potential = messagePassingContext.getClusterPotential(edge.getCluster2());
+        T c1Marginal = c1Potential.marginal(edge.getScope());
+        T c2Marginal = c2Potential.marginal(edge.getScope());
+        T c1Normalized = c1Marginal.normalize();
+        T c2Normalized = c2Marginal.normalize();
+
+        cachedDisagreement = factorEvaluator.quantifyDisagreement(c1Normalized, c2Normalized);
 
-        cachedDisagreement = factorEvaluator.quantifyDisagreement(c1Potential.normalize(), c2Potential.normalize());
+        // the marginals are not referenced elsewhere, unless they are the cluster potentials themselves
+        releaseIntermediate(c1Marginal, c1Potential);
+        releaseIntermediate(c2Marginal, c2Potential);
+        releaseIntermediate(c1Normalized, c1Marginal);
+        releaseIntermediate(c2Normalized, c2Marginal);
 
         invalidCache = false;
       }
@@ -133,6 +146,12 @@ public class PrioritizedCalibrationContext<T extends Factor<T>> implements Clust
       return cachedDisagreement;
     }
 
+    protected void releaseIntermediate(T factor, T source) {
+      if (factor != source) {
+        FactorUtil.release(factor);
+      }
+    }
+
     @Override
     public String toString() {
       return "" + cachedDisagreement;
@@ -22,6 +22,7 @@ import com.github.thorbenlindhauer.cluster.Edge;
 import com.github.thorbenlindhauer.cluster.messagepassing.Message;
 import com.github.thorbenlindhauer.cluster.messagepassing.MessagePassingContext;
 import com.github.thorbenlindhauer.factor.Factor;
+import com.github.thorbenlindhauer.factor.FactorUtil;
 
 /**
  * @author Thorben
@@ -81,10 +82,23 @@ public class RoundRobinCalibrationContext<T extends Factor<T>> implements Cluste
   protected boolean isCalibrated(Edge<T> edge) {
     Cluster<T> cluster1 = edge.getCluster1();
     Cluster<T> cluster2 = edge.getCluster2();
-    T cluster1Potential = messagePassingContext.getClusterPotential(cluster1).marginal(edge.getScope());
-    T cluster2Potential = messagePassingContext.getClusterPotential(cluster2).marginal(edge.getScope());
+    T cluster1Potential = messagePassingContext.getClusterPotential(cluster1);
+    T cluster1Marginal = cluster1Potential.marginal(edge.getScope());
+    T cluster2Potential = messagePassingContext.getClusterPotential(cluster2);
+    T cluster2Marginal = cluster2Potential.marginal(edge.getScope());
 
-    return factorEvaluator.equalFactors(cluster1Potential, cluster2Potential);
+    boolean calibrated = factorEvaluator.equalFactors(cluster1Marginal, cluster2Marginal);
+
+    releaseMarginal(cluster1Marginal, cluster1Potential);
+    releaseMarginal(cluster2Marginal, cluster2Potential);
+
+    return calibrated;
+  }
+
+  protected void releaseMarginal(T marginal, T potential) {
+    if (marginal != potential) {
+      FactorUtil.release(marginal);
+    }
   }
 
   @Override
@@ -0,0 +1,144 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.github.thorbenlindhauer.exception.InferenceException;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * Searches for the elimination order with the lowest {@link EliminationCost}, i.e. the smallest total size of the
+ * tables that variable elimination creates. Each greedy heuristic is run once as is and then repeatedly with
+ * random tie-breaking until the time budget is used up. With an executor service, several of these randomized
+ * searches run concurrently.
+ *
+ * @author Thorben
+ */
+public class CostBasedEliminationStrategy implements VariableEliminationStrategy {
+
+  public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+
+  protected List<GreedyEliminationStrategy> heuristics;
+  protected long timeBudgetNanos;
+  protected ExecutorService executorService;
+  protected int parallelism;
+
+  public CostBasedEliminationStrategy() {
+    this(DEFAULT_TIME_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public CostBasedEliminationStrategy(long timeBudget, TimeUnit unit) {
+    this(timeBudget, unit, null, 1);
+  }
+
+  /**
+   * @param executorService runs the randomized searches; may be null to search on the calling thread
+   * @param parallelism the number of randomized searches submitted to the executor service
+   */
+  public CostBasedEliminationStrategy(long timeBudget, TimeUnit unit, ExecutorService executorService, int parallelism) {
+    this.timeBudgetNanos = unit.toNanos(timeBudget);
+    this.executorService = executorService;
+    this.parallelism = parallelism;
+    this.heuristics = Arrays.<GreedyEliminationStrategy>asList(
+        new MinFillEliminationStrategy(),
+        new WeightedMinFillEliminationStrategy(),
+        new MinWeightEliminationStrategy(),
+        new MinDegreeEliminationStrategy());
+  }
+
+  public List<String> getEliminationOrder(GraphicalModel<?> graphicalModel, Collection<String> variablesToEliminate) {
+    return estimate(graphicalModel, variablesToEliminate).getEliminationOrder();
+  }
+
+  /**
+   * @return the cheapest elimination order found within the time budget along with its estimated cost
+   */
+  public EliminationCost estimate(GraphicalModel<?> graphicalModel, Collection<String> variablesToEliminate) {
+    final long deadline = System.nanoTime() + timeBudgetNanos;
+    final EliminationGraph graph = new EliminationGraph(graphicalModel);
+    final BitSet candidates = graph.getIndices(variablesToEliminate);
+
+    // the plain heuristics always take part, so the result is never worse than any of them
+    EliminationCost bestCost = null;
+    for (GreedyEliminationStrategy heuristic : heuristics) {
+      bestCost = cheaper(bestCost, heuristic.eliminate(new EliminationGraph(graph), candidates, null));
+    }
+
+    if (executorService == null) {
+      return cheaper(bestCost, search(graph, candidates, deadline, new Random()));
+    }
+
+    List<Future<EliminationCost>> searches = new ArrayList<Future<EliminationCost>>();
+    for (int i = 0; i < parallelism; i++) {
+      searches.add(executorService.submit(new Callable<EliminationCost>() {
+        public EliminationCost call() {
+          return search(graph, candidates, deadline, new Random());
+        }
+      }));
+    }
+
+    for (Future<EliminationCost> search : searches) {
+      bestCost = cheaper(bestCost, await(search));
+    }
+
+    return bestCost;
+  }
+
+  /**
+   * Runs the heuristics in turn with random tie-breaking until the deadline has passed.
+   *
+   * @return the cheapest elimination found or null if the deadline has passed before any search
+   */
+  protected EliminationCost search(EliminationGraph graph, BitSet candidates, long deadline, Random random) {
+    EliminationCost bestCost = null;
+
+    for (int run = 0; System.nanoTime() - deadline < 0; run++) {
+      GreedyEliminationStrategy heuristic = heuristics.get(run % heuristics.size());
+      bestCost = cheaper(bestCost, heuristic.eliminate(new EliminationGraph(graph), candidates, random));
+    }
+
+    return bestCost;
+  }
+
+  protected EliminationCost cheaper(EliminationCost cost, EliminationCost otherCost) {
+    if (cost == null) {
+      return otherCost;
+    } else if (otherCost == null) {
+      return cost;
+    } else {
+      return otherCost.compareTo(cost) < 0 ? otherCost : cost;
+    }
+  }
+
+  protected EliminationCost await(Future<EliminationCost> search) {
+    try {
+      return search.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InferenceException("Interrupted while searching for an elimination order", e);
+    } catch (ExecutionException e) {
+      throw new InferenceException("Could not search for an elimination order", e.getCause());
+    }
+  }
+}
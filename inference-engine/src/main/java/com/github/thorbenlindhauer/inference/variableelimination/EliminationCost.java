@@ -0,0 +1,106 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * An elimination order along with an estimate of the cost of variable elimination in that order. Eliminating a
+ * variable creates a table over the variable and its current neighbours (its clique) before summing the variable
+ * out, so the cost is measured by the sizes of these tables.
+ *
+ * @author Thorben
+ */
+public class EliminationCost implements Comparable<EliminationCost> {
+
+  protected List<String> eliminationOrder;
+  protected double totalTableSize;
+  protected double maxCliqueSize;
+  protected double flops;
+
+  public EliminationCost() {
+    this.eliminationOrder = new ArrayList<String>();
+  }
+
+  /**
+   * Estimates the cost of eliminating the variables in the given order.
+   */
+  public static EliminationCost of(GraphicalModel<?> graphicalModel, List<String> eliminationOrder) {
+    EliminationGraph graph = new EliminationGraph(graphicalModel);
+    EliminationCost cost = new EliminationCost();
+
+    for (String variableId : eliminationOrder) {
+      int variable = graph.getIndex(variableId);
+      cost.add(graph, variable);
+      graph.eliminate(variable);
+    }
+
+    return cost;
+  }
+
+  /**
+   * Accounts for eliminating the variable next; has to be called before the graph eliminates it.
+   */
+  public void add(EliminationGraph graph, int variable) {
+    double cliqueSize = graph.getCliqueSize(variable);
+
+    eliminationOrder.add(graph.getVariableId(variable));
+    totalTableSize += cliqueSize;
+    maxCliqueSize = Math.max(maxCliqueSize, cliqueSize);
+
+    // at least one multiplication when building the clique table and one addition when summing out per entry
+    flops += 2 * cliqueSize;
+  }
+
+  public List<String> getEliminationOrder() {
+    return eliminationOrder;
+  }
+
+  /**
+   * The sum of the sizes of all clique tables.
+   */
+  public double getTotalTableSize() {
+    return totalTableSize;
+  }
+
+  /**
+   * The size of the largest clique table.
+   */
+  public double getMaxCliqueSize() {
+    return maxCliqueSize;
+  }
+
+  /**
+   * An estimate of the floating point operations needed for the elimination.
+   */
+  public double getFlops() {
+    return flops;
+  }
+
+  public int compareTo(EliminationCost other) {
+    if (totalTableSize != other.totalTableSize) {
+      return totalTableSize < other.totalTableSize ? -1 : 1;
+    } else if (maxCliqueSize != other.maxCliqueSize) {
+      return maxCliqueSize < other.maxCliqueSize ? -1 : 1;
+    } else {
+      return 0;
+    }
+  }
+
+  public String toString() {
+    return "EliminationCost[totalTableSize=" + totalTableSize + ", maxCliqueSize=" + maxCliqueSize + ", flops=" + flops + "]";
+  }
+}
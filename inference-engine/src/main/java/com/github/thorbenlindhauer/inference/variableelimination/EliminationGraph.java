@@ -0,0 +1,321 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.thorbenlindhauer.exception.InferenceException;
+import com.github.thorbenlindhauer.factor.Factor;
+import com.github.thorbenlindhauer.network.FactorIndex;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Variable;
+
+/**
+ * The interaction graph of a model's variables during variable elimination: two variables are connected
+ * if they share a factor or if eliminating a common neighbour connected them. Variables are identified
+ * by their index in the model's scope and neighbourhoods are bit sets, such that the scores of elimination
+ * heuristics are computed without allocation.
+ *
+ * <p>
+ * If fill is tracked (see {@link #trackFill(boolean)}), eliminating a variable updates the fill of the variables
+ * it changes instead of the fill being recomputed: these are the variable's neighbours and the common neighbours
+ * of any two variables that get connected.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class EliminationGraph {
+
+  protected String[] variableIds;
+  protected Map<String, Integer> variableIndices;
+  protected int[] cardinalities;
+
+  protected BitSet[] neighbours;
+  protected BitSet eliminated;
+
+  protected long[] fill;
+  protected boolean weightedFill;
+  protected BitSet affectedVariables;
+
+  protected BitSet buffer = new BitSet();
+
+  public EliminationGraph(GraphicalModel<?> graphicalModel) {
+    variableIds = graphicalModel.getScope().getVariableIds();
+    variableIndices = new HashMap<String, Integer>();
+    cardinalities = new int[variableIds.length];
+    neighbours = new BitSet[variableIds.length];
+    eliminated = new BitSet(variableIds.length);
+    affectedVariables = new BitSet(variableIds.length);
+
+    for (int i = 0; i < variableIds.length; i++) {
+      variableIndices.put(variableIds[i], i);
+
+      Variable variable = graphicalModel.getScope().getVariable(variableIds[i]);
+      cardinalities[i] = variable instanceof DiscreteVariable ? ((DiscreteVariable) variable).getCardinality() : 1;
+    }
+
+    FactorIndex<?> factorIndex = graphicalModel.getFactorIndex();
+    for (int i = 0; i < variableIds.length; i++) {
+      neighbours[i] = new BitSet(variableIds.length);
+
+      for (Factor<?> factor : factorIndex.getFactors(variableIds[i])) {
+        for (String neighbour : factor.getVariables().getVariableIds()) {
+          neighbours[i].set(variableIndices.get(neighbour));
+        }
+      }
+
+      neighbours[i].clear(i);
+    }
+  }
+
+  /**
+   * Creates a copy that can be eliminated independently of the other graph.
+   */
+  public EliminationGraph(EliminationGraph other) {
+    variableIds = other.variableIds;
+    variableIndices = other.variableIndices;
+    cardinalities = other.cardinalities;
+    neighbours = new BitSet[other.neighbours.length];
+    eliminated = (BitSet) other.eliminated.clone();
+    affectedVariables = new BitSet(variableIds.length);
+    fill = other.fill != null ? other.fill.clone() : null;
+    weightedFill = other.weightedFill;
+
+    for (int i = 0; i < neighbours.length; i++) {
+      neighbours[i] = (BitSet) other.neighbours[i].clone();
+    }
+  }
+
+  /**
+   * Maintains the fill of all variables from now on, such that {@link #getFill(int)} or
+   * {@link #getWeightedFill(int)} (depending on <code>weighted</code>) do not have to compute it.
+   */
+  public void trackFill(boolean weighted) {
+    long[] initialFill = new long[variableIds.length];
+    fill = null;
+    weightedFill = weighted;
+
+    for (int i = 0; i < variableIds.length; i++) {
+      if (!eliminated.get(i)) {
+        initialFill[i] = weighted ? getWeightedFill(i) : getFill(i);
+      }
+    }
+
+    fill = initialFill;
+  }
+
+  public int getNumVariables() {
+    return variableIds.length;
+  }
+
+  public int getIndex(String variableId) {
+    Integer index = variableIndices.get(variableId);
+    if (index == null) {
+      throw new InferenceException("Variable " + variableId + " is not part of the model");
+    }
+
+    return index;
+  }
+
+  public BitSet getIndices(Collection<String> variableIds) {
+    BitSet indices = new BitSet(this.variableIds.length);
+    for (String variableId : variableIds) {
+      indices.set(getIndex(variableId));
+    }
+
+    return indices;
+  }
+
+  public String getVariableId(int variable) {
+    return variableIds[variable];
+  }
+
+  public int getCardinality(int variable) {
+    return cardinalities[variable];
+  }
+
+  /**
+   * The neighbours that are not eliminated yet. The returned set must not be modified.
+   */
+  public BitSet getNeighbours(int variable) {
+    return neighbours[variable];
+  }
+
+  public int getDegree(int variable) {
+    return neighbours[variable].cardinality();
+  }
+
+  public boolean isEliminated(int variable) {
+    return eliminated.get(variable);
+  }
+
+  /**
+   * The number of edges that eliminating the variable adds between its neighbours.
+   */
+  public long getFill(int variable) {
+    if (fill != null && !weightedFill) {
+      return fill[variable];
+    }
+
+    BitSet variableNeighbours = neighbours[variable];
+    long fill = 0;
+
+    for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+      buffer.clear();
+      buffer.or(variableNeighbours);
+      buffer.andNot(neighbours[neighbour]);
+      buffer.clear(neighbour);
+
+      fill += buffer.cardinality();
+    }
+
+    // every edge is counted from both of its ends
+    return fill / 2;
+  }
+
+  /**
+   * Like {@link #getFill(int)}, but every edge is weighted by the product of its variables' cardinalities.
+   */
+  public long getWeightedFill(int variable) {
+    if (fill != null && weightedFill) {
+      return fill[variable];
+    }
+
+    BitSet variableNeighbours = neighbours[variable];
+    long weightedFill = 0;
+
+    for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+      BitSet neighboursOfNeighbour = neighbours[neighbour];
+
+      for (int other = variableNeighbours.nextSetBit(neighbour + 1); other >= 0; other = variableNeighbours.nextSetBit(other + 1)) {
+        if (!neighboursOfNeighbour.get(other)) {
+          weightedFill += (long) cardinalities[neighbour] * cardinalities[other];
+        }
+      }
+    }
+
+    return weightedFill;
+  }
+
+  /**
+   * The number of values of the factor that eliminating the variable creates before summing it out,
+   * i.e. the product of the cardinalities of the variable and its neighbours.
+   */
+  public double getCliqueSize(int variable) {
+    BitSet variableNeighbours = neighbours[variable];
+    double cliqueSize = cardinalities[variable];
+
+    for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+      cliqueSize *= cardinalities[neighbour];
+    }
+
+    return cliqueSize;
+  }
+
+  /**
+   * Connects the variable's neighbours pairwise and removes the variable from the graph.
+   */
+  public void eliminate(int variable) {
+    BitSet variableNeighbours = neighbours[variable];
+
+    affectedVariables.clear();
+    affectedVariables.or(variableNeighbours);
+
+    if (fill != null) {
+      // the variable leaves its neighbours' neighbourhoods along with the pairs it was missing an edge in
+      for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+        buffer.clear();
+        buffer.or(neighbours[neighbour]);
+        buffer.andNot(variableNeighbours);
+        buffer.clear(variable);
+
+        fill[neighbour] -= getWeight(variable) * getWeightSum(buffer);
+      }
+
+      fill[variable] = 0;
+    }
+
+    for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+      neighbours[neighbour].clear(variable);
+    }
+
+    for (int neighbour = variableNeighbours.nextSetBit(0); neighbour >= 0; neighbour = variableNeighbours.nextSetBit(neighbour + 1)) {
+      for (int other = variableNeighbours.nextSetBit(neighbour + 1); other >= 0; other = variableNeighbours.nextSetBit(other + 1)) {
+        if (!neighbours[neighbour].get(other)) {
+          connect(neighbour, other);
+        }
+      }
+    }
+
+    variableNeighbours.clear();
+    eliminated.set(variable);
+  }
+
+  /**
+   * The variables whose neighbourhood or tracked fill changed by the last elimination.
+   * The returned set must not be modified.
+   */
+  public BitSet getAffectedVariables() {
+    return affectedVariables;
+  }
+
+  protected void connect(int variable1, int variable2) {
+    if (fill != null) {
+      // the new edge closes a missing pair in the neighbourhood of every common neighbour
+      buffer.clear();
+      buffer.or(neighbours[variable1]);
+      buffer.and(neighbours[variable2]);
+
+      long edgeWeight = getWeight(variable1) * getWeight(variable2);
+      for (int commonNeighbour = buffer.nextSetBit(0); commonNeighbour >= 0; commonNeighbour = buffer.nextSetBit(commonNeighbour + 1)) {
+        fill[commonNeighbour] -= edgeWeight;
+      }
+      affectedVariables.or(buffer);
+
+      // and either variable has a new neighbour that misses edges to its other neighbours
+      buffer.clear();
+      buffer.or(neighbours[variable1]);
+      buffer.andNot(neighbours[variable2]);
+      fill[variable1] += getWeight(variable2) * getWeightSum(buffer);
+
+      buffer.clear();
+      buffer.or(neighbours[variable2]);
+      buffer.andNot(neighbours[variable1]);
+      fill[variable2] += getWeight(variable1) * getWeightSum(buffer);
+    }
+
+    neighbours[variable1].set(variable2);
+    neighbours[variable2].set(variable1);
+  }
+
+  protected long getWeight(int variable) {
+    return weightedFill ? cardinalities[variable] : 1;
+  }
+
+  protected long getWeightSum(BitSet variables) {
+    if (!weightedFill) {
+      return variables.cardinality();
+    }
+
+    long weightSum = 0;
+    for (int variable = variables.nextSetBit(0); variable >= 0; variable = variables.nextSetBit(variable + 1)) {
+      weightSum += cardinalities[variable];
+    }
+
+    return weightSum;
+  }
+}
@@ -0,0 +1,129 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+/**
+ * Eliminates the variable with the lowest score next. Scores are kept in a priority queue and after an
+ * elimination, only the variables that it affected are scored again. Ties are broken by lower
+ * degree and then by the variables' order in the model's scope, or randomly (see
+ * {@link #eliminate(EliminationGraph, BitSet, Random)}).
+ *
+ * @author Thorben
+ */
+public abstract class GreedyEliminationStrategy implements VariableEliminationStrategy {
+
+  public List<String> getEliminationOrder(GraphicalModel<?> graphicalModel, Collection<String> variablesToEliminate) {
+    EliminationGraph graph = new EliminationGraph(graphicalModel);
+    return eliminate(graph, graph.getIndices(variablesToEliminate), null).getEliminationOrder();
+  }
+
+  /**
+   * Eliminates the candidates from the graph.
+   *
+   * @param random breaks ties between variables of equal score and degree; may be null to break them
+   *   by the variables' order in the model's scope
+   * @return the elimination order along with its estimated cost
+   */
+  public EliminationCost eliminate(EliminationGraph graph, BitSet candidates, Random random) {
+    candidates = (BitSet) candidates.clone();
+    prepare(graph);
+
+    int[] versions = new int[graph.getNumVariables()];
+    PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(Math.max(1, candidates.cardinality()));
+    for (int variable = candidates.nextSetBit(0); variable >= 0; variable = candidates.nextSetBit(variable + 1)) {
+      queue.add(newCandidate(graph, variable, 0, random));
+    }
+
+    EliminationCost cost = new EliminationCost();
+    BitSet affectedVariables = new BitSet(graph.getNumVariables());
+
+    while (!queue.isEmpty()) {
+      Candidate candidate = queue.poll();
+      int variable = candidate.variable;
+
+      if (candidate.version != versions[variable]) {
+        // the variable has been scored again in the meantime
+        continue;
+      }
+
+      cost.add(graph, variable);
+      candidates.clear(variable);
+      graph.eliminate(variable);
+
+      affectedVariables.clear();
+      affectedVariables.or(graph.getAffectedVariables());
+      affectedVariables.and(candidates);
+
+      for (int affectedVariable = affectedVariables.nextSetBit(0); affectedVariable >= 0;
+          affectedVariable = affectedVariables.nextSetBit(affectedVariable + 1)) {
+        versions[affectedVariable]++;
+        queue.add(newCandidate(graph, affectedVariable, versions[affectedVariable], random));
+      }
+    }
+
+    return cost;
+  }
+
+  protected Candidate newCandidate(EliminationGraph graph, int variable, int version, Random random) {
+    int tieBreaker = random != null ? random.nextInt() : variable;
+    return new Candidate(score(graph, variable), graph.getDegree(variable), tieBreaker, variable, version);
+  }
+
+  /**
+   * The cost of eliminating the variable next; lower is better.
+   */
+  protected abstract double score(EliminationGraph graph, int variable);
+
+  /**
+   * Called before any variable is scored, e.g. to let the graph track values the score is based on.
+   */
+  protected void prepare(EliminationGraph graph) {
+  }
+
+  protected static class Candidate implements Comparable<Candidate> {
+
+    protected double score;
+    protected int degree;
+    protected int tieBreaker;
+    protected int variable;
+    protected int version;
+
+    public Candidate(double score, int degree, int tieBreaker, int variable, int version) {
+      this.score = score;
+      this.degree = degree;
+      this.tieBreaker = tieBreaker;
+      this.variable = variable;
+      this.version = version;
+    }
+
+    public int compareTo(Candidate other) {
+      if (score != other.score) {
+        return score < other.score ? -1 : 1;
+      } else if (degree != other.degree) {
+        return degree < other.degree ? -1 : 1;
+      } else if (tieBreaker != other.tieBreaker) {
+        return tieBreaker < other.tieBreaker ? -1 : 1;
+      } else {
+        return variable < other.variable ? -1 : (variable == other.variable ? 0 : 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorSumProductPlan;
+import com.github.thorbenlindhauer.factor.FactorUtil;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor;
+import com.github.thorbenlindhauer.factor.TableBasedDiscreteFactor;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.Scope;
+
+/**
+ * A compiled variable elimination query: the distribution over a projection scope given the values of a scope of
+ * observed variables. Which factors are multiplied in which step of the elimination only depends on these scopes,
+ * so the plan determines it once, along with the index arithmetic of every step. Executing the plan for an
+ * observation then only reduces the model's factors by the observation and computes the steps' tables.
+ *
+ * <p>
+ * The factors are held in slots: the model's factors occupy the first slots and each step consumes the slots of
+ * its inputs and writes its result to a new slot.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class VariableEliminationPlan {
+
+  protected List<String> eliminationOrder;
+
+  protected DiscreteFactor[] factors;
+
+  protected Scope observedVariables;
+  protected Scope reducedVariables;
+  protected Scope maskedVariables;
+  protected boolean[] reducedFactors;
+  protected boolean[] maskedFactors;
+
+  protected int numSlots;
+  protected List<EliminationStep> steps;
+
+  /** multiplies the factors that remain after elimination; null if there are less than two */
+  protected EliminationStep jointStep;
+  protected int[] remainingSlots;
+
+  /**
+   * @param observedVariables may be null
+   * @param eliminationOrder the variables that are neither part of the projection nor observed
+   */
+  public VariableEliminationPlan(GraphicalModel<DiscreteFactor> graphicalModel, Scope projection, Scope observedVariables,
+      List<String> eliminationOrder) {
+    this.eliminationOrder = Collections.unmodifiableList(new ArrayList<String>(eliminationOrder));
+    this.factors = graphicalModel.getFactorView().toArray(new DiscreteFactor[0]);
+    this.observedVariables = observedVariables;
+
+    if (observedVariables != null) {
+      // observed variables of the projection are kept in the factors, all others are sliced out
+      reducedVariables = observedVariables.reduceBy(projection);
+      maskedVariables = observedVariables.intersect(projection);
+    }
+
+    List<Scope> slotScopes = new ArrayList<Scope>();
+    reducedFactors = new boolean[factors.length];
+    maskedFactors = new boolean[factors.length];
+
+    for (int i = 0; i < factors.length; i++) {
+      Scope factorScope = factors[i].getVariables();
+
+      if (observedVariables != null) {
+        reducedFactors[i] = !reducedVariables.isEmpty() && !factorScope.intersect(reducedVariables).isEmpty();
+        maskedFactors[i] = !maskedVariables.isEmpty() && !factorScope.intersect(maskedVariables).isEmpty();
+      }
+
+      slotScopes.add(reducedFactors[i] ? factorScope.reduceBy(reducedVariables) : factorScope);
+    }
+
+    compileSteps(slotScopes);
+  }
+
+  protected void compileSteps(List<Scope> slotScopes) {
+    BitSet liveSlots = new BitSet();
+    liveSlots.set(0, slotScopes.size());
+
+    Map<String, List<Integer>> slotsByVariable = new HashMap<String, List<Integer>>();
+    for (int slot = 0; slot < slotScopes.size(); slot++) {
+      addSlot(slotsByVariable, slotScopes.get(slot), slot);
+    }
+
+    steps = new ArrayList<EliminationStep>();
+    for (String variableId : eliminationOrder) {
+      List<Integer> slotsWithVariable = slotsByVariable.remove(variableId);
+      if (slotsWithVariable == null) {
+        continue;
+      }
+
+      List<Integer> inputSlots = new ArrayList<Integer>();
+      for (Integer slot : slotsWithVariable) {
+        if (liveSlots.get(slot)) {
+          inputSlots.add(slot);
+          liveSlots.clear(slot);
+        }
+      }
+
+      if (inputSlots.isEmpty()) {
+        continue;
+      }
+
+      Scope[] inputScopes = new Scope[inputSlots.size()];
+      Scope jointScope = null;
+      for (int i = 0; i < inputScopes.length; i++) {
+        inputScopes[i] = slotScopes.get(inputSlots.get(i));
+        jointScope = jointScope == null ? inputScopes[i] : jointScope.union(inputScopes[i]);
+      }
+
+      int resultSlot = slotScopes.size();
+      EliminationStep step = new EliminationStep(toArray(inputSlots), inputScopes, jointScope.reduceBy(variableId), resultSlot);
+      steps.add(step);
+
+      slotScopes.add(step.getResultScope());
+      liveSlots.set(resultSlot);
+      addSlot(slotsByVariable, step.getResultScope(), resultSlot);
+    }
+
+    numSlots = slotScopes.size();
+    remainingSlots = new int[liveSlots.cardinality()];
+    for (int slot = liveSlots.nextSetBit(0), i = 0; slot >= 0; slot = liveSlots.nextSetBit(slot + 1), i++) {
+      remainingSlots[i] = slot;
+    }
+
+    if (remainingSlots.length > 1) {
+      Scope[] remainingScopes = new Scope[remainingSlots.length];
+      Scope jointScope = null;
+      for (int i = 0; i < remainingScopes.length; i++) {
+        remainingScopes[i] = slotScopes.get(remainingSlots[i]);
+        jointScope = jointScope == null ? remainingScopes[i] : jointScope.union(remainingScopes[i]);
+      }
+
+      jointStep = new EliminationStep(remainingSlots, remainingScopes, jointScope, -1);
+    }
+  }
+
+  protected void addSlot(Map<String, List<Integer>> slotsByVariable, Scope scope, int slot) {
+    for (String variableId : scope.getVariableIds()) {
+      List<Integer> slots = slotsByVariable.get(variableId);
+      if (slots == null) {
+        slots = new ArrayList<Integer>();
+        slotsByVariable.put(variableId, slots);
+      }
+      slots.add(slot);
+    }
+  }
+
+  protected int[] toArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+
+    return array;
+  }
+
+  /**
+   * Returns the unnormalized distribution over the projection scope and the observed variables.
+   *
+   * @param observation the values of the observed variables; ignored if the plan has no observed variables
+   */
+  public DiscreteFactor execute(int[] observation) {
+    DiscreteFactor[] slots = new DiscreteFactor[numSlots];
+
+    int[] reducedValues = null;
+    int[] maskedValues = null;
+    if (observedVariables != null) {
+      reducedValues = observedVariables.projectAssignment(observation, reducedVariables);
+      maskedValues = observedVariables.projectAssignment(observation, maskedVariables);
+    }
+
+    for (int i = 0; i < factors.length; i++) {
+      DiscreteFactor factor = factors[i];
+
+      if (reducedFactors[i]) {
+        factor = factor.reduce(reducedVariables, reducedValues);
+      }
+
+      if (maskedFactors[i]) {
+        factor = factor.observation(maskedVariables, maskedValues);
+      }
+
+      slots[i] = factor;
+    }
+
+    for (EliminationStep step : steps) {
+      slots[step.resultSlot] = step.execute(slots);
+    }
+
+    if (jointStep != null) {
+      return jointStep.execute(slots);
+    } else if (remainingSlots.length == 1) {
+      return slots[remainingSlots[0]];
+    } else {
+      return null;
+    }
+  }
+
+  public List<String> getEliminationOrder() {
+    return eliminationOrder;
+  }
+
+  /**
+   * Multiplies the factors of some slots and sums out the variables that are not part of the result scope.
+   */
+  protected static class EliminationStep {
+
+    protected int[] inputSlots;
+    protected Scope[] inputScopes;
+    protected Scope resultScope;
+    protected int resultSlot;
+
+    /** the index arithmetic if all inputs are table-based; looked up on first use */
+    protected volatile DiscreteFactorSumProductPlan sumProductPlan;
+
+    /**
+     * @param resultScope a subset of the union of the input scopes
+     */
+    public EliminationStep(int[] inputSlots, Scope[] inputScopes, Scope resultScope, int resultSlot) {
+      this.inputSlots = inputSlots;
+      this.inputScopes = inputScopes;
+      this.resultScope = resultScope;
+      this.resultSlot = resultSlot;
+    }
+
+    public Scope getResultScope() {
+      return resultScope;
+    }
+
+    /**
+     * Computes the step's result from the input slots, which are cleared.
+     */
+    public DiscreteFactor execute(DiscreteFactor[] slots) {
+      TableBasedDiscreteFactor[] tableBasedInputs = new TableBasedDiscreteFactor[inputSlots.length];
+      boolean tableBased = true;
+
+      for (int i = 0; i < inputSlots.length && tableBased; i++) {
+        DiscreteFactor input = slots[inputSlots[i]];
+        if (input instanceof LazyDiscreteFactor) {
+          input = ((LazyDiscreteFactor) input).getFactor();
+        }
+
+        if (input instanceof TableBasedDiscreteFactor) {
+          tableBasedInputs[i] = (TableBasedDiscreteFactor) input;
+        } else {
+          tableBased = false;
+        }
+      }
+
+      DiscreteFactor result;
+      if (tableBased) {
+        result = TableBasedDiscreteFactor.sumProduct(getSumProductPlan(), tableBasedInputs);
+      } else {
+        Set<DiscreteFactor> inputs = new HashSet<DiscreteFactor>();
+        for (int inputSlot : inputSlots) {
+          inputs.add(slots[inputSlot]);
+        }
+        result = FactorUtil.sumProduct(inputs, resultScope, null);
+      }
+
+      for (int inputSlot : inputSlots) {
+        slots[inputSlot] = null;
+      }
+
+      return result;
+    }
+
+    protected DiscreteFactorSumProductPlan getSumProductPlan() {
+      DiscreteFactorSumProductPlan plan = sumProductPlan;
+      if (plan == null) {
+        plan = DiscreteFactorSumProductPlan.forSumProduct(inputScopes, resultScope);
+        sumProductPlan = plan;
+      }
+
+      return plan;
+    }
+  }
+}
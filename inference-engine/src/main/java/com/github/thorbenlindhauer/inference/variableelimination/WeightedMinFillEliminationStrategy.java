@@ -0,0 +1,31 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+/**
+ * Like {@link MinFillEliminationStrategy}, but a fill edge costs the product of its variables' cardinalities,
+ * such that edges between variables with many values are avoided.
+ *
+ * @author Thorben
+ */
+public class WeightedMinFillEliminationStrategy extends GreedyEliminationStrategy {
+
+  protected double score(EliminationGraph graph, int variable) {
+    return graph.getWeightedFill(variable);
+  }
+
+  protected void prepare(EliminationGraph graph) {
+    graph.trackFill(true);
+  }
+
+}
@@ -13,7 +13,6 @@
 package com.github.thorbenlindhauer.network;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
-import com.github.thorbenlindhauer.factor.TableBasedDiscreteFactor;
 import com.github.thorbenlindhauer.variable.Scope;
 
 public class DiscreteFactorBuilderImpl extends AbstractFactorBuilderImpl<DiscreteFactorBuilder<DiscreteModelBuilder>>
@@ -27,8 +26,8 @@ public class DiscreteFactorBuilderImpl extends AbstractFactorBuilderImpl<Discret
   }
 
   public DiscreteModelBuilder basedOnTable(double[] table) {
-    Scope factorScope = new Scope(factorVariables);
-    DiscreteFactor factor = new TableBasedDiscreteFactor(factorScope, table);
+    Scope factorScope = new Scope(factorVariables).intern(graphScope.getScopeCache());
+    DiscreteFactor factor = modelBuilder.getFactorFactory().build(factorScope, table);
     modelBuilder.addFactor(factor);
 
     return modelBuilder;
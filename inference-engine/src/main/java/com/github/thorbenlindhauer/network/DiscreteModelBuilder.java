@@ -13,6 +13,7 @@
 package com.github.thorbenlindhauer.network;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
 
 /**
  * @author Thorben
@@ -20,4 +21,17 @@ import com.github.thorbenlindhauer.factor.DiscreteFactor;
  */
 public interface DiscreteModelBuilder extends ModelBuilder<DiscreteFactor, DiscreteFactorBuilder<DiscreteModelBuilder>> {
 
+  /**
+   * Determines the representation of the factors that are subsequently added to the model, e.g.
+   * {@link DiscreteFactorFactory.LogSpaceDiscreteFactorFactory} for log-space factors.
+   * Default are table-based factors.
+   */
+  DiscreteModelBuilder factorFactory(DiscreteFactorFactory factorFactory);
+
+  /**
+   * Stores the values of subsequently added factors in single precision, i.e. uses a
+   * {@link DiscreteFactorFactory.FloatDiscreteFactorFactory}. Halves the memory of the factor tables
+   * at the cost of precision; suitable for approximate inference on large models.
+   */
+  DiscreteModelBuilder singlePrecision();
 }
@@ -16,22 +16,38 @@ import java.util.HashSet;
 import java.util.Set;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
 import com.github.thorbenlindhauer.variable.Scope;
 
 public class DiscreteModelBuilderImpl implements DiscreteModelBuilder {
 
   protected Set<DiscreteFactor> factors;
   protected Scope scope;
+  protected DiscreteFactorFactory factorFactory;
 
   public DiscreteModelBuilderImpl(Scope scope) {
     this.factors = new HashSet<DiscreteFactor>();
     this.scope = scope;
+    this.factorFactory = new DiscreteFactorFactory.TableBasedDiscreteFactorFactory();
+  }
+
+  public DiscreteModelBuilder factorFactory(DiscreteFactorFactory factorFactory) {
+    this.factorFactory = factorFactory;
+    return this;
+  }
+
+  public DiscreteModelBuilder singlePrecision() {
+    return factorFactory(new DiscreteFactorFactory.FloatDiscreteFactorFactory());
   }
 
   public DiscreteFactorBuilder<DiscreteModelBuilder> factor() {
     return new DiscreteFactorBuilderImpl(this, scope);
   }
 
+  public DiscreteFactorFactory getFactorFactory() {
+    return factorFactory;
+  }
+
   public void addFactor(DiscreteFactor factor) {
     factors.add(factor);
   }
@@ -0,0 +1,164 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.network;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.thorbenlindhauer.factor.Factor;
+
+/**
+ * Maps every variable to the factors whose scope contains it, such that the factors of a variable are found
+ * without scanning all factors. The index is updated as factors are added and removed, e.g. when variable
+ * elimination replaces the factors of an eliminated variable by their sum-product.
+ *
+ * @author Thorben
+ */
+public class FactorIndex<T extends Factor<T>> {
+
+  protected Set<T> factors;
+  protected Map<String, Set<T>> factorsByVariable;
+  protected boolean modifiable = true;
+
+  public FactorIndex(Collection<T> factors) {
+    this.factors = new HashSet<T>();
+    this.factorsByVariable = new HashMap<String, Set<T>>();
+
+    for (T factor : factors) {
+      add(factor);
+    }
+  }
+
+  /**
+   * Creates a modifiable copy of the other index.
+   */
+  public FactorIndex(FactorIndex<T> other) {
+    this.factors = new HashSet<T>(other.factors);
+    this.factorsByVariable = new HashMap<String, Set<T>>();
+
+    for (Map.Entry<String, Set<T>> entry : other.factorsByVariable.entrySet()) {
+      factorsByVariable.put(entry.getKey(), new HashSet<T>(entry.getValue()));
+    }
+  }
+
+  public void add(T factor) {
+    ensureModifiable();
+
+    if (!factors.add(factor)) {
+      return;
+    }
+
+    for (String variableId : factor.getVariables().getVariableIds()) {
+      Set<T> factorsOfVariable = factorsByVariable.get(variableId);
+      if (factorsOfVariable == null) {
+        factorsOfVariable = new HashSet<T>();
+        factorsByVariable.put(variableId, factorsOfVariable);
+      }
+
+      factorsOfVariable.add(factor);
+    }
+  }
+
+  public void remove(T factor) {
+    ensureModifiable();
+
+    if (!factors.remove(factor)) {
+      return;
+    }
+
+    for (String variableId : factor.getVariables().getVariableIds()) {
+      Set<T> factorsOfVariable = factorsByVariable.get(variableId);
+      factorsOfVariable.remove(factor);
+
+      if (factorsOfVariable.isEmpty()) {
+        factorsByVariable.remove(variableId);
+      }
+    }
+  }
+
+  /**
+   * Removes the factors whose scope contains the variable and returns them.
+   */
+  public Set<T> removeFactors(String variableId) {
+    ensureModifiable();
+
+    Set<T> factorsOfVariable = factorsByVariable.get(variableId);
+    if (factorsOfVariable == null) {
+      return new HashSet<T>();
+    }
+
+    Set<T> removedFactors = new HashSet<T>(factorsOfVariable);
+    for (T factor : removedFactors) {
+      remove(factor);
+    }
+
+    return removedFactors;
+  }
+
+  /**
+   * Returns a read-only view of all factors.
+   */
+  public Set<T> getFactors() {
+    return Collections.unmodifiableSet(factors);
+  }
+
+  /**
+   * Returns a read-only view of the factors whose scope contains the variable.
+   */
+  public Set<T> getFactors(String variableId) {
+    Set<T> factorsOfVariable = factorsByVariable.get(variableId);
+
+    if (factorsOfVariable == null) {
+      return Collections.emptySet();
+    } else {
+      return Collections.unmodifiableSet(factorsOfVariable);
+    }
+  }
+
+  /**
+   * Returns the variables that share a factor with the given variable, excluding the variable itself.
+   */
+  public Set<String> getNeighbours(String variableId) {
+    Set<String> neighbours = new HashSet<String>();
+
+    for (T factor : getFactors(variableId)) {
+      for (String neighbour : factor.getVariables().getVariableIds()) {
+        neighbours.add(neighbour);
+      }
+    }
+
+    neighbours.remove(variableId);
+    return neighbours;
+  }
+
+  /**
+   * Returns the ids of the variables that are part of at least one factor.
+   */
+  public Set<String> getVariableIds() {
+    return Collections.unmodifiableSet(factorsByVariable.keySet());
+  }
+
+  public boolean isModifiable() {
+    return modifiable;
+  }
+
+  protected void ensureModifiable() {
+    if (!modifiable) {
+      throw new UnsupportedOperationException("Factor index is read-only");
+    }
+  }
+}
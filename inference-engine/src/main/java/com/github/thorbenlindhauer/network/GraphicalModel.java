@@ -12,40 +12,108 @@
 */
 package com.github.thorbenlindhauer.network;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory;
 import com.github.thorbenlindhauer.factor.Factor;
 import com.github.thorbenlindhauer.factor.GaussianFactor;
 import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
 
 public class GraphicalModel<T extends Factor<T>> {
 
   protected Set<T> factors;
   protected Scope scope;
+  protected FactorIndex<T> factorIndex;
+  protected boolean bayesianNetwork;
 
   public GraphicalModel(Scope scope, Set<T> factors) {
+    this(scope, factors, false);
+  }
+
+  /**
+   * @param bayesianNetwork whether every factor is the conditional distribution of one of its variables given the others,
+   *   see {@link #isBayesianNetwork()}
+   */
+  public GraphicalModel(Scope scope, Set<T> factors, boolean bayesianNetwork) {
     this.factors = factors;
-    this.scope = scope;
+    this.scope = scope.intern();
+    this.bayesianNetwork = bayesianNetwork;
   }
 
+  /**
+   * Returns a copy of the factors that the caller may modify.
+   */
   public Set<T> getFactors() {
     return new HashSet<T>(factors);
   }
 
+  /**
+   * Returns a read-only view of the factors without copying them.
+   */
+  public Set<T> getFactorView() {
+    return Collections.unmodifiableSet(factors);
+  }
+
+  /**
+   * Returns a read-only index of the factors by variable. It is built on first access; copy it via
+   * {@link FactorIndex#FactorIndex(FactorIndex)} to obtain an index that can be modified.
+   */
+  public synchronized FactorIndex<T> getFactorIndex() {
+    if (factorIndex == null) {
+      factorIndex = new FactorIndex<T>(factors);
+      factorIndex.modifiable = false;
+    }
+
+    return factorIndex;
+  }
+
   public Scope getScope() {
     return scope;
   }
 
+  /**
+   * Returns the cache the model's scope is interned in. Scopes of the model's factors should be interned in it,
+   * such that operations on them are memoized, see {@link Scope#intern(ScopeCache)}.
+   */
+  public ScopeCache getScopeCache() {
+    return scope.getScopeCache();
+  }
+
+  /**
+   * Returns whether the model is a bayesian network, i.e. whether every variable has a factor that is its
+   * conditional distribution given the other variables of the factor. Then the model is normalized and the
+   * factor of a variable that is not part of any other factor sums to one for every assignment of the other variables,
+   * which allows inferencers to skip such factors.
+   */
+  public boolean isBayesianNetwork() {
+    return bayesianNetwork;
+  }
+
   public static ScopeBuilder create() {
     return new ScopeBuilderImpl();
   }
 
-  public static ModelBuilder<DiscreteFactor, DiscreteFactorBuilder<DiscreteModelBuilder>> discreteNetwork(Scope scope) {
+  public static DiscreteModelBuilder discreteNetwork(Scope scope) {
     return new DiscreteModelBuilderImpl(scope);
   }
 
+  /**
+   * Returns a model with the same scope whose factors have the representation of the given factory
+   */
+  public static GraphicalModel<DiscreteFactor> convert(GraphicalModel<DiscreteFactor> model, DiscreteFactorFactory factorFactory) {
+    Set<DiscreteFactor> convertedFactors = new HashSet<DiscreteFactor>();
+
+    for (DiscreteFactor factor : model.factors) {
+      convertedFactors.add(factorFactory.convert(factor));
+    }
+
+    return new GraphicalModel<DiscreteFactor>(model.scope, convertedFactors, model.bayesianNetwork);
+  }
+
   public static ModelBuilder<GaussianFactor, GaussianFactorBuilder<GaussianModelBuilder>> gaussianNetwork(Scope scope) {
     return new GaussianModelBuilderImpl(scope);
   }
@@ -12,7 +12,6 @@
 */
 package com.github.thorbenlindhauer.network;
 
-import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.factor.GaussianFactor;
 import com.github.thorbenlindhauer.variable.Scope;
 
@@ -24,7 +23,7 @@ public interface ScopeBuilder {
 
   Scope buildScope();
 
-  ModelBuilder<DiscreteFactor, DiscreteFactorBuilder<DiscreteModelBuilder>> discreteNetwork();
+  DiscreteModelBuilder discreteNetwork();
 
   ModelBuilder<GaussianFactor, GaussianFactorBuilder<GaussianModelBuilder>> gaussianNetwork();
 }
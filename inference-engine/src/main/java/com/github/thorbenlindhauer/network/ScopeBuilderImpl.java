@@ -15,7 +15,6 @@ package com.github.thorbenlindhauer.network;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.factor.GaussianFactor;
 import com.github.thorbenlindhauer.variable.ContinuousVariable;
 import com.github.thorbenlindhauer.variable.DiscreteVariable;
@@ -43,16 +42,16 @@ public class ScopeBuilderImpl implements ScopeBuilder {
   }
 
   public Scope buildScope() {
-    return new Scope(variables.values());
+    return new Scope(variables.values()).intern();
   }
 
-  public ModelBuilder<DiscreteFactor, DiscreteFactorBuilder<DiscreteModelBuilder>> discreteNetwork() {
-    Scope scope = new Scope(variables.values());
+  public DiscreteModelBuilder discreteNetwork() {
+    Scope scope = new Scope(variables.values()).intern();
     return new DiscreteModelBuilderImpl(scope);
   }
 
   public ModelBuilder<GaussianFactor, GaussianFactorBuilder<GaussianModelBuilder>> gaussianNetwork() {
-    Scope scope = new Scope(variables.values());
+    Scope scope = new Scope(variables.values()).intern();
     return new GaussianModelBuilderImpl(scope);
   }
 }
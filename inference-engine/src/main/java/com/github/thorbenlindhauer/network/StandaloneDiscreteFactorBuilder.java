@@ -22,6 +22,7 @@ import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.factor.TableBasedDiscreteFactor;
 import com.github.thorbenlindhauer.variable.DiscreteVariable;
 import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
 
 /**
  * @author Thorben
@@ -33,6 +34,8 @@ public class StandaloneDiscreteFactorBuilder implements DiscreteFactorBuilder<Di
 
   protected Set<DiscreteVariable> currentVariables;
 
+  protected ScopeCache scopeCache;
+
   public StandaloneDiscreteFactorBuilder() {
     this.variables = new HashMap<String, DiscreteVariable>();
   }
@@ -60,12 +63,23 @@ public class StandaloneDiscreteFactorBuilder implements DiscreteFactorBuilder<Di
       throw new ModelStructureException("Cannot build factor without variables");
     }
 
-    DiscreteFactor factor = new TableBasedDiscreteFactor(new Scope(currentVariables), table);
+    DiscreteFactor factor = new TableBasedDiscreteFactor(new Scope(currentVariables).intern(getScopeCache()), table);
     currentVariables = null;
 
     return factor;
   }
 
+  /**
+   * The cache is created when the first factor is built, such that its variable registry covers the builder's variables.
+   */
+  protected ScopeCache getScopeCache() {
+    if (scopeCache == null) {
+      scopeCache = new ScopeCache(new Scope(variables.values()));
+    }
+
+    return scopeCache;
+  }
+
   public static StandaloneDiscreteFactorBuilder withVariables(DiscreteVariable... variables) {
     StandaloneDiscreteFactorBuilder builder = new StandaloneDiscreteFactorBuilder();
 
@@ -58,6 +58,40 @@ public class IndexCoder {
     return assignment;
   }
   
+  /**
+   * Like {@link #getAssignmentForIndex(int)}, but writes the assignment into the given array.
+   */
+  public void getAssignmentForIndex(int index, int[] assignment) {
+    for (int i = variableCardinalities.length - 1; i >= 0; i--) {
+      if (strides[i] > 0) {
+        assignment[i] = index / strides[i];
+        index -= assignment[i] * strides[i];
+      } else {
+        assignment[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Advances the given assignment to the assignment of the next index (i.e. the first variable
+   * varies fastest) without allocating.
+   *
+   * @return false, if the assignment was the last one and has been reset to the first
+   */
+  public boolean nextAssignment(int[] assignment) {
+    for (int i = 0; i < assignment.length; i++) {
+      assignment[i]++;
+
+      if (assignment[i] >= variableCardinalities[i]) {
+        assignment[i] = 0;
+      } else {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   /**
    * Returns the assignment value for the given index and position. Position here means
    * the index in the assignment array. Thus, the return value is a single integer.
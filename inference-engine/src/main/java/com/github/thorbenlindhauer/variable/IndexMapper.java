@@ -16,6 +16,11 @@ package com.github.thorbenlindhauer.variable;
  * Maps indexes of variable assignments according to a provided mapping. Useful when input is not specified in the
  * canonical ordering.
  *
+ * <p>
+ * Mapping an index does not allocate. The bulk operations {@link #mapAllIndices(int[])} and
+ * {@link #reverseMapAllIndices(int[])} walk all assignments incrementally instead of decoding every index.
+ * </p>
+ *
  * @author Thorben
  */
 public class IndexMapper {
@@ -24,22 +29,60 @@ public class IndexMapper {
   protected IndexCoder mappedCoder;
   protected int[] mapping;
 
+  /** for each position of the original coder, the stride of the mapped position in the mapped coder */
+  protected int[] mappedStrides;
+
+  /** for each position of the mapped coder, the stride of the original position in the original coder */
+  protected int[] originalStrides;
+
   public IndexMapper(IndexCoder originalCoder, IndexCoder mappedCoder, int[] mapping) {
     this.originalCoder = originalCoder;
     this.mappedCoder = mappedCoder;
     this.mapping = mapping;
+
+    this.mappedStrides = new int[mapping.length];
+    this.originalStrides = new int[mapping.length];
+    for (int i = 0; i < mapping.length; i++) {
+      mappedStrides[i] = mappedCoder.getStrides()[mapping[i]];
+      originalStrides[mapping[i]] = originalCoder.getStrides()[i];
+    }
   }
 
   public int mapIndex(int originalIndex) {
-    int[] originalAssignment = originalCoder.getAssignmentForIndex(originalIndex);
-    int[] mappedAssignment = map(originalAssignment);
-    return mappedCoder.getIndexForAssignment(mappedAssignment);
+    return translateIndex(originalIndex, originalCoder, mappedStrides);
   }
 
   public int reverseMapIndex(int mappedIndex) {
-    int[] mappedAssignment = mappedCoder.getAssignmentForIndex(mappedIndex);
-    int[] originalAssignment = reverseMap(mappedAssignment);
-    return originalCoder.getIndexForAssignment(originalAssignment);
+    return translateIndex(mappedIndex, mappedCoder, originalStrides);
+  }
+
+  /**
+   * Maps each index of the source array to the corresponding position of the destination array.
+   */
+  public void mapIndices(int[] originalIndices, int[] mappedIndices) {
+    for (int i = 0; i < originalIndices.length; i++) {
+      mappedIndices[i] = mapIndex(originalIndices[i]);
+    }
+  }
+
+  public void reverseMapIndices(int[] mappedIndices, int[] originalIndices) {
+    for (int i = 0; i < mappedIndices.length; i++) {
+      originalIndices[i] = reverseMapIndex(mappedIndices[i]);
+    }
+  }
+
+  /**
+   * Writes the mapped index of every original index i to position i of the given array.
+   */
+  public void mapAllIndices(int[] mappedIndices) {
+    walkIndices(originalCoder, mappedStrides, mappedIndices);
+  }
+
+  /**
+   * Writes the original index of every mapped index i to position i of the given array.
+   */
+  public void reverseMapAllIndices(int[] originalIndices) {
+    walkIndices(mappedCoder, originalStrides, originalIndices);
   }
 
   public int[] map(int[] assignment) {
@@ -61,4 +104,38 @@ public class IndexMapper {
 
     return mappedAssignment;
   }
+
+  protected static int translateIndex(int index, IndexCoder coder, int[] targetStrides) {
+    int[] strides = coder.getStrides();
+    int translatedIndex = 0;
+
+    for (int i = strides.length - 1; i >= 0; i--) {
+      int value = index / strides[i];
+      index -= value * strides[i];
+      translatedIndex += value * targetStrides[i];
+    }
+
+    return translatedIndex;
+  }
+
+  protected static void walkIndices(IndexCoder coder, int[] targetStrides, int[] translatedIndices) {
+    int[] cardinalities = coder.getCardinalities();
+    int[] assignment = new int[cardinalities.length];
+    int translatedIndex = 0;
+
+    for (int i = 0; i < translatedIndices.length; i++) {
+      translatedIndices[i] = translatedIndex;
+
+      for (int j = 0; j < assignment.length; j++) {
+        assignment[j]++;
+        if (assignment[j] == cardinalities[j]) {
+          assignment[j] = 0;
+          translatedIndex -= (cardinalities[j] - 1) * targetStrides[j];
+        } else {
+          translatedIndex += targetStrides[j];
+          break;
+        }
+      }
+    }
+  }
 }
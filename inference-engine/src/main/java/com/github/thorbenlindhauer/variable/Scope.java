@@ -14,63 +14,196 @@ package com.github.thorbenlindhauer.variable;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 
 import com.github.thorbenlindhauer.exception.ModelStructureException;
 
 
 //TODO: refactor to common interface and subclass DiscreteVariables ?
 //TODO: implement Map interface?
+/**
+ * An immutable set of variables. The variables are kept in arrays sorted by their ids (the canonical order),
+ * such that operations on two scopes merge their sorted arrays in linear time.
+ *
+ * <p>
+ * Scopes can be interned via {@link #intern()}. Operations on two scopes that are interned in the same
+ * {@link ScopeCache} are memoized and return interned scopes. The scopes of a cache that is created for a model
+ * also carry the int ids of their variables in the model's {@link VariableRegistry}, such that lookups and merges
+ * compare ints; other scopes compare the variable ids.
+ * </p>
+ *
+ * @author Thorben
+ */
 public class Scope {
 
-  // inconsistencies in these maps should not arise since a scope is immutable
-  protected Map<String, Variable> variables;
-  protected Map<String, DiscreteVariable> discreteVariables;
-  protected Map<String, ContinuousVariable> continuousVariables;
+  protected static final Comparator<Variable> ID_COMPARATOR = new Comparator<Variable>() {
+    public int compare(Variable variable1, Variable variable2) {
+      return variable1.getId().compareTo(variable2.getId());
+    }
+  };
 
+  protected Variable[] sortedVariables;
   protected String[] sortedVariableIds;
+
+  protected DiscreteVariable[] discreteSortedVariables;
   protected String[] discreteSortedVariableIds;
   protected IndexCoder indexCoder;
   protected int distinctValues;
 
+  protected ContinuousVariable[] continuousSortedVariables;
   protected String[] continuousSortedVariableIds;
 
+  /** the int ids of the variables in canonical order (i.e. ascending) if the scope has a registry, else null */
+  protected VariableRegistry registry;
+  protected int[] sortedVariableIndices;
+  protected int[] discreteSortedVariableIndices;
+
+  protected ScopeCache scopeCache;
+
   public Scope(Collection<? extends Variable> variables) {
-    this.variables = new HashMap<String, Variable>();
-    this.discreteVariables = new HashMap<String, DiscreteVariable>();
-    this.continuousVariables = new HashMap<String, ContinuousVariable>();
+    this(sortedUniqueVariables(variables));
+  }
 
-    for (Variable variable : variables) {
-      this.variables.put(variable.getId(), variable);
+  /**
+   * @param sortedVariables variables with distinct ids in canonical order
+   */
+  protected Scope(Variable[] sortedVariables) {
+    this(sortedVariables, null, null);
+  }
 
-      if (DiscreteVariable.class.isAssignableFrom(variable.getClass())) {
-        this.discreteVariables.put(variable.getId(), (DiscreteVariable) variable);
-      }
+  /**
+   * @param sortedVariables variables with distinct ids in canonical order
+   * @param sortedVariableIndices the int ids of the variables in the registry, may be null if the registry is null
+   */
+  protected Scope(Variable[] sortedVariables, VariableRegistry registry, int[] sortedVariableIndices) {
+    this.sortedVariables = sortedVariables;
+    this.sortedVariableIds = new String[sortedVariables.length];
+
+    int numDiscreteVariables = 0;
+    for (int i = 0; i < sortedVariables.length; i++) {
+      sortedVariableIds[i] = sortedVariables[i].getId();
 
-      if (ContinuousVariable.class.isAssignableFrom(variable.getClass())) {
-        this.continuousVariables.put(variable.getId(), (ContinuousVariable) variable);
+      if (sortedVariables[i] instanceof DiscreteVariable) {
+        numDiscreteVariables++;
       }
     }
 
-    sortedVariableIds = new TreeSet<String>(this.variables.keySet()).toArray(new String[]{});
-    continuousSortedVariableIds = new TreeSet<String>(this.continuousVariables.keySet()).toArray(new String[]{});
-    discreteSortedVariableIds = new TreeSet<String>(this.discreteVariables.keySet()).toArray(new String[]{});
-
-    int[] cardinalities = new int[this.variables.size()];
+    discreteSortedVariables = new DiscreteVariable[numDiscreteVariables];
+    discreteSortedVariableIds = new String[numDiscreteVariables];
+    continuousSortedVariables = new ContinuousVariable[sortedVariables.length - numDiscreteVariables];
+    continuousSortedVariableIds = new String[continuousSortedVariables.length];
 
+    int[] cardinalities = new int[sortedVariables.length];
     distinctValues = 1;
-    for (int i = 0; i < discreteSortedVariableIds.length; i++) {
-      DiscreteVariable variable = this.discreteVariables.get(discreteSortedVariableIds[i]);
-      cardinalities[i] = variable.getCardinality();
-      distinctValues *= variable.getCardinality();
+
+    int discretePosition = 0;
+    int continuousPosition = 0;
+    for (Variable variable : sortedVariables) {
+      if (variable instanceof DiscreteVariable) {
+        DiscreteVariable discreteVariable = (DiscreteVariable) variable;
+        discreteSortedVariables[discretePosition] = discreteVariable;
+        discreteSortedVariableIds[discretePosition] = discreteVariable.getId();
+        cardinalities[discretePosition] = discreteVariable.getCardinality();
+        distinctValues *= discreteVariable.getCardinality();
+        discretePosition++;
+
+      } else if (variable instanceof ContinuousVariable) {
+        continuousSortedVariables[continuousPosition] = (ContinuousVariable) variable;
+        continuousSortedVariableIds[continuousPosition] = variable.getId();
+        continuousPosition++;
+      }
     }
 
     indexCoder = new IndexCoder(cardinalities);
+
+    if (registry != null) {
+      setVariableIndices(registry, sortedVariableIndices);
+    }
+  }
+
+  protected static Variable[] sortedUniqueVariables(Collection<? extends Variable> variables) {
+    Variable[] sortedVariables = variables.toArray(new Variable[variables.size()]);
+    Arrays.sort(sortedVariables, ID_COMPARATOR);
+
+    // the sort is stable; like in a map keyed by id, the last of several variables with the same id wins
+    int numUniqueVariables = 0;
+    for (int i = 0; i < sortedVariables.length; i++) {
+      if (numUniqueVariables > 0 && sortedVariables[numUniqueVariables - 1].getId().equals(sortedVariables[i].getId())) {
+        sortedVariables[numUniqueVariables - 1] = sortedVariables[i];
+      } else {
+        sortedVariables[numUniqueVariables] = sortedVariables[i];
+        numUniqueVariables++;
+      }
+    }
+
+    if (numUniqueVariables < sortedVariables.length) {
+      sortedVariables = Arrays.copyOf(sortedVariables, numUniqueVariables);
+    }
+
+    return sortedVariables;
+  }
+
+  protected void setVariableIndices(VariableRegistry registry, int[] sortedVariableIndices) {
+    this.registry = registry;
+    this.sortedVariableIndices = sortedVariableIndices;
+    this.discreteSortedVariableIndices = new int[discreteSortedVariables.length];
+
+    int discretePosition = 0;
+    for (int i = 0; i < sortedVariables.length; i++) {
+      if (sortedVariables[i] instanceof DiscreteVariable) {
+        discreteSortedVariableIndices[discretePosition] = sortedVariableIndices[i];
+        discretePosition++;
+      }
+    }
+  }
+
+  /**
+   * Assigns the int ids of the registry to this scope's variables if all of them are registered.
+   * Only called while a scope is interned, i.e. before it is shared.
+   */
+  protected void useRegistry(VariableRegistry registry) {
+    if (registry == null || this.registry != null) {
+      return;
+    }
+
+    int[] variableIndices = registry.getIndices(sortedVariableIds);
+    if (variableIndices != null) {
+      setVariableIndices(registry, variableIndices);
+    }
+  }
+
+  protected boolean sharesRegistryWith(Scope other) {
+    return registry != null && registry == other.registry;
+  }
+
+  /**
+   * Compares the variable at the given position of the sorted ids to the variable at the given position
+   * of the other sorted ids. The int ids are compared if given, else the variable ids.
+   */
+  protected static int compare(int[] sortedIndices, String[] sortedIds, int position,
+      int[] otherSortedIndices, String[] otherSortedIds, int otherPosition) {
+    if (sortedIndices != null) {
+      return sortedIndices[position] - otherSortedIndices[otherPosition];
+    } else {
+      return sortedIds[position].compareTo(otherSortedIds[otherPosition]);
+    }
+  }
+
+  /**
+   * Returns the position of the variable in canonical order or a negative number if this scope does not have it.
+   */
+  protected int positionOf(String variableId) {
+    if (registry != null) {
+      int index = registry.getIndex(variableId);
+      if (index < 0) {
+        return -1;
+      }
+
+      return Arrays.binarySearch(sortedVariableIndices, index);
+    } else {
+      return Arrays.binarySearch(sortedVariableIds, variableId);
+    }
   }
 
   /**
@@ -78,41 +211,53 @@ public class Scope {
    * Each array entry is an index into the other scope's variables or -1 if the other scope
    * does not have this variable.
    *
-   * Maps only discrete variables
+   * Maps only discrete variables. If both scopes are interned in the same cache, the returned mapping is shared
+   * and must not be modified.
    */
   public int[] createDiscreteVariableMapping(Scope other) {
-    int[] mapping = new int[discreteSortedVariableIds.length];
-
-    for (int i = 0; i < discreteSortedVariableIds.length; i++) {
-      String variable = discreteSortedVariableIds[i];
-      mapping[i] = -1;
-      if (other.has(variable)) {
-        // TODO: improve this by caching a mapping of variable id to position
-        for (int j = 0; j < other.discreteSortedVariableIds.length; j++) {
-          String otherVariable = other.discreteSortedVariableIds[j];
-          if (variable.equals(otherVariable)) {
-            mapping[i] = j;
-          }
-        }
-      }
+    ScopeCache cache = ScopeCache.of(this, other);
+    if (cache != null) {
+      return cache.discreteVariableMapping(this, other);
     }
 
-    return mapping;
+    return computeDiscreteVariableMapping(other);
+  }
+
+  protected int[] computeDiscreteVariableMapping(Scope other) {
+    if (sharesRegistryWith(other)) {
+      return createMapping(discreteSortedVariableIndices, discreteSortedVariableIds,
+          other.discreteSortedVariableIndices, other.discreteSortedVariableIds);
+    } else {
+      return createMapping(null, discreteSortedVariableIds, null, other.discreteSortedVariableIds);
+    }
   }
 
   public int[] createContinuousVariableMapping(Scope other) {
-    int[] mapping = new int[continuousSortedVariableIds.length];
+    return createMapping(null, continuousSortedVariableIds, null, other.continuousSortedVariableIds);
+  }
 
-    for (int i = 0; i < continuousSortedVariableIds.length; i++) {
-      String variable = continuousSortedVariableIds[i];
+  /**
+   * Merges the sorted variables of both scopes, see {@link #compare(int[], String[], int, int[], String[], int)}.
+   */
+  protected static int[] createMapping(int[] sortedIndices, String[] sortedIds,
+      int[] otherSortedIndices, String[] otherSortedIds) {
+    int[] mapping = new int[sortedIds.length];
+
+    int j = 0;
+    for (int i = 0; i < sortedIds.length; i++) {
       mapping[i] = -1;
-      if (other.has(variable)) {
-        // TODO: improve this by caching a mapping of variable id to position
-        for (int j = 0; j < other.continuousSortedVariableIds.length; j++) {
-          String otherVariable = other.continuousSortedVariableIds[j];
-          if (variable.equals(otherVariable)) {
+
+      while (j < otherSortedIds.length) {
+        int comparison = compare(otherSortedIndices, otherSortedIds, j, sortedIndices, sortedIds, i);
+
+        if (comparison < 0) {
+          j++;
+        } else {
+          if (comparison == 0) {
             mapping[i] = j;
+            j++;
           }
+          break;
         }
       }
     }
@@ -121,37 +266,79 @@ public class Scope {
   }
 
   public Collection<Variable> getVariables() {
-    return new HashSet<Variable>(variables.values());
+    return new HashSet<Variable>(Arrays.asList(sortedVariables));
   }
 
   public Collection<DiscreteVariable> getDiscreteVariables() {
-    return new HashSet<DiscreteVariable>(discreteVariables.values());
+    return new HashSet<DiscreteVariable>(Arrays.asList(discreteSortedVariables));
   }
 
   public Collection<ContinuousVariable> getContinuousVariables() {
-    return new HashSet<ContinuousVariable>(continuousVariables.values());
+    return new HashSet<ContinuousVariable>(Arrays.asList(continuousSortedVariables));
   }
 
   public String[] getVariableIds() {
     return sortedVariableIds;
   }
 
+  /**
+   * @return the int ids of the variables in canonical order or null if this scope has no registry
+   */
+  public int[] getVariableIndices() {
+    return sortedVariableIndices;
+  }
+
+  /**
+   * @return the registry of the model whose cache this scope is interned in or null
+   */
+  public VariableRegistry getRegistry() {
+    return registry;
+  }
+
   public boolean hasSameVariablesAs(Scope other) {
-    return variables.keySet().equals(other.variables.keySet());
+    if (sharesRegistryWith(other)) {
+      return Arrays.equals(sortedVariableIndices, other.sortedVariableIndices);
+    } else {
+      return Arrays.equals(sortedVariableIds, other.sortedVariableIds);
+    }
   }
 
   public boolean has(Variable variable) {
-    return this.variables.containsKey(variable.getId());
+    return has(variable.getId());
   }
 
   public boolean contains(Scope other) {
-    return this.variables.keySet().containsAll(other.variables.keySet());
+    if (other.sortedVariableIds.length > sortedVariableIds.length) {
+      return false;
+    }
+
+    int[] indices = null;
+    int[] otherIndices = null;
+    if (sharesRegistryWith(other)) {
+      indices = sortedVariableIndices;
+      otherIndices = other.sortedVariableIndices;
+    }
+
+    String[] ids = sortedVariableIds;
+    String[] otherIds = other.sortedVariableIds;
+
+    int i = 0;
+    for (int j = 0; j < otherIds.length; j++) {
+      while (i < ids.length && compare(indices, ids, i, otherIndices, otherIds, j) < 0) {
+        i++;
+      }
+
+      if (i == ids.length || compare(indices, ids, i, otherIndices, otherIds, j) != 0) {
+        return false;
+      }
+    }
+
+    return true;
   }
 
   public boolean contains(String... variableIds) {
-    Set<String> variableIdSet = variables.keySet();
     for (String variableId : variableIds) {
-      if (!variableIdSet.contains(variableId)) {
+      if (!has(variableId)) {
         return false;
       }
     }
@@ -160,11 +347,17 @@ public class Scope {
   }
 
   public boolean has(String variableId) {
-    return this.variables.containsKey(variableId);
+    return positionOf(variableId) >= 0;
   }
 
   public Variable getVariable(String variableId) {
-    return variables.get(variableId);
+    int position = positionOf(variableId);
+
+    if (position >= 0) {
+      return sortedVariables[position];
+    } else {
+      return null;
+    }
   }
 
   public String getVariableId(int index) {
@@ -180,70 +373,335 @@ public class Scope {
   }
 
   public boolean isEmpty() {
-    return variables.isEmpty();
+    return sortedVariables.length == 0;
   }
 
   public Scope subScope(String... variableIds) {
     return subScope(Arrays.asList(variableIds));
   }
-  
+
   public Scope subScope(Collection<String> variableIds) {
-    Set<Variable> subVariables = new HashSet<Variable>();
+    int[] positions = new int[variableIds.size()];
 
+    int i = 0;
     for (String variableId : variableIds) {
-      if (!has(variableId)) {
+      positions[i] = positionOf(variableId);
+      if (positions[i] < 0) {
         throw new ModelStructureException("Variable " + variableId + " is not part of this scope.");
       }
 
-      subVariables.add(variables.get(variableId));
+      i++;
+    }
+
+    Arrays.sort(positions);
+    Scope subScope = selectPositions(positions);
+    if (scopeCache != null) {
+      subScope = scopeCache.intern(subScope);
     }
 
-    return new Scope(subVariables);
+    return subScope;
+  }
+
+  /**
+   * @param positions ascending positions of this scope's variables; duplicates are ignored
+   */
+  protected Scope selectPositions(int[] positions) {
+    Variable[] selectedVariables = new Variable[positions.length];
+    int[] selectedIndices = registry != null ? new int[positions.length] : null;
+    int numSelectedVariables = 0;
+
+    for (int i = 0; i < positions.length; i++) {
+      if (i > 0 && positions[i] == positions[i - 1]) {
+        continue;
+      }
+
+      selectedVariables[numSelectedVariables] = sortedVariables[positions[i]];
+      if (selectedIndices != null) {
+        selectedIndices[numSelectedVariables] = sortedVariableIndices[positions[i]];
+      }
+      numSelectedVariables++;
+    }
+
+    return newScope(selectedVariables, selectedIndices, numSelectedVariables);
+  }
+
+  /**
+   * Returns a scope of the first variables and int ids (if given) of the arrays that has this scope's registry.
+   */
+  protected Scope newScope(Variable[] variables, int[] variableIndices, int numVariables) {
+    Variable[] newVariables = numVariables < variables.length ? Arrays.copyOf(variables, numVariables) : variables;
+
+    if (variableIndices != null) {
+      int[] newIndices = numVariables < variableIndices.length ? Arrays.copyOf(variableIndices, numVariables) : variableIndices;
+      return new Scope(newVariables, registry, newIndices);
+    } else {
+      return new Scope(newVariables);
+    }
   }
 
   public Scope intersect(Scope other) {
-    Set<Variable> retainedVariables = new HashSet<Variable>();
+    ScopeCache cache = ScopeCache.of(this, other);
+    if (cache != null) {
+      return cache.intersect(this, other);
+    }
+
+    return computeIntersection(other);
+  }
 
-    for (Variable variable : variables.values()) {
-      if (other.has(variable)) {
-        retainedVariables.add(variable);
+  protected Scope computeIntersection(Scope other) {
+    int maxVariables = Math.min(sortedVariables.length, other.sortedVariables.length);
+    Variable[] retainedVariables = new Variable[maxVariables];
+    int numRetainedVariables = 0;
+
+    int[] indices = null;
+    int[] otherIndices = null;
+    int[] retainedIndices = null;
+    if (sharesRegistryWith(other)) {
+      indices = sortedVariableIndices;
+      otherIndices = other.sortedVariableIndices;
+      retainedIndices = new int[maxVariables];
+    }
+
+    int i = 0;
+    int j = 0;
+    while (i < sortedVariables.length && j < other.sortedVariables.length) {
+      int comparison = compare(indices, sortedVariableIds, i, otherIndices, other.sortedVariableIds, j);
+
+      if (comparison < 0) {
+        i++;
+      } else if (comparison > 0) {
+        j++;
+      } else {
+        retainedVariables[numRetainedVariables] = sortedVariables[i];
+        if (retainedIndices != null) {
+          retainedIndices[numRetainedVariables] = indices[i];
+        }
+        numRetainedVariables++;
+        i++;
+        j++;
       }
     }
 
-    return new Scope(retainedVariables);
+    return newScope(retainedVariables, retainedIndices, numRetainedVariables);
   }
 
   public Scope union(Scope other) {
-    Set<Variable> newVariables = new HashSet<Variable>(variables.values());
-    newVariables.addAll(other.variables.values());
+    ScopeCache cache = ScopeCache.of(this, other);
+    if (cache != null) {
+      return cache.union(this, other);
+    }
+
+    return computeUnion(other);
+  }
+
+  protected Scope computeUnion(Scope other) {
+    int maxVariables = sortedVariables.length + other.sortedVariables.length;
+    Variable[] newVariables = new Variable[maxVariables];
+    int numNewVariables = 0;
+
+    int[] indices = null;
+    int[] otherIndices = null;
+    int[] newIndices = null;
+    if (sharesRegistryWith(other)) {
+      indices = sortedVariableIndices;
+      otherIndices = other.sortedVariableIndices;
+      newIndices = new int[maxVariables];
+    }
+
+    int i = 0;
+    int j = 0;
+    while (i < sortedVariables.length || j < other.sortedVariables.length) {
+      int comparison;
+      if (i == sortedVariables.length) {
+        comparison = 1;
+      } else if (j == other.sortedVariables.length) {
+        comparison = -1;
+      } else {
+        comparison = compare(indices, sortedVariableIds, i, otherIndices, other.sortedVariableIds, j);
+      }
+
+      if (comparison <= 0) {
+        newVariables[numNewVariables] = sortedVariables[i];
+        if (newIndices != null) {
+          newIndices[numNewVariables] = indices[i];
+        }
+        i++;
+
+        if (comparison == 0) {
+          j++;
+        }
+      } else {
+        newVariables[numNewVariables] = other.sortedVariables[j];
+        if (newIndices != null) {
+          newIndices[numNewVariables] = otherIndices[j];
+        }
+        j++;
+      }
+
+      numNewVariables++;
+    }
 
-    return new Scope(newVariables);
+    return newScope(newVariables, newIndices, numNewVariables);
   }
 
   /**
    * Returns a new, reduced scope.
    */
   public Scope reduceBy(String... variableIds) {
-    Map<String, Variable> newVariables = new HashMap<String, Variable>(variables);
+    int[] positions = new int[variableIds.length];
+    int numPositions = 0;
 
     for (String variableId : variableIds) {
-      newVariables.remove(variableId);
+      int position = positionOf(variableId);
+      if (position >= 0) {
+        positions[numPositions] = position;
+        numPositions++;
+      }
+    }
+
+    positions = Arrays.copyOf(positions, numPositions);
+    Arrays.sort(positions);
+
+    Scope reducedScope = reduceByPositions(positions);
+    if (scopeCache != null) {
+      reducedScope = scopeCache.intern(reducedScope);
     }
 
-    return new Scope(newVariables.values());
+    return reducedScope;
+  }
+
+  /**
+   * @param positions ascending positions of this scope's variables to remove; duplicates are ignored
+   */
+  protected Scope reduceByPositions(int[] positions) {
+    Variable[] newVariables = new Variable[sortedVariables.length];
+    int[] newIndices = registry != null ? new int[sortedVariables.length] : null;
+    int numNewVariables = 0;
+
+    int j = 0;
+    for (int i = 0; i < sortedVariables.length; i++) {
+      while (j < positions.length && positions[j] < i) {
+        j++;
+      }
+
+      if (j == positions.length || positions[j] != i) {
+        newVariables[numNewVariables] = sortedVariables[i];
+        if (newIndices != null) {
+          newIndices[numNewVariables] = sortedVariableIndices[i];
+        }
+        numNewVariables++;
+      }
+    }
+
+    return newScope(newVariables, newIndices, numNewVariables);
   }
 
   /**
    * Returns a new, reduced scope.
    */
   public Scope reduceBy(Scope other) {
-    return reduceBy(other.sortedVariableIds);
+    ScopeCache cache = ScopeCache.of(this, other);
+    if (cache != null) {
+      return cache.reduceBy(this, other);
+    }
+
+    return computeReduction(other);
+  }
+
+  protected Scope computeReduction(Scope other) {
+    Variable[] newVariables = new Variable[sortedVariables.length];
+    int numNewVariables = 0;
+
+    int[] indices = null;
+    int[] otherIndices = null;
+    int[] newIndices = null;
+    if (sharesRegistryWith(other)) {
+      indices = sortedVariableIndices;
+      otherIndices = other.sortedVariableIndices;
+      newIndices = new int[sortedVariables.length];
+    }
+
+    String[] ids = sortedVariableIds;
+    String[] otherIds = other.sortedVariableIds;
+
+    int j = 0;
+    for (int i = 0; i < ids.length; i++) {
+      while (j < otherIds.length && compare(otherIndices, otherIds, j, indices, ids, i) < 0) {
+        j++;
+      }
+
+      if (j == otherIds.length || compare(otherIndices, otherIds, j, indices, ids, i) != 0) {
+        newVariables[numNewVariables] = sortedVariables[i];
+        if (newIndices != null) {
+          newIndices[numNewVariables] = indices[i];
+        }
+        numNewVariables++;
+      }
+    }
+
+    return newScope(newVariables, newIndices, numNewVariables);
+  }
+
+  /**
+   * Interns this scope in a new cache unless it is interned already. Scopes derived from an interned scope
+   * via {@link #subScope(String...)} and {@link #reduceBy(String...)} are interned in the same cache, such that
+   * interning the scope of a model creates the cache and the {@link VariableRegistry} of the model.
+   */
+  public Scope intern() {
+    if (scopeCache != null) {
+      return this;
+    }
+
+    return new ScopeCache(this).intern(this);
+  }
+
+  /**
+   * Returns the canonical instance of this scope in the given cache, i.e. a structurally equal scope
+   * that may be this scope itself.
+   *
+   * @param scopeCache if null, this scope is interned in a new cache, see {@link #intern()}
+   */
+  public Scope intern(ScopeCache scopeCache) {
+    if (scopeCache == null) {
+      return intern();
+    }
+
+    return scopeCache.intern(this);
+  }
+
+  public boolean isInterned() {
+    return scopeCache != null;
+  }
+
+  /**
+   * @return the cache this scope is interned in or null
+   */
+  public ScopeCache getScopeCache() {
+    return scopeCache;
   }
 
   public int size() {
     return sortedVariableIds.length;
   }
 
+  /**
+   * Returns the values of the sub scope's variables, given an assignment of this scope's variables.
+   */
+  public int[] projectAssignment(int[] assignment, Scope subScope) {
+    int[] mapping = subScope.createDiscreteVariableMapping(this);
+    int[] subAssignment = new int[mapping.length];
+
+    for (int i = 0; i < mapping.length; i++) {
+      if (mapping[i] < 0) {
+        throw new ModelStructureException("Variable " + subScope.discreteSortedVariableIds[i] + " is not part of this scope.");
+      }
+
+      subAssignment[i] = assignment[mapping[i]];
+    }
+
+    return subAssignment;
+  }
+
   /**
    * @param iterable containing the order of variable IDs to map from
    *
@@ -257,16 +715,12 @@ public class Scope {
 
     int j = 0;
     for (String variableIdToMapFrom : variableIds) {
-      if (!contains(variableIdToMapFrom)) {
+      int position = positionOf(variableIdToMapFrom);
+      if (position < 0) {
         throw new RuntimeException("Variable " + variableIdToMapFrom + " is not contained in scope " + this);
       }
 
-      for (int i = 0; i < sortedVariableIds.length; i++) {
-        if (sortedVariableIds[i].equals(variableIdToMapFrom)) {
-          mapping[j] = i;
-          break;
-        }
-      }
+      mapping[j] = position;
       j++;
     }
 
@@ -282,7 +736,7 @@ public class Scope {
     for (String variableId : sortedVariableIds) {
       sb.append(variableId);
 
-      if (i != variables.size() - 1) {
+      if (i != sortedVariableIds.length - 1) {
         sb.append(", ");
       }
 
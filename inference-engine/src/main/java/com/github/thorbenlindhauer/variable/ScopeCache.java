@@ -0,0 +1,299 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.variable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interns the scopes of one model, such that structurally equal scopes (same variable ids, types and cardinalities)
+ * are represented by one canonical instance, and memoizes the results of operations on interned scopes. A model only
+ * has a bounded number of distinct scopes, so that repeated factor operations mostly become cache lookups.
+ *
+ * <p>
+ * Every model has its own cache (see {@link Scope#intern()}), such that neither scopes nor variables are shared
+ * between models. Results are keyed by the identity of the interned operands, so operations on scopes of different
+ * caches are not memoized.
+ * </p>
+ *
+ * <p>
+ * Both maps are bounded LRU maps. A scope that was evicted from the intern table remains valid;
+ * only a structurally equal scope interned later may be a different instance.
+ * </p>
+ *
+ * @author Thorben
+ */
+public class ScopeCache {
+
+  protected static final int MAX_INTERNED_SCOPES = 4096;
+  protected static final int MAX_CACHED_RESULTS = 8192;
+
+  protected static final String UNION = "union";
+  protected static final String INTERSECTION = "intersection";
+  protected static final String REDUCTION = "reduction";
+  protected static final String DISCRETE_MAPPING = "discreteMapping";
+
+  protected Map<ScopeKey, Scope> internedScopes = Collections.synchronizedMap(
+      new LinkedHashMap<ScopeKey, Scope>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ScopeKey, Scope> eldest) {
+          return size() > MAX_INTERNED_SCOPES;
+        }
+      });
+
+  protected VariableRegistry registry;
+
+  protected Map<ResultKey, Object> cachedResults = Collections.synchronizedMap(
+      new LinkedHashMap<ResultKey, Object>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ResultKey, Object> eldest) {
+          return size() > MAX_CACHED_RESULTS;
+        }
+      });
+
+  public ScopeCache() {
+  }
+
+  /**
+   * Creates the cache of a model, whose {@link VariableRegistry} registers the variables of the model's scope.
+   * Scopes of these variables that are interned in this cache use the registry's int ids.
+   */
+  public ScopeCache(Scope modelScope) {
+    this.registry = new VariableRegistry(modelScope.sortedVariableIds);
+  }
+
+  /**
+   * Returns the canonical instance of the given scope in this cache. If the scope is interned in another cache,
+   * the canonical instance is a copy of it.
+   */
+  public Scope intern(Scope scope) {
+    if (scope.scopeCache == this) {
+      return scope;
+    }
+
+    ScopeKey key = new ScopeKey(scope);
+    synchronized (internedScopes) {
+      Scope internedScope = internedScopes.get(key);
+
+      if (internedScope == null) {
+        internedScope = scope.scopeCache == null ? scope : new Scope(scope.sortedVariables);
+        internedScope.useRegistry(registry);
+        internedScope.scopeCache = this;
+        internedScopes.put(key, internedScope);
+      }
+
+      return internedScope;
+    }
+  }
+
+  /**
+   * Returns the cache that all scopes are interned in or null if there is none.
+   */
+  public static ScopeCache of(Scope... scopes) {
+    if (scopes.length == 0) {
+      return null;
+    }
+
+    ScopeCache cache = scopes[0].scopeCache;
+    for (Scope scope : scopes) {
+      if (scope.scopeCache != cache) {
+        return null;
+      }
+    }
+
+    return cache;
+  }
+
+  /**
+   * Returns the result of an operation on scopes of this cache that was memoized via
+   * {@link #cacheResult(Object, String, Scope...)}, or null.
+   *
+   * @param operation identifies the operation; the operation names of other components must not collide
+   */
+  public Object getResult(String operation, Scope... operands) {
+    return cachedResults.get(new ResultKey(operation, operands));
+  }
+
+  public void cacheResult(Object result, String operation, Scope... operands) {
+    cachedResults.put(new ResultKey(operation, operands), result);
+  }
+
+  public Scope union(Scope first, Scope second) {
+    Scope result = (Scope) getResult(UNION, first, second);
+
+    if (result == null) {
+      result = intern(first.computeUnion(second));
+      cacheResult(result, UNION, first, second);
+    }
+
+    return result;
+  }
+
+  public Scope intersect(Scope first, Scope second) {
+    Scope result = (Scope) getResult(INTERSECTION, first, second);
+
+    if (result == null) {
+      result = intern(first.computeIntersection(second));
+      cacheResult(result, INTERSECTION, first, second);
+    }
+
+    return result;
+  }
+
+  public Scope reduceBy(Scope scope, Scope scopeToRemove) {
+    Scope result = (Scope) getResult(REDUCTION, scope, scopeToRemove);
+
+    if (result == null) {
+      result = intern(scope.computeReduction(scopeToRemove));
+      cacheResult(result, REDUCTION, scope, scopeToRemove);
+    }
+
+    return result;
+  }
+
+  /**
+   * The returned mapping is shared and must not be modified.
+   */
+  public int[] discreteVariableMapping(Scope scope, Scope other) {
+    int[] mapping = (int[]) getResult(DISCRETE_MAPPING, scope, other);
+
+    if (mapping == null) {
+      mapping = scope.computeDiscreteVariableMapping(other);
+      cacheResult(mapping, DISCRETE_MAPPING, scope, other);
+    }
+
+    return mapping;
+  }
+
+  /**
+   * @return null if this cache was not created for a model, see {@link #ScopeCache(Scope)}
+   */
+  public VariableRegistry getRegistry() {
+    return registry;
+  }
+
+  public int getNumCachedResults() {
+    return cachedResults.size();
+  }
+
+  public void clear() {
+    internedScopes.clear();
+    cachedResults.clear();
+  }
+
+  /**
+   * Identifies a scope by the ids, types and cardinalities of its variables, where continuous variables
+   * have cardinality -1.
+   */
+  protected static class ScopeKey {
+
+    protected String[] variableIds;
+    protected Class<?>[] variableTypes;
+    protected int[] cardinalities;
+    protected int hashCode;
+
+    public ScopeKey(Scope scope) {
+      this.variableIds = scope.sortedVariableIds;
+      this.variableTypes = new Class<?>[variableIds.length];
+      this.cardinalities = new int[variableIds.length];
+
+      for (int i = 0; i < cardinalities.length; i++) {
+        Variable variable = scope.sortedVariables[i];
+        variableTypes[i] = variable.getClass();
+
+        if (variable instanceof DiscreteVariable) {
+          cardinalities[i] = ((DiscreteVariable) variable).getCardinality();
+        } else {
+          cardinalities[i] = -1;
+        }
+      }
+
+      int result = Arrays.hashCode(variableIds);
+      result = 31 * result + Arrays.hashCode(variableTypes);
+      result = 31 * result + Arrays.hashCode(cardinalities);
+      this.hashCode = result;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof ScopeKey))
+        return false;
+      ScopeKey other = (ScopeKey) obj;
+      return hashCode == other.hashCode
+          && Arrays.equals(variableIds, other.variableIds)
+          && Arrays.equals(variableTypes, other.variableTypes)
+          && Arrays.equals(cardinalities, other.cardinalities);
+    }
+  }
+
+  /**
+   * Identifies the result of an operation on interned scopes by the identity of the scopes.
+   */
+  protected static class ResultKey {
+
+    protected String operation;
+    protected Scope[] operands;
+    protected int hashCode;
+
+    public ResultKey(String operation, Scope[] operands) {
+      this.operation = operation;
+      this.operands = operands;
+
+      int result = operation.hashCode();
+      for (Scope operand : operands) {
+        result = 31 * result + System.identityHashCode(operand);
+      }
+      this.hashCode = result;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof ResultKey))
+        return false;
+      ResultKey other = (ResultKey) obj;
+      if (hashCode != other.hashCode || !operation.equals(other.operation) || operands.length != other.operands.length) {
+        return false;
+      }
+
+      for (int i = 0; i < operands.length; i++) {
+        if (operands[i] != other.operands[i]) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.variable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense int ids to the variables of a model. The id of a variable is the rank of its id among the sorted
+ * ids of the model's variables, such that the ids of a scope in canonical order are ascending and two scopes of
+ * the model can be merged by comparing ints instead of strings.
+ *
+ * @author Thorben
+ */
+public class VariableRegistry {
+
+  protected String[] sortedVariableIds;
+  protected Map<String, Integer> indices;
+
+  /**
+   * @param sortedVariableIds distinct ids in canonical order
+   */
+  public VariableRegistry(String[] sortedVariableIds) {
+    this.sortedVariableIds = sortedVariableIds;
+    this.indices = new HashMap<String, Integer>();
+
+    for (int i = 0; i < sortedVariableIds.length; i++) {
+      indices.put(sortedVariableIds[i], i);
+    }
+  }
+
+  /**
+   * @return the int id of the variable or -1 if it is not registered
+   */
+  public int getIndex(String variableId) {
+    Integer index = indices.get(variableId);
+    if (index != null) {
+      return index;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the int ids of the variables or null if any of them is not registered
+   */
+  public int[] getIndices(String[] variableIds) {
+    int[] variableIndices = new int[variableIds.length];
+
+    for (int i = 0; i < variableIds.length; i++) {
+      variableIndices[i] = getIndex(variableIds[i]);
+      if (variableIndices[i] < 0) {
+        return null;
+      }
+    }
+
+    return variableIndices;
+  }
+
+  public String getVariableId(int index) {
+    return sortedVariableIds[index];
+  }
+
+  public int size() {
+    return sortedVariableIds.length;
+  }
+}
@@ -0,0 +1,126 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
+
+public class DiscreteFactorOperationPlanTest {
+
+  @Test
+  public void testPlanIsReusedForEqualScopes() {
+    ScopeCache scopeCache = new ScopeCache();
+    Scope scope1 = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3))).intern(scopeCache);
+    Scope scope2 = new Scope(Arrays.asList(new DiscreteVariable("B", 3), new DiscreteVariable("C", 2))).intern(scopeCache);
+
+    DiscreteFactorOperationPlan plan = DiscreteFactorOperationPlan.forProduct(scope1, scope2);
+
+    // structurally equal scopes are interned to the same instances
+    Scope otherScope1 = new Scope(Arrays.asList(new DiscreteVariable("B", 3), new DiscreteVariable("A", 2))).intern(scopeCache);
+    Scope otherScope2 = new Scope(Arrays.asList(new DiscreteVariable("C", 2), new DiscreteVariable("B", 3))).intern(scopeCache);
+
+    assertThat(DiscreteFactorOperationPlan.forProduct(otherScope1, otherScope2)).isSameAs(plan);
+    assertThat(DiscreteFactorOperationPlan.forProduct(scope2, scope1)).isNotSameAs(plan);
+    assertThat(DiscreteFactorOperationPlan.forMarginal(scope1, scope2)).isNotSameAs(plan);
+
+    // plans of scopes of other models are not shared
+    Scope modelScope1 = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3))).intern();
+    Scope modelScope2 = modelScope1.subScope("B");
+    assertThat(DiscreteFactorOperationPlan.forProduct(modelScope1, modelScope2))
+      .isSameAs(DiscreteFactorOperationPlan.forProduct(modelScope1, modelScope2));
+    assertThat(DiscreteFactorOperationPlan.forProduct(modelScope1, scope2))
+      .isNotSameAs(DiscreteFactorOperationPlan.forProduct(modelScope1, scope2));
+  }
+
+  @Test
+  public void testSumProductInputsInCanonicalOrder() {
+    Scope modelScope = new Scope(Arrays.asList(new DiscreteVariable("Q", 2), new DiscreteVariable("R", 3),
+        new DiscreteVariable("S", 2))).intern();
+    Scope scopeQR = modelScope.subScope("Q", "R");
+    Scope scopeR = modelScope.subScope("R");
+    Scope scopeRS = modelScope.subScope("R", "S");
+
+    TableBasedDiscreteFactor factorQR = new TableBasedDiscreteFactor(scopeQR, new double[] {1, 2, 3, 4, 5, 6});
+    TableBasedDiscreteFactor factorR = new TableBasedDiscreteFactor(scopeR, new double[] {1, 10, 100});
+    TableBasedDiscreteFactor factorRS = new TableBasedDiscreteFactor(scopeRS, new double[] {1, 2, 3, 4, 5, 6});
+
+    assertThat(DiscreteFactorSumProductPlan.inCanonicalOrder(Arrays.asList(factorRS, factorR, factorQR)))
+      .containsExactly(factorQR, factorR, factorRS);
+
+    // the order in which the factors are passed does not lead to separate plans
+    TableBasedDiscreteFactor result = TableBasedDiscreteFactor.sumProduct(Arrays.asList(factorQR, factorR, factorRS), scopeR, null);
+    int numCachedResults = modelScope.getScopeCache().getNumCachedResults();
+
+    TableBasedDiscreteFactor otherResult = TableBasedDiscreteFactor.sumProduct(Arrays.asList(factorRS, factorQR, factorR), scopeR, null);
+    assertThat(modelScope.getScopeCache().getNumCachedResults()).isEqualTo(numCachedResults);
+    assertThat(otherResult.getValues()).isEqualTo(result.getValues());
+  }
+
+  @Test
+  public void testPlanDistinguishesCardinalities() {
+    Scope scope1 = new Scope(Arrays.asList(new DiscreteVariable("A", 2)));
+    Scope scope2 = new Scope(Arrays.asList(new DiscreteVariable("A", 3)));
+
+    DiscreteFactorOperationPlan plan1 = DiscreteFactorOperationPlan.forMarginal(scope1, scope1);
+    DiscreteFactorOperationPlan plan2 = DiscreteFactorOperationPlan.forMarginal(scope2, scope2);
+
+    assertThat(plan1).isNotSameAs(plan2);
+    assertThat(plan2.getResultScope().getNumDistinctValues()).isEqualTo(3);
+  }
+
+  @Test
+  public void testRepeatedProductWithSamePlan() {
+    Scope scope1 = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2)));
+    Scope scope2 = new Scope(Arrays.asList(new DiscreteVariable("B", 2)));
+
+    TableBasedDiscreteFactor factor1 = new TableBasedDiscreteFactor(scope1, new double[] {1, 2, 3, 4});
+    TableBasedDiscreteFactor factor2 = new TableBasedDiscreteFactor(scope2, new double[] {10, 100});
+    TableBasedDiscreteFactor factor3 = new TableBasedDiscreteFactor(scope2, new double[] {2, 3});
+
+    assertThat(factor1.product(factor2).getValues()).isEqualTo(new double[] {10, 20, 300, 400});
+    assertThat(factor1.product(factor3).getValues()).isEqualTo(new double[] {2, 4, 9, 12});
+
+    // the marginal of the product over B again
+    assertThat(factor1.product(factor3).marginal(scope2).getValues()).isEqualTo(new double[] {6, 21});
+  }
+
+  @Test
+  public void testContiguousLayouts() {
+    Scope scopeA = new Scope(Arrays.asList(new DiscreteVariable("A", 2)));
+    Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+    Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+
+    TableBasedDiscreteFactor factorA = new TableBasedDiscreteFactor(scopeA, new double[] {10, 100});
+    TableBasedDiscreteFactor factorB = new TableBasedDiscreteFactor(scopeB, new double[] {1, 2, 3});
+    TableBasedDiscreteFactor factorAB = new TableBasedDiscreteFactor(scopeAB, new double[] {1, 2, 3, 4, 5, 6});
+
+    // A is the leading variable of AB, so that its table repeats in blocks
+    assertThat(DiscreteFactorOperationPlan.forProduct(scopeAB, scopeA).secondBlockSize).isEqualTo(2);
+    assertThat(factorAB.product(factorA).getValues()).isEqualTo(new double[] {10, 200, 30, 400, 50, 600});
+    assertThat(factorA.product(factorAB).getValues()).isEqualTo(new double[] {10, 200, 30, 400, 50, 600});
+    assertThat(factorAB.product(factorAB).getValues()).isEqualTo(new double[] {1, 4, 9, 16, 25, 36});
+    assertThat(factorAB.marginal(scopeA).getValues()).isEqualTo(new double[] {9, 12});
+
+    // B is not leading
+    assertThat(DiscreteFactorOperationPlan.forProduct(scopeAB, scopeB).secondBlockSize).isEqualTo(-1);
+    assertThat(factorAB.product(factorB).getValues()).isEqualTo(new double[] {1, 2, 6, 8, 15, 18});
+    assertThat(factorAB.marginal(scopeB).getValues()).isEqualTo(new double[] {3, 7, 11});
+  }
+}
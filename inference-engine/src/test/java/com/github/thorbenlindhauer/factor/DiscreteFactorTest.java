@@ -22,6 +22,7 @@ import java.util.Set;
 import org.junit.Test;
 
 import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.test.util.TestConstants;
 import com.github.thorbenlindhauer.variable.DiscreteVariable;
 import com.github.thorbenlindhauer.variable.Scope;
 import com.github.thorbenlindhauer.variable.Variable;
@@ -322,6 +323,36 @@ public class DiscreteFactorTest {
      });
   }
 
+  @Test
+  public void testValueReduction() {
+    Scope scope = newVariables(new DiscreteVariable("A", 3), new DiscreteVariable("B", 3), new DiscreteVariable("C", 2));
+    TableBasedDiscreteFactor factor = new TableBasedDiscreteFactor(scope,
+        new double[] {
+          1, 2, 3, // B == 0, C == 0
+          4, 5, 6, // B == 1, C == 0
+          7, 8, 9, // B == 2, C == 0
+          10, 11, 12, // B == 0, C == 1
+          13, 14, 15, // B == 1, C == 1
+          16, 17, 18  // B == 2, C == 1
+       });
+
+    TableBasedDiscreteFactor reducedFactor = factor.reduce(scope.subScope("B"), new int[] {1});
+    assertThat(reducedFactor.getVariables().getVariableIds()).containsExactly("A", "C");
+    assertThat(reducedFactor.getValues()).isEqualTo(new double[] {
+        4, 5, 6, // C == 0
+        13, 14, 15 // C == 1
+     });
+
+    reducedFactor = factor.reduce(scope.subScope("A", "C"), new int[] {2, 1});
+    assertThat(reducedFactor.getVariables().getVariableIds()).containsExactly("B");
+    assertThat(reducedFactor.getValues()).isEqualTo(new double[] {12, 15, 18});
+
+    // variables that are not part of the factor's scope are ignored
+    Scope otherScope = newVariables(new DiscreteVariable("A", 3), new DiscreteVariable("D", 2));
+    reducedFactor = factor.reduce(otherScope, new int[] {1, 1});
+    assertThat(reducedFactor.getValues()).isEqualTo(new double[] {2, 5, 8, 11, 14, 17});
+  }
+
   @Test
   public void testValueObservationCase2() {
     Scope scope = newVariables(new DiscreteVariable("A", 3), new DiscreteVariable("B", 3), new DiscreteVariable("C", 2));
@@ -515,6 +546,98 @@ public class DiscreteFactorTest {
     }
   }
 
+  @Test
+  public void testFactorProductInPlace() {
+    Scope variablesFactor1 = newVariables(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor factor1 = new TableBasedDiscreteFactor(variablesFactor1, new double[] {1, 2, 3, 4});
+
+    Scope variablesFactor2 = newVariables(new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor factor2 = new TableBasedDiscreteFactor(variablesFactor2, new double[] {10, 100});
+
+    TableBasedDiscreteFactor product = factor1.productInto(factor2, factor1);
+    assertThat(product).isSameAs(factor1);
+    assertThat(product.getValues()).isEqualTo(new double[] {10, 20, 300, 400});
+
+    // the target's scope does not match the product's scope
+    TableBasedDiscreteFactor otherProduct = factor2.productInto(factor1, factor2);
+    assertThat(otherProduct).isNotSameAs(factor2);
+    assertThat(otherProduct.getValues()).isEqualTo(new double[] {100, 200, 30000, 40000});
+    assertThat(factor2.getValues()).isEqualTo(new double[] {10, 100});
+  }
+
+  @Test
+  public void testFactorMarginalInto() {
+    Scope variablesFactor1 = newVariables(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor factor1 = new TableBasedDiscreteFactor(variablesFactor1, new double[] {1, 2, 3, 4});
+
+    Scope variablesFactor2 = newVariables(new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor target = new TableBasedDiscreteFactor(variablesFactor2, new double[] {10, 100});
+
+    TableBasedDiscreteFactor marginal = factor1.marginalInto(variablesFactor2, target);
+    assertThat(marginal).isSameAs(target);
+    assertThat(marginal.getValues()).isEqualTo(new double[] {3, 7});
+
+    // marginalizing over no variable copies the factor
+    TableBasedDiscreteFactor copy = factor1.marginalInto(variablesFactor1, null);
+    assertThat(copy).isNotSameAs(factor1);
+    assertThat(copy.getValues()).isEqualTo(factor1.getValues());
+    assertThat(copy.getValues()).isNotSameAs(factor1.getValues());
+  }
+
+  @Test
+  public void testFactorDivisionAndNormalizationInPlace() {
+    Scope variablesFactor1 = newVariables(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor factor1 = new TableBasedDiscreteFactor(variablesFactor1, new double[] {1, 2, 6, 8});
+
+    Scope variablesFactor2 = newVariables(new DiscreteVariable("B", 2));
+    TableBasedDiscreteFactor factor2 = new TableBasedDiscreteFactor(variablesFactor2, new double[] {1, 2});
+
+    TableBasedDiscreteFactor quotient = factor1.divideInPlace(factor2);
+    assertThat(quotient).isSameAs(factor1);
+    assertThat(quotient.getValues()).isEqualTo(new double[] {1, 2, 3, 4});
+
+    TableBasedDiscreteFactor normalized = quotient.normalizeInPlace();
+    assertThat(normalized).isSameAs(factor1);
+    assertThat(normalized.getValues()).isEqualTo(new double[] {0.1, 0.2, 0.3, 0.4});
+  }
+
+  @Test
+  public void testMultiwayProductAndSumProduct() {
+    TableBasedDiscreteFactor factor1 = new TableBasedDiscreteFactor(
+        newVariables(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)), new double[] {1, 2, 3, 4, 5, 6});
+    TableBasedDiscreteFactor factor2 = new TableBasedDiscreteFactor(
+        newVariables(new DiscreteVariable("B", 3), new DiscreteVariable("C", 2)), new double[] {1, 0, 2, 3, 1, 2});
+    TableBasedDiscreteFactor factor3 = new TableBasedDiscreteFactor(
+        newVariables(new DiscreteVariable("A", 2), new DiscreteVariable("C", 2)), new double[] {0.5, 1, 2, 4});
+
+    Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+    factors.add(factor1);
+    factors.add(factor2);
+    factors.add(factor3);
+
+    TableBasedDiscreteFactor pairwiseProduct = factor1.product(factor2).product(factor3);
+
+    DiscreteFactor product = FactorUtil.jointDistribution(factors);
+    assertThat(product.getVariables().getVariableIds()).containsExactly("A", "B", "C");
+    for (int i = 0; i < pairwiseProduct.getValues().length; i++) {
+      assertThat(product.getValueAtIndex(i)).isEqualTo(pairwiseProduct.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+
+    Scope marginalScope = newVariables(new DiscreteVariable("B", 3));
+    TableBasedDiscreteFactor pairwiseMarginal = pairwiseProduct.marginal(marginalScope);
+
+    DiscreteFactor marginal = FactorUtil.sumProduct(factors, marginalScope, null);
+    assertThat(marginal.getVariables().getVariableIds()).containsExactly("B");
+    for (int i = 0; i < pairwiseMarginal.getValues().length; i++) {
+      assertThat(marginal.getValueAtIndex(i)).isEqualTo(pairwiseMarginal.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+
+    // the target's table is overwritten
+    DiscreteFactor reusedMarginal = FactorUtil.sumProduct(factors, marginalScope, marginal);
+    assertThat(reusedMarginal).isSameAs(marginal);
+    assertThat(reusedMarginal.getValueAtIndex(0)).isEqualTo(pairwiseMarginal.getValueAtIndex(0), TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
   protected Scope newVariables(DiscreteVariable... variables) {
     Set<DiscreteVariable> variableArgs = new HashSet<DiscreteVariable>();
     for (DiscreteVariable variable : variables) {
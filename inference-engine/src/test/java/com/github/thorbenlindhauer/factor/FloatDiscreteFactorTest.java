@@ -0,0 +1,76 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class FloatDiscreteFactorTest {
+
+  protected Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+  protected Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+
+  @Test
+  public void testOperationsMatchTableBasedFactor() {
+    double[] valuesAB = new double[] {1, 2, 3, 4, 5, 6};
+    double[] valuesB = new double[] {0.5, 2, 0.25};
+
+    TableBasedDiscreteFactor tableFactorAB = new TableBasedDiscreteFactor(scopeAB, valuesAB);
+    TableBasedDiscreteFactor tableFactorB = new TableBasedDiscreteFactor(scopeB, valuesB);
+    FloatDiscreteFactor floatFactorAB = FloatDiscreteFactor.fromValues(scopeAB, valuesAB);
+    FloatDiscreteFactor floatFactorB = FloatDiscreteFactor.fromValues(scopeB, valuesB);
+
+    assertEqualValues(floatFactorAB.product(floatFactorB), tableFactorAB.product(tableFactorB));
+    assertEqualValues(floatFactorB.product(floatFactorAB), tableFactorB.product(tableFactorAB));
+    assertEqualValues(floatFactorAB.division(floatFactorB), tableFactorAB.division(tableFactorB));
+    assertEqualValues(floatFactorAB.marginal(scopeB), tableFactorAB.marginal(scopeB));
+    assertEqualValues(floatFactorAB.normalize(), tableFactorAB.normalize());
+    assertEqualValues(floatFactorAB.invert(), tableFactorAB.invert());
+    assertEqualValues(floatFactorAB.observation(scopeB, new int[] {1}), tableFactorAB.observation(scopeB, new int[] {1}));
+    assertEqualValues(floatFactorAB.reduce(scopeB, new int[] {1}), tableFactorAB.reduce(scopeB, new int[] {1}));
+
+    // mixed representations
+    assertEqualValues(floatFactorAB.product(tableFactorB), tableFactorAB.product(tableFactorB));
+  }
+
+  @Test
+  public void testSinglePrecisionModel() {
+    GraphicalModel<DiscreteFactor> model = GraphicalModel.create()
+      .discreteVariable("A", 2)
+      .discreteNetwork()
+      .singlePrecision()
+      .factor().scope("A").basedOnTable(new double[] {0.25, 0.75})
+      .build();
+
+    DiscreteFactor factor = model.getFactors().iterator().next();
+    assertThat(factor).isInstanceOf(FloatDiscreteFactor.class);
+    assertThat(((FloatDiscreteFactor) factor).getValues()).isEqualTo(new float[] {0.25f, 0.75f});
+  }
+
+  protected void assertEqualValues(DiscreteFactor actual, DiscreteFactor expected) {
+    assertThat(actual).isInstanceOf(FloatDiscreteFactor.class);
+    assertThat(actual.getVariables().getVariableIds()).isEqualTo(expected.getVariables().getVariableIds());
+
+    for (int i = 0; i < expected.getVariables().getNumDistinctValues(); i++) {
+      assertThat(actual.getValueAtIndex(i)).isEqualTo(expected.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+  }
+}
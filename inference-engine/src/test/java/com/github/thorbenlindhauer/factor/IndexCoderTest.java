@@ -95,4 +95,24 @@ public class IndexCoderTest {
   }
   
   // TODO: test sanity of input?
+
+  @Test
+  public void testIncrementalAssignment() {
+    int[] variableCardinalities = new int[] {3, 5, 2};
+    IndexCoder coder = new IndexCoder(variableCardinalities);
+
+    int[] assignment = new int[3];
+    int[] decodedAssignment = new int[3];
+
+    for (int i = 0; i < 30; i++) {
+      assertThat(assignment).isEqualTo(coder.getAssignmentForIndex(i));
+
+      coder.getAssignmentForIndex(i, decodedAssignment);
+      assertThat(decodedAssignment).isEqualTo(assignment);
+
+      assertThat(coder.nextAssignment(assignment)).isEqualTo(i < 29);
+    }
+
+    assertThat(assignment).isEqualTo(new int[] {0, 0, 0});
+  }
 }
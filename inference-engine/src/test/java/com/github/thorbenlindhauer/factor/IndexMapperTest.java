@@ -38,4 +38,36 @@ public class IndexMapperTest {
     assertThat(mapper.mapIndex(23)).isEqualTo(27); // assignment 2 2 1 maps to 2 1 2
     assertThat(mapper.reverseMapIndex(27)).isEqualTo(23);
   }
+
+  @Test
+  public void testBulkMapping() {
+    int[] variableCardinalities = new int[] {3, 5, 2};
+    IndexCoder coder = new IndexCoder(variableCardinalities);
+
+    int[] mapping = new int[] {2, 0, 1};
+    IndexMapper mapper = coder.getIndexMapper(mapping);
+
+    int[] mappedIndices = new int[30];
+    mapper.mapAllIndices(mappedIndices);
+
+    int[] originalIndices = new int[30];
+    mapper.reverseMapAllIndices(originalIndices);
+
+    int[] allIndices = new int[30];
+    for (int i = 0; i < allIndices.length; i++) {
+      allIndices[i] = i;
+    }
+
+    int[] bulkMappedIndices = new int[30];
+    mapper.mapIndices(allIndices, bulkMappedIndices);
+
+    for (int i = 0; i < 30; i++) {
+      assertThat(mappedIndices[i]).isEqualTo(mapper.mapIndex(i));
+      assertThat(bulkMappedIndices[i]).isEqualTo(mapper.mapIndex(i));
+      assertThat(originalIndices[mappedIndices[i]]).isEqualTo(i);
+    }
+
+    assertThat(mappedIndices[23]).isEqualTo(27);
+    assertThat(originalIndices[20]).isEqualTo(2);
+  }
 }
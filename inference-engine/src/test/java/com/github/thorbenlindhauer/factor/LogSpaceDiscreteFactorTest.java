@@ -0,0 +1,129 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.inference.loopy.DiscreteFactorEvaluator;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class LogSpaceDiscreteFactorTest {
+
+  protected Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+  protected Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+
+  @Test
+  public void testOperationsMatchTableBasedFactor() {
+    double[] valuesAB = new double[] {1, 2, 3, 4, 5, 6};
+    double[] valuesB = new double[] {0.5, 2, 0.25};
+
+    TableBasedDiscreteFactor tableFactorAB = new TableBasedDiscreteFactor(scopeAB, valuesAB);
+    TableBasedDiscreteFactor tableFactorB = new TableBasedDiscreteFactor(scopeB, valuesB);
+    LogSpaceDiscreteFactor logFactorAB = LogSpaceDiscreteFactor.fromValues(scopeAB, valuesAB);
+    LogSpaceDiscreteFactor logFactorB = LogSpaceDiscreteFactor.fromValues(scopeB, valuesB);
+
+    assertEqualValues(logFactorAB.product(logFactorB), tableFactorAB.product(tableFactorB));
+    assertEqualValues(logFactorB.product(logFactorAB), tableFactorB.product(tableFactorAB));
+    assertEqualValues(logFactorAB.division(logFactorB), tableFactorAB.division(tableFactorB));
+    assertEqualValues(logFactorAB.marginal(scopeB), tableFactorAB.marginal(scopeB));
+    assertEqualValues(logFactorAB.normalize(), tableFactorAB.normalize());
+    assertEqualValues(logFactorAB.invert(), tableFactorAB.invert());
+    assertEqualValues(logFactorAB.observation(scopeB, new int[] {1}), tableFactorAB.observation(scopeB, new int[] {1}));
+
+    // mixed representations
+    assertEqualValues(logFactorAB.product(tableFactorB), tableFactorAB.product(tableFactorB));
+  }
+
+  @Test
+  public void testProductDoesNotUnderflow() {
+    LogSpaceDiscreteFactor factor = LogSpaceDiscreteFactor.fromValues(scopeB, new double[] {1.0e-200, 2.0e-200, 1.0e-200});
+
+    LogSpaceDiscreteFactor product = factor.product(factor).product(factor);
+    assertThat(product.getValueAtIndex(0)).isEqualTo(0.0d);
+
+    LogSpaceDiscreteFactor normalizedProduct = product.normalize();
+    assertThat(normalizedProduct.getValueAtIndex(0)).isEqualTo(0.1d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(normalizedProduct.getValueAtIndex(1)).isEqualTo(0.8d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(normalizedProduct.getValueAtIndex(2)).isEqualTo(0.1d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testDivisionNonZeroByZero() {
+    LogSpaceDiscreteFactor factorAB = LogSpaceDiscreteFactor.fromValues(scopeAB, new double[] {1, 2, 3, 4, 5, 6});
+    LogSpaceDiscreteFactor factorB = LogSpaceDiscreteFactor.fromValues(scopeB, new double[] {0, 2, 3});
+
+    try {
+      factorAB.division(factorB);
+      fail("expected exception");
+    } catch (FactorOperationException e) {
+      // happy path
+    }
+  }
+
+  @Test
+  public void testSumOutMatchesTableBasedFactor() {
+    Scope scopeBC = new Scope(Arrays.asList(new DiscreteVariable("B", 3), new DiscreteVariable("C", 2)));
+    double[] valuesAB = new double[] {1, 2, 3, 4, 5, 6};
+    double[] valuesBC = new double[] {0.5, 0, 2, 1, 0.25, 3};
+
+    Set<DiscreteFactor> tableFactors = new HashSet<DiscreteFactor>();
+    tableFactors.add(new TableBasedDiscreteFactor(scopeAB, valuesAB));
+    tableFactors.add(new TableBasedDiscreteFactor(scopeBC, valuesBC));
+
+    Set<DiscreteFactor> logFactors = new HashSet<DiscreteFactor>();
+    logFactors.add(LogSpaceDiscreteFactor.fromValues(scopeAB, valuesAB));
+    logFactors.add(LogSpaceDiscreteFactor.fromValues(scopeBC, valuesBC));
+
+    DiscreteFactor tableResult = FactorUtil.sumOut(tableFactors, "B");
+    DiscreteFactor logResult = FactorUtil.sumOut(logFactors, "B");
+
+    assertThat(logResult).isInstanceOf(LogSpaceDiscreteFactor.class);
+    assertThat(logResult.getVariables().getVariableIds()).containsExactly("A", "C");
+    assertEqualValues(logResult, tableResult);
+    assertEqualValues(tableResult, FactorUtil.jointDistribution(tableFactors).marginal(tableResult.getVariables()));
+  }
+
+  @Test
+  public void testDisagreementMatchesTableBasedFactors() {
+    double[] values1 = new double[] {0.1, 0.2, 0, 0.3, 0.25, 0.15};
+    double[] values2 = new double[] {0.2, 0.2, 0, 0.1, 0.3, 0.2};
+    DiscreteFactorEvaluator evaluator = new DiscreteFactorEvaluator();
+
+    double expectedDisagreement = evaluator.quantifyDisagreement(
+        new TableBasedDiscreteFactor(scopeAB, values1), new TableBasedDiscreteFactor(scopeAB, values2));
+
+    assertThat(expectedDisagreement).isEqualTo(0.156268679d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(evaluator.quantifyDisagreement(LogSpaceDiscreteFactor.fromValues(scopeAB, values1), LogSpaceDiscreteFactor.fromValues(scopeAB, values2)))
+      .isEqualTo(expectedDisagreement, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(evaluator.quantifyDisagreement(LogSpaceDiscreteFactor.fromValues(scopeAB, values1), new TableBasedDiscreteFactor(scopeAB, values2)))
+      .isEqualTo(expectedDisagreement, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  protected void assertEqualValues(DiscreteFactor actual, DiscreteFactor expected) {
+    assertThat(actual.getVariables().hasSameVariablesAs(expected.getVariables())).isTrue();
+
+    for (int i = 0; i < expected.getVariables().getNumDistinctValues(); i++) {
+      assertThat(actual.getValueAtIndex(i)).isEqualTo(expected.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class MappedDiscreteFactorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndMapFactorTables() throws Exception {
+    GraphicalModel<DiscreteFactor> model = GraphicalModel.create()
+      .discreteVariable("A", 2).discreteVariable("B", 3)
+      .discreteNetwork()
+      .factor().scope("A", "B").basedOnTable(new double[] {1, 2, 3, 4, 5, 6})
+      .factor().scope("B").basedOnTable(new double[] {0.5, 2, 0.25})
+      .build();
+
+    File file = temporaryFolder.newFile();
+    MappedFactorTables.write(model, file);
+    GraphicalModel<DiscreteFactor> mappedModel = MappedFactorTables.open(file);
+
+    assertThat(mappedModel.getScope().getVariableIds()).isEqualTo(model.getScope().getVariableIds());
+    assertThat(mappedModel.getFactors()).hasSize(2);
+
+    for (DiscreteFactor mappedFactor : mappedModel.getFactors()) {
+      assertThat(mappedFactor).isInstanceOf(MappedDiscreteFactor.class);
+      assertEqualValues(mappedFactor, getFactor(model, mappedFactor.getVariables()));
+    }
+  }
+
+  @Test
+  public void testOperationsMatchTableBasedFactor() throws Exception {
+    Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+    Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+    TableBasedDiscreteFactor tableFactorAB = new TableBasedDiscreteFactor(scopeAB, new double[] {1, 2, 3, 4, 5, 6});
+    TableBasedDiscreteFactor tableFactorB = new TableBasedDiscreteFactor(scopeB, new double[] {0.5, 2, 0.25});
+
+    File file = temporaryFolder.newFile();
+    MappedFactorTables.write(GraphicalModel.discreteNetwork(scopeAB).factor().scope("A", "B")
+        .basedOnTable(tableFactorAB.getValues()).build(), file);
+    DiscreteFactor mappedFactorAB = MappedFactorTables.open(file).getFactors().iterator().next();
+
+    assertEqualValues(mappedFactorAB.product(tableFactorB), tableFactorAB.product(tableFactorB));
+    assertEqualValues(tableFactorB.product(mappedFactorAB), tableFactorB.product(tableFactorAB));
+    assertEqualValues(mappedFactorAB.division(tableFactorB), tableFactorAB.division(tableFactorB));
+    assertEqualValues(mappedFactorAB.marginal(scopeB), tableFactorAB.marginal(scopeB));
+    assertEqualValues(mappedFactorAB.normalize(), tableFactorAB.normalize());
+    assertEqualValues(mappedFactorAB.reduce(scopeB, new int[] {1}), tableFactorAB.reduce(scopeB, new int[] {1}));
+    assertEqualValues(mappedFactorAB.observation(scopeB, new int[] {1}), tableFactorAB.observation(scopeB, new int[] {1}));
+  }
+
+  protected DiscreteFactor getFactor(GraphicalModel<DiscreteFactor> model, Scope scope) {
+    for (DiscreteFactor factor : model.getFactors()) {
+      if (factor.getVariables().hasSameVariablesAs(scope)) {
+        return factor;
+      }
+    }
+
+    return null;
+  }
+
+  protected void assertEqualValues(DiscreteFactor actual, DiscreteFactor expected) {
+    assertThat(actual.getVariables().getVariableIds()).isEqualTo(expected.getVariables().getVariableIds());
+
+    for (int i = 0; i < expected.getVariables().getNumDistinctValues(); i++) {
+      assertThat(actual.getValueAtIndex(i)).isEqualTo(expected.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class OffHeapDiscreteFactorTest {
+
+  protected Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+  protected Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+
+  protected DirectBufferPool pool = new DirectBufferPool();
+
+  @Test
+  public void testOperationsMatchTableBasedFactor() {
+    double[] valuesAB = new double[] {1, 2, 3, 4, 5, 6};
+    double[] valuesB = new double[] {0.5, 2, 0.25};
+
+    TableBasedDiscreteFactor tableFactorAB = new TableBasedDiscreteFactor(scopeAB, valuesAB);
+    TableBasedDiscreteFactor tableFactorB = new TableBasedDiscreteFactor(scopeB, valuesB);
+    OffHeapDiscreteFactor offHeapFactorAB = OffHeapDiscreteFactor.fromValues(scopeAB, valuesAB, pool);
+    OffHeapDiscreteFactor offHeapFactorB = OffHeapDiscreteFactor.fromValues(scopeB, valuesB, pool);
+
+    assertEqualValues(offHeapFactorAB.product(offHeapFactorB), tableFactorAB.product(tableFactorB));
+    assertEqualValues(offHeapFactorB.product(offHeapFactorAB), tableFactorB.product(tableFactorAB));
+    assertEqualValues(offHeapFactorAB.division(offHeapFactorB), tableFactorAB.division(tableFactorB));
+    assertEqualValues(offHeapFactorAB.marginal(scopeB), tableFactorAB.marginal(scopeB));
+    assertEqualValues(offHeapFactorAB.normalize(), tableFactorAB.normalize());
+    assertEqualValues(offHeapFactorAB.invert(), tableFactorAB.invert());
+    assertEqualValues(offHeapFactorAB.observation(scopeB, new int[] {1}), tableFactorAB.observation(scopeB, new int[] {1}));
+    assertEqualValues(offHeapFactorAB.reduce(scopeB, new int[] {1}), tableFactorAB.reduce(scopeB, new int[] {1}));
+
+    // mixed representations
+    assertEqualValues(offHeapFactorAB.product(tableFactorB), tableFactorAB.product(tableFactorB));
+  }
+
+  @Test
+  public void testClosedFactorReturnsBufferToPool() {
+    OffHeapDiscreteFactor factor = OffHeapDiscreteFactor.fromValues(scopeAB, new double[] {1, 2, 3, 4, 5, 6}, pool);
+    DoubleBuffer buffer = factor.getValues();
+
+    factor.close();
+    factor.close();
+
+    assertThat(factor.isClosed()).isTrue();
+    assertThat(pool.getNumPooledBuffers(6)).isEqualTo(1);
+
+    try {
+      factor.getValueAtIndex(0);
+      fail("exception expected");
+    } catch (FactorOperationException e) {
+      // happy path
+    }
+
+    // the buffer is recycled and zeroed
+    OffHeapDiscreteFactor otherFactor = OffHeapDiscreteFactor.fromValues(scopeAB, new double[] {1, 0, 1, 0, 1, 0}, pool);
+    assertThat(pool.getNumPooledBuffers(6)).isEqualTo(0);
+    assertThat(otherFactor.getValues()).isSameAs(buffer);
+    assertThat(otherFactor.invert().getValueAtIndex(1)).isEqualTo(0.0d);
+  }
+
+  @Test
+  public void testReleaseIntermediateJointDistribution() {
+    OffHeapDiscreteFactor factorAB = OffHeapDiscreteFactor.fromValues(scopeAB, new double[] {1, 2, 3, 4, 5, 6}, pool);
+    OffHeapDiscreteFactor factorB = OffHeapDiscreteFactor.fromValues(scopeB, new double[] {1, 2, 3}, pool);
+
+    Set<DiscreteFactor> factors = new HashSet<DiscreteFactor>();
+    factors.add(factorAB);
+    factors.add(factorB);
+
+    DiscreteFactor marginal = FactorUtil.sumProduct(factors, scopeB, null);
+
+    assertThat(marginal.getValueAtIndex(0)).isEqualTo(3, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(factorAB.isClosed()).isFalse();
+    assertThat(factorB.isClosed()).isFalse();
+
+    // the joint table over A and B
+    assertThat(pool.getNumPooledBuffers(6)).isEqualTo(1);
+  }
+
+  protected void assertEqualValues(DiscreteFactor actual, DiscreteFactor expected) {
+    assertThat(actual).isInstanceOf(OffHeapDiscreteFactor.class);
+    assertThat(actual.getVariables().getVariableIds()).isEqualTo(expected.getVariables().getVariableIds());
+
+    for (int i = 0; i < expected.getVariables().getNumDistinctValues(); i++) {
+      assertThat(actual.getValueAtIndex(i)).isEqualTo(expected.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+  }
+}
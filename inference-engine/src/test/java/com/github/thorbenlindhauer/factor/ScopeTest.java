@@ -20,7 +20,11 @@ import java.util.List;
 import org.junit.Test;
 
 import com.github.thorbenlindhauer.network.ScopeBuilderImpl;
+import com.github.thorbenlindhauer.variable.ContinuousVariable;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
 import com.github.thorbenlindhauer.variable.Scope;
+import com.github.thorbenlindhauer.variable.ScopeCache;
+import com.github.thorbenlindhauer.variable.VariableRegistry;
 
 /**
  * @author Thorben
@@ -46,4 +50,162 @@ public class ScopeTest {
     // then
     assertThat(mapping).containsExactly(1, 2, 0);
   }
+
+  @Test
+  public void shouldCreateDiscreteVariableMapping() {
+    // given
+    Scope scope = new ScopeBuilderImpl()
+      .discreteVariable("A", 2)
+      .discreteVariable("C", 2)
+      .discreteVariable("D", 2)
+      .buildScope();
+
+    Scope otherScope = new ScopeBuilderImpl()
+      .discreteVariable("B", 2)
+      .discreteVariable("C", 2)
+      .discreteVariable("D", 2)
+      .buildScope();
+
+    // when
+    int[] mapping = scope.createDiscreteVariableMapping(otherScope);
+
+    // then
+    assertThat(mapping).containsExactly(-1, 1, 2);
+  }
+
+  @Test
+  public void shouldCombineScopes() {
+    // given
+    Scope scope = new ScopeBuilderImpl()
+      .discreteVariable("A", 2)
+      .discreteVariable("C", 2)
+      .buildScope();
+
+    Scope otherScope = new ScopeBuilderImpl()
+      .discreteVariable("B", 2)
+      .discreteVariable("C", 2)
+      .buildScope();
+
+    // then
+    assertThat(scope.union(otherScope).getVariableIds()).containsExactly("A", "B", "C");
+    assertThat(scope.intersect(otherScope).getVariableIds()).containsExactly("C");
+    assertThat(scope.reduceBy(otherScope).getVariableIds()).containsExactly("A");
+    assertThat(scope.reduceBy("C", "X").getVariableIds()).containsExactly("A");
+    assertThat(scope.union(otherScope).contains(scope)).isTrue();
+    assertThat(scope.contains(otherScope)).isFalse();
+    assertThat(scope.union(otherScope).getNumDistinctValues()).isEqualTo(8);
+  }
+
+  @Test
+  public void shouldInternStructurallyEqualScopes() {
+    // given
+    ScopeCache scopeCache = new ScopeCache();
+    Scope scope = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2))).intern(scopeCache);
+    Scope equalScope = new Scope(Arrays.asList(new DiscreteVariable("B", 2), new DiscreteVariable("A", 2))).intern(scopeCache);
+    Scope otherCardinalityScope = new Scope(Arrays.asList(new DiscreteVariable("A", 3), new DiscreteVariable("B", 2))).intern(scopeCache);
+    Scope otherScope = new Scope(Arrays.asList(new DiscreteVariable("B", 2), new DiscreteVariable("C", 2))).intern(scopeCache);
+
+    // then
+    assertThat(equalScope).isSameAs(scope);
+    assertThat(otherCardinalityScope).isNotSameAs(scope);
+
+    Scope union = scope.union(otherScope);
+    assertThat(union.isInterned()).isTrue();
+    assertThat(union.getVariableIds()).containsExactly("A", "B", "C");
+    assertThat(equalScope.union(otherScope)).isSameAs(union);
+    assertThat(union.intersect(otherScope)).isSameAs(otherScope);
+    assertThat(union.reduceBy(otherScope).getVariableIds()).containsExactly("A");
+    assertThat(union.createDiscreteVariableMapping(otherScope)).isSameAs(union.createDiscreteVariableMapping(otherScope));
+    assertThat(union.createDiscreteVariableMapping(otherScope)).containsExactly(-1, 0, 1);
+  }
+
+  @Test
+  public void shouldNotShareScopesBetweenCaches() {
+    // given
+    Scope scope = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2))).intern();
+    Scope equalScope = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 2))).intern();
+    Scope otherScope = new Scope(Arrays.asList(new DiscreteVariable("B", 2), new DiscreteVariable("C", 2))).intern();
+
+    // then
+    assertThat(equalScope).isNotSameAs(scope);
+    assertThat(scope.getScopeCache()).isNotSameAs(equalScope.getScopeCache());
+    assertThat(scope.subScope("A").getScopeCache()).isSameAs(scope.getScopeCache());
+
+    Scope union = scope.union(otherScope);
+    assertThat(union.isInterned()).isFalse();
+    assertThat(union.getVariableIds()).containsExactly("A", "B", "C");
+
+    Scope copy = scope.intern(otherScope.getScopeCache());
+    assertThat(copy).isNotSameAs(scope);
+    assertThat(copy.getScopeCache()).isSameAs(otherScope.getScopeCache());
+    assertThat(scope.getScopeCache()).isNotSameAs(otherScope.getScopeCache());
+  }
+
+  @Test
+  public void shouldDistinguishVariableTypesWhenInterning() {
+    // given
+    ScopeCache scopeCache = new ScopeCache();
+    Scope discreteScope = new Scope(Arrays.asList(new DiscreteVariable("A", 2))).intern(scopeCache);
+    Scope continuousScope = new Scope(Arrays.asList(new ContinuousVariable("A"))).intern(scopeCache);
+
+    // then
+    assertThat(continuousScope).isNotSameAs(discreteScope);
+    assertThat(continuousScope.getContinuousVariables()).hasSize(1);
+  }
+
+  @Test
+  public void shouldAssignOrderPreservingIdsToModelVariables() {
+    // given
+    Scope modelScope = new ScopeBuilderImpl()
+      .discreteVariable("foo", 2)
+      .discreteVariable("bar", 3)
+      .discreteVariable("baz", 2)
+      .discreteVariable("qux", 2)
+      .buildScope();
+
+    // then
+    VariableRegistry registry = modelScope.getRegistry();
+    assertThat(registry).isNotNull();
+    assertThat(modelScope.getVariableIndices()).containsExactly(0, 1, 2, 3);
+    assertThat(registry.getIndex("baz")).isEqualTo(1);
+    assertThat(registry.getIndex("unknown")).isEqualTo(-1);
+
+    Scope scope = modelScope.subScope("qux", "bar");
+    Scope otherScope = modelScope.subScope("foo", "baz", "bar");
+    assertThat(scope.getRegistry()).isSameAs(registry);
+    assertThat(scope.getVariableIndices()).containsExactly(0, 3);
+
+    Scope union = scope.union(otherScope);
+    assertThat(union.getVariableIds()).containsExactly("bar", "baz", "foo", "qux");
+    assertThat(union.getVariableIndices()).containsExactly(0, 1, 2, 3);
+    assertThat(scope.intersect(otherScope).getVariableIds()).containsExactly("bar");
+    assertThat(otherScope.reduceBy(scope).getVariableIndices()).containsExactly(1, 2);
+    assertThat(otherScope.reduceBy("baz", "unknown").getVariableIds()).containsExactly("bar", "foo");
+    assertThat(union.contains(otherScope)).isTrue();
+    assertThat(otherScope.contains(scope)).isFalse();
+    assertThat(scope.createDiscreteVariableMapping(union)).containsExactly(0, 3);
+    assertThat(otherScope.has("baz")).isTrue();
+    assertThat(scope.has("baz")).isFalse();
+    assertThat(scope.getVariable("qux").getId()).isEqualTo("qux");
+  }
+
+  @Test
+  public void shouldCombineScopesOfDifferentRegistries() {
+    // given
+    Scope scope = new ScopeBuilderImpl()
+      .discreteVariable("A", 2)
+      .discreteVariable("C", 2)
+      .buildScope();
+
+    Scope otherScope = new Scope(Arrays.asList(new DiscreteVariable("B", 2), new DiscreteVariable("C", 2)));
+
+    // then
+    assertThat(scope.getRegistry()).isNotNull();
+    assertThat(otherScope.getRegistry()).isNull();
+    assertThat(scope.union(otherScope).getVariableIds()).containsExactly("A", "B", "C");
+    assertThat(scope.union(otherScope).getRegistry()).isNull();
+    assertThat(scope.intersect(otherScope).getVariableIds()).containsExactly("C");
+    assertThat(scope.reduceBy(otherScope).getVariableIds()).containsExactly("A");
+    assertThat(scope.createDiscreteVariableMapping(otherScope)).containsExactly(-1, 1);
+  }
 }
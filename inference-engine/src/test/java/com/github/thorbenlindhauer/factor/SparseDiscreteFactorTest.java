@@ -0,0 +1,191 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.factor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.exception.FactorOperationException;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.DiscreteVariable;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class SparseDiscreteFactorTest {
+
+  protected Scope scopeAB = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3)));
+  protected Scope scopeBC = new Scope(Arrays.asList(new DiscreteVariable("B", 3), new DiscreteVariable("C", 2)));
+  protected Scope scopeB = new Scope(Arrays.asList(new DiscreteVariable("B", 3)));
+
+  @Test
+  public void testOperationsMatchTableBasedFactor() {
+    double[] valuesAB = new double[] {0, 2, 0, 0, 5, 0};
+    double[] valuesBC = new double[] {1, 0, 3, 4, 0, 0};
+    double[] valuesB = new double[] {0.5, 2, 0.25};
+
+    TableBasedDiscreteFactor tableFactorAB = new TableBasedDiscreteFactor(scopeAB, valuesAB);
+    TableBasedDiscreteFactor tableFactorBC = new TableBasedDiscreteFactor(scopeBC, valuesBC);
+    TableBasedDiscreteFactor tableFactorB = new TableBasedDiscreteFactor(scopeB, valuesB);
+
+    // enforce the sparse representation
+    DiscreteFactor sparseFactorAB = SparseDiscreteFactor.fromValues(scopeAB, valuesAB, 1.1d);
+    DiscreteFactor sparseFactorBC = SparseDiscreteFactor.fromValues(scopeBC, valuesBC, 1.1d);
+    assertThat(sparseFactorAB).isInstanceOf(SparseDiscreteFactor.class);
+
+    assertEqualValues(sparseFactorAB.product(sparseFactorBC), tableFactorAB.product(tableFactorBC));
+    assertEqualValues(sparseFactorAB.product(tableFactorBC), tableFactorAB.product(tableFactorBC));
+    assertEqualValues(tableFactorBC.product(sparseFactorAB), tableFactorBC.product(tableFactorAB));
+    assertEqualValues(sparseFactorAB.division(tableFactorB), tableFactorAB.division(tableFactorB));
+    assertEqualValues(sparseFactorAB.marginal(scopeB), tableFactorAB.marginal(scopeB));
+    assertEqualValues(sparseFactorAB.normalize(), tableFactorAB.normalize());
+    assertEqualValues(sparseFactorAB.invert(), tableFactorAB.invert());
+    assertEqualValues(sparseFactorAB.observation(scopeB, new int[] {1}), tableFactorAB.observation(scopeB, new int[] {1}));
+  }
+
+  @Test
+  public void testRepresentationDependsOnDensity() {
+    double[] values = new double[] {0, 2, 0, 0, 5, 0};
+
+    assertThat(SparseDiscreteFactor.fromValues(scopeAB, values, 0.5d)).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(SparseDiscreteFactor.fromValues(scopeAB, values, 0.3d)).isInstanceOf(TableBasedDiscreteFactor.class);
+
+    SparseDiscreteFactor factor = (SparseDiscreteFactor) SparseDiscreteFactor.fromValues(scopeAB, values, 0.5d);
+    assertThat(factor.getIndices()).isEqualTo(new int[] {1, 4});
+    assertThat(factor.getValues()).isEqualTo(new double[] {2, 5});
+
+    // the product only has non-zero values for the two non-zero values of the sparse factor
+    DiscreteFactor product = factor.product(new TableBasedDiscreteFactor(scopeBC, new double[] {1, 1, 1, 1, 1, 1}));
+    assertThat(product).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(((SparseDiscreteFactor) product).getIndices()).hasSize(4);
+
+    // the marginal over B has two non-zero values out of three
+    assertThat(factor.marginal(scopeB)).isInstanceOf(TableBasedDiscreteFactor.class);
+  }
+
+  @Test
+  public void testSparseProductMatchesTableBasedProduct() {
+    Scope scopeABC = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("B", 3), new DiscreteVariable("C", 2)));
+    Scope scopeBCD = new Scope(Arrays.asList(new DiscreteVariable("B", 3), new DiscreteVariable("C", 2), new DiscreteVariable("D", 4)));
+    Scope scopeD = new Scope(Arrays.asList(new DiscreteVariable("D", 4)));
+
+    double[] valuesABC = new double[12];
+    valuesABC[1] = 2;
+    valuesABC[6] = 3;
+    valuesABC[11] = 5;
+
+    double[] valuesBCD = new double[24];
+    valuesBCD[0] = 7;
+    valuesBCD[3] = 11;
+    valuesBCD[17] = 13;
+    valuesBCD[23] = 17;
+
+    double[] valuesD = new double[] {0, 19, 0, 0};
+
+    DiscreteFactor sparseFactorABC = SparseDiscreteFactor.fromValues(scopeABC, valuesABC, 0.5d);
+    DiscreteFactor sparseFactorBCD = SparseDiscreteFactor.fromValues(scopeBCD, valuesBCD, 0.5d);
+    DiscreteFactor sparseFactorD = SparseDiscreteFactor.fromValues(scopeD, valuesD, 0.5d);
+    assertThat(sparseFactorABC).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(sparseFactorBCD).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(sparseFactorD).isInstanceOf(SparseDiscreteFactor.class);
+
+    TableBasedDiscreteFactor tableFactorABC = new TableBasedDiscreteFactor(scopeABC, valuesABC);
+    TableBasedDiscreteFactor tableFactorBCD = new TableBasedDiscreteFactor(scopeBCD, valuesBCD);
+    TableBasedDiscreteFactor tableFactorD = new TableBasedDiscreteFactor(scopeD, valuesD);
+
+    // shared variables B and C
+    assertEqualValues(sparseFactorABC.product(sparseFactorBCD), tableFactorABC.product(tableFactorBCD));
+    assertEqualValues(sparseFactorBCD.product(sparseFactorABC), tableFactorABC.product(tableFactorBCD));
+
+    // no shared variables
+    assertEqualValues(sparseFactorABC.product(sparseFactorD), tableFactorABC.product(tableFactorD));
+
+    // the product of (A, B, C) = (1, 0, 0), (0, 0, 1), (1, 2, 1) with (B, C) = (0, 0), (0, 1), (2, 1)
+    DiscreteFactor product = sparseFactorABC.product(sparseFactorBCD);
+    assertThat(product).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(((SparseDiscreteFactor) product).getIndices()).hasSize(4);
+  }
+
+  @Test
+  public void testCompactObservationOfLargeTable() {
+    Scope scopeAD = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("D", 8)));
+    Scope scopeD = new Scope(Arrays.asList(new DiscreteVariable("D", 8)));
+
+    double[] values = new double[16];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+    TableBasedDiscreteFactor factor = new TableBasedDiscreteFactor(scopeAD, values);
+
+    // the slice D = 3 has 2 of 16 cells, which is above the density threshold
+    TableBasedDiscreteFactor denseObservation = factor.observation(scopeD, new int[] {3});
+    assertThat(denseObservation.getValues()).isEqualTo(new double[] {0, 0, 0, 0, 0, 0, 6, 7, 0, 0, 0, 0, 0, 0, 0, 0});
+    assertThat(FactorUtil.compact(denseObservation, SparseDiscreteFactor.DEFAULT_DENSITY_THRESHOLD))
+      .isSameAs(denseObservation);
+
+    // the slice A = 1, D = 5 has 1 of 16 cells
+    TableBasedDiscreteFactor sparseObservation = factor.observation(scopeAD, new int[] {1, 5});
+    DiscreteFactor compactedObservation = FactorUtil.compact(sparseObservation, SparseDiscreteFactor.DEFAULT_DENSITY_THRESHOLD);
+    assertThat(compactedObservation).isInstanceOf(SparseDiscreteFactor.class);
+    assertThat(((SparseDiscreteFactor) compactedObservation).getIndices()).isEqualTo(new int[] {11});
+    assertThat(((SparseDiscreteFactor) compactedObservation).getValues()).isEqualTo(new double[] {11});
+
+    // the zero cell of the slice A = 0, D = 0 is not stored
+    TableBasedDiscreteFactor zeroObservation = factor.observation(scopeAD, new int[] {0, 0});
+    DiscreteFactor compactedZeroObservation = FactorUtil.compact(zeroObservation, SparseDiscreteFactor.DEFAULT_DENSITY_THRESHOLD);
+    assertThat(((SparseDiscreteFactor) compactedZeroObservation).getIndices()).hasSize(0);
+  }
+
+  @Test
+  public void testFactorSetStoresSparseFactors() {
+    Scope scopeAD = new Scope(Arrays.asList(new DiscreteVariable("A", 2), new DiscreteVariable("D", 8)));
+    double[] values = new double[16];
+    values[9] = 4;
+
+    FactorSet<DiscreteFactor> factorSet = new FactorSet<DiscreteFactor>();
+    factorSet.addOwned(new TableBasedDiscreteFactor(scopeAD, values));
+    factorSet.addOwned(new TableBasedDiscreteFactor(scopeB, new double[] {0, 1, 0}));
+
+    for (DiscreteFactor factor : factorSet.getFactors()) {
+      if (factor.getVariables().hasSameVariablesAs(scopeAD)) {
+        assertThat(factor).isInstanceOf(SparseDiscreteFactor.class);
+        assertThat(factor.getValueAtIndex(9)).isEqualTo(4, TestConstants.DOUBLE_VALUE_TOLERANCE);
+      } else {
+        assertThat(factor).isInstanceOf(TableBasedDiscreteFactor.class);
+      }
+    }
+  }
+
+  @Test
+  public void testDivisionNonZeroByZero() {
+    DiscreteFactor factorAB = SparseDiscreteFactor.fromValues(scopeAB, new double[] {0, 2, 0, 0, 5, 0}, 1.1d);
+    TableBasedDiscreteFactor factorB = new TableBasedDiscreteFactor(scopeB, new double[] {0, 2, 0});
+
+    try {
+      factorAB.division(factorB);
+      fail("expected exception");
+    } catch (FactorOperationException e) {
+      // happy path
+    }
+  }
+
+  protected void assertEqualValues(DiscreteFactor actual, DiscreteFactor expected) {
+    assertThat(actual.getVariables().hasSameVariablesAs(expected.getVariables())).isTrue();
+
+    for (int i = 0; i < expected.getVariables().getNumDistinctValues(); i++) {
+      assertThat(actual.getValueAtIndex(i)).isEqualTo(expected.getValueAtIndex(i), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    }
+  }
+}
@@ -12,6 +12,12 @@
 */
 package com.github.thorbenlindhauer.inference;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
 import com.github.thorbenlindhauer.cluster.Cluster;
 import com.github.thorbenlindhauer.cluster.ClusterGraph;
 import com.github.thorbenlindhauer.cluster.generation.BetheClusterGraphGenerator;
@@ -20,6 +26,7 @@ import com.github.thorbenlindhauer.exception.InferenceException;
 import com.github.thorbenlindhauer.factor.DefaultFactorFactory.DefaultDiscreteFactorFactory;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
 
 public abstract class AbstractCliqueTreeInferencerTest extends ExactInferencerTest {
 
@@ -58,4 +65,45 @@ public abstract class AbstractCliqueTreeInferencerTest extends ExactInferencerTe
 
   protected abstract MessagePassingContextFactory getMessagePassingContextFactory();
 
+  @Test
+  public void testBayesianNetworkMarginals() {
+    DiscreteMarginalInferencer inferencer = (DiscreteMarginalInferencer) getInferencer(bayesianNetwork);
+    Map<String, DiscreteFactor> marginals = inferencer.marginals(null, null);
+
+    assertThat(marginals).hasSize(3);
+    assertThat(marginals.get("A").getValueForAssignment(new int[] {1})).isEqualTo(0.4d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginals.get("B").getValueForAssignment(new int[] {2})).isEqualTo(0.3d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginals.get("C").getValueForAssignment(new int[] {0})).isEqualTo(0.6265d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginals.get("C").getValueForAssignment(new int[] {1})).isEqualTo(0.3735d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testBayesianNetworkMarginalsWithObservations() {
+    DiscreteMarginalInferencer inferencer = (DiscreteMarginalInferencer) getInferencer(bayesianNetwork);
+    Map<String, DiscreteFactor> marginals = inferencer.marginals(bayesianNetwork.getScope().subScope("C"), new int[] {1});
+
+    DiscreteFactor marginalA = marginals.get("A");
+    assertThat(marginalA.getValueForAssignment(new int[] {0})).isEqualTo(0.196787149d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginalA.getValueForAssignment(new int[] {1})).isEqualTo(0.428380187d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginalA.getValueForAssignment(new int[] {2})).isEqualTo(0.374832664d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    DiscreteFactor marginalC = marginals.get("C");
+    assertThat(marginalC.getValueForAssignment(new int[] {0})).isEqualTo(0.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(marginalC.getValueForAssignment(new int[] {1})).isEqualTo(1.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    // the evidence does not change the inferencer's own calibration
+    marginals = inferencer.marginals(null, null);
+    assertThat(marginals.get("A").getValueForAssignment(new int[] {0})).isEqualTo(0.1d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testBayesianNetworkDistribution() {
+    DiscreteMarginalInferencer inferencer = (DiscreteMarginalInferencer) getInferencer(bayesianNetwork);
+    DiscreteFactor distribution = inferencer.distribution(bayesianNetwork.getScope().subScope("C"));
+
+    assertThat(distribution.getVariables().getVariableIds()).containsOnly("C");
+    assertThat(distribution.getValueForAssignment(new int[] {0})).isEqualTo(0.6265d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(distribution.getValueForAssignment(new int[] {1})).isEqualTo(0.3735d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
 }
@@ -20,6 +20,7 @@ import org.junit.Test;
 import com.github.thorbenlindhauer.factor.DiscreteFactor;
 import com.github.thorbenlindhauer.network.GraphicalModel;
 import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.Scope;
 
 public abstract class ExactInferencerTest {
 
@@ -123,7 +124,47 @@ public abstract class ExactInferencerTest {
     assertThat(jointTwoProbability).isEqualTo(0.374832664d, TestConstants.DOUBLE_VALUE_TOLERANCE);
   }
 
-  // TODO: test some distribution P(A | B=b, C=c), i.e. with two variables conditioned on
+  @Test
+  public void testBayesianNetworkInferenceConditionedOnTwoObservations() {
+    DiscreteModelInferencer inferencer = getInferencer(bayesianNetwork);
+    Scope observedScope = bayesianNetwork.getScope().subScope("B", "C");
+
+    double jointZeroProbability = inferencer.jointProbabilityConditionedOn(
+        bayesianNetwork.getScope().subScope("A"), new int[] {0}, // query
+        observedScope, new int[] {1, 1} // observation
+      );
+    assertThat(jointZeroProbability).isEqualTo(0.235294118d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    double jointOneProbability = inferencer.jointProbabilityConditionedOn(
+        bayesianNetwork.getScope().subScope("A"), new int[] {1}, // query
+        observedScope, new int[] {1, 1} // observation
+      );
+    assertThat(jointOneProbability).isEqualTo(0.470588235d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    double jointTwoProbability = inferencer.jointProbability(
+        bayesianNetwork.getScope().subScope("A"), new int[] {2}, // query
+        observedScope, new int[] {1, 1} // observation
+      );
+    // P(A = 2) * P(B = 1) * P(C = 1 | A = 2, B = 1)
+    assertThat(jointTwoProbability).isEqualTo(0.02d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testBayesianNetworkInferenceWithObservedQueryVariable() {
+    DiscreteModelInferencer inferencer = getInferencer(bayesianNetwork);
+
+    double matchingProbability = inferencer.jointProbability(
+        bayesianNetwork.getScope().subScope("A", "C"), new int[] {1, 1}, // query
+        bayesianNetwork.getScope().subScope("C"), new int[] {1} // observation
+      );
+    assertThat(matchingProbability).isEqualTo(0.16d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    double contradictingProbability = inferencer.jointProbability(
+        bayesianNetwork.getScope().subScope("A", "C"), new int[] {1, 0}, // query
+        bayesianNetwork.getScope().subScope("C"), new int[] {1} // observation
+      );
+    assertThat(contradictingProbability).isEqualTo(0.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
 
   @Test
   public void testMarkovNetworkSimpleNaiveInference() {
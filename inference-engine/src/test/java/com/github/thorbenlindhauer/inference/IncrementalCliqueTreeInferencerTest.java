@@ -0,0 +1,95 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.cluster.generation.CliqueTreeGenerator;
+import com.github.thorbenlindhauer.exception.InferenceException;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class IncrementalCliqueTreeInferencerTest extends ExactInferencerTest {
+
+  @Override
+  protected DiscreteModelInferencer getInferencer(GraphicalModel<DiscreteFactor> graphicalModel) {
+    return new IncrementalCliqueTreeInferencer(graphicalModel, new CliqueTreeGenerator());
+  }
+
+  @Test
+  public void testAddEvidence() {
+    IncrementalCliqueTreeInferencer inferencer = (IncrementalCliqueTreeInferencer) getInferencer(bayesianNetwork);
+    Scope scopeA = bayesianNetwork.getScope().subScope("A");
+
+    // calibrate without evidence first
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.1d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    inferencer.addEvidence(bayesianNetwork.getScope().subScope("C"), new int[] {1});
+
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.196787149d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbability(scopeA, new int[] {1})).isEqualTo(0.428380187d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbability(scopeA, new int[] {2})).isEqualTo(0.374832664d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    Map<String, DiscreteFactor> marginals = inferencer.marginals(null, null);
+    assertThat(marginals.get("C").getValueForAssignment(new int[] {1})).isEqualTo(1.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testReplaceEvidence() {
+    IncrementalCliqueTreeInferencer inferencer = (IncrementalCliqueTreeInferencer) getInferencer(bayesianNetwork);
+    Scope scopeA = bayesianNetwork.getScope().subScope("A");
+    Scope scopeC = bayesianNetwork.getScope().subScope("C");
+
+    inferencer.addEvidence(scopeC, new int[] {0});
+    double probabilityGivenZero = inferencer.jointProbability(scopeA, new int[] {0});
+
+    inferencer.addEvidence(scopeC, new int[] {1});
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.196787149d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    inferencer.addEvidence(scopeC, new int[] {0});
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(probabilityGivenZero, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testRetractEvidence() {
+    IncrementalCliqueTreeInferencer inferencer = (IncrementalCliqueTreeInferencer) getInferencer(bayesianNetwork);
+    Scope scopeA = bayesianNetwork.getScope().subScope("A");
+    Scope scopeC = bayesianNetwork.getScope().subScope("C");
+
+    inferencer.addEvidence(bayesianNetwork.getScope().subScope("B", "C"), new int[] {1, 1});
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.235294118d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    inferencer.retractEvidence(bayesianNetwork.getScope().subScope("B"));
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.196787149d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    inferencer.retractEvidence(scopeC);
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0})).isEqualTo(0.1d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbability(scopeC, new int[] {0})).isEqualTo(0.6265d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    // retracting unobserved variables has no effect
+    inferencer.retractEvidence(scopeC);
+    assertThat(inferencer.jointProbability(scopeC, new int[] {0})).isEqualTo(0.6265d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test(expected = InferenceException.class)
+  public void testInvalidEvidence() {
+    IncrementalCliqueTreeInferencer inferencer = (IncrementalCliqueTreeInferencer) getInferencer(bayesianNetwork);
+    inferencer.addEvidence(bayesianNetwork.getScope().subScope("A", "C"), new int[] {1});
+  }
+}
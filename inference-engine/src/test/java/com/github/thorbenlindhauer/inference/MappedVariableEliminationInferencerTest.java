@@ -0,0 +1,44 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.MappedFactorTables;
+import com.github.thorbenlindhauer.inference.variableelimination.MinFillEliminationStrategy;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+public class MappedVariableEliminationInferencerTest extends ExactInferencerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Override
+  protected DiscreteModelInferencer getInferencer(GraphicalModel<DiscreteFactor> graphicalModel) {
+    File file;
+    try {
+      file = temporaryFolder.newFile();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    MappedFactorTables.write(graphicalModel, file);
+    return new VariableEliminationInferencer(MappedFactorTables.open(file), new MinFillEliminationStrategy());
+  }
+
+}
@@ -0,0 +1,129 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.cluster.Cluster;
+import com.github.thorbenlindhauer.cluster.ClusterGraph;
+import com.github.thorbenlindhauer.cluster.generation.BetheClusterGraphGenerator;
+import com.github.thorbenlindhauer.cluster.messagepassing.SumProductContextFactory;
+import com.github.thorbenlindhauer.factor.DefaultFactorFactory.DefaultDiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.DirectBufferPool;
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.OffHeapDiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.FactorUtil;
+import com.github.thorbenlindhauer.inference.loopy.DiscreteFactorEvaluator;
+import com.github.thorbenlindhauer.inference.loopy.PrioritizedCalibrationContext.PrioritizedCalibrationContextFactory;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class OffHeapLoopyBeliefPropagationInferencerTest extends SumProductLoopyBeliefPropagationInferencerTest {
+
+  @Override
+  protected DiscreteModelInferencer getInferencer(GraphicalModel<DiscreteFactor> graphicalModel) {
+    OffHeapDiscreteFactorFactory factorFactory = new OffHeapDiscreteFactorFactory();
+    GraphicalModel<DiscreteFactor> offHeapModel = GraphicalModel.convert(graphicalModel, factorFactory);
+
+    ClusterGraph<DiscreteFactor> clusterGraph = new BetheClusterGraphGenerator()
+      .generateClusterGraph(offHeapModel, new DefaultDiscreteFactorFactory(factorFactory));
+    return new DiscreteClusterGraphInferencer(clusterGraph, getMessagePassingContextFactory(), getCalibrationContextFactory());
+  }
+
+  @Test
+  public void testPrioritizedCalibrationReleasesBuffers() {
+    DirectBufferPool pool = new DirectBufferPool();
+    ClusterGraph<DiscreteFactor> clusterGraph = buildOffHeapClusterGraph(markovNetwork, pool);
+    int numAcquiredBuffers = pool.getNumAcquiredBuffers();
+
+    DiscreteClusterGraphInferencer inferencer = new DiscreteClusterGraphInferencer(clusterGraph, new SumProductContextFactory(),
+        new PrioritizedCalibrationContextFactory<DiscreteFactor>(new DiscreteFactorEvaluator()));
+    inferencer.ensureMessagesPropagated();
+    assertThat(pool.getNumAcquiredBuffers()).isGreaterThan(numAcquiredBuffers);
+
+    inferencer.close();
+    assertThat(pool.getNumAcquiredBuffers()).isEqualTo(numAcquiredBuffers);
+  }
+
+  @Test
+  public void testCliqueTreeMarginalsReleaseBuffers() {
+    DirectBufferPool pool = new DirectBufferPool();
+    ClusterGraph<DiscreteFactor> cliqueTree = buildOffHeapClusterGraph(bayesianNetwork, pool);
+    int numAcquiredBuffers = pool.getNumAcquiredBuffers();
+
+    Cluster<DiscreteFactor> rootCluster = null;
+    for (Cluster<DiscreteFactor> cluster : cliqueTree.getClusters()) {
+      if (cluster.getScope().contains(new String[] { "A", "B", "C" })) {
+        rootCluster = cluster;
+      }
+    }
+
+    CliqueTreeInferencer inferencer = new CliqueTreeInferencer(cliqueTree, rootCluster, new SumProductContextFactory());
+    releaseAll(inferencer.marginals(null, null));
+    releaseAll(inferencer.marginals(bayesianNetwork.getScope().subScope("C"), new int[] { 1 }));
+
+    inferencer.close();
+    assertThat(pool.getNumAcquiredBuffers()).isEqualTo(numAcquiredBuffers);
+  }
+
+  @Test
+  public void testCliqueTreeQueriesReleaseBuffers() {
+    DirectBufferPool pool = new DirectBufferPool();
+    ClusterGraph<DiscreteFactor> cliqueTree = buildOffHeapClusterGraph(bayesianNetwork, pool);
+
+    Cluster<DiscreteFactor> rootCluster = null;
+    for (Cluster<DiscreteFactor> cluster : cliqueTree.getClusters()) {
+      if (cluster.getScope().contains(new String[] { "A", "B", "C" })) {
+        rootCluster = cluster;
+      }
+    }
+
+    CliqueTreeInferencer inferencer = new CliqueTreeInferencer(cliqueTree, rootCluster, new SumProductContextFactory());
+
+    // the first round calibrates the cluster potentials, so that the second round only acquires query intermediates
+    runQueries(inferencer);
+    int numAcquiredBuffers = pool.getNumAcquiredBuffers();
+    runQueries(inferencer);
+
+    assertThat(pool.getNumAcquiredBuffers()).isEqualTo(numAcquiredBuffers);
+    inferencer.close();
+  }
+
+  protected void runQueries(CliqueTreeInferencer inferencer) {
+    Scope projection = bayesianNetwork.getScope().subScope("A");
+    Scope observedVariables = bayesianNetwork.getScope().subScope("C");
+
+    inferencer.jointProbability(projection, new int[] { 0 });
+    inferencer.jointProbability(projection, new int[] { 0 }, observedVariables, new int[] { 1 });
+    inferencer.jointProbabilityConditionedOn(projection, new int[] { 0 }, observedVariables, new int[] { 1 });
+    FactorUtil.release(inferencer.distribution(projection));
+  }
+
+  protected ClusterGraph<DiscreteFactor> buildOffHeapClusterGraph(GraphicalModel<DiscreteFactor> graphicalModel, DirectBufferPool pool) {
+    OffHeapDiscreteFactorFactory factorFactory = new OffHeapDiscreteFactorFactory(pool);
+    GraphicalModel<DiscreteFactor> offHeapModel = GraphicalModel.convert(graphicalModel, factorFactory);
+
+    return new BetheClusterGraphGenerator().generateClusterGraph(offHeapModel, new DefaultDiscreteFactorFactory(factorFactory));
+  }
+
+  protected void releaseAll(Map<String, DiscreteFactor> marginals) {
+    for (DiscreteFactor marginal : marginals.values()) {
+      FactorUtil.release(marginal);
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.DiscreteFactorFactory.DensityBasedDiscreteFactorFactory;
+import com.github.thorbenlindhauer.factor.SparseDiscreteFactor;
+import com.github.thorbenlindhauer.inference.variableelimination.MinFillEliminationStrategy;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class SparseVariableEliminationInferencerTest extends ExactInferencerTest {
+
+  protected static final int NUM_STATES = 12;
+
+  protected GraphicalModel<DiscreteFactor> deterministicNetwork;
+
+  @Override
+  protected DiscreteModelInferencer getInferencer(GraphicalModel<DiscreteFactor> graphicalModel) {
+    return new VariableEliminationInferencer(graphicalModel, new MinFillEliminationStrategy(), new DensityBasedDiscreteFactorFactory());
+  }
+
+  /**
+   * Creates a model X -> Y -> Z, where Y = (X + 1) mod 12 is a deterministic function of X
+   * and Z is a noisy observation of Y being even.
+   */
+  @Before
+  public void setUpDeterministicNetwork() {
+    double[] priorX = new double[NUM_STATES];
+    double[] cpdY = new double[NUM_STATES * NUM_STATES];
+    double[] cpdZ = new double[NUM_STATES * 2];
+
+    for (int x = 0; x < NUM_STATES; x++) {
+      priorX[x] = (x + 1) / 78.0d;
+      cpdY[x + NUM_STATES * ((x + 1) % NUM_STATES)] = 1.0d;
+    }
+
+    for (int y = 0; y < NUM_STATES; y++) {
+      cpdZ[y] = y % 2 == 0 ? 0.9d : 0.2d;
+      cpdZ[y + NUM_STATES] = 1.0d - cpdZ[y];
+    }
+
+    deterministicNetwork = GraphicalModel.create()
+        .discreteVariable("X", NUM_STATES).discreteVariable("Y", NUM_STATES).discreteVariable("Z", 2).discreteNetwork()
+        .factor()
+          .scope("X")
+          .basedOnTable(priorX)
+        .factor()
+          .scope("X", "Y")
+          .basedOnTable(cpdY)
+        .factor()
+          .scope("Y", "Z")
+          .basedOnTable(cpdZ)
+        .build();
+  }
+
+  @Test
+  public void testDeterministicFactorIsSparse() {
+    GraphicalModel<DiscreteFactor> convertedNetwork = GraphicalModel.convert(deterministicNetwork, new DensityBasedDiscreteFactorFactory());
+
+    int numSparseFactors = 0;
+    for (DiscreteFactor factor : convertedNetwork.getFactors()) {
+      if (factor instanceof SparseDiscreteFactor) {
+        numSparseFactors++;
+        assertThat(factor.getVariables().hasSameVariablesAs(deterministicNetwork.getScope().subScope("X", "Y"))).isTrue();
+      }
+    }
+
+    assertThat(numSparseFactors).isEqualTo(1);
+  }
+
+  @Test
+  public void testDeterministicNetworkInference() {
+    DiscreteModelInferencer inferencer = getInferencer(deterministicNetwork);
+
+    // P(Y = 3) = P(X = 2)
+    Scope scopeY = deterministicNetwork.getScope().subScope("Y");
+    assertThat(inferencer.jointProbability(scopeY, new int[] {3})).isEqualTo(3.0d / 78.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbability(scopeY, new int[] {0})).isEqualTo(12.0d / 78.0d, TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testDeterministicNetworkMatchesNaiveInference() {
+    DiscreteModelInferencer inferencer = getInferencer(deterministicNetwork);
+    DiscreteModelInferencer naiveInferencer = new NaiveInferencer(deterministicNetwork);
+
+    Scope scopeX = deterministicNetwork.getScope().subScope("X");
+    Scope scopeXY = deterministicNetwork.getScope().subScope("X", "Y");
+    Scope scopeY = deterministicNetwork.getScope().subScope("Y");
+    Scope scopeZ = deterministicNetwork.getScope().subScope("Z");
+
+    for (int x = 0; x < NUM_STATES; x++) {
+      int[] assignmentX = new int[] {x};
+
+      assertThat(inferencer.jointProbability(scopeX, assignmentX, scopeZ, new int[] {1}))
+        .isEqualTo(naiveInferencer.jointProbability(scopeX, assignmentX, scopeZ, new int[] {1}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+      assertThat(inferencer.jointProbabilityConditionedOn(scopeX, assignmentX, scopeZ, new int[] {0}))
+        .isEqualTo(naiveInferencer.jointProbabilityConditionedOn(scopeX, assignmentX, scopeZ, new int[] {0}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+      for (int y = 0; y < NUM_STATES; y++) {
+        int[] assignmentXY = new int[] {x, y};
+
+        // Y is observed and part of the query
+        assertThat(inferencer.jointProbability(scopeXY, assignmentXY, scopeY, new int[] {5}))
+          .isEqualTo(naiveInferencer.jointProbability(scopeXY, assignmentXY, scopeY, new int[] {5}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.inference.variableelimination.MinFillEliminationStrategy;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class VariableEliminationPlanCacheTest {
+
+  protected GraphicalModel<DiscreteFactor> model;
+  protected CountingEliminationStrategy eliminationStrategy;
+  protected VariableEliminationInferencer inferencer;
+
+  @Before
+  public void setUp() {
+    // model: A -> B -> C
+    model = GraphicalModel.create()
+    .discreteVariable("A", 2).discreteVariable("B", 2).discreteVariable("C", 2).discreteNetwork()
+    .factor()
+      .scope("A")
+      .basedOnTable(new double[] {0.4, 0.6})
+    .factor()
+      .scope("A", "B")
+      .basedOnTable(new double[] {0.1, 0.7, 0.9, 0.3})
+    .factor()
+      .scope("B", "C")
+      .basedOnTable(new double[] {0.5, 0.2, 0.5, 0.8})
+    .build();
+
+    eliminationStrategy = new CountingEliminationStrategy();
+    inferencer = new VariableEliminationInferencer(model, eliminationStrategy);
+  }
+
+  @Test
+  public void testQueriesOfSameShapeShareEliminationOrder() {
+    Scope projection = model.getScope().subScope("A");
+    Scope observedVariables = model.getScope().subScope("C");
+
+    double probability0 = inferencer.jointProbabilityConditionedOn(projection, new int[] {0}, observedVariables, new int[] {0});
+    double probability1 = inferencer.jointProbabilityConditionedOn(projection, new int[] {0}, observedVariables, new int[] {1});
+    inferencer.jointProbabilityConditionedOn(projection, new int[] {1}, observedVariables, new int[] {1});
+
+    assertThat(eliminationStrategy.invocations).isEqualTo(1);
+
+    // P(A = 0 | C = c) = sum_b P(A = 0) P(b | A = 0) P(c | b) / P(C = c)
+    double joint00 = 0.4 * (0.1 * 0.5 + 0.9 * 0.2);
+    double joint10 = 0.6 * (0.7 * 0.5 + 0.3 * 0.2);
+    assertThat(probability0).isEqualTo(joint00 / (joint00 + joint10), TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    double joint01 = 0.4 * (0.1 * 0.5 + 0.9 * 0.8);
+    double joint11 = 0.6 * (0.7 * 0.5 + 0.3 * 0.8);
+    assertThat(probability1).isEqualTo(joint01 / (joint01 + joint11), TestConstants.DOUBLE_VALUE_TOLERANCE);
+  }
+
+  @Test
+  public void testQueriesOfDifferentShapeHaveOwnEliminationOrder() {
+    inferencer.jointProbability(model.getScope().subScope("A"), new int[] {0});
+    inferencer.jointProbability(model.getScope().subScope("C"), new int[] {0});
+    inferencer.jointProbability(model.getScope().subScope("A"), new int[] {0}, model.getScope().subScope("C"), new int[] {0});
+    inferencer.jointProbability(model.getScope().subScope("A"), new int[] {1});
+
+    // the normalization constant of queries with observations is computed with a plan of its own
+    assertThat(eliminationStrategy.invocations).isEqualTo(4);
+  }
+
+  protected static class CountingEliminationStrategy extends MinFillEliminationStrategy {
+
+    protected int invocations = 0;
+
+    @Override
+    public List<String> getEliminationOrder(GraphicalModel<?> graphicalModel, Collection<String> variablesToEliminate) {
+      invocations++;
+      return super.getEliminationOrder(graphicalModel, variablesToEliminate);
+    }
+  }
+}
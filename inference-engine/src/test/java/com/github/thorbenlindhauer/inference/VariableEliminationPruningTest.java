@@ -0,0 +1,128 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor;
+import com.github.thorbenlindhauer.factor.LazyDiscreteFactor.TableLoader;
+import com.github.thorbenlindhauer.inference.variableelimination.MinFillEliminationStrategy;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+import com.github.thorbenlindhauer.test.util.TestConstants;
+import com.github.thorbenlindhauer.variable.Scope;
+
+public class VariableEliminationPruningTest {
+
+  @Test
+  public void testBarrenFactorsAreNotLoaded() {
+    // model: A -> B -> C
+    GraphicalModel<DiscreteFactor> model = GraphicalModel.create()
+      .discreteVariable("A", 2).discreteVariable("B", 2).discreteVariable("C", 2).discreteNetwork()
+      .factor()
+        .scope("A")
+        .basedOnTable(new double[] {0.4, 0.6})
+      .factor()
+        .scope("A", "B")
+        .basedOnTable(new double[] {0.1, 0.7, 0.9, 0.3})
+      .factor()
+        .scope("B", "C")
+        .basedOnTable(new double[] {0.5, 0.2, 0.5, 0.8})
+      .build();
+
+    GraphicalModel<DiscreteFactor> lazyModel = lazyModelOf(model, true);
+    DiscreteModelInferencer inferencer = new VariableEliminationInferencer(lazyModel, new MinFillEliminationStrategy());
+    DiscreteModelInferencer expectedInferencer = new NaiveInferencer(model);
+
+    Scope scopeA = model.getScope().subScope("A");
+    Scope scopeB = model.getScope().subScope("B");
+
+    assertThat(inferencer.jointProbability(scopeA, new int[] {1}))
+      .isEqualTo(expectedInferencer.jointProbability(scopeA, new int[] {1}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(loadedScopes(lazyModel)).containsOnly("A");
+
+    // C is barren, its parent B is observed
+    assertThat(inferencer.jointProbability(scopeA, new int[] {1}, scopeB, new int[] {0}))
+      .isEqualTo(expectedInferencer.jointProbability(scopeA, new int[] {1}, scopeB, new int[] {0}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(loadedScopes(lazyModel)).containsOnly("A", "AB");
+  }
+
+  @Test
+  public void testUnconnectedFactorsAreNotLoaded() {
+    // two unconnected, unnormalized components: A - B and C - D
+    GraphicalModel<DiscreteFactor> model = GraphicalModel.create()
+      .discreteVariable("A", 2).discreteVariable("B", 2).discreteVariable("C", 2).discreteVariable("D", 2).discreteNetwork()
+      .factor()
+        .scope("A", "B")
+        .basedOnTable(new double[] {1.0, 2.0, 3.0, 4.0})
+      .factor()
+        .scope("B")
+        .basedOnTable(new double[] {5.0, 1.0})
+      .factor()
+        .scope("C", "D")
+        .basedOnTable(new double[] {7.0, 1.0, 2.0, 6.0})
+      .build();
+
+    GraphicalModel<DiscreteFactor> lazyModel = lazyModelOf(model, false);
+    DiscreteModelInferencer inferencer = new VariableEliminationInferencer(lazyModel, new MinFillEliminationStrategy());
+    DiscreteModelInferencer expectedInferencer = new NaiveInferencer(model);
+
+    Scope scopeA = model.getScope().subScope("A");
+    Scope scopeB = model.getScope().subScope("B");
+
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0}))
+      .isEqualTo(expectedInferencer.jointProbability(scopeA, new int[] {0}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbability(scopeA, new int[] {0}, scopeB, new int[] {1}))
+      .isEqualTo(expectedInferencer.jointProbability(scopeA, new int[] {0}, scopeB, new int[] {1}), TestConstants.DOUBLE_VALUE_TOLERANCE);
+    assertThat(inferencer.jointProbabilityConditionedOn(scopeA, new int[] {0}, scopeB, new int[] {1}))
+      .isEqualTo(expectedInferencer.jointProbabilityConditionedOn(scopeA, new int[] {0}, scopeB, new int[] {1}),
+          TestConstants.DOUBLE_VALUE_TOLERANCE);
+
+    assertThat(loadedScopes(lazyModel)).containsOnly("AB", "B");
+  }
+
+  protected GraphicalModel<DiscreteFactor> lazyModelOf(GraphicalModel<DiscreteFactor> model, boolean bayesianNetwork) {
+    Set<DiscreteFactor> lazyFactors = new HashSet<DiscreteFactor>();
+
+    for (final DiscreteFactor factor : model.getFactorView()) {
+      lazyFactors.add(new LazyDiscreteFactor(factor.getVariables(), new TableLoader() {
+        public DiscreteFactor load(Scope scope) {
+          return factor;
+        }
+      }));
+    }
+
+    return new GraphicalModel<DiscreteFactor>(model.getScope(), lazyFactors, bayesianNetwork);
+  }
+
+  protected Set<String> loadedScopes(GraphicalModel<DiscreteFactor> model) {
+    Set<String> loadedScopes = new HashSet<String>();
+
+    for (DiscreteFactor factor : model.getFactorView()) {
+      if (((LazyDiscreteFactor) factor).isLoaded()) {
+        StringBuilder sb = new StringBuilder();
+        for (String variableId : factor.getVariables().getVariableIds()) {
+          sb.append(variableId);
+        }
+        loadedScopes.add(sb.toString());
+      }
+    }
+
+    return loadedScopes;
+  }
+}
@@ -0,0 +1,99 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+public class CostBasedEliminationStrategyTest {
+
+  protected GraphicalModel<DiscreteFactor> model;
+
+  @Before
+  public void setUp() {
+    // model: A -> B -> C
+    //        |         ^
+    //        v         |
+    //        D ------> E
+    model = GraphicalModel.create()
+    .discreteVariable("A", 2).discreteVariable("B", 3).discreteVariable("C", 4).discreteVariable("D", 2).discreteVariable("E", 5)
+    .discreteNetwork()
+    .factor()
+      .scope("A", "B")
+      .basedOnTable(new double[6]) // values are irrelevant for this test
+    .factor()
+      .scope("B", "C")
+      .basedOnTable(new double[12])
+    .factor()
+      .scope("A", "D")
+      .basedOnTable(new double[4])
+    .factor()
+      .scope("D", "E")
+      .basedOnTable(new double[10])
+    .factor()
+      .scope("E", "C")
+      .basedOnTable(new double[20])
+    .build();
+  }
+
+  @Test
+  public void testCostOfEliminationOrder() {
+    EliminationCost cost = EliminationCost.of(model, Arrays.asList("A", "B", "D"));
+
+    // cliques: {A, B, D}, {B, C, D}, {C, D, E}
+    assertThat(cost.getEliminationOrder()).isEqualTo(Arrays.asList("A", "B", "D"));
+    assertThat(cost.getTotalTableSize()).isEqualTo(12 + 24 + 40);
+    assertThat(cost.getMaxCliqueSize()).isEqualTo(40);
+    assertThat(cost.getFlops()).isEqualTo(2 * (12 + 24 + 40));
+  }
+
+  @Test
+  public void testOrderIsNotWorseThanMinFill() {
+    List<String> variablesToEliminate = Arrays.asList("A", "B", "C", "D");
+    CostBasedEliminationStrategy eliminationStrategy = new CostBasedEliminationStrategy(10, TimeUnit.MILLISECONDS);
+
+    EliminationCost cost = eliminationStrategy.estimate(model, variablesToEliminate);
+    assertThat(cost.getEliminationOrder()).containsOnly("A", "B", "C", "D");
+
+    List<String> minFillOrder = new MinFillEliminationStrategy().getEliminationOrder(model, variablesToEliminate);
+    assertThat(cost.compareTo(EliminationCost.of(model, minFillOrder))).isLessThanOrEqualTo(0);
+    assertThat(cost.getTotalTableSize()).isEqualTo(EliminationCost.of(model, cost.getEliminationOrder()).getTotalTableSize());
+  }
+
+  @Test
+  public void testConcurrentSearch() {
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    try {
+      CostBasedEliminationStrategy eliminationStrategy =
+          new CostBasedEliminationStrategy(10, TimeUnit.MILLISECONDS, executorService, 2);
+
+      List<String> eliminationOrder = eliminationStrategy.getEliminationOrder(model, Arrays.asList("E", "C", "A"));
+      assertThat(eliminationOrder).containsOnly("A", "C", "E");
+      assertThat(eliminationOrder).hasSize(3);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
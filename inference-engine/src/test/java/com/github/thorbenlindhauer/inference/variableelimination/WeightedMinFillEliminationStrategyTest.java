@@ -0,0 +1,60 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.inference.variableelimination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+import com.github.thorbenlindhauer.network.GraphicalModel;
+
+public class WeightedMinFillEliminationStrategyTest {
+
+  @Test
+  public void testCardinalitiesOutweighNumberOfFillEdges() {
+    // model: P <- X -> Q   R <- Y -> S
+    //                            |
+    //                            v
+    //                            T
+    GraphicalModel<DiscreteFactor> model = GraphicalModel.create()
+    .discreteVariable("X", 2).discreteVariable("P", 10).discreteVariable("Q", 10)
+    .discreteVariable("Y", 2).discreteVariable("R", 2).discreteVariable("S", 2).discreteVariable("T", 2).discreteNetwork()
+    .factor()
+      .scope("X", "P")
+      .basedOnTable(new double[20]) // values are irrelevant for this test
+    .factor()
+      .scope("X", "Q")
+      .basedOnTable(new double[20])
+    .factor()
+      .scope("Y", "R")
+      .basedOnTable(new double[4])
+    .factor()
+      .scope("Y", "S")
+      .basedOnTable(new double[4])
+    .factor()
+      .scope("Y", "T")
+      .basedOnTable(new double[4])
+    .build();
+
+    // eliminating X adds a single fill edge between 10-valued variables, eliminating Y three between binary ones
+    List<String> eliminationOrder = new MinFillEliminationStrategy().getEliminationOrder(model, Arrays.asList("X", "Y"));
+    assertThat(eliminationOrder).isEqualTo(Arrays.asList("X", "Y"));
+
+    eliminationOrder = new WeightedMinFillEliminationStrategy().getEliminationOrder(model, Arrays.asList("X", "Y"));
+    assertThat(eliminationOrder).isEqualTo(Arrays.asList("Y", "X"));
+  }
+}
@@ -0,0 +1,86 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.github.thorbenlindhauer.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.thorbenlindhauer.factor.DiscreteFactor;
+
+public class FactorIndexTest {
+
+  protected GraphicalModel<DiscreteFactor> model;
+
+  @Before
+  public void setUp() {
+    model = GraphicalModel.create()
+    .discreteVariable("A", 2).discreteVariable("B", 2).discreteVariable("C", 2).discreteVariable("D", 2).discreteNetwork()
+    .factor()
+      .scope("A")
+      .basedOnTable(new double[] {0.1, 0.4})
+    .factor()
+      .scope("A", "C")
+      .basedOnTable(new double[] {0.5, 0.2, 0.3, 0.4})
+    .factor()
+      .scope("A", "B")
+      .basedOnTable(new double[] {0.3, 0.6, 0.7, 0.2})
+    .build();
+  }
+
+  @Test
+  public void testLookupByVariable() {
+    FactorIndex<DiscreteFactor> index = model.getFactorIndex();
+
+    assertThat(index.getFactors()).hasSize(3);
+    assertThat(index.getFactors("A")).hasSize(3);
+    assertThat(index.getFactors("B")).hasSize(1);
+    assertThat(index.getFactors("D")).isEmpty();
+
+    assertThat(index.getNeighbours("A")).containsOnly("B", "C");
+    assertThat(index.getNeighbours("C")).containsOnly("A");
+    assertThat(index.getVariableIds()).containsOnly("A", "B", "C");
+  }
+
+  @Test
+  public void testModifyCopy() {
+    FactorIndex<DiscreteFactor> index = new FactorIndex<DiscreteFactor>(model.getFactorIndex());
+
+    DiscreteFactor factorOfB = index.getFactors("B").iterator().next();
+    DiscreteFactor marginal = factorOfB.marginal(model.getScope().subScope("A"));
+
+    assertThat(index.removeFactors("B")).containsOnly(factorOfB);
+    index.add(marginal);
+
+    assertThat(index.getFactors("B")).isEmpty();
+    assertThat(index.getFactors("A")).hasSize(3).contains(marginal);
+    assertThat(index.getVariableIds()).containsOnly("A", "C");
+
+    // the model's index is unchanged
+    assertThat(model.getFactorIndex().getFactors("B")).containsOnly(factorOfB);
+  }
+
+  @Test
+  public void testModelIndexIsReadOnly() {
+    FactorIndex<DiscreteFactor> index = model.getFactorIndex();
+
+    try {
+      index.removeFactors("A");
+      fail("exception expected");
+    } catch (UnsupportedOperationException e) {
+      // happy path
+    }
+  }
+}
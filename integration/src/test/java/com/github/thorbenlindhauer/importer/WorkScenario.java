@@ -17,6 +17,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import org.assertj.core.data.Offset;
 import org.junit.After;
@@ -185,6 +186,24 @@ public class WorkScenario {
 
   }
 
+  @Test
+  public void testGeneratedCliqueTreeMarginals() {
+    GeneratedCliqueTreeInferencer inferencer =
+        new GeneratedCliqueTreeInferencer(graphicalModel, new CliqueTreeGenerator(), new SumProductContextFactory());
+
+    long startTime = System.currentTimeMillis();
+
+    // every variable's marginal with a single calibration
+    Map<String, DiscreteFactor> marginals = inferencer.marginals(null, null);
+    assertThat(marginals).hasSize(graphicalModel.getScope().size());
+    assertThat(marginals.get("Lateatwork").getValueForAssignment(new int[] { 0 })).isEqualTo(0.457875d, TOLERATED_OFFSET);
+    assertThat(marginals.get("Lateatwork").getValueForAssignment(new int[] { 1 })).isEqualTo(0.542125d, TOLERATED_OFFSET);
+
+    long endTime = System.currentTimeMillis();
+
+    System.out.println("Test took " + (endTime - startTime) + " millis");
+  }
+
   @After
   public void tearDown() throws IOException {
     inputStream.close();
@@ -106,28 +106,27 @@ public class ConditionalDiscreteDistributionPrior {
       }
     }
 
-    // TODO: improvement potential with solving via strides and index updates
+    int[] strides = scope.getIndexCoder().getStrides();
+    int[] conditioningAssignment = new int[conditioningScope.size()];
+
     for (int i = 0; i < priors.length; i++) {
       DirichletDistribution prior = priors[i];
       double[] priorExpectation = prior.getExpectation();
-      int[] conditioningAssignment = conditioningScope.getIndexCoder().getAssignmentForIndex(i);
-
-      for (int j = 0; j < priorExpectation.length; j++) {
 
-        int[] fullAssignment = new int[scope.size()];
-        int conditioningIndex = 0;
-        for (int k = 0; k < fullAssignment.length; k++) {
-          if (k != describedVariableIndex) {
-            fullAssignment[k] = conditioningAssignment[conditioningIndex];
-            conditioningIndex++;
-          } else {
-            fullAssignment[k] = j;
-          }
+      int conditioningIndex = 0;
+      int fullIndex = 0;
+      for (int k = 0; k < scope.size(); k++) {
+        if (k != describedVariableIndex) {
+          fullIndex += conditioningAssignment[conditioningIndex] * strides[k];
+          conditioningIndex++;
         }
+      }
 
-        int fullIndex = scope.getIndexCoder().getIndexForAssignment(fullAssignment);
-        values[fullIndex] = priorExpectation[j];
+      for (int j = 0; j < priorExpectation.length; j++) {
+        values[fullIndex + j * strides[describedVariableIndex]] = priorExpectation[j];
       }
+
+      conditioningScope.getIndexCoder().nextAssignment(conditioningAssignment);
     }
 
     return values;